@@ -12,13 +12,16 @@ import com.google.gson.ExclusionStrategy
 import com.google.gson.Gson
 import com.google.gson.JsonDeserializer
 import com.google.gson.JsonElement
+import com.google.gson.stream.JsonReader
 import io.ktor.client.HttpClient
 import io.ktor.client.engine.apache.Apache
+import io.ktor.client.features.HttpTimeout
 import io.ktor.client.features.auth.Auth
 import io.ktor.client.features.auth.providers.*
 import io.ktor.client.features.json.GsonSerializer
 import io.ktor.client.features.json.Json
 import io.ktor.http.ContentType
+import org.apache.http.nio.conn.NHttpClientConnectionManager
 import org.veriblock.core.crypto.MerkleRoot
 import org.veriblock.core.crypto.PreviousBlockVbkHash
 import org.veriblock.core.crypto.PreviousKeystoneVbkHash
@@ -48,11 +51,14 @@ private val gson = Gson()
 
 fun <T> String.fromJson(type: Type): T = gson.fromJson(this, type)
 fun <T> JsonElement.fromJson(type: Type): T = gson.fromJson(this, type)
+fun <T> JsonReader.fromJson(type: Type): T = gson.fromJson(this, type)
 
 fun createHttpClient(
     authConfig: HttpAuthConfig? = null,
     contentTypes: List<ContentType>? = null,
-    connectionTimeout: Int = 10_000
+    connectionTimeout: Int = 10_000,
+    maxConnections: Int? = null,
+    connectionManager: NHttpClientConnectionManager? = null
 ) = HttpClient(Apache) {
     Json {
         serializer = GsonSerializer()
@@ -69,10 +75,24 @@ fun createHttpClient(
             }
         }
     }
+    // Per-request timeouts are applied on top of the engine's ones
+    install(HttpTimeout)
     engine {
         socketTimeout = connectionTimeout
         connectTimeout = connectionTimeout
         connectionRequestTimeout = connectionTimeout * 2
+        if (maxConnections != null || connectionManager != null) {
+            customizeClient {
+                if (maxConnections != null) {
+                    setMaxConnTotal(maxConnections)
+                    setMaxConnPerRoute(maxConnections)
+                }
+                // The limits are then taken from the given connection manager
+                if (connectionManager != null) {
+                    setConnectionManager(connectionManager)
+                }
+            }
+        }
     }
     // We will handle error responses manually as we'll be calling a RPC service's API
     expectSuccess = false
@@ -1,43 +1,129 @@
 package org.veriblock.alt.plugins
 
 import com.google.gson.reflect.TypeToken
-import io.ktor.client.HttpClient
+import io.ktor.client.features.timeout
 import io.ktor.client.request.*
+import io.ktor.client.statement.HttpStatement
 import io.ktor.http.*
 import io.ktor.http.content.*
+import io.ktor.utils.io.jvm.javaio.toInputStream
+import java.io.Reader
 import java.lang.reflect.Type
+import java.util.concurrent.atomic.AtomicInteger
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 import mu.KLogger
+import org.veriblock.alt.plugins.util.CapturingReader
 import org.veriblock.alt.plugins.util.JsonRpcRequestBody
 import org.veriblock.alt.plugins.util.NullResultException
+import org.veriblock.alt.plugins.util.RpcException
 import org.veriblock.alt.plugins.util.RpcResponse
-import org.veriblock.alt.plugins.util.handle
+import org.veriblock.alt.plugins.util.readRpcResponse
+import org.veriblock.alt.plugins.util.readRpcResponses
 import org.veriblock.alt.plugins.util.toJson
 import org.veriblock.sdk.alt.SecurityInheritingChain
 
 interface HttpSecurityInheritingChain : SecurityInheritingChain {
-    val httpClient: HttpClient
+    val transport: HttpTransport
     val requestsLogger: KLogger?
 }
 
+// Ids of the requests, unique for the whole process so that responses can be checked against them
+private val requestIds = AtomicInteger()
+
+// Amount of characters of each request and response written to the requests log
+private const val LOGGED_CHARACTERS = 10_000
+
 suspend inline fun <reified T> HttpSecurityInheritingChain.rpcRequest(
     method: String,
     params: Any? = emptyList<Any>(),
     version: String = "1.0"
+): T = rpcRequest(method, params, version, object : TypeToken<T>() {}.type)
+
+/**
+ * Performs a JSON-RPC call of [method] and decodes its result into [type] while the response is being received
+ */
+suspend fun <T> HttpSecurityInheritingChain.rpcRequest(
+    method: String,
+    params: Any?,
+    version: String,
+    type: Type
 ): T {
-    val jsonBody = JsonRpcRequestBody(method, params, version).toJson()
-    requestsLogger?.info { "-> ${jsonBody.take(10_000)}" }
-    val rawResponse: String = httpClient.post(config.host) {
-        // Since jsonBody is a string, we have to specify it is Json content type
-        body = TextContent(jsonBody, contentType = ContentType.Application.Json)
+    val requestId = requestIds.incrementAndGet()
+    val jsonBody = JsonRpcRequestBody(method, params, version, requestId).toJson()
+    return postRpcRequest(method, jsonBody) { reader ->
+        readRpcResponse(reader, type, requestId, jsonBody)
+    }
+}
+
+/**
+ * Performs one JSON-RPC batch call of [method] with each of the given [params], and returns the responses
+ * in the same order as the params. Each response is to be handled like the one of a single request.
+ */
+suspend fun HttpSecurityInheritingChain.batchRpcRequest(
+    method: String,
+    params: List<Any?>,
+    version: String = "1.0"
+): List<RpcResponse> {
+    if (params.isEmpty()) {
+        return emptyList()
+    }
+    val firstRequestId = requestIds.getAndAdd(params.size) + 1
+    val jsonBody = params.mapIndexed { index, it ->
+        JsonRpcRequestBody(method, it, version, firstRequestId + index)
+    }.toJson()
+    val responses = postRpcRequest(method, jsonBody) { reader ->
+        readRpcResponses(reader)
+    }
+    // Servers are free to answer a batch in any order
+    val responsesById = responses.associateBy { response ->
+        response.id?.takeIf { it.isJsonPrimitive && it.asJsonPrimitive.isNumber }?.asInt
+    }
+    return params.indices.map { index ->
+        responsesById[firstRequestId + index]
+            ?: throw HttpException("The altchain (${config.host}) did not answer request $index of the $method batch")
     }
-    requestsLogger?.info { "<- ${rawResponse.take(10_000)}" }
-    val response = try {
-        val type: Type = object : TypeToken<RpcResponse>() {}.type
-        rawResponse.fromJson<RpcResponse>(type)
-    } catch (e: Exception) {
-        error("Unable to parse Altchain (${config.host}) Rpc Response from json: $rawResponse")
+}
+
+/**
+ * Posts a JSON-RPC request and decodes its response with [readResponse] while it is being received
+ */
+private suspend fun <T> HttpSecurityInheritingChain.postRpcRequest(
+    method: String,
+    jsonBody: String,
+    readResponse: (Reader) -> T
+): T {
+    requestsLogger?.info { "-> ${jsonBody.take(LOGGED_CHARACTERS)}" }
+    return transport.request(method) { timeoutMillis ->
+        post<HttpStatement>(config.host) {
+            // Since jsonBody is a string, we have to specify it is Json content type
+            body = TextContent(jsonBody, contentType = ContentType.Application.Json)
+            timeout {
+                requestTimeoutMillis = timeoutMillis
+                socketTimeoutMillis = timeoutMillis
+            }
+        }.execute { response ->
+            withContext(Dispatchers.IO) {
+                val reader = response.content.toInputStream().reader(response.charset() ?: Charsets.UTF_8)
+                // Only the beginning of the response is kept for the log
+                val capturingReader = requestsLogger?.let { CapturingReader(reader, LOGGED_CHARACTERS) }
+                try {
+                    readResponse(capturingReader ?: reader)
+                } catch (e: RpcException) {
+                    throw e
+                } catch (e: NullResultException) {
+                    throw e
+                } catch (e: Exception) {
+                    throw HttpException("Unable to parse Altchain (${config.host}) Rpc Response to $method: ${e.message}", e)
+                } finally {
+                    reader.close()
+                    if (capturingReader != null) {
+                        requestsLogger?.info { "<- ${capturingReader.captured}" }
+                    }
+                }
+            }
+        }
     }
-    return response.handle(jsonBody)
 }
 
 suspend inline fun <reified T> HttpSecurityInheritingChain.nullableRpcRequest(method: String, params: Any? = emptyList<Any>(), version: String = "1.0"): T? = try {
@@ -0,0 +1,191 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.alt.plugins
+
+import io.ktor.client.HttpClient
+import io.ktor.client.features.HttpRequestTimeoutException
+import io.ktor.http.ContentType
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.Timer
+import kotlinx.coroutines.sync.Semaphore
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor
+import org.apache.http.impl.nio.reactor.IOReactorConfig
+import org.veriblock.alt.plugins.util.NullResultException
+import org.veriblock.alt.plugins.util.RpcException
+import org.veriblock.sdk.alt.plugin.HttpAuthConfig
+import org.veriblock.sdk.alt.plugin.HttpTransportConfig
+import org.veriblock.sdk.alt.plugin.PluginMetrics
+import java.net.SocketTimeoutException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+// Tip queries are expected to be answered right away, while the submission of PoP data
+// can keep the daemon busy validating it for a while
+private val DEFAULT_REQUEST_TIMEOUTS = mapOf(
+    "getblockcount" to 3_000L,
+    "eth_blockNumber" to 3_000L,
+    "waitforblockheight" to 30_000L,
+    "submitpop*" to 60_000L,
+    "pop_submitPop*" to 60_000L
+)
+
+// Methods the daemon holds open until something happens, which would otherwise keep in-flight slots from
+// the short requests for as long as they wait
+private val LONG_POLL_METHODS = setOf(
+    "waitforblockheight"
+)
+
+/**
+ * HTTP transport to an altchain daemon: a keep-alive connection pool of [HttpTransportConfig.maxConnections],
+ * at most [HttpTransportConfig.maxInFlightRequests] requests on the wire at the same time (the rest are queued,
+ * long polls aside), and a timeout by RPC method. Latencies, queueing and the usage of the connection pool are
+ * published through [PluginMetrics].
+ */
+class HttpTransport(
+    private val chainKey: String,
+    private val config: HttpTransportConfig,
+    private val defaultTimeout: Long,
+    authConfig: HttpAuthConfig? = null,
+    contentTypes: List<ContentType>? = null
+) {
+    private val connectionManager = PoolingNHttpClientConnectionManager(
+        DefaultConnectingIOReactor(IOReactorConfig.DEFAULT)
+    ).apply {
+        maxTotal = config.maxConnections
+        defaultMaxPerRoute = config.maxConnections
+    }
+
+    val httpClient = createHttpClient(
+        authConfig = authConfig,
+        contentTypes = contentTypes,
+        connectionTimeout = defaultTimeout.toInt(),
+        connectionManager = connectionManager
+    )
+
+    private val inFlightLimit = Semaphore(config.maxInFlightRequests)
+    private val inFlightRequests = AtomicInteger()
+    private val queuedRequests = AtomicInteger()
+
+    private val exactTimeouts: Map<String, Long>
+    // Sorted by descending prefix length so that the most specific pattern wins
+    private val prefixTimeouts: List<Pair<String, Long>>
+
+    private val requestTimers = ConcurrentHashMap<Pair<String, String>, Timer>()
+
+    init {
+        val timeouts = DEFAULT_REQUEST_TIMEOUTS + config.requestTimeouts
+        exactTimeouts = timeouts.filterKeys { !it.endsWith("*") }
+        prefixTimeouts = timeouts.filterKeys { it.endsWith("*") }
+            .map { (pattern, timeout) -> pattern.removeSuffix("*") to timeout }
+            .sortedByDescending { it.first.length }
+
+        chainGauges.computeIfAbsent(chainKey) { TransportGauges(it) }.transport = this
+    }
+
+    /**
+     * Timeout in milliseconds for a request of the given RPC [method]
+     */
+    fun timeoutFor(method: String): Long = exactTimeouts[method]
+        ?: prefixTimeouts.firstOrNull { method.startsWith(it.first) }?.second
+        ?: defaultTimeout
+
+    /**
+     * Performs a request of the given RPC [method] through [block] once there is a free in-flight slot.
+     * The block is handed the timeout to apply to the request.
+     */
+    suspend fun <T> request(method: String, block: suspend HttpClient.(timeoutMillis: Long) -> T): T {
+        // Long polls don't take an in-flight slot, they are only bound by the connection pool
+        val limited = method !in LONG_POLL_METHODS
+        if (limited) {
+            queuedRequests.incrementAndGet()
+            try {
+                inFlightLimit.acquire()
+            } finally {
+                queuedRequests.decrementAndGet()
+            }
+        }
+        inFlightRequests.incrementAndGet()
+        val start = System.nanoTime()
+        var outcome = "success"
+        try {
+            return httpClient.block(timeoutFor(method))
+        } catch (e: HttpRequestTimeoutException) {
+            outcome = "timeout"
+            throw e
+        } catch (e: SocketTimeoutException) {
+            outcome = "timeout"
+            throw e
+        } catch (e: RpcException) {
+            outcome = "rpc_error"
+            throw e
+        } catch (e: NullResultException) {
+            outcome = "null_result"
+            throw e
+        } catch (e: Exception) {
+            outcome = "failure"
+            throw e
+        } finally {
+            inFlightRequests.decrementAndGet()
+            if (limited) {
+                inFlightLimit.release()
+            }
+            requestTimer(method, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS)
+        }
+    }
+
+    private fun requestTimer(method: String, outcome: String) = requestTimers.getOrPut(method to outcome) {
+        Timer.builder("altchain_plugins.rpc_latency")
+            .tags("chain", chainKey, "method", method, "outcome", outcome)
+            .description("Time taken by the altchain daemon to answer the requests")
+            .publishPercentiles(0.5, 0.9, 0.95, 0.99)
+            .register(PluginMetrics.registry)
+    }
+
+    /**
+     * The gauges of a chain's transport. Gauges only hold a weak reference to what they read, and registering
+     * them again under the same name and tags hands back the existing ones, so they are registered once per chain
+     * against this holder, which is then re-pointed at the chain's latest transport.
+     */
+    private class TransportGauges(chainKey: String) {
+        @Volatile
+        var transport: HttpTransport? = null
+
+        init {
+            gauge(chainKey, "altchain_plugins.rpc_in_flight", "Number of requests waiting for an answer from the altchain daemon") {
+                inFlightRequests.get()
+            }
+            gauge(chainKey, "altchain_plugins.rpc_queued", "Number of requests waiting for a free slot to be sent to the altchain daemon") {
+                queuedRequests.get()
+            }
+            gauge(chainKey, "altchain_plugins.connections_leased", "Number of pooled connections to the altchain daemon in use") {
+                connectionManager.totalStats.leased
+            }
+            gauge(chainKey, "altchain_plugins.connections_available", "Number of idle pooled connections to the altchain daemon") {
+                connectionManager.totalStats.available
+            }
+            gauge(chainKey, "altchain_plugins.connections_pending", "Number of requests waiting for a pooled connection to the altchain daemon") {
+                connectionManager.totalStats.pending
+            }
+        }
+
+        private fun gauge(chainKey: String, name: String, description: String, value: HttpTransport.() -> Int) {
+            Gauge.builder(name, this) { it.transport?.value()?.toDouble() ?: 0.0 }
+                .tags("chain", chainKey)
+                .description(description)
+                .register(PluginMetrics.registry)
+        }
+    }
+
+    companion object {
+        // Strongly held, so that the gauges live as long as the application and not just as long as one transport
+        private val chainGauges = ConcurrentHashMap<String, TransportGauges>()
+    }
+}
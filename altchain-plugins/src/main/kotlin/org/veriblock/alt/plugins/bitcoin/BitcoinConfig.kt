@@ -21,7 +21,9 @@ class BitcoinConfig(
     override val explorerBaseUrls: ExplorerBaseUrls,
     val requestLogsPath: String? = null,
     val daemonConnectionTimeout: Int = 5000,
-    val addressPrefix: String? = null
+    val addressPrefix: String? = null,
+    // Whether the daemon is long-polled (waitforblockheight) for new blocks
+    val blockNotifications: Boolean = false
 ) : ChainConfig() {
     constructor(configuration: PluginConfig) : this(
         configuration.host ?: "http://localhost:18332",
@@ -38,6 +40,7 @@ class BitcoinConfig(
         configuration.explorerBaseUrls,
         configuration.extraConfig["requestLogsPath"],
         configuration.extraConfig["daemonConnectionTimeout"]?.toInt() ?: 5000,
-        configuration.addressPrefix
+        configuration.addressPrefix,
+        configuration.extraConfig["blockNotifications"]?.toBoolean() ?: false
     )
 }
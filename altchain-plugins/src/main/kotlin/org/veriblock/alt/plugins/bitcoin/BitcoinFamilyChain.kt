@@ -11,9 +11,12 @@ package org.veriblock.alt.plugins.bitcoin
 import io.ktor.http.*
 import org.bouncycastle.util.Arrays
 import org.veriblock.alt.plugins.HttpSecurityInheritingChain
-import org.veriblock.alt.plugins.createHttpClient
+import org.veriblock.alt.plugins.batchRpcRequest
+import org.veriblock.alt.plugins.HttpTransport
 import org.veriblock.alt.plugins.rpcRequest
 import org.veriblock.alt.plugins.util.RpcException
+import org.veriblock.alt.plugins.util.RpcResponse
+import org.veriblock.alt.plugins.util.handle
 import org.veriblock.alt.plugins.util.createLoggerFor
 import org.veriblock.alt.plugins.util.segwitToBech32
 import org.veriblock.core.altchain.AltchainPopEndorsement
@@ -40,12 +43,16 @@ import org.veriblock.sdk.models.*
 import org.veriblock.sdk.services.SerializeDeserializeService
 import java.lang.RuntimeException
 import kotlin.math.abs
+import kotlin.math.min
 import kotlin.math.roundToLong
 
 private val logger = createLogger {}
 
 private const val NOT_FOUND_ERROR_CODE = -5
 
+// How long the tip height reported by getblockchaininfo is used instead of asking for it again
+private const val FETCHED_TIP_VALIDITY_MILLIS = 1_000L
+
 @PluginSpec(name = "BitcoinFamily", key = "btc")
 class BitcoinFamilyChain(
     override val key: String,
@@ -77,23 +84,48 @@ class BitcoinFamilyChain(
         script
     }
 
-    override val httpClient = createHttpClient(
+    override val transport = HttpTransport(
+        chainKey = key,
+        config = configuration.http,
+        defaultTimeout = config.daemonConnectionTimeout.toLong(),
         authConfig = config.auth,
-        contentTypes = listOf(ContentType.Application.Json, ContentType.Text.Any),
-        connectionTimeout = config.daemonConnectionTimeout
+        contentTypes = listOf(ContentType.Application.Json, ContentType.Text.Any)
     )
 
     override val requestsLogger = config.requestLogsPath?.let {
         createLoggerFor(key)
     }
 
+    private val blockIndex = BlockIndexCache()
+
+    // Tip height from the last getblockchaininfo call, and when it was retrieved
+    @Volatile
+    private var fetchedTip: Pair<Int, Long>? = null
+
     init {
         config.checkValidity()
     }
 
     override suspend fun getBestBlockHeight(): Int {
+        val fetchedTip = fetchedTip
+        if (fetchedTip != null && System.currentTimeMillis() - fetchedTip.second < FETCHED_TIP_VALIDITY_MILLIS) {
+            return fetchedTip.first
+        }
         logger.trace { "Retrieving best block height..." }
-        return rpcRequest("getblockcount")
+        val height: Int = rpcRequest("getblockcount")
+        blockIndex.onTipHeight(height)
+        return height
+    }
+
+    override fun supportsBlockNotifications(): Boolean = config.blockNotifications
+
+    override suspend fun awaitBestBlockHeight(knownHeight: Int, timeoutMillis: Long): Int {
+        // The daemon has to answer before the HTTP client gives up on the request
+        val timeout = min(timeoutMillis, transport.timeoutFor("waitforblockheight") - 1000L).coerceAtLeast(1L)
+        logger.trace { "Waiting up to $timeout ms for a block above $knownHeight..." }
+        val tip: BtcBlockTip = rpcRequest("waitforblockheight", listOf(knownHeight + 1, timeout))
+        blockIndex.onTip(tip.hash, tip.height)
+        return tip.height
     }
 
     override suspend fun getBlock(hash: String): SecurityInheritingBlock? {
@@ -108,24 +140,44 @@ class BitcoinFamilyChain(
                 throw e
             }
         }
-        return SecurityInheritingBlock(
-            hash = btcBlock.hash,
-            height = btcBlock.height,
-            previousHash = btcBlock.previousblockhash ?: "0000000000000000000000000000000000000000000000000000000000000000",
-            merkleRoot = btcBlock.merkleroot,
-            coinbaseTransactionId = btcBlock.tx[0],
-            transactionIds = btcBlock.tx.drop(1),
-            endorsedBy = btcBlock.pop.state.endorsedBy,
-            knownVbkHashes = btcBlock.pop.state.stored.vbkblocks,
-            veriBlockPublicationIds = btcBlock.pop.state.stored.atvs,
-            bitcoinPublicationIds = btcBlock.pop.state.stored.vtbs
-        )
+        indexBlock(btcBlock)
+        return btcBlock.toSecurityInheritingBlock()
+    }
+
+    override suspend fun getBlocksByHash(hashes: List<String>): List<SecurityInheritingBlock?> {
+        logger.debug { "Retrieving ${hashes.size} blocks by hash..." }
+        return batchRpcRequest("getblock", hashes.map { listOf(it, 1) }).map {
+            it.handleOrNull<BtcBlock>("getblock", -1, NOT_FOUND_ERROR_CODE)?.let { btcBlock ->
+                indexBlock(btcBlock)
+                btcBlock.toSecurityInheritingBlock()
+            }
+        }
+    }
+
+    /**
+     * Keeps the position in the best chain of a retrieved block, and of its parent
+     */
+    private fun indexBlock(btcBlock: BtcBlock) {
+        // Blocks out of the best chain have no confirmations
+        if (btcBlock.confirmations <= 0) {
+            return
+        }
+        val resolvedAtTipHeight = btcBlock.height + btcBlock.confirmations - 1
+        blockIndex.putHash(btcBlock.height, btcBlock.hash, resolvedAtTipHeight)
+        if (btcBlock.previousblockhash != null) {
+            blockIndex.putHash(btcBlock.height - 1, btcBlock.previousblockhash, resolvedAtTipHeight)
+        }
     }
 
     private suspend fun getBlockHash(height: Int): String? {
+        blockIndex.getHash(height)?.let {
+            return it
+        }
         logger.debug { "Retrieving block hash @$height..." }
         return try {
-            rpcRequest("getblockhash", listOf(height))
+            rpcRequest<String>("getblockhash", listOf(height)).also {
+                blockIndex.putHash(height, it)
+            }
         } catch (e: RpcException) {
             if (e.errorCode == -8) {
                 // Block height out of range
@@ -138,18 +190,39 @@ class BitcoinFamilyChain(
 
     override suspend fun getBlock(height: Int): SecurityInheritingBlock? {
         logger.debug { "Retrieving block @$height..." }
-        val blockHash = getBlockHash(height)
-            ?: return null
-        return getBlock(blockHash)
+        return getBlocks(listOf(height)).first()
+    }
+
+    override suspend fun getBlocks(heights: List<Int>): List<SecurityInheritingBlock?> {
+        logger.debug { "Retrieving ${heights.size} blocks by height..." }
+        // Only the hashes which aren't known for the current tip are asked for
+        val knownHashes = heights.associateWith { blockIndex.getHash(it) }
+        val unknownHeights = heights.filter { knownHashes[it] == null }.distinct()
+        val resolvedHashes = unknownHeights.zip(
+            batchRpcRequest("getblockhash", unknownHeights.map { listOf(it) }).map {
+                // Block height out of range
+                it.handleOrNull<String>("getblockhash", -8)
+            }
+        ).toMap()
+        for ((height, hash) in resolvedHashes) {
+            if (hash != null) {
+                blockIndex.putHash(height, hash)
+            }
+        }
+        val blockHashes = heights.map { knownHashes[it] ?: resolvedHashes[it] }
+        val blocksByHash = getBlocksByHash(blockHashes.filterNotNull().distinct()).filterNotNull().associateBy { it.hash }
+        return blockHashes.map { blocksByHash[it] }
     }
 
     override suspend fun checkBlockIsOnMainChain(height: Int, blockHeaderToCheck: ByteArray): Boolean {
         logger.debug { "Checking block @$height has header ${blockHeaderToCheck.toHex()}..." }
         val blockHash = getBlockHash(height)
             ?: return false
-        // Get raw block
-        val rawBlock: String = try {
-            rpcRequest("getblock", listOf(blockHash, 0))
+        // Only the serialized header is needed, not the whole raw block
+        val rawHeader: String = blockIndex.getHeader(blockHash) ?: try {
+            rpcRequest<String>("getblockheader", listOf(blockHash, false)).also {
+                blockIndex.putHeader(blockHash, it)
+            }
         } catch (e: RpcException) {
             if (e.errorCode == NOT_FOUND_ERROR_CODE) {
                 // Block not found
@@ -158,8 +231,7 @@ class BitcoinFamilyChain(
                 throw e
             }
         }
-        // Extract header
-        val header: ByteArray = Arrays.copyOf(rawBlock.asHexBytes(), blockHeaderToCheck.size)
+        val header: ByteArray = Arrays.copyOf(rawHeader.asHexBytes(), blockHeaderToCheck.size)
         // Check header
         return header.contentEquals(blockHeaderToCheck)
     }
@@ -180,17 +252,21 @@ class BitcoinFamilyChain(
                 throw e
             }
         }
-        return SecurityInheritingTransaction(
-            btcTransaction.txid,
-            btcTransaction.confirmations,
-            btcTransaction.vout.map {
-                SecurityInheritingTransactionVout(
-                    (it.value * 100000000).roundToLong(),
-                    it.scriptPubKey.hex
-                )
-            },
-            btcTransaction.blockhash
-        )
+        return btcTransaction.toSecurityInheritingTransaction()
+    }
+
+    override suspend fun getTransactions(txIds: List<String>, blockHash: String?): List<SecurityInheritingTransaction?> {
+        logger.debug { "Retrieving ${txIds.size} transactions..." }
+        val params = txIds.map {
+            if (blockHash == null) {
+                listOf(it, 1)
+            } else {
+                listOf(it, 1, blockHash)
+            }
+        }
+        return batchRpcRequest("getrawtransaction", params).map {
+            it.handleOrNull<BtcTransaction>("getrawtransaction", NOT_FOUND_ERROR_CODE)?.toSecurityInheritingTransaction()
+        }
     }
 
     override fun getPayoutDelay(): Int {
@@ -217,12 +293,13 @@ class BitcoinFamilyChain(
                 throw e
             }
         }
-        return Atv(
-            vbkTransactionId = response.atv.transaction.hash,
-            vbkBlockOfProofHash = response.atv.blockOfProof.hash,
-            containingBlock = response.blockhash,
-            confirmations = response.confirmations
-        )
+        return response.toAtv()
+    }
+
+    override suspend fun getAtvs(ids: List<String>): List<Atv?> {
+        return batchRpcRequest("getrawatv", ids.map { listOf(it, 2) }).map {
+            it.handleOrNull<BtcAtv>("getrawatv", NOT_FOUND_ERROR_CODE)?.toAtv()
+        }
     }
 
     override suspend fun getVtb(id: String): Vtb? {
@@ -236,10 +313,13 @@ class BitcoinFamilyChain(
                 throw e
             }
         }
-        return Vtb(
-            btcBlockOfProof = response.vtb.transaction.blockOfProof,
-            btcBlockOfProofContext = response.vtb.transaction.blockOfProofContext
-        )
+        return response.toVtb()
+    }
+
+    override suspend fun getVtbs(ids: List<String>): List<Vtb?> {
+        return batchRpcRequest("getrawvtb", ids.map { listOf(it, 1) }).map {
+            it.handleOrNull<BtcVtb>("getrawvtb", NOT_FOUND_ERROR_CODE)?.toVtb()
+        }
     }
 
     override suspend fun getMiningInstructionByHeight(blockHeight: Int?): ApmInstruction {
@@ -316,6 +396,11 @@ class BitcoinFamilyChain(
     override suspend fun getBlockChainInfo(): StateInfo {
         return try {
             val response: BlockChainInfo = rpcRequest("getblockchaininfo")
+            if (response.bestblockhash != null) {
+                blockIndex.onTip(response.bestblockhash, response.blocks)
+                // The tip height comes along, so there's no need to ask for it right after
+                fetchedTip = response.blocks to System.currentTimeMillis()
+            }
             val blockDifference = abs(response.headers - response.blocks)
             StateInfo(
                 response.headers,
@@ -425,3 +510,53 @@ class BitcoinFamilyChain(
         }
     }
 }
+
+/**
+ * Handles a batched response, returning null when the daemon answered with one of the [notFoundErrorCodes]
+ */
+private inline fun <reified T> RpcResponse.handleOrNull(method: String, vararg notFoundErrorCodes: Int): T? = try {
+    handle<T>(method)
+} catch (e: RpcException) {
+    if (e.errorCode in notFoundErrorCodes) {
+        null
+    } else {
+        throw e
+    }
+}
+
+private fun BtcBlock.toSecurityInheritingBlock() = SecurityInheritingBlock(
+    hash = hash,
+    height = height,
+    previousHash = previousblockhash ?: "0000000000000000000000000000000000000000000000000000000000000000",
+    merkleRoot = merkleroot,
+    coinbaseTransactionId = tx[0],
+    transactionIds = tx.drop(1),
+    endorsedBy = pop.state.endorsedBy,
+    knownVbkHashes = pop.state.stored.vbkblocks,
+    veriBlockPublicationIds = pop.state.stored.atvs,
+    bitcoinPublicationIds = pop.state.stored.vtbs
+)
+
+private fun BtcTransaction.toSecurityInheritingTransaction() = SecurityInheritingTransaction(
+    txid,
+    confirmations,
+    vout.map {
+        SecurityInheritingTransactionVout(
+            (it.value * 100000000).roundToLong(),
+            it.scriptPubKey.hex
+        )
+    },
+    blockhash
+)
+
+private fun BtcAtv.toAtv() = Atv(
+    vbkTransactionId = atv.transaction.hash,
+    vbkBlockOfProofHash = atv.blockOfProof.hash,
+    containingBlock = blockhash,
+    confirmations = confirmations
+)
+
+private fun BtcVtb.toVtb() = Vtb(
+    btcBlockOfProof = vtb.transaction.blockOfProof,
+    btcBlockOfProofContext = vtb.transaction.blockOfProofContext
+)
@@ -21,6 +21,11 @@ internal data class BtcPublicationData(
     val last_known_bitcoin_blocks: List<String>,
 )
 
+internal data class BtcBlockTip(
+    val hash: String,
+    val height: Int
+)
+
 internal data class BtcBlock(
     val hash: String,
     val height: Int,
@@ -120,6 +125,7 @@ internal data class BlockChainInfo(
     val chain: String,
     val blocks: Int,
     val headers: Int,
+    val bestblockhash: String?,
     val initialblockdownload: Boolean
 )
 
@@ -0,0 +1,81 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.alt.plugins.bitcoin
+
+/**
+ * Small LRU caches of the daemon's block index: the best chain's block hash by height, and block headers by hash.
+ *
+ * Which block is at a height depends on the tip, so the hashes by height are only kept while the tip they
+ * were resolved against stays the same. Headers are immutable for a given hash and are kept regardless of the tip.
+ */
+internal class BlockIndexCache(
+    private val capacity: Int = 256
+) {
+    private val hashesByHeight = lruMap<Int, String>()
+    private val headersByHash = lruMap<String, String>()
+
+    private var tipHash: String? = null
+    private var tipHeight: Int? = null
+
+    /**
+     * Records the daemon's current tip, forgetting the hashes by height resolved against a different one
+     */
+    @Synchronized
+    fun onTip(hash: String, height: Int) {
+        if (hash == tipHash && height == tipHeight) {
+            return
+        }
+        hashesByHeight.clear()
+        tipHash = hash
+        tipHeight = height
+        hashesByHeight[height] = hash
+    }
+
+    /**
+     * Records the daemon's current tip height when its hash is unknown
+     */
+    @Synchronized
+    fun onTipHeight(height: Int) {
+        if (height == tipHeight) {
+            return
+        }
+        hashesByHeight.clear()
+        tipHash = null
+        tipHeight = height
+    }
+
+    @Synchronized
+    fun getHash(height: Int): String? = hashesByHeight[height]
+
+    /**
+     * Records the best chain's block [hash] at [height], as resolved against the current tip.
+     * When known, [resolvedAtTipHeight] is the tip height the daemon had when it answered.
+     */
+    @Synchronized
+    fun putHash(height: Int, hash: String, resolvedAtTipHeight: Int? = null) {
+        val tipHeight = tipHeight
+        if (tipHeight == null || height > tipHeight || (resolvedAtTipHeight != null && resolvedAtTipHeight != tipHeight)) {
+            // Unknown or outdated tip, the entry could outlive the block's place in the best chain
+            return
+        }
+        hashesByHeight[height] = hash
+    }
+
+    @Synchronized
+    fun getHeader(hash: String): String? = headersByHash[hash]
+
+    @Synchronized
+    fun putHeader(hash: String, header: String) {
+        headersByHash[hash] = header
+    }
+
+    private fun <K, V> lruMap() = object : LinkedHashMap<K, V>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, V>): Boolean = size > capacity
+    }
+}
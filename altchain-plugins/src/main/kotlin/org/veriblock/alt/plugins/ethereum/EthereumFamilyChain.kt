@@ -11,7 +11,7 @@ package org.veriblock.alt.plugins.ethereum
 import io.ktor.http.*
 import org.bouncycastle.util.Arrays
 import org.veriblock.alt.plugins.HttpSecurityInheritingChain
-import org.veriblock.alt.plugins.createHttpClient
+import org.veriblock.alt.plugins.HttpTransport
 import org.veriblock.alt.plugins.nullableRpcRequest
 import org.veriblock.alt.plugins.rpcRequest
 import org.veriblock.alt.plugins.util.RpcException
@@ -76,10 +76,12 @@ class EthereumFamilyChain(
         script
     }
 
-    override val httpClient = createHttpClient(
+    override val transport = HttpTransport(
+        chainKey = key,
+        config = configuration.http,
+        defaultTimeout = config.daemonConnectionTimeout.toLong(),
         authConfig = config.auth,
-        contentTypes = listOf(ContentType.Application.Json),
-        connectionTimeout = config.daemonConnectionTimeout,
+        contentTypes = listOf(ContentType.Application.Json)
     )
 
     override val requestsLogger = config.requestLogsPath?.let {
@@ -11,10 +11,16 @@ package org.veriblock.alt.plugins.util
 import com.google.gson.Gson
 import com.google.gson.JsonElement
 import com.google.gson.JsonNull
+import com.google.gson.JsonPrimitive
 import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
 import org.veriblock.alt.plugins.HttpException
 import org.veriblock.alt.plugins.fromJson
+import java.io.FilterReader
+import java.io.Reader
 import java.lang.reflect.Type
+import kotlin.math.min
 
 data class JsonRpcRequestBody(
     val method: String,
@@ -25,7 +31,8 @@ data class JsonRpcRequestBody(
 
 data class RpcResponse(
     val result: JsonElement,
-    val error: RpcError?
+    val error: RpcError?,
+    val id: JsonElement? = null
 )
 
 data class RpcError(
@@ -64,5 +71,122 @@ inline fun <reified T> RpcResponse.handle(requestDescriptor: String): T = try {
     throw HttpException("Failed to perform request to the API: ${e.message}", e)
 }
 
+/**
+ * Decodes a JSON-RPC response read from [reader] in a single pass, the result going straight into [type].
+ * Throws if the response is an error, is not the one for [requestId] or has a null result.
+ */
+fun <T> readRpcResponse(reader: Reader, type: Type, requestId: Int, requestDescriptor: String): T {
+    var result: Any? = NullResult
+    var error: RpcError? = null
+    var responseId: Int? = null
+    val json = JsonReader(reader)
+    json.beginObject()
+    while (json.hasNext()) {
+        when (json.nextName()) {
+            "result" -> result = json.readResult(type)
+            "error" -> error = if (json.peek() == JsonToken.NULL) {
+                json.nextNull()
+                null
+            } else {
+                gson.fromJson(json, RpcError::class.java)
+            }
+            "id" -> responseId = if (json.peek() == JsonToken.NUMBER) {
+                json.nextInt()
+            } else {
+                json.skipValue()
+                null
+            }
+            else -> json.skipValue()
+        }
+    }
+    json.endObject()
+
+    if (error != null) {
+        throw RpcException(error.code, error.message)
+    }
+    if (responseId != requestId) {
+        throw HttpException("Received the response to request $responseId instead of $requestId for request: $requestDescriptor")
+    }
+    if (result === NullResult) {
+        throw NullResultException("Null response was returned for request: $requestDescriptor")
+    }
+    @Suppress("UNCHECKED_CAST")
+    return result as T
+}
+
+/**
+ * Decodes the responses to a JSON-RPC batch read from [reader] in a single pass, each one being kept to be handled
+ * like the response to a single request. Throws if the batch as a whole was answered with an error.
+ */
+fun readRpcResponses(reader: Reader): List<RpcResponse> {
+    val json = JsonReader(reader)
+    if (json.peek() == JsonToken.BEGIN_OBJECT) {
+        val response: RpcResponse = gson.fromJson(json, RpcResponse::class.java)
+        throw response.error?.let { RpcException(it.code, it.message) }
+            ?: HttpException("Received a single response to a batch request")
+    }
+    val responses = ArrayList<RpcResponse>()
+    json.beginArray()
+    while (json.hasNext()) {
+        responses.add(gson.fromJson(json, RpcResponse::class.java))
+    }
+    json.endArray()
+    return responses
+}
+
+// Results treated as the absence of a result, as handle() does
+private object NullResult
+
+private fun JsonReader.readResult(type: Type): Any? = when (peek()) {
+    JsonToken.NULL -> {
+        nextNull()
+        NullResult
+    }
+    JsonToken.BOOLEAN -> if (nextBoolean()) {
+        JsonPrimitive(true).fromJson<Any>(type)
+    } else {
+        NullResult
+    }
+    JsonToken.STRING -> {
+        val value = nextString()
+        if (value == "0x") {
+            NullResult
+        } else {
+            JsonPrimitive(value).fromJson<Any>(type)
+        }
+    }
+    else -> fromJson<Any>(type)
+}
+
+/**
+ * Reader keeping a copy of the first [limit] characters read through it, so that they can be logged
+ */
+class CapturingReader(
+    reader: Reader,
+    private val limit: Int
+) : FilterReader(reader) {
+    private val capturedCharacters = StringBuilder()
+
+    val captured: String
+        get() = capturedCharacters.toString()
+
+    override fun read(): Int {
+        val character = super.read()
+        if (character >= 0 && capturedCharacters.length < limit) {
+            capturedCharacters.append(character.toChar())
+        }
+        return character
+    }
+
+    override fun read(buffer: CharArray, offset: Int, length: Int): Int {
+        val count = super.read(buffer, offset, length)
+        if (count > 0 && capturedCharacters.length < limit) {
+            capturedCharacters.append(buffer, offset, min(count, limit - capturedCharacters.length))
+        }
+        return count
+    }
+}
+
 fun JsonRpcRequestBody.toJson(): String = gson.toJson(this)
+fun List<JsonRpcRequestBody>.toJson(): String = gson.toJson(this)
 fun RpcResponse.toJson(): String = gson.toJson(this)
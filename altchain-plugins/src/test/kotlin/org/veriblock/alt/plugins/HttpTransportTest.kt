@@ -0,0 +1,121 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.alt.plugins
+
+import io.kotest.assertions.throwables.shouldThrowAny
+import io.kotest.matchers.shouldBe
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Test
+import org.veriblock.alt.plugins.bitcoin.BitcoinFamilyChain
+import org.veriblock.sdk.alt.plugin.HttpTransportConfig
+import org.veriblock.sdk.alt.plugin.PluginConfig
+import org.veriblock.sdk.alt.plugin.PluginMetrics
+import java.util.concurrent.atomic.AtomicInteger
+
+class HttpTransportTest {
+    @Test
+    fun requestTimeoutsAreChosenByMethod() {
+        val transport = HttpTransport(
+            "test",
+            HttpTransportConfig(requestTimeouts = mapOf("getblock" to 500L, "submitpopatv*" to 90_000L)),
+            defaultTimeout = 5_000L
+        )
+
+        transport.timeoutFor("getblock") shouldBe 500L
+        transport.timeoutFor("getblockcount") shouldBe 3_000L
+        transport.timeoutFor("submitpopvbk") shouldBe 60_000L
+        // The most specific pattern wins
+        transport.timeoutFor("submitpopatv") shouldBe 90_000L
+        transport.timeoutFor("getrawatv") shouldBe 5_000L
+    }
+
+    @Test
+    fun requestsOverTheInFlightLimitAreQueued() = runBlocking {
+        val transport = HttpTransport("test", HttpTransportConfig(maxInFlightRequests = 2), defaultTimeout = 5_000L)
+        val inFlight = AtomicInteger()
+        var maxInFlight = 0
+
+        (1..10).map {
+            async {
+                transport.request("getblock") {
+                    maxInFlight = maxOf(maxInFlight, inFlight.incrementAndGet())
+                    delay(20)
+                    inFlight.decrementAndGet()
+                }
+            }
+        }.awaitAll()
+
+        maxInFlight shouldBe 2
+    }
+
+    @Test
+    fun longPollsDoNotTakeInFlightSlots() = runBlocking {
+        val transport = HttpTransport("test", HttpTransportConfig(maxInFlightRequests = 1), defaultTimeout = 5_000L)
+        val blockArrived = CompletableDeferred<Unit>()
+
+        val longPoll = async {
+            transport.request("waitforblockheight") {
+                blockArrived.await()
+            }
+        }
+        // Answered while the long poll is still waiting
+        withTimeout(1_000L) {
+            transport.request("getblock") { }
+        }
+        blockArrived.complete(Unit)
+        longPoll.await()
+    }
+
+    @Test
+    fun gaugesReportTheLatestTransportOfTheChain() = runBlocking {
+        val registry = SimpleMeterRegistry()
+        PluginMetrics.bindTo(registry)
+        // The first transport of the chain, as left behind by a plugin that got recreated
+        HttpTransport("recreated", HttpTransportConfig(), defaultTimeout = 5_000L)
+        val transport = HttpTransport("recreated", HttpTransportConfig(), defaultTimeout = 5_000L)
+
+        val inFlight = transport.request("getblock") {
+            registry.get("altchain_plugins.rpc_in_flight").tag("chain", "recreated").gauge().value()
+        }
+
+        inFlight shouldBe 1.0
+        registry.get("altchain_plugins.rpc_in_flight").tag("chain", "recreated").gauge().value() shouldBe 0.0
+        registry.get("altchain_plugins.connections_leased").tag("chain", "recreated").gauge().value() shouldBe 0.0
+    }
+
+    @Test
+    fun slowMethodCallsTimeOut() = runBlocking {
+        StubJsonRpcServer { _, _ ->
+            Thread.sleep(2_000)
+            100
+        }.use { server ->
+            val chain = BitcoinFamilyChain(
+                "btc",
+                PluginConfig(
+                    id = 0,
+                    name = "Bitcoin",
+                    host = server.url,
+                    http = HttpTransportConfig(requestTimeouts = mapOf("getblockcount" to 200L))
+                )
+            )
+
+            val start = System.currentTimeMillis()
+            shouldThrowAny {
+                chain.getBestBlockHeight()
+            }
+            (System.currentTimeMillis() - start < 2_000) shouldBe true
+        }
+    }
+}
@@ -0,0 +1,139 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.alt.plugins
+
+import com.google.gson.Gson
+import com.google.gson.JsonPrimitive
+import com.google.gson.reflect.TypeToken
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import org.veriblock.alt.plugins.bitcoin.BitcoinFamilyChain
+import org.veriblock.alt.plugins.util.NullResultException
+import org.veriblock.alt.plugins.util.RpcException
+import org.veriblock.alt.plugins.util.RpcResponse
+import org.veriblock.alt.plugins.util.handle
+import org.veriblock.alt.plugins.util.readRpcResponse
+import org.veriblock.alt.plugins.util.readRpcResponses
+import org.veriblock.sdk.alt.model.PopMempool
+import org.veriblock.sdk.alt.plugin.PluginConfig
+import java.io.InputStreamReader
+import java.io.StringReader
+import java.lang.management.ManagementFactory
+
+// Roughly 4 MB of mempool ids
+private const val MEMPOOL_SIZE = 30_000
+
+class RpcRequestTest {
+    private val mempool = mapOf(
+        "vbkblocks" to (0 until MEMPOOL_SIZE).map { "%064x".format(it) },
+        "atvs" to (0 until MEMPOOL_SIZE).map { "%064x".format(it + MEMPOOL_SIZE) },
+        "vtbs" to emptyList<String>()
+    )
+
+    @Test
+    fun largeResponsesAreDecodedIntoTheTargetType() = runBlocking {
+        StubJsonRpcServer { method, _ ->
+            when (method) {
+                "getrawpopmempool" -> mempool
+                else -> 100
+            }
+        }.use { server ->
+            val chain = chain(server)
+
+            val popMempool: PopMempool = chain.getPopMempool()
+            chain.getBestBlockHeight() shouldBe 100
+
+            popMempool.vbkBlockHashes.size shouldBe MEMPOOL_SIZE
+            popMempool.atvs.last() shouldBe "%064x".format(2 * MEMPOOL_SIZE - 1)
+            // Every request carries its own id
+            server.receivedIds.toSet().size shouldBe 2
+        }
+    }
+
+    @Test
+    fun responseToAnotherRequestIsRejected() = runBlocking {
+        StubJsonRpcServer(responseId = { JsonPrimitive(it.asInt + 1) }) { _, _ -> 100 }.use { server ->
+            shouldThrow<HttpException> {
+                chain(server).getBestBlockHeight()
+            }
+        }
+        Unit
+    }
+
+    @Test
+    fun nullResultIsReported() = runBlocking {
+        StubJsonRpcServer { _, _ -> null }.use { server ->
+            shouldThrow<NullResultException> {
+                chain(server).getBestKnownVbkBlockHash()
+            }
+        }
+        Unit
+    }
+
+    @Test
+    fun batchResponsesAreDecodedFromTheStream() {
+        val responses = readRpcResponses(
+            StringReader("""[{"result":1,"error":null,"id":2},{"result":null,"error":{"code":-5,"message":"missing"},"id":3}]""")
+        )
+
+        responses.map { it.id?.asInt } shouldBe listOf(2, 3)
+        responses[0].handle<Int>("getblockhash") shouldBe 1
+        shouldThrow<RpcException> {
+            responses[1].handle<Int>("getblockhash")
+        }.errorCode shouldBe -5
+    }
+
+    @Test
+    fun batchAnsweredWithASingleErrorIsReported() {
+        shouldThrow<RpcException> {
+            readRpcResponses(StringReader("""{"result":null,"error":{"code":-32700,"message":"Parse error"},"id":null}"""))
+        }.errorCode shouldBe -32700
+    }
+
+    @Test
+    fun streamingDecodingAllocatesLess() {
+        val type = object : TypeToken<Map<String, List<String>>>() {}.type
+        val responseBytes = Gson().toJson(mapOf("result" to mempool, "error" to null, "id" to 1)).toByteArray()
+
+        // Response read as a string, parsed into a tree and then decoded from the tree
+        val treeBytes = measureAllocatedBytes {
+            val rawResponse = String(responseBytes)
+            val response: RpcResponse = rawResponse.fromJson(object : TypeToken<RpcResponse>() {}.type)
+            response.handle<Map<String, List<String>>>("getrawpopmempool")
+        }
+        // Response decoded straight into the result type
+        val streamingBytes = measureAllocatedBytes {
+            readRpcResponse<Map<String, List<String>>>(
+                InputStreamReader(responseBytes.inputStream()), type, 1, "getrawpopmempool"
+            )
+        }
+        (streamingBytes < treeBytes) shouldBe true
+    }
+
+    private fun chain(server: StubJsonRpcServer) = BitcoinFamilyChain(
+        "btc",
+        PluginConfig(
+            id = 0,
+            name = "Bitcoin",
+            host = server.url
+        )
+    )
+
+    private inline fun measureAllocatedBytes(block: () -> Unit): Long {
+        val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+        // Warm up before measuring
+        block()
+        val before = threadBean.getThreadAllocatedBytes(threadId)
+        block()
+        return threadBean.getThreadAllocatedBytes(threadId) - before
+    }
+}
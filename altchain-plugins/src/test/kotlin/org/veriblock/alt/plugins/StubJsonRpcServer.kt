@@ -0,0 +1,93 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.alt.plugins
+
+import com.google.gson.Gson
+import com.google.gson.JsonArray
+import com.google.gson.JsonElement
+import com.google.gson.JsonNull
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import com.sun.net.httpserver.HttpServer
+import java.io.Closeable
+import java.net.InetSocketAddress
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+class StubRpcError(
+    val code: Int,
+    override val message: String
+) : RuntimeException()
+
+/**
+ * Minimal JSON-RPC server on a local port, answering single and batch requests through [handler].
+ * The handler returns the result for a method call, or throws a [StubRpcError] to answer with an error.
+ */
+class StubJsonRpcServer(
+    // Whether batch responses are sent in the reverse order of the requests
+    private val reverseBatches: Boolean = false,
+    // Id to answer with instead of the request's one
+    private val responseId: ((JsonElement) -> JsonElement)? = null,
+    private val handler: (method: String, params: JsonArray) -> Any?
+) : Closeable {
+    private val gson = Gson()
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0)
+
+    val httpRequests = AtomicInteger()
+    val calledMethods = CopyOnWriteArrayList<String>()
+    val receivedIds = CopyOnWriteArrayList<JsonElement>()
+
+    val url: String
+        get() = "http://127.0.0.1:${server.address.port}"
+
+    init {
+        server.createContext("/") { exchange ->
+            httpRequests.incrementAndGet()
+            val request = exchange.requestBody.reader().use { JsonParser().parse(it) }
+            val response = if (request.isJsonArray) {
+                val responses = request.asJsonArray.map { answer(it.asJsonObject) }
+                JsonArray().apply {
+                    (if (reverseBatches) responses.reversed() else responses).forEach { add(it) }
+                }
+            } else {
+                answer(request.asJsonObject)
+            }
+            val bytes = gson.toJson(response).toByteArray()
+            exchange.responseHeaders.add("Content-Type", "application/json")
+            exchange.sendResponseHeaders(200, bytes.size.toLong())
+            exchange.responseBody.use { it.write(bytes) }
+        }
+        server.start()
+    }
+
+    private fun answer(request: JsonObject): JsonObject {
+        val method = request["method"].asString
+        calledMethods.add(method)
+        val params = request["params"]?.takeIf { it.isJsonArray }?.asJsonArray ?: JsonArray()
+        val response = JsonObject()
+        try {
+            response.add("result", gson.toJsonTree(handler(method, params)))
+            response.add("error", JsonNull.INSTANCE)
+        } catch (e: StubRpcError) {
+            response.add("result", JsonNull.INSTANCE)
+            response.add("error", JsonObject().apply {
+                addProperty("code", e.code)
+                addProperty("message", e.message)
+            })
+        }
+        val id = request["id"] ?: JsonNull.INSTANCE
+        receivedIds.add(id)
+        response.add("id", responseId?.invoke(id) ?: id)
+        return response
+    }
+
+    override fun close() {
+        server.stop(0)
+    }
+}
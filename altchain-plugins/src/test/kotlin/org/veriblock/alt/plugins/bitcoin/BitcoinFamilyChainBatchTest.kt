@@ -0,0 +1,201 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.alt.plugins.bitcoin
+
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Test
+import org.veriblock.alt.plugins.StubJsonRpcServer
+import org.veriblock.alt.plugins.StubRpcError
+import org.veriblock.core.utilities.extensions.asHexBytes
+import org.veriblock.sdk.alt.plugin.PluginConfig
+
+private const val TIP_HEIGHT = 100
+
+class BitcoinFamilyChainBatchTest {
+    private val server = StubJsonRpcServer(reverseBatches = true) { method, params ->
+        when (method) {
+            "getblockchaininfo" -> mapOf(
+                "chain" to "regtest",
+                "blocks" to TIP_HEIGHT,
+                "headers" to TIP_HEIGHT,
+                "bestblockhash" to blockHash(TIP_HEIGHT),
+                "initialblockdownload" to false
+            )
+            "getblockcount" -> TIP_HEIGHT
+            "getblockhash" -> {
+                val height = params[0].asInt
+                if (height > TIP_HEIGHT) {
+                    throw StubRpcError(-8, "Block height out of range")
+                }
+                blockHash(height)
+            }
+            "getblock" -> {
+                val hash = params[0].asString
+                val height = hash.removePrefix("hash").toIntOrNull()
+                    ?: throw StubRpcError(-5, "Block not found")
+                block(height)
+            }
+            "getblockheader" -> {
+                val height = params[0].asString.removePrefix("hash").toIntOrNull()
+                    ?: throw StubRpcError(-5, "Block not found")
+                blockHeader(height)
+            }
+            "getrawtransaction" -> {
+                val txId = params[0].asString
+                if (txId == "missing") {
+                    throw StubRpcError(-5, "No such mempool or blockchain transaction")
+                }
+                mapOf("txid" to txId, "confirmations" to 3, "vout" to emptyList<Any>(), "blockhash" to blockHash(7))
+            }
+            "getrawatv" -> {
+                val id = params[0].asString
+                if (id == "missing") {
+                    throw StubRpcError(-5, "Can not find ATV")
+                }
+                mapOf(
+                    "in_active_chain" to true,
+                    "blockheight" to 9,
+                    "blockhash" to blockHash(9),
+                    "confirmations" to 2,
+                    "atv" to mapOf(
+                        "id" to id,
+                        "version" to 1,
+                        "transaction" to mapOf("hash" to "tx-$id"),
+                        "blockOfProof" to mapOf("hash" to "bop-$id", "height" to 50)
+                    )
+                )
+            }
+            "waitforblockheight" -> mapOf("hash" to blockHash(TIP_HEIGHT + 1), "height" to TIP_HEIGHT + 1)
+            else -> throw StubRpcError(-32601, "Method not found")
+        }
+    }
+
+    private val chain = BitcoinFamilyChain(
+        "btc",
+        PluginConfig(
+            id = 0,
+            name = "Bitcoin",
+            host = server.url
+        )
+    )
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun getBlocksResolvesHeightsInTwoRoundTrips() = runBlocking {
+        val blocks = chain.getBlocks(listOf(5, 101, 3, 4))
+
+        blocks.map { it?.height } shouldBe listOf(5, null, 3, 4)
+        blocks[0]?.hash shouldBe blockHash(5)
+        blocks[0]?.previousHash shouldBe blockHash(4)
+        // One batch of getblockhash and one batch of getblock, whatever the amount of heights
+        server.httpRequests.get() shouldBe 2
+        server.calledMethods.count { it == "getblock" } shouldBe 3
+    }
+
+    @Test
+    fun getBlocksByHashReturnsNullForUnknownHashes() = runBlocking {
+        val blocks = chain.getBlocksByHash(listOf(blockHash(8), "unknown"))
+
+        blocks.map { it?.height } shouldBe listOf(8, null)
+        server.httpRequests.get() shouldBe 1
+    }
+
+    @Test
+    fun getTransactionsMatchesResponsesToRequests() = runBlocking {
+        val transactions = chain.getTransactions(listOf("a", "missing", "c"))
+
+        transactions.map { it?.txId } shouldBe listOf("a", null, "c")
+        transactions[0]?.blockHash shouldBe blockHash(7)
+        server.httpRequests.get() shouldBe 1
+    }
+
+    @Test
+    fun getAtvsInOneRoundTrip() = runBlocking {
+        val atvs = chain.getAtvs(listOf("x", "missing", "y"))
+
+        atvs.map { it?.vbkTransactionId } shouldBe listOf("tx-x", null, "tx-y")
+        atvs[2]?.containingBlock shouldBe blockHash(9)
+        server.httpRequests.get() shouldBe 1
+    }
+
+    @Test
+    fun emptyBatchesDoNotReachTheDaemon() = runBlocking {
+        chain.getBlocks(emptyList()) shouldBe emptyList()
+        chain.getAtvs(emptyList()) shouldBe emptyList()
+
+        server.httpRequests.get() shouldBe 0
+    }
+
+    @Test
+    fun tipBlockIsRetrievedAlongWithTheChainInfoInTwoRoundTrips() = runBlocking {
+        chain.getBlockChainInfo()
+        val tipHeight = chain.getBestBlockHeight()
+        val tip = chain.getBlock(tipHeight)
+
+        tip?.hash shouldBe blockHash(TIP_HEIGHT)
+        // getblockchaininfo and getblock: the tip height and hash come with the chain info
+        server.calledMethods shouldBe listOf("getblockchaininfo", "getblock")
+    }
+
+    @Test
+    fun mainChainChecksOnlyRetrieveTheHeaderOnce() = runBlocking {
+        chain.getBlockChainInfo()
+
+        chain.checkBlockIsOnMainChain(50, blockHeader(50).asHexBytes()) shouldBe true
+        chain.checkBlockIsOnMainChain(50, blockHeader(50).asHexBytes()) shouldBe true
+        chain.checkBlockIsOnMainChain(50, blockHeader(51).asHexBytes()) shouldBe false
+
+        server.calledMethods shouldBe listOf("getblockchaininfo", "getblockhash", "getblockheader")
+    }
+
+    @Test
+    fun blockHashesAreForgottenWhenTheTipChanges() = runBlocking {
+        chain.getBlockChainInfo()
+        chain.getBlock(50)
+        chain.getBlock(50)
+        server.calledMethods.count { it == "getblockhash" } shouldBe 1
+
+        // Another tip height, the block at 50 could have changed
+        chain.awaitBestBlockHeight(TIP_HEIGHT, 1_000)
+        chain.getBlock(50)
+        server.calledMethods.count { it == "getblockhash" } shouldBe 2
+    }
+
+    private fun blockHash(height: Int) = "hash$height"
+
+    private fun blockHeader(height: Int) = "%02x".format(height).repeat(80)
+
+    private fun block(height: Int) = mapOf(
+        "hash" to blockHash(height),
+        "height" to height,
+        "confirmations" to TIP_HEIGHT - height + 1,
+        "version" to 1,
+        "nonce" to 0,
+        "merkleroot" to "merkle$height",
+        "difficulty" to 1.0,
+        "tx" to listOf("coinbase$height", "tx$height"),
+        "previousblockhash" to blockHash(height - 1),
+        "pop" to mapOf(
+            "state" to mapOf(
+                "endorsedBy" to emptyList<String>(),
+                "stored" to mapOf(
+                    "vbkblocks" to emptyList<String>(),
+                    "atvs" to emptyList<String>(),
+                    "vtbs" to emptyList<String>()
+                )
+            )
+        )
+    )
+}
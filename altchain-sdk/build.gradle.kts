@@ -30,6 +30,9 @@ dependencies {
     // Logging
     implementation("io.github.microutils:kotlin-logging:1.6.26")
 
+    // Metrics
+    api("io.micrometer:micrometer-core:1.1.4")
+
     // Reflection
     implementation("org.reflections:reflections:0.9.12")
 
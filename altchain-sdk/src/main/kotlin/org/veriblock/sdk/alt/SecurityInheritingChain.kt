@@ -8,6 +8,7 @@
 
 package org.veriblock.sdk.alt
 
+import kotlinx.coroutines.delay
 import org.veriblock.core.altchain.AltchainPopEndorsement
 import org.veriblock.core.contracts.BlockEvidence
 import org.veriblock.sdk.alt.model.Atv
@@ -46,6 +47,22 @@ interface SecurityInheritingChain {
      */
     suspend fun getBestBlockHeight(): Int
 
+    /**
+     * Whether the SI chain daemon can notify new blocks through [awaitBestBlockHeight].
+     * Chains which can't have their best block height polled instead.
+     */
+    fun supportsBlockNotifications(): Boolean = false
+
+    /**
+     * Suspends until the SI chain daemon notifies a best block height other than [knownHeight],
+     * or until [timeoutMillis] elapse, and returns the best block height at that point.
+     * Chains which can't notify new blocks wait for the whole timeout and poll the best block height.
+     */
+    suspend fun awaitBestBlockHeight(knownHeight: Int, timeoutMillis: Long): Int {
+        delay(timeoutMillis)
+        return getBestBlockHeight()
+    }
+
     /**
      * Returns the block for the given [hash] retrieved from the SI chain daemon,
      * or null if it does not exist.
@@ -58,6 +75,21 @@ interface SecurityInheritingChain {
      */
     suspend fun getBlock(height: Int): SecurityInheritingBlock?
 
+    /**
+     * Returns the blocks for the given [hashes], in the same order, with null for the ones which do not exist.
+     * Chains able to retrieve several blocks at once should override the default one by one retrieval.
+     */
+    suspend fun getBlocksByHash(hashes: List<String>): List<SecurityInheritingBlock?> =
+        hashes.map { getBlock(it) }
+
+    /**
+     * Returns the blocks in the best chain for the given [heights], in the same order, with null for the heights
+     * out of the chain's bounds.
+     * Chains able to retrieve several blocks at once should override the default one by one retrieval.
+     */
+    suspend fun getBlocks(heights: List<Int>): List<SecurityInheritingBlock?> =
+        heights.map { getBlock(it) }
+
     /**
      * Retrieves the block in the best chain for the given [height] from the SI chain daemon.
      * If it does not exist, it returns false.
@@ -71,6 +103,13 @@ interface SecurityInheritingChain {
      */
     suspend fun getTransaction(txId: String, blockHash: String? = null): SecurityInheritingTransaction?
 
+    /**
+     * Returns the transactions for the given [txIds], in the same order, with null for the ones which do not exist.
+     * Chains able to retrieve several transactions at once should override the default one by one retrieval.
+     */
+    suspend fun getTransactions(txIds: List<String>, blockHash: String? = null): List<SecurityInheritingTransaction?> =
+        txIds.map { getTransaction(it, blockHash) }
+
     /**
      * Returns this security inheriting chain's payout delay, in blocks.
      */
@@ -108,11 +147,25 @@ interface SecurityInheritingChain {
      */
     suspend fun getAtv(id: String): Atv?
 
+    /**
+     * Retrieves the ATVs for the given [ids], in the same order, with null for the ones which do not exist.
+     * Chains able to retrieve several ATVs at once should override the default one by one retrieval.
+     */
+    suspend fun getAtvs(ids: List<String>): List<Atv?> =
+        ids.map { getAtv(it) }
+
     /**
      * Retrieves a VTB by id, or null if it does not exist.
      */
     suspend fun getVtb(id: String): Vtb?
 
+    /**
+     * Retrieves the VTBs for the given [ids], in the same order, with null for the ones which do not exist.
+     * Chains able to retrieve several VTBs at once should override the default one by one retrieval.
+     */
+    suspend fun getVtbs(ids: List<String>): List<Vtb?> =
+        ids.map { getVtb(it) }
+
     /**
      * Retrieves mining instruction from the SI chain for the given [blockHeight] (or the best block height
      * if [blockHeight] is null).
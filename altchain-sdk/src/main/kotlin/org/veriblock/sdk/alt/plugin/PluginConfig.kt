@@ -20,10 +20,20 @@ data class PluginConfig(
     val payoutDetectionType: PayoutDetectionType = PayoutDetectionType.COINBASE,
     val explorerBaseUrls: ExplorerBaseUrls = ExplorerBaseUrls(),
     val extraConfig: Map<String, String> = emptyMap(),
-    val addressPrefix: String? = null
+    val addressPrefix: String? = null,
+    val http: HttpTransportConfig = HttpTransportConfig()
 )
 
 data class HttpAuthConfig(
     val username: String,
     val password: String
 )
+
+data class HttpTransportConfig(
+    // Keep-alive connections kept open to the daemon
+    val maxConnections: Int = 8,
+    // Requests sent to the daemon at the same time, the rest wait for a free slot
+    val maxInFlightRequests: Int = 8,
+    // Timeout in milliseconds by RPC method, a trailing '*' matches every method with that prefix
+    val requestTimeouts: Map<String, Long> = emptyMap()
+)
@@ -0,0 +1,26 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.alt.plugin
+
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry
+
+/**
+ * Registry for the meters of the altchain plugins.
+ *
+ * Plugins are loaded at runtime, so they register their meters here and the application embedding them
+ * binds its own registry through [bindTo].
+ */
+object PluginMetrics {
+    val registry = CompositeMeterRegistry()
+
+    fun bindTo(target: MeterRegistry) {
+        registry.add(target)
+    }
+}
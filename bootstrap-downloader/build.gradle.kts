@@ -31,6 +31,10 @@ dependencies {
     // HTTP Client
     implementation("io.ktor:ktor-client-cio:$ktorVersion")
     implementation("io.ktor:ktor-client-gson:$ktorVersion")
+
+    testImplementation("junit:junit:4.12")
+    // Testing Assertions
+    testImplementation("io.kotest:kotest-assertions-core:4.3.2")
 }
 
 // Exclude logback from everywhere to avoid the slf4j warning
@@ -9,19 +9,23 @@ package bootstrap.downloader
 
 import com.google.gson.Gson
 import io.ktor.client.HttpClient
-import io.ktor.client.call.receive
 import io.ktor.client.engine.cio.CIO
 import io.ktor.client.features.json.Json
 import io.ktor.client.request.get
-import io.ktor.client.statement.HttpStatement
-import io.ktor.utils.io.ByteReadChannel
-import io.ktor.utils.io.core.isEmpty
-import io.ktor.utils.io.core.readBytes
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import me.tongfei.progressbar.DelegatingProgressBarConsumer
+import me.tongfei.progressbar.ProgressBar
 import me.tongfei.progressbar.ProgressBarBuilder
 import me.tongfei.progressbar.ProgressBarStyle
 import mu.KotlinLogging
+import org.apache.commons.codec.binary.Hex
 import org.apache.commons.codec.digest.DigestUtils
 import org.veriblock.core.SharedConstants
 import org.veriblock.core.utilities.Configuration
@@ -31,7 +35,10 @@ import java.lang.IllegalStateException
 import java.nio.file.Files
 import java.nio.file.Paths
 import java.nio.file.StandardCopyOption
+import java.security.DigestInputStream
 import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import org.veriblock.core.utilities.checkJvmVersion
 import kotlin.math.roundToInt
 
@@ -41,12 +48,16 @@ class Downloader(
     private val url: String,
     private val network: String,
     private val dataDirectory: String,
-    private val isLocalUrl: Boolean = false
+    private val isLocalUrl: Boolean = false,
+    private val parallelism: Int = 4,
+    rangeSize: Long = 16L * 1024 * 1024
 ) {
     private val httpClient = HttpClient(CIO) {
         Json {}
     }
 
+    private val rangeDownloader = RangeDownloader(httpClient, rangeSize, parallelism)
+
     private suspend fun downloadBlockList() = if (!isLocalUrl) {
         httpClient.get<BlockList>("$url/$network/blockFiles.json")
     } else {
@@ -60,7 +71,7 @@ class Downloader(
 
     private fun String.toBlockList() = Gson().fromJson(this, BlockList::class.java)
 
-    private fun checkFilesToDownload(blockFiles: BlockList): List<BlockFile> {
+    private suspend fun checkFilesToDownload(blockFiles: BlockList): List<BlockFile> {
         logger.info { "Checking your existing block files from ${Paths.get(dataDirectory, network)}..." }
 
         // Check how many files we should download
@@ -70,122 +81,125 @@ class Downloader(
             setStyle(ProgressBarStyle.ASCII)
             setConsumer(DelegatingProgressBarConsumer(logger::info, 100))
         }.build().use { progressBar ->
-            blockFiles.files.mapNotNull { file ->
-                // Verify the local file size and checksum
-                val localFile = Paths.get(dataDirectory, network, file.folder, file.name).toFile()
-                val toDownload = try {
-                    if (localFile.isMissingOrCorrupted(file.size, file.checksum)) {
-                        logger.debug { "Added ${file.name} to be downloaded" }
-                        file
-                    } else {
-                        null
+            val permits = Semaphore(parallelism)
+            coroutineScope {
+                blockFiles.files.map { file ->
+                    async(Dispatchers.IO) {
+                        permits.withPermit {
+                            // Verify the local file size and checksum
+                            val localFile = Paths.get(dataDirectory, network, file.folder, file.name).toFile()
+                            val toDownload = try {
+                                if (localFile.isMissingOrCorrupted(file.size, file.checksum)) {
+                                    logger.debug { "Added ${file.name} to be downloaded" }
+                                    file
+                                } else {
+                                    null
+                                }
+                            } catch (e: Exception) {
+                                logger.debug { "Unable to check the local file ${localFile.name}: ${e.message}" }
+                                null
+                            }
+                            // Increase the progress bar
+                            progressBar.stepBy(1L)
+                            toDownload
+                        }
                     }
-                } catch(e: Exception) {
-                    logger.debug { "Unable to check the local file ${localFile.name}: ${e.message}" }
-                    null
-                }
-                // Increase the progress bar
-                progressBar.stepBy(1L)
-                toDownload
+                }.awaitAll().filterNotNull()
             }
         }
     }
 
     private suspend fun downloadFiles(files: List<BlockFile>) {
-        val filesToDownload = files.toMutableList()
-
         // Download the files
-        logger.info { "Downloading ${filesToDownload.size} block files to ${Paths.get(dataDirectory, network)}..." }
+        logger.info { "Downloading ${files.size} block files to ${Paths.get(dataDirectory, network)}..." }
 
-        var failedAttempts = 0
+        val failedAttempts = AtomicInteger()
 
         ProgressBarBuilder().apply {
             setTaskName("Downloading block files")
-            setInitialMax(filesToDownload.sumOf { it.size })
+            setInitialMax(files.sumOf { it.size })
             setUnit("MB", 1024 * 1024)
             setStyle(ProgressBarStyle.ASCII)
             setConsumer(DelegatingProgressBarConsumer(logger::info, 100))
         }.build().use { progressBar ->
-            var cumulativeSize = 0L
-            while (filesToDownload.isNotEmpty()) {
-                val file = filesToDownload.removeAt(0)
-                val localFile = Paths.get(dataDirectory, network, file.folder, file.name).toFile()
-                if (!localFile.parentFile.exists()) {
-                    localFile.parentFile.mkdirs()
-                }
-
-                try {
-                    logger.debug { "Downloading ${file.name}..." }
-                    // We should delete the nodecore.dat cache files when nodecore.dat should be downloaded
-                    if (file.name == "nodecore.dat") {
-                        Paths.get(dataDirectory, network, file.folder).toFile().listFiles()?.filter {
-                            it.name == "nodecore.dat-shm" || it.name == "nodecore.dat-wal"
-                        }?.forEach {
-                            logger.debug { "Deleting ${it.name}" }
-                            it.delete()
+            val permits = Semaphore(parallelism)
+            coroutineScope {
+                for (file in files) {
+                    launch {
+                        permits.withPermit {
+                            downloadFile(file, progressBar, failedAttempts)
                         }
                     }
+                }
+            }
+        }
+    }
 
-                    // Temp file
-                    val uuid = UUID.randomUUID()
-                    val tempFile = Paths.get(dataDirectory, network, file.folder, "${file.name}-$uuid.dat").toFile()
-
-                    // Download the file
-                    if (!isLocalUrl) {
-                        httpClient.get<HttpStatement>(
-                            "$url/$network/${file.folder}/${file.name}"
-                        ).execute { httpResponse ->
-                            val channel: ByteReadChannel = httpResponse.receive()
-                            var fileCumulativeSize = 0
-                            while (!channel.isClosedForRead) {
-                                val packet = channel.readRemaining(DEFAULT_BUFFER_SIZE.toLong(), 0)
-                                while (!packet.isEmpty) {
-                                    val bytes = packet.readBytes()
-                                    tempFile.appendBytes(bytes)
-
-                                    fileCumulativeSize += bytes.size
-                                    progressBar.stepTo(cumulativeSize + fileCumulativeSize)
-                                }
-                            }
-                        }
-                    } else {
-                        File("$url/$network/${file.folder}/${file.name}").inputStream().use { inputStream ->
-                            Files.copy(
-                                inputStream,
-                                Paths.get(dataDirectory, network, file.folder, file.name),
-                                StandardCopyOption.REPLACE_EXISTING
-                            )
-                        }
-                    }
+    private suspend fun downloadFile(file: BlockFile, progressBar: ProgressBar, failedAttempts: AtomicInteger) {
+        val localFile = Paths.get(dataDirectory, network, file.folder, file.name).toFile()
+        if (!localFile.parentFile.exists()) {
+            localFile.parentFile.mkdirs()
+        }
+        // We should delete the nodecore.dat cache files when nodecore.dat should be downloaded
+        if (file.name == "nodecore.dat") {
+            Paths.get(dataDirectory, network, file.folder).toFile().listFiles()?.filter {
+                it.name == "nodecore.dat-shm" || it.name == "nodecore.dat-wal"
+            }?.forEach {
+                logger.debug { "Deleting ${it.name}" }
+                it.delete()
+            }
+        }
 
-                    // Verify the integrity for the recently downloaded file
-                    if (tempFile.isMissingOrCorrupted(file.size, file.checksum)) {
-                        logger.info { "The recently downloaded file ${file.folder}/${file.name} seems to be corrupted, the file has been re added to the download queue" }
-                        tempFile.delete()
-                        filesToDownload.add(file)
-                    } else {
-                        localFile.delete()
-                        tempFile.renameTo(localFile)
-
-                        // Increase the progress bar
-                        cumulativeSize += file.size
-                        progressBar.stepTo(cumulativeSize)
-                        failedAttempts = 0
+        while (true) {
+            // Progress made by this attempt, taken back if the attempt doesn't succeed
+            val progress = AtomicLong()
+            try {
+                logger.debug { "Downloading ${file.name}..." }
+                val isValid = if (!isLocalUrl) {
+                    rangeDownloader.download("$url/$network/${file.folder}/${file.name}", localFile, file.size, file.checksum) {
+                        progress.addAndGet(it)
+                        progressBar.stepBy(it)
                     }
-                } catch (e: IOException) {
-                    logger.info { "Failed to download ${file.name}: ${e.message}" }
-                    failedAttempts++
-                    if (failedAttempts < 10) {
-                        logger.info { "The file has been re added to the download queue." }
-                        filesToDownload.add(file)
-                    } else {
-                        throw IllegalStateException("Failed too many times to download files")
+                } else {
+                    copyLocalFile(File("$url/$network/${file.folder}/${file.name}"), localFile, file.checksum)
+                }
+
+                // Verify the integrity for the recently downloaded file
+                if (isValid) {
+                    if (isLocalUrl) {
+                        progressBar.stepBy(file.size)
                     }
+                    failedAttempts.set(0)
+                    return
+                }
+                logger.info { "The recently downloaded file ${file.folder}/${file.name} seems to be corrupted, the file has been re added to the download queue" }
+                progressBar.stepBy(-progress.get())
+            } catch (e: IOException) {
+                logger.info { "Failed to download ${file.name}: ${e.message}" }
+                progressBar.stepBy(-progress.get())
+                if (failedAttempts.incrementAndGet() < 10) {
+                    logger.info { "The file has been re added to the download queue." }
+                } else {
+                    throw IllegalStateException("Failed too many times to download files")
                 }
             }
         }
     }
 
+    private fun copyLocalFile(source: File, target: File, checksum: String): Boolean {
+        val tempFile = File(target.parentFile, target.name + TEMP_FILE_EXTENSION)
+        val digest = DigestUtils.getMd5Digest()
+        DigestInputStream(source.inputStream(), digest).use { inputStream ->
+            Files.copy(inputStream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        }
+        if (!Hex.encodeHexString(digest.digest()).equals(checksum, ignoreCase = true)) {
+            tempFile.delete()
+            return false
+        }
+        Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        return true
+    }
+
     suspend fun downloadBlocks() {
         var finished = false
         while (!finished) {
@@ -228,6 +242,10 @@ fun File.isMissingOrCorrupted(size: Long, checksum: String): Boolean {
         return true
     }
     val fileLength: Long = length()
+    if (fileLength != size) {
+        logger.debug { "File: ${this.name}, fileLength: $fileLength (expected length: $size)" }
+        return true
+    }
     val fileChecksum: String = inputStream().use { DigestUtils.md5Hex(it) }
     val isCorrupted = fileLength != size || !fileChecksum.equals(checksum, ignoreCase = true)
     val isMissingOrCorrupted = !fileExist || isCorrupted
@@ -253,6 +271,8 @@ data class DownloaderConfig(
     val network: String = "mainnet",
     val url: String = "https://mirror.veriblock.org/bootstrap",
     val localUrl: Boolean = false,
+    val parallelism: Int = 4,
+    val rangeSizeMegabytes: Int = 16,
     val displayHelp: Boolean = false,
     val autoClose: Boolean = false,
     private val nodecoreDataDirectory: String? = null
@@ -309,7 +329,9 @@ suspend fun main(args: Array<String>) {
         url = config.url,
         network = config.network,
         dataDirectory = config.dataDirectory,
-        isLocalUrl = config.localUrl
+        isLocalUrl = config.localUrl,
+        parallelism = config.parallelism,
+        rangeSize = config.rangeSizeMegabytes * 1024L * 1024L
     ).downloadBlocks()
 
     if (!config.autoClose) {
@@ -0,0 +1,247 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package bootstrap.downloader
+
+import io.ktor.client.HttpClient
+import io.ktor.client.call.receive
+import io.ktor.client.request.get
+import io.ktor.client.request.header
+import io.ktor.client.statement.HttpStatement
+import io.ktor.http.HttpHeaders
+import io.ktor.http.HttpStatusCode
+import io.ktor.utils.io.ByteReadChannel
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import org.apache.commons.codec.binary.Hex
+import org.apache.commons.codec.digest.DigestUtils
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicBoolean
+
+private val logger = createLogger {}
+
+const val TEMP_FILE_EXTENSION = ".tmp"
+const val PROGRESS_FILE_EXTENSION = ".progress"
+
+private const val BUFFER_SIZE = 64 * 1024
+
+/**
+ * Downloads files as HTTP byte ranges of at most [rangeSize] bytes, with at most [parallelism] ranges
+ * being downloaded at a time across all the files.
+ *
+ * Each file is written through a single channel into a `.tmp` file next to it, and the ranges which are
+ * completely written are recorded in a `.tmp.progress` file, so an interrupted download resumes with the
+ * missing ranges. The MD5 checksum is computed while the first range is streamed, the following ranges
+ * are added to it in order as soon as they are written.
+ */
+class RangeDownloader(
+    private val httpClient: HttpClient,
+    private val rangeSize: Long,
+    parallelism: Int
+) {
+    private val permits = Semaphore(parallelism)
+    private val rangesIgnoredWarned = AtomicBoolean(false)
+
+    /**
+     * Downloads [url] into [target], reporting the downloaded bytes to [onProgress].
+     * Returns whether the downloaded file matches the given [size] and [checksum], it is only moved to [target] if it does.
+     */
+    suspend fun download(
+        url: String,
+        target: File,
+        size: Long,
+        checksum: String,
+        onProgress: (Long) -> Unit = {}
+    ): Boolean = withContext(Dispatchers.IO) {
+        val tempFile = File(target.parentFile, target.name + TEMP_FILE_EXTENSION)
+        val progressFile = File(target.parentFile, target.name + TEMP_FILE_EXTENSION + PROGRESS_FILE_EXTENSION)
+        val ranges = splitRanges(size)
+        val completed = readProgress(progressFile, tempFile, checksum)
+        // A file made of a single range is written in order, so what was written of it can be resumed byte by byte
+        val resumeFrom = if (completed != null && ranges.size == 1 && ranges[0] !in completed) {
+            tempFile.length().coerceAtMost(size)
+        } else {
+            0L
+        }
+        if (completed == null) {
+            progressFile.writeText("$checksum\n")
+        }
+        val completedRanges = completed ?: emptySet()
+        val digest = DigestUtils.getMd5Digest()
+
+        val matches = FileChannel.open(
+            tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        ).use { channel ->
+            if (completed == null) {
+                channel.truncate(0)
+            } else if (channel.size() > size) {
+                channel.truncate(size)
+            }
+            onProgress(resumeFrom + ranges.filter { it in completedRanges }.sumOf { it.length })
+            coroutineScope {
+                val downloads: List<Deferred<Unit>?> = ranges.mapIndexed { index, range ->
+                    if (range in completedRanges) {
+                        null
+                    } else {
+                        async {
+                            permits.withPermit {
+                                if (index == 0) {
+                                    // Streamed at the front of the file, so it is hashed on the fly
+                                    hashRange(channel, 0, resumeFrom, digest)
+                                    fetchRange(url, channel, range, range.start + resumeFrom, digest, onProgress)
+                                } else {
+                                    fetchRange(url, channel, range, range.start, null, onProgress)
+                                }
+                                channel.force(false)
+                                synchronized(progressFile) {
+                                    progressFile.appendText("$range\n")
+                                }
+                            }
+                        }
+                    }
+                }
+                ranges.forEachIndexed { index, range ->
+                    val download = downloads[index]
+                    download?.await()
+                    if (index != 0 || download == null) {
+                        hashRange(channel, range.start, range.length, digest)
+                    }
+                }
+            }
+            val fileChecksum = Hex.encodeHexString(digest.digest())
+            val isValid = channel.size() == size && fileChecksum.equals(checksum, ignoreCase = true)
+            if (!isValid) {
+                logger.debug { "File: ${target.name}, length: ${channel.size()} (expected length: $size), checksum: $fileChecksum (expected checksum: $checksum)" }
+            }
+            isValid
+        }
+
+        if (matches) {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } else {
+            tempFile.delete()
+        }
+        progressFile.delete()
+        matches
+    }
+
+    private fun splitRanges(size: Long): List<ByteRange> {
+        if (size == 0L) {
+            return listOf(ByteRange(0, -1))
+        }
+        return (0 until size step rangeSize).map { start ->
+            ByteRange(start, minOf(start + rangeSize, size) - 1)
+        }
+    }
+
+    /**
+     * Returns the ranges of [tempFile] completed by a previous run, or null if there's nothing to resume
+     */
+    private fun readProgress(progressFile: File, tempFile: File, checksum: String): Set<ByteRange>? {
+        if (!tempFile.exists() || !progressFile.exists()) {
+            return null
+        }
+        val lines = progressFile.readLines()
+        if (lines.firstOrNull() != checksum) {
+            // The progress belongs to a previous version of the file
+            return null
+        }
+        return lines.drop(1).mapNotNullTo(HashSet()) { ByteRange.parse(it) }
+    }
+
+    private suspend fun fetchRange(
+        url: String,
+        channel: FileChannel,
+        range: ByteRange,
+        from: Long,
+        digest: MessageDigest?,
+        onProgress: (Long) -> Unit
+    ) {
+        if (from > range.endInclusive || range.length == 0L) {
+            return
+        }
+        httpClient.get<HttpStatement>(url) {
+            header(HttpHeaders.Range, "bytes=$from-${range.endInclusive}")
+        }.execute { response ->
+            val body: ByteReadChannel = response.receive()
+            if (response.status != HttpStatusCode.PartialContent) {
+                // The server sends the whole file instead, skip what comes before the range
+                if (rangesIgnoredWarned.compareAndSet(false, true)) {
+                    logger.warn { "The server doesn't support byte ranges, every range will be read from the start of its file" }
+                }
+                if (body.discard(from) != from) {
+                    throw IOException("The response ended before the start of the range $range")
+                }
+            }
+            val buffer = ByteBuffer.allocate(BUFFER_SIZE)
+            var position = from
+            while (position <= range.endInclusive) {
+                buffer.clear()
+                buffer.limit(minOf(BUFFER_SIZE.toLong(), range.endInclusive + 1 - position).toInt())
+                val read = body.readAvailable(buffer)
+                if (read == -1) {
+                    throw IOException("The response ended after ${position - from} bytes of the range $range")
+                }
+                buffer.flip()
+                digest?.update(buffer.duplicate())
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position)
+                }
+                onProgress(read.toLong())
+            }
+        }
+    }
+
+    private fun hashRange(channel: FileChannel, start: Long, length: Long, digest: MessageDigest) {
+        val buffer = ByteBuffer.allocate(BUFFER_SIZE)
+        var position = start
+        val end = start + length
+        while (position < end) {
+            buffer.clear()
+            buffer.limit(minOf(BUFFER_SIZE.toLong(), end - position).toInt())
+            val read = channel.read(buffer, position)
+            if (read == -1) {
+                throw IOException("Unexpected end of file at $position")
+            }
+            buffer.flip()
+            digest.update(buffer)
+            position += read
+        }
+    }
+}
+
+data class ByteRange(
+    val start: Long,
+    val endInclusive: Long
+) {
+    val length: Long
+        get() = endInclusive + 1 - start
+
+    override fun toString() = "$start-$endInclusive"
+
+    companion object {
+        fun parse(value: String): ByteRange? {
+            val parts = value.split('-')
+            if (parts.size != 2) {
+                return null
+            }
+            return ByteRange(parts[0].toLongOrNull() ?: return null, parts[1].toLongOrNull() ?: return null)
+        }
+    }
+}
@@ -0,0 +1,149 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package bootstrap.downloader
+
+import com.sun.net.httpserver.HttpServer
+import io.kotest.matchers.shouldBe
+import io.ktor.client.HttpClient
+import io.ktor.client.engine.cio.CIO
+import kotlinx.coroutines.runBlocking
+import org.apache.commons.codec.digest.DigestUtils
+import org.junit.After
+import org.junit.Test
+import java.io.File
+import java.io.RandomAccessFile
+import java.net.InetSocketAddress
+import java.nio.file.Files
+import java.util.Collections
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.random.Random
+
+class RangeDownloaderTest {
+    private val content = Random(42).nextBytes(100_000)
+    private val checksum = DigestUtils.md5Hex(content)
+    private val directory = Files.createTempDirectory("bootstrap").toFile()
+    private val target = File(directory, "blocks.dat")
+    private val tempFile = File(directory, "blocks.dat$TEMP_FILE_EXTENSION")
+    private val progressFile = File(directory, "blocks.dat$TEMP_FILE_EXTENSION$PROGRESS_FILE_EXTENSION")
+    private val httpClient = HttpClient(CIO)
+
+    private val requestedRanges: MutableList<String?> = Collections.synchronizedList(ArrayList())
+    private var supportsRanges = true
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+        executor = Executors.newFixedThreadPool(4)
+        createContext("/blocks.dat") { exchange ->
+            val range = exchange.requestHeaders.getFirst("Range")
+            requestedRanges.add(range)
+            try {
+                if (range != null && supportsRanges) {
+                    val (start, end) = range.removePrefix("bytes=").split('-').map { it.toInt() }
+                    exchange.responseHeaders.add("Content-Range", "bytes $start-$end/${content.size}")
+                    exchange.sendResponseHeaders(206, (end + 1 - start).toLong())
+                    exchange.responseBody.write(content, start, end + 1 - start)
+                } else {
+                    exchange.sendResponseHeaders(200, content.size.toLong())
+                    exchange.responseBody.write(content)
+                }
+            } finally {
+                exchange.close()
+            }
+        }
+        start()
+    }
+    private val url = "http://127.0.0.1:${server.address.port}/blocks.dat"
+
+    @After
+    fun tearDown() {
+        server.stop(0)
+        httpClient.close()
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun fileIsDownloadedInRanges() = runBlocking {
+        val progress = AtomicLong()
+
+        val isValid = RangeDownloader(httpClient, rangeSize = 16_384, parallelism = 3)
+            .download(url, target, content.size.toLong(), checksum) { progress.addAndGet(it) }
+
+        isValid shouldBe true
+        target.readBytes().contentEquals(content) shouldBe true
+        tempFile.exists() shouldBe false
+        progressFile.exists() shouldBe false
+        requestedRanges.size shouldBe 7
+        progress.get() shouldBe content.size.toLong()
+    }
+
+    @Test
+    fun interruptedDownloadOnlyFetchesTheMissingRanges() = runBlocking {
+        RandomAccessFile(tempFile, "rw").use {
+            it.write(content, 0, 16_384)
+            it.seek(32_768)
+            it.write(content, 32_768, 16_384)
+        }
+        progressFile.writeText("$checksum\n0-16383\n32768-49151\n")
+
+        val isValid = RangeDownloader(httpClient, rangeSize = 16_384, parallelism = 3)
+            .download(url, target, content.size.toLong(), checksum)
+
+        isValid shouldBe true
+        target.readBytes().contentEquals(content) shouldBe true
+        requestedRanges.toSet() shouldBe setOf(
+            "bytes=16384-32767", "bytes=49152-65535", "bytes=65536-81919", "bytes=81920-98303", "bytes=98304-99999"
+        )
+    }
+
+    @Test
+    fun singleRangeDownloadResumesFromTheWrittenBytes() = runBlocking {
+        tempFile.writeBytes(content.copyOf(30_000))
+        progressFile.writeText("$checksum\n")
+
+        val isValid = RangeDownloader(httpClient, rangeSize = 1_000_000, parallelism = 3)
+            .download(url, target, content.size.toLong(), checksum)
+
+        isValid shouldBe true
+        target.readBytes().contentEquals(content) shouldBe true
+        requestedRanges shouldBe listOf("bytes=30000-99999")
+    }
+
+    @Test
+    fun progressOfAnotherFileVersionIsDiscarded() = runBlocking {
+        tempFile.writeBytes(ByteArray(30_000))
+        progressFile.writeText("outdated\n0-16383\n")
+
+        val isValid = RangeDownloader(httpClient, rangeSize = 16_384, parallelism = 3)
+            .download(url, target, content.size.toLong(), checksum)
+
+        isValid shouldBe true
+        target.readBytes().contentEquals(content) shouldBe true
+        requestedRanges.size shouldBe 7
+    }
+
+    @Test
+    fun serverWithoutRangeSupportIsHandled() = runBlocking {
+        supportsRanges = false
+
+        val isValid = RangeDownloader(httpClient, rangeSize = 16_384, parallelism = 3)
+            .download(url, target, content.size.toLong(), checksum)
+
+        isValid shouldBe true
+        target.readBytes().contentEquals(content) shouldBe true
+    }
+
+    @Test
+    fun corruptedDownloadIsDiscarded() = runBlocking {
+        val isValid = RangeDownloader(httpClient, rangeSize = 16_384, parallelism = 3)
+            .download(url, target, content.size.toLong(), DigestUtils.md5Hex("something else"))
+
+        isValid shouldBe false
+        target.exists() shouldBe false
+        tempFile.exists() shouldBe false
+        progressFile.exists() shouldBe false
+    }
+}
@@ -13,6 +13,7 @@ const val exposedVersion = "0.26.1"
 const val sqliteVersion = "3.28.0"
 const val log4jVersion = "2.17.1"
 const val grpcVersion = "1.49.0"
+const val nettyVersion = "4.1.77.Final"
 const val protobufVersion = "3.21.1"
 const val protobufPluginVersion = "0.8.19"
 const val slf4jVersion = "1.7.30"
@@ -17,6 +17,8 @@ dependencies {
 
     // Sockets
     implementation("io.ktor:ktor-network-jvm:$ktorVersion")
+    implementation("io.netty:netty-handler:$nettyVersion")
+    implementation("io.netty:netty-transport-native-epoll:$nettyVersion:linux-x86_64")
 
     // Logging
     implementation("org.apache.logging.log4j:log4j-api:$log4jVersion")
@@ -26,6 +28,9 @@ dependencies {
     implementation("com.google.guava:guava:24.1-jre")
     implementation("dnsjava:dnsjava:3.5.1")
 
+    // Metrics
+    api("io.micrometer:micrometer-core:1.1.4")
+
     // Unit tests
     testImplementation("junit:junit:4.13.2")
     // Mocking
@@ -0,0 +1,88 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.p2p
+
+import io.ktor.network.selector.ActorSelectorManager
+import io.ktor.network.sockets.Socket
+import io.ktor.network.sockets.aSocket
+import io.ktor.util.network.NetworkAddress
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import nodecore.api.grpc.RpcEvent
+import org.veriblock.core.utilities.createLogger
+import java.io.Closeable
+
+private val logger = createLogger {}
+
+/**
+ * Ktor raw sockets sharing one selector on [Threading.PEER_SERVER_THREAD], with reads and writes on [Threading.PEER_IO_POOL].
+ */
+class KtorPeerTransport : PeerTransport {
+    private val socketDispatcher = Threading.PEER_SERVER_THREAD.asCoroutineDispatcher()
+    private val selectorManager = ActorSelectorManager(socketDispatcher)
+
+    override suspend fun connect(address: NetworkAddress): PeerConnection {
+        val socket = aSocket(selectorManager)
+            .tcp()
+            .connect(address)
+        return KtorPeerConnection(socket)
+    }
+
+    override fun listen(bindAddress: NetworkAddress, onAccept: (PeerConnection) -> Unit): Closeable {
+        val serverSocket = aSocket(selectorManager).tcp().bind(bindAddress)
+        val job = CoroutineScope(socketDispatcher).launch {
+            try {
+                while (isActive) {
+                    try {
+                        val socket = serverSocket.accept()
+                        onAccept(KtorPeerConnection(socket))
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (t: Throwable) {
+                        logger.error(t) { "Unable to accept incoming socket connection at $bindAddress!" }
+                    }
+                }
+            } catch (e: CancellationException) {
+                logger.info { "Peer Server coroutine cancelled! Shutting down..." }
+            }
+        }
+        return Closeable {
+            job.cancel()
+            serverSocket.close()
+        }
+    }
+
+    override fun shutdown() {
+        Threading.PEER_SERVER_THREAD.safeShutdown()
+        Threading.PEER_IO_POOL.safeShutdown()
+    }
+}
+
+private class KtorPeerConnection(
+    private val socket: Socket
+) : PeerConnection {
+    override val remoteAddress: NetworkAddress = socket.remoteAddress
+
+    private var handler: PeerSocketHandler? = null
+
+    override fun start(peer: Peer) {
+        handler = PeerSocketHandler(peer, socket)
+    }
+
+    override fun write(message: RpcEvent) {
+        val handler = handler
+            ?: error("The connection with $remoteAddress has not been started")
+        handler.write(message)
+    }
+
+    override fun stop() {
+        handler?.stop() ?: socket.close()
+    }
+}
@@ -0,0 +1,333 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.p2p
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import io.ktor.util.network.NetworkAddress
+import io.netty.bootstrap.Bootstrap
+import io.netty.bootstrap.ServerBootstrap
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.ByteBufOutputStream
+import io.netty.buffer.ByteBufUtil
+import io.netty.channel.Channel
+import io.netty.channel.ChannelFuture
+import io.netty.channel.ChannelFutureListener
+import io.netty.channel.ChannelHandlerContext
+import io.netty.channel.ChannelInitializer
+import io.netty.channel.ChannelOption
+import io.netty.channel.EventLoopGroup
+import io.netty.channel.SimpleChannelInboundHandler
+import io.netty.channel.epoll.Epoll
+import io.netty.channel.epoll.EpollEventLoopGroup
+import io.netty.channel.epoll.EpollServerSocketChannel
+import io.netty.channel.epoll.EpollSocketChannel
+import io.netty.channel.nio.NioEventLoopGroup
+import io.netty.channel.socket.nio.NioServerSocketChannel
+import io.netty.channel.socket.nio.NioSocketChannel
+import io.netty.handler.codec.DecoderException
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder
+import io.netty.handler.codec.MessageToByteEncoder
+import io.netty.handler.codec.MessageToMessageDecoder
+import io.netty.handler.codec.TooLongFrameException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import nodecore.api.grpc.RpcEvent
+import nodecore.p2p.event.PeerMisbehaviorEvent
+import org.veriblock.core.utilities.createLogger
+import java.io.Closeable
+import java.io.IOException
+import java.net.InetSocketAddress
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+private val logger = createLogger {}
+
+// Same capacity as the write queue of the Ktor transport
+private const val WRITE_QUEUE_CAPACITY = 1100
+
+/**
+ * Netty transport, using native epoll when available and NIO otherwise. Frames are decoded into [RpcEvent]s on the
+ * I/O event loops. While [P2pConfiguration.peerMaxCount] incoming connections are open no more are accepted, so
+ * further connection attempts wait in the OS backlog instead of being accepted and closed right away.
+ */
+class NettyPeerTransport(
+    configuration: P2pConfiguration
+) : PeerTransport {
+    private val useEpoll = Epoll.isAvailable()
+    private val acceptThreads = configuration.peerAcceptThreads
+    private val acceptBacklog = configuration.peerAcceptBacklog
+    private val maxIncomingConnections = configuration.peerMaxCount
+
+    private val acceptGroupDelegate = lazy { createEventLoopGroup(acceptThreads, "nc-peer-accept-%d") }
+    private val acceptGroup by acceptGroupDelegate
+    private val ioGroup = createEventLoopGroup(configuration.peerIoThreads, "nc-peer-netty-io-%d")
+
+    private val coroutineScope = CoroutineScope(ioGroup.asCoroutineDispatcher())
+
+    init {
+        logger.info { "Using the Netty P2P transport (${if (useEpoll) "epoll" else "NIO"})" }
+    }
+
+    override suspend fun connect(address: NetworkAddress): PeerConnection {
+        val channel = Bootstrap()
+            .group(ioGroup)
+            .channel(if (useEpoll) EpollSocketChannel::class.java else NioSocketChannel::class.java)
+            .option(ChannelOption.TCP_NODELAY, true)
+            .option(ChannelOption.AUTO_READ, false)
+            .handler(object : ChannelInitializer<Channel>() {
+                override fun initChannel(channel: Channel) {
+                    initPipeline(channel, onActive = null)
+                }
+            })
+            .connect(address)
+            .awaitChannel()
+        return channel.pipeline().get(NettyPeerConnection::class.java)
+    }
+
+    override fun listen(bindAddress: NetworkAddress, onAccept: (PeerConnection) -> Unit): Closeable {
+        val openConnections = AtomicInteger(0)
+        val serverChannel = ServerBootstrap()
+            .group(acceptGroup, ioGroup)
+            .channel(if (useEpoll) EpollServerSocketChannel::class.java else NioServerSocketChannel::class.java)
+            .option(ChannelOption.SO_BACKLOG, acceptBacklog)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childOption(ChannelOption.AUTO_READ, false)
+            .childHandler(object : ChannelInitializer<Channel>() {
+                override fun initChannel(channel: Channel) {
+                    val serverConfig = channel.parent().config()
+                    synchronized(openConnections) {
+                        if (openConnections.incrementAndGet() >= maxIncomingConnections && serverConfig.isAutoRead) {
+                            logger.info { "There are $maxIncomingConnections incoming connections open, pausing accepting new ones" }
+                            serverConfig.isAutoRead = false
+                        }
+                    }
+                    channel.closeFuture().addListener {
+                        synchronized(openConnections) {
+                            if (openConnections.decrementAndGet() < maxIncomingConnections && !serverConfig.isAutoRead) {
+                                logger.info { "Resuming accepting incoming connections" }
+                                serverConfig.isAutoRead = true
+                            }
+                        }
+                    }
+                    initPipeline(channel, onAccept)
+                }
+            })
+            .bind(bindAddress)
+            .syncUninterruptibly()
+            .channel()
+        return Closeable {
+            serverChannel.close().syncUninterruptibly()
+        }
+    }
+
+    override fun shutdown() {
+        if (acceptGroupDelegate.isInitialized()) {
+            acceptGroup.shutdownGracefully()
+        }
+        ioGroup.shutdownGracefully()
+    }
+
+    private fun initPipeline(channel: Channel, onActive: ((PeerConnection) -> Unit)?) {
+        channel.pipeline().addLast(
+            LengthFieldBasedFrameDecoder(P2pConstants.PEER_MESSAGE_SIZE_LIMIT + 4, 0, 4, 0, 4, true),
+            RpcEventDecoder(),
+            RpcEventEncoder(),
+            NettyPeerConnection(channel, coroutineScope, onActive)
+        )
+    }
+
+    private fun createEventLoopGroup(threads: Int, nameFormat: String): EventLoopGroup {
+        val threadFactory = ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build()
+        return if (useEpoll) {
+            EpollEventLoopGroup(threads, threadFactory)
+        } else {
+            NioEventLoopGroup(threads, threadFactory)
+        }
+    }
+}
+
+private class NettyPeerConnection(
+    private val channel: Channel,
+    private val coroutineScope: CoroutineScope,
+    private val onActive: ((PeerConnection) -> Unit)?
+) : SimpleChannelInboundHandler<DecodedEvent>(), PeerConnection {
+    override val remoteAddress: NetworkAddress
+        get() = channel.remoteAddress() as InetSocketAddress
+
+    private val running = AtomicBoolean(true)
+    private val pendingWrites = AtomicInteger(0)
+
+    @Volatile
+    private var peer: Peer? = null
+
+    override fun start(peer: Peer) {
+        this.peer = peer
+        channel.config().isAutoRead = true
+    }
+
+    override fun write(message: RpcEvent) {
+        val peer = peer
+            ?: error("The connection with $remoteAddress has not been started")
+        logger.debug { "Sending ${message.resultsCase.name} message to $peer" }
+        if (!running.get()) {
+            logger.debug { "Trying to send message to peer $peer when the socket was already closed" }
+            return
+        }
+        if (pendingWrites.get() >= WRITE_QUEUE_CAPACITY) {
+            P2pMetrics.droppedWritesCounter.increment()
+            logger.warn { "Not writing event ${message.resultsCase.name} to peer $peer because write queue is full." }
+            return
+        }
+        pendingWrites.incrementAndGet()
+        P2pMetrics.writeQueued()
+        val frameSize = message.serializedSize + 4
+        channel.writeAndFlush(message).addListener { future ->
+            if (pendingWrites.getAndUpdate { (it - 1).coerceAtLeast(0) } > 0) {
+                P2pMetrics.writesDequeued()
+            }
+            if (future.isSuccess) {
+                peer.lastSuccessfulSend = System.currentTimeMillis()
+                peer.state.recordBytesSent(frameSize.toLong())
+                P2pMetrics.recordMessageSent(message.resultsCase, frameSize)
+            } else {
+                logger.debug(future.cause()) { "Unable to write to peer $peer" }
+                channel.close()
+            }
+        }
+    }
+
+    override fun stop() {
+        if (running.getAndSet(false)) {
+            P2pMetrics.writesDequeued(pendingWrites.getAndSet(0))
+            channel.close()
+        }
+    }
+
+    override fun channelActive(ctx: ChannelHandlerContext) {
+        onActive?.invoke(this)
+        super.channelActive(ctx)
+    }
+
+    override fun channelRead0(ctx: ChannelHandlerContext, msg: DecodedEvent) {
+        val peer = peer
+            ?: return
+        peer.state.recordBytesReceived(msg.frameSize.toLong())
+
+        // Handle message in a different thread
+        val receivedAt = System.nanoTime()
+        Threading.PEER_READ_THREAD.execute {
+            P2pMetrics.readQueueTimer.record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS)
+            peer.handleEvent(msg.event, msg.frameSize)
+        }
+    }
+
+    override fun exceptionCaught(ctx: ChannelHandlerContext, cause: Throwable) {
+        val peer = peer
+        when {
+            peer == null -> {
+                logger.debug(cause) { "Error in the connection with $remoteAddress" }
+            }
+            cause is MalformedEventException -> {
+                // The frame was consumed, the stream is still usable
+                peer.handleMalformedMessage(cause.rawMessage)
+                return
+            }
+            cause is TooLongFrameException -> {
+                logger.info {
+                    "Received a message size greater than the limit of ${P2pConstants.PEER_MESSAGE_SIZE_LIMIT} bytes, message will be ignored"
+                }
+                P2pEventBus.peerMisbehavior.trigger(PeerMisbehaviorEvent(
+                    peer = peer,
+                    reason = PeerMisbehaviorEvent.Reason.MESSAGE_SIZE,
+                    message = "The peer sent a too long message (the maximum is ${P2pConstants.PEER_MESSAGE_SIZE_LIMIT})"
+                ))
+                // The frame decoder skips the rest of the frame, the stream is still usable. Whether to keep the
+                // peer is left to the misbehavior handling, as with the Ktor transport.
+                return
+            }
+            cause is IOException -> {
+                logger.info { "Disconnected from peer $peer." }
+            }
+            else -> {
+                logger.error(cause) { "Socket error" }
+            }
+        }
+        ctx.close()
+    }
+
+    override fun channelInactive(ctx: ChannelHandlerContext) {
+        if (running.getAndSet(false)) {
+            P2pMetrics.writesDequeued(pendingWrites.getAndSet(0))
+            val peer = peer
+            if (peer != null) {
+                coroutineScope.launch {
+                    peer.handleConnectionError()
+                }
+            }
+        }
+        super.channelInactive(ctx)
+    }
+}
+
+private class DecodedEvent(
+    val event: RpcEvent,
+    val frameSize: Int
+)
+
+private class MalformedEventException(
+    val rawMessage: ByteArray,
+    cause: Throwable
+) : DecoderException(cause)
+
+/**
+ * Parses the frames produced by the length field decoder straight from the network buffers.
+ */
+private class RpcEventDecoder : MessageToMessageDecoder<ByteBuf>() {
+    override fun decode(ctx: ChannelHandlerContext, msg: ByteBuf, out: MutableList<Any>) {
+        val size = msg.readableBytes()
+        val event = try {
+            RpcEvent.parseFrom(msg.nioBuffer())
+        } catch (e: Exception) {
+            throw MalformedEventException(ByteBufUtil.getBytes(msg), e)
+        }
+        out.add(DecodedEvent(event, size + 4))
+    }
+}
+
+/**
+ * Writes the length prefix and the event into a single buffer sized upfront.
+ */
+private class RpcEventEncoder : MessageToByteEncoder<RpcEvent>() {
+    override fun allocateBuffer(ctx: ChannelHandlerContext, msg: RpcEvent, preferDirect: Boolean): ByteBuf =
+        ctx.alloc().ioBuffer(msg.serializedSize + 4)
+
+    override fun encode(ctx: ChannelHandlerContext, msg: RpcEvent, out: ByteBuf) {
+        out.writeInt(msg.serializedSize)
+        ByteBufOutputStream(out).use {
+            msg.writeTo(it)
+        }
+    }
+}
+
+private suspend fun ChannelFuture.awaitChannel(): Channel = suspendCancellableCoroutine { continuation ->
+    addListener(ChannelFutureListener { future ->
+        if (future.isSuccess) {
+            continuation.resume(future.channel())
+        } else {
+            val cause = future.cause()
+            continuation.resumeWithException(cause as? IOException ?: IOException(cause))
+        }
+    })
+    continuation.invokeOnCancellation {
+        channel().close()
+    }
+}
@@ -23,5 +23,11 @@ class P2pConfiguration(
     val capabilities: PeerCapabilities = PeerCapabilities.defaultCapabilities(),
     val capabilitiesMapper: PeerCapabilities.(Peer) -> PeerCapabilities = { this },
     val neededCapabilities: PeerCapabilities = PeerCapabilities.defaultCapabilities(),
-    val fullProgramNameVersion: String = P2pConstants.FULL_PROGRAM_NAME_VERSION
+    val fullProgramNameVersion: String = P2pConstants.FULL_PROGRAM_NAME_VERSION,
+    val peerTransport: PeerTransportType = PeerTransportType.Ktor,
+    // Netty transport only: amount of event loop threads for accepting connections and for I/O (0 means Netty's default)
+    val peerAcceptThreads: Int = 1,
+    val peerIoThreads: Int = 0,
+    // Netty transport only: pending connections queued by the OS while accepting is paused
+    val peerAcceptBacklog: Int = 128
 )
@@ -20,6 +20,7 @@ import nodecore.api.grpc.RpcBlockQuery
 import nodecore.api.grpc.RpcBlockQueryReply
 import nodecore.api.grpc.RpcBlockRequest
 import nodecore.api.grpc.RpcClearFilter
+import nodecore.api.grpc.RpcCompactBlockHeaders
 import nodecore.api.grpc.RpcCreateFilter
 import nodecore.api.grpc.RpcEvent
 import nodecore.api.grpc.RpcFilteredBlock
@@ -65,6 +66,7 @@ object P2pEventBus {
     val networkInfoRequest = AsyncEvent<P2pEvent<RpcNetworkInfoRequest>>("Network info request", asyncEventDispatcher)
     val networkInfoReply = AsyncEvent<P2pEvent<RpcNetworkInfoReply>>("Network info reply", asyncEventDispatcher)
     val advertiseBlocks = AsyncEvent<P2pEvent<RpcAdvertiseBlocks>>("Advertise blocks", asyncEventDispatcher)
+    val compactAdvertiseBlocks = AsyncEvent<P2pEvent<RpcCompactBlockHeaders>>("Compact advertise blocks", asyncEventDispatcher)
     val blockRequest = AsyncEvent<P2pEvent<RpcBlockRequest>>("Block request", asyncEventDispatcher)
     val keystoneQuery = AsyncEvent<P2pEvent<RpcKeystoneQuery>>("Keystone query", asyncEventDispatcher)
     val advertiseTransaction = AsyncEvent<P2pEvent<RpcAdvertiseTransaction>>("Advertise transaction", asyncEventDispatcher)
@@ -138,6 +140,8 @@ object P2pEventBus {
                 networkInfoRequest.trigger(event.toP2pEvent(remote, event.networkInfoRequest))
             RpcEvent.ResultsCase.ADVERTISE_BLOCKS ->
                 advertiseBlocks.trigger(event.toP2pEvent(remote, event.advertiseBlocks))
+            RpcEvent.ResultsCase.COMPACT_ADVERTISE_BLOCKS ->
+                compactAdvertiseBlocks.trigger(event.toP2pEvent(remote, event.compactAdvertiseBlocks))
             RpcEvent.ResultsCase.BLOCK_REQUEST ->
                 blockRequest.trigger(event.toP2pEvent(remote, event.blockRequest))
             RpcEvent.ResultsCase.KEYSTONE_QUERY ->
@@ -0,0 +1,165 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.p2p
+
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.DistributionSummary
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Timer
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry
+import nodecore.api.grpc.RpcEvent
+import nodecore.p2p.event.PeerMisbehaviorEvent
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * P2P traffic and latency meters.
+ *
+ * Meters are registered in a composite registry which does nothing until a concrete registry is bound to it
+ * through [bindTo] (e.g. the Prometheus registry of the application embedding the P2P layer).
+ */
+object P2pMetrics {
+    val registry = CompositeMeterRegistry()
+
+    fun bindTo(target: MeterRegistry) {
+        registry.add(target)
+    }
+
+    private val sentMessageCounters = ConcurrentHashMap<RpcEvent.ResultsCase, Counter>()
+    private val receivedMessageCounters = ConcurrentHashMap<RpcEvent.ResultsCase, Counter>()
+    private val sentMessageSizes = ConcurrentHashMap<RpcEvent.ResultsCase, DistributionSummary>()
+    private val receivedMessageSizes = ConcurrentHashMap<RpcEvent.ResultsCase, DistributionSummary>()
+    private val requestTimers = ConcurrentHashMap<Pair<RpcEvent.ResultsCase, String>, Timer>()
+    private val misbehaviorCounters = ConcurrentHashMap<PeerMisbehaviorEvent.Reason, Counter>()
+
+    private val queuedWrites = AtomicLong(0)
+
+    // The gauges read whichever instances were bound last, as they would otherwise stay registered against the
+    // first ones (and stop reporting once those are collected) when the P2P layer is recreated
+    @Volatile
+    private var trafficManager: TrafficManager? = null
+    @Volatile
+    private var peerTable: PeerTable? = null
+
+    init {
+        Gauge.builder("nodecore_p2p.write_queue_depth", queuedWrites) { it.get().toDouble() }
+            .description("Number of events waiting in the write queues of all the peers")
+            .register(registry)
+        Gauge.builder("nodecore_p2p.traffic.in_flight", this) { it.trafficManager?.getBlockRequestLogSize()?.toDouble() ?: 0.0 }
+            .description("Number of blocks requested to peers and not yet received")
+            .tags("type", "block")
+            .register(registry)
+        Gauge.builder("nodecore_p2p.traffic.in_flight", this) { it.trafficManager?.getTxRequestLogSize()?.toDouble() ?: 0.0 }
+            .description("Number of transactions requested to peers and not yet received")
+            .tags("type", "transaction")
+            .register(registry)
+        Gauge.builder("nodecore_p2p.traffic.queued", this) { it.trafficManager?.getBlockRequestQueueSize()?.toDouble() ?: 0.0 }
+            .description("Number of block requests waiting for a previous request to expire")
+            .tags("type", "block")
+            .register(registry)
+        Gauge.builder("nodecore_p2p.peers", this) { it.peerTable?.getConnectedPeers()?.size?.toDouble() ?: 0.0 }
+            .description("Number of connected peers")
+            .tags("status", "connected")
+            .register(registry)
+        Gauge.builder("nodecore_p2p.peers", this) { it.peerTable?.getPeerCandidates()?.size?.toDouble() ?: 0.0 }
+            .description("Number of known peer candidates")
+            .tags("status", "candidate")
+            .register(registry)
+    }
+
+    val droppedWritesCounter: Counter = Counter.builder("nodecore_p2p.dropped_writes")
+        .description("Number of events that were not sent because the peer's write queue was full")
+        .register(registry)
+
+    val malformedMessagesCounter: Counter = Counter.builder("nodecore_p2p.malformed_messages")
+        .description("Number of received messages that could not be parsed")
+        .register(registry)
+
+    val bannedPeersCounter: Counter = Counter.builder("nodecore_p2p.banned_peers")
+        .description("Number of peers that were banned")
+        .register(registry)
+
+    val readQueueTimer: Timer = Timer.builder("nodecore_p2p.read_queue_time")
+        .description("Time a received message waits before being handled")
+        .publishPercentiles(0.5, 0.9, 0.95, 0.99)
+        .register(registry)
+
+    val messageHandlingTimer: Timer = Timer.builder("nodecore_p2p.message_handling_time")
+        .description("Time spent parsing and dispatching a received message")
+        .publishPercentiles(0.5, 0.9, 0.95, 0.99)
+        .register(registry)
+
+    fun recordMessageSent(type: RpcEvent.ResultsCase, size: Int) {
+        sentMessageCounters.getOrPut(type) {
+            createMessageCounter("sent", type)
+        }.increment()
+        sentMessageSizes.getOrPut(type) {
+            createMessageSizeSummary("sent", type)
+        }.record(size.toDouble())
+    }
+
+    fun recordMessageReceived(type: RpcEvent.ResultsCase, size: Int) {
+        receivedMessageCounters.getOrPut(type) {
+            createMessageCounter("received", type)
+        }.increment()
+        receivedMessageSizes.getOrPut(type) {
+            createMessageSizeSummary("received", type)
+        }.record(size.toDouble())
+    }
+
+    fun recordRequest(type: RpcEvent.ResultsCase, outcome: String, durationNanos: Long) {
+        requestTimers.getOrPut(type to outcome) {
+            Timer.builder("nodecore_p2p.request_rtt")
+                .description("Round trip time of the requests sent to peers")
+                .tags("type", type.tagValue(), "outcome", outcome)
+                .publishPercentiles(0.5, 0.9, 0.95, 0.99)
+                .register(registry)
+        }.record(durationNanos, TimeUnit.NANOSECONDS)
+    }
+
+    fun recordMisbehavior(reason: PeerMisbehaviorEvent.Reason) {
+        misbehaviorCounters.getOrPut(reason) {
+            Counter.builder("nodecore_p2p.misbehaviors")
+                .description("Number of peer misbehaviors")
+                .tags("reason", reason.name.lowercase(Locale.ROOT))
+                .register(registry)
+        }.increment()
+    }
+
+    fun writeQueued() {
+        queuedWrites.incrementAndGet()
+    }
+
+    fun writesDequeued(count: Int = 1) {
+        queuedWrites.addAndGet(-count.toLong())
+    }
+
+    fun bindTrafficManager(trafficManager: TrafficManager) {
+        this.trafficManager = trafficManager
+    }
+
+    fun bindPeerTable(peerTable: PeerTable) {
+        this.peerTable = peerTable
+    }
+
+    private fun createMessageCounter(direction: String, type: RpcEvent.ResultsCase) = Counter.builder("nodecore_p2p.messages")
+        .description("Number of P2P messages")
+        .tags("direction", direction, "type", type.tagValue())
+        .register(registry)
+
+    private fun createMessageSizeSummary(direction: String, type: RpcEvent.ResultsCase) = DistributionSummary.builder("nodecore_p2p.message_size")
+        .description("Size in bytes of the P2P messages")
+        .baseUnit("bytes")
+        .tags("direction", direction, "type", type.tagValue())
+        .publishPercentiles(0.5, 0.9, 0.99)
+        .register(registry)
+
+    private fun RpcEvent.ResultsCase.tagValue() = name.lowercase(Locale.ROOT)
+}
@@ -7,12 +7,12 @@
 package nodecore.p2p
 
 import com.google.protobuf.InvalidProtocolBufferException
-import io.ktor.network.selector.SelectorManager
-import io.ktor.network.sockets.Socket
-import io.ktor.network.sockets.aSocket
 import io.ktor.util.network.NetworkAddress
 import io.ktor.util.network.port
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.TimeoutCancellationException
 import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.withTimeout
 import nodecore.api.grpc.RpcEvent
 import nodecore.p2p.event.PeerMisbehaviorEvent
@@ -22,12 +22,13 @@ import org.veriblock.core.crypto.BloomFilter
 import org.veriblock.core.utilities.Utility
 import org.veriblock.core.utilities.createLogger
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
 
 private val logger = createLogger {}
 
 class Peer(
-    private val selectorManager: SelectorManager,
-    socket: Socket,
+    private val transport: PeerTransport,
+    connection: PeerConnection,
     val ownsConnection: Boolean
 ) {
     enum class Status {
@@ -36,8 +37,8 @@ class Peer(
         Closed
     }
 
-    var address: String = socket.remoteAddress.address
-    var port: Int = socket.remoteAddress.port
+    var address: String = connection.remoteAddress.address
+    var port: Int = connection.remoteAddress.port
 
     val addressKey: String
         get() = "$address:$port"
@@ -57,7 +58,7 @@ class Peer(
 
     var filter: BloomFilter? = null
 
-    private var socketHandler = PeerSocketHandler(this, socket)
+    private var connection = connection
 
     /**
      * Expected responses from message requests see [requestMessage]
@@ -74,7 +75,7 @@ class Peer(
 
         status = Status.Closed
         P2pEventBus.peerDisconnected.trigger(this)
-        socketHandler.stop()
+        connection.stop()
     }
 
     suspend fun reconnect(): Boolean {
@@ -84,19 +85,18 @@ class Peer(
             val socketAddress = NetworkAddress(address, port)
             
             // Stop the current connection
-            socketHandler.stop()
+            connection.stop()
             
-            // Get a new socket
-            val socket = aSocket(selectorManager)
-                .tcp()
-                .connect(socketAddress)
+            // Get a new connection
+            val newConnection = transport.connect(socketAddress)
 
             // Reset basic info
-            address = socket.remoteAddress.address
-            port = socket.remoteAddress.port
+            address = newConnection.remoteAddress.address
+            port = newConnection.remoteAddress.port
             state = PeerState()
             status = Status.Connected
-            socketHandler = PeerSocketHandler(this, socket)
+            connection = newConnection
+            newConnection.start(this)
             true
         } catch (e: Exception) {
             logger.debug(e) { "Unable to open connection to $address:$port!" }
@@ -129,7 +129,7 @@ class Peer(
                 }
             }
 
-            socketHandler.write(message)
+            connection.write(message)
             true
         } catch (e: CancelledKeyException) {
             logger.warn { "Key has been cancelled for $address!" }
@@ -142,20 +142,33 @@ class Peer(
     }
     
     fun handleMessage(rawMessage: ByteArray) {
+        val startedAt = System.nanoTime()
         val event: RpcEvent
         try {
             event = RpcEvent.parseFrom(rawMessage)
-            logger.debug { "Received event of type ${event.resultsCase.name}" }
         } catch (e: InvalidProtocolBufferException) {
-            P2pEventBus.peerMisbehavior.trigger(PeerMisbehaviorEvent(
-                peer = this,
-                reason = PeerMisbehaviorEvent.Reason.MALFORMED_EVENT,
-                message = "Malformed event: ${Utility.bytesToHex(rawMessage)}"
-            ))
+            handleMalformedMessage(rawMessage)
             return
         }
+        handleEvent(event, rawMessage.size + 4, startedAt)
+    }
+
+    fun handleMalformedMessage(rawMessage: ByteArray) {
+        P2pMetrics.malformedMessagesCounter.increment()
+        P2pEventBus.peerMisbehavior.trigger(PeerMisbehaviorEvent(
+            peer = this,
+            reason = PeerMisbehaviorEvent.Reason.MALFORMED_EVENT,
+            message = "Malformed event: ${Utility.bytesToHex(rawMessage)}"
+        ))
+    }
 
+    /**
+     * Handles an already decoded event, [frameSize] being its size on the wire.
+     */
+    fun handleEvent(event: RpcEvent, frameSize: Int, startedAt: Long = System.nanoTime()) {
+        logger.debug { "Received event of type ${event.resultsCase.name}" }
         state.lastMessageReceivedAt = Utility.getCurrentTimeSeconds()
+        P2pMetrics.recordMessageReceived(event.resultsCase, frameSize)
 
         // Handle as an expected response if possible
         val requestId: String? = event.requestId
@@ -165,6 +178,40 @@ class Peer(
 
         // Broadcast to event bus
         P2pEventBus.newEvent(event, this)
+        P2pMetrics.messageHandlingTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS)
+    }
+
+    /**
+     * Called by the connection when it breaks: attempts to reconnect when the connection is ours,
+     * and reports the peer as disconnected otherwise.
+     */
+    suspend fun handleConnectionError() {
+        if (ownsConnection) {
+            delay(5000L)
+        }
+
+        if (status == Status.Closed || status == Status.Errored) {
+            return
+        }
+
+        var recoverSuccess = false
+
+        if (ownsConnection && reconnectionAttempts < 3) {
+            try {
+                logger.info { "Attempting to self-heal peer connection to $this" }
+                recoverSuccess = reconnect()
+                if (recoverSuccess) {
+                    logger.info { "Connection to $this successfully recovered!" }
+                }
+            } catch (e: Exception) {
+                logger.warn(e) { "Error while attempting to self-heal P2P connection!" }
+            }
+        }
+
+        if (!recoverSuccess) {
+            status = Status.Errored
+            P2pEventBus.peerDisconnected.trigger(this)
+        }
     }
 
     /**
@@ -174,26 +221,45 @@ class Peer(
     suspend fun requestMessage(
         request: RpcEvent,
         timeoutInMillis: Long = 5000L
-    ): RpcEvent = try {
-        // Create conflated channel
-        val expectedResponseChannel = Channel<RpcEvent>(Channel.CONFLATED)
-        // Set this channel as the expected response for the request id
-        logger.debug { "Expecting a response to ${request.resultsCase.name} from $address" }
-        expectedResponses[request.id] = expectedResponseChannel
-        // Send the request
-        send(request)
-        // Wait until the expected response arrives (or times out)
-        withTimeout(timeoutInMillis) {
-            expectedResponseChannel.receive()
+    ): RpcEvent {
+        val startedAt = System.nanoTime()
+        var outcome = "error"
+        return try {
+            // Create conflated channel
+            val expectedResponseChannel = Channel<RpcEvent>(Channel.CONFLATED)
+            // Set this channel as the expected response for the request id
+            logger.debug { "Expecting a response to ${request.resultsCase.name} from $address" }
+            expectedResponses[request.id] = expectedResponseChannel
+            // Send the request
+            send(request)
+            // Wait until the expected response arrives (or times out)
+            withTimeout(timeoutInMillis) {
+                expectedResponseChannel.receive()
+            }.also {
+                outcome = "success"
+                state.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+            }
+        } catch (e: TimeoutCancellationException) {
+            outcome = "timeout"
+            throw e
+        } catch (e: CancellationException) {
+            outcome = "cancelled"
+            throw e
+        } finally {
+            // Unregister the channel
+            expectedResponses.remove(request.id)
+            P2pMetrics.recordRequest(request.resultsCase, outcome, System.nanoTime() - startedAt)
         }
-    } finally {
-        // Unregister the channel
-        expectedResponses.remove(request.id)
     }
 
     override fun toString(): String {
         return addressKey
     }
+
+    init {
+        // Start reading once the peer is fully initialized
+        connection.start(this)
+    }
 }
 
 inline fun Peer.sendMessage(crossinline buildBlock: RpcEvent.Builder.() -> Unit) = send(
@@ -13,7 +13,7 @@ class PeerCapabilities(
     private val capabilities: Set<Capability>
 ) {
     enum class Capability {
-        Transaction, Block, Query, Sync, NetworkInfo, BatchSync, Advertise, AdvertiseTx, SpvRequests, VtbRequests
+        Transaction, Block, Query, Sync, NetworkInfo, BatchSync, Advertise, AdvertiseTx, SpvRequests, VtbRequests, CompactHeaders
     }
     
     private constructor(bitVector: Long) : this(EnumUtils.processBitVector(Capability::class.java, bitVector))
@@ -49,6 +49,7 @@ class PeerCapabilities(
             Capability.Transaction,
             Capability.Query,
             Capability.NetworkInfo,
+            Capability.CompactHeaders,
         )
 
         private val ALL = EnumSet.allOf(Capability::class.java)
@@ -0,0 +1,164 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.p2p
+
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonParseException
+import com.google.gson.reflect.TypeToken
+import org.veriblock.core.utilities.Utility
+import org.veriblock.core.utilities.createLogger
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+
+private val logger = createLogger {}
+
+private const val MAX_RECORDS = 1000
+private const val RECORD_RETENTION = 60 * 60 * 24 * 30 // 30 days
+
+/**
+ * What is known about a peer address across restarts.
+ */
+data class PeerRecord(
+    val address: String,
+    val port: Int,
+    val score: Int = 0,
+    val lastSeen: Int = 0,
+    val latencyMillis: Long? = null,
+    val capabilities: Long = 0,
+    val banExpiration: Long? = null
+) {
+    val addressKey: String
+        get() = "$address:$port"
+}
+
+/**
+ * Small persistent store of peer scores, latencies, capabilities and bans, so that a restarted node can avoid
+ * known-bad peers and reconnect preferentially to the historically fast ones instead of bootstrapping from scratch.
+ * When no [file] is supplied the records are only kept in memory.
+ */
+class PeerDatabase(
+    private val file: File? = null
+) {
+    private val records: MutableMap<String, PeerRecord> = ConcurrentHashMap()
+    // Scores and bans are tracked per address (regardless of the port)
+    private val scores: MutableMap<String, Int> = ConcurrentHashMap()
+    private val bans: MutableMap<String, Long> = ConcurrentHashMap()
+
+    init {
+        load()
+    }
+
+    fun getCandidates(): List<PeerRecord> = records.values
+        .filter { !isBanned(it.address) }
+        .sortedWith(
+            compareBy<PeerRecord> { it.latencyMillis ?: Long.MAX_VALUE }.thenByDescending { it.lastSeen }
+        )
+
+    fun getScores(): Map<String, Int> = HashMap(scores)
+
+    fun getBans(): List<Ban> = bans.mapNotNull { (address, expiration) ->
+        if (expiration < 0) {
+            createPermanentBan(address)
+        } else {
+            Ban(Ban.Type.Temporary, address, expiration).takeIf { !it.isExpired }
+        }
+    }
+
+    fun isBanned(address: String): Boolean {
+        val expiration = bans[address]
+            ?: return false
+        return expiration < 0 || Utility.getCurrentTimeSeconds() <= expiration
+    }
+
+    fun recordSeen(peer: Peer) {
+        val key = peer.reconnectAddressKey
+        records[key] = (records[key] ?: PeerRecord(peer.address, peer.reconnectPort ?: peer.port)).copy(
+            lastSeen = Utility.getCurrentTimeSeconds(),
+            latencyMillis = peer.state.getLatencyMillis() ?: records[key]?.latencyMillis,
+            capabilities = peer.capabilities.toBitVector()
+        )
+    }
+
+    fun recordScore(address: String, score: Int) {
+        if (score > 0) {
+            scores[address] = score
+        } else {
+            scores.remove(address)
+        }
+    }
+
+    fun recordBan(ban: Ban) {
+        bans[ban.address] = ban.expiration
+    }
+
+    fun removeBans() {
+        bans.clear()
+    }
+
+    @Synchronized
+    fun save() {
+        file ?: return
+        val now = Utility.getCurrentTimeSeconds()
+        bans.values.removeIf { it in 0 until now.toLong() }
+        records.values.removeIf { now - it.lastSeen > RECORD_RETENTION }
+        val snapshot = records.values
+            .sortedByDescending { it.lastSeen }
+            .take(MAX_RECORDS)
+            .map { it.copy(score = scores[it.address] ?: 0, banExpiration = bans[it.address]) }
+        // Bans of addresses we have never been connected to through their reconnect port are also kept
+        val bannedOnly = bans.filterKeys { address -> snapshot.none { it.address == address } }.map { (address, expiration) ->
+            PeerRecord(address, 0, scores[address] ?: 0, now, banExpiration = expiration)
+        }
+        try {
+            file.parentFile?.mkdirs()
+            val tempFile = File(file.parentFile, "${file.name}.tmp")
+            tempFile.writeText(gson.toJson(snapshot + bannedOnly))
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: IOException) {
+            logger.warn(e) { "Unable to save the peer database to $file" }
+        }
+    }
+
+    private fun load() {
+        if (file == null || !file.exists()) {
+            return
+        }
+        val loaded: List<PeerRecord> = try {
+            gson.fromJson(file.readText(), recordListType) ?: emptyList()
+        } catch (e: IOException) {
+            logger.warn(e) { "Unable to read the peer database from $file" }
+            return
+        } catch (e: JsonParseException) {
+            logger.warn(e) { "The peer database at $file is corrupted and will be ignored" }
+            return
+        }
+        for (record in loaded) {
+            if (record.port > 0) {
+                records[record.addressKey] = record.copy(score = 0, banExpiration = null)
+            }
+            if (record.score > 0) {
+                scores[record.address] = record.score
+            }
+            if (record.banExpiration != null) {
+                bans[record.address] = record.banExpiration
+            }
+        }
+        bans.values.removeIf { it in 0 until Utility.getCurrentTimeSeconds().toLong() }
+        logger.info { "Loaded ${records.size} known peers and ${bans.size} bans from the peer database" }
+    }
+
+    companion object {
+        private val gson = GsonBuilder().create()
+        private val recordListType = object : TypeToken<List<PeerRecord>>() {}.type
+    }
+}
+
+private val Peer.reconnectAddressKey: String
+    get() = "$address:${reconnectPort ?: port}"
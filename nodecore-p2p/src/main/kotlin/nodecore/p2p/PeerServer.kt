@@ -6,13 +6,9 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package nodecore.p2p
 
-import io.ktor.network.sockets.aSocket
 import io.ktor.util.network.NetworkAddress
-import kotlinx.coroutines.CancellationException
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.launch
 import org.veriblock.core.utilities.createLogger
-import java.util.concurrent.atomic.AtomicBoolean
+import java.io.Closeable
 
 private val logger = createLogger {}
 
@@ -22,36 +18,20 @@ class PeerServer(
 ) {
     private val bindAddress = NetworkAddress(configuration.peerBindAddress, configuration.peerBindPort)
 
-    private val running = AtomicBoolean(false)
+    private var listener: Closeable? = null
 
     fun start() {
-        running.set(true)
-        CoroutineScope(peerTable.socketDispatcher).launch {
-            run()
-        }
-    }
-    
-    private suspend fun run() {
-        try {
-            val serverSocket = aSocket(peerTable.selectorManager).tcp().bind(bindAddress)
-            while (running.get()) {
-                try {
-                    val socket = serverSocket.accept()
-                    peerTable.registerIncomingConnection(socket)
-                } catch (t: Throwable) {
-                    logger.error(t) { "Unable to accept incoming socket connection at $bindAddress!" }
-                }
-            }
-        } catch (e: CancellationException) {
-            logger.info { "Peer Server coroutine cancelled! Shutting down..." }
+        listener = try {
+            peerTable.transport.listen(bindAddress, peerTable::registerIncomingConnection)
         } catch (t: Throwable) {
             logger.error(t) { "Unable to create server socket and bind it to $bindAddress!" }
+            null
         }
     }
     
     fun stop() {
-        running.set(false)
-        Threading.PEER_SERVER_THREAD.safeShutdown()
-        Threading.PEER_IO_POOL.safeShutdown()
+        listener?.close()
+        listener = null
+        peerTable.transport.shutdown()
     }
 }
@@ -21,7 +21,6 @@ import kotlinx.coroutines.cancel
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.ClosedReceiveChannelException
 import kotlinx.coroutines.channels.ClosedSendChannelException
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import nodecore.api.grpc.RpcEvent
 import nodecore.p2p.event.PeerMisbehaviorEvent
@@ -29,7 +28,9 @@ import org.veriblock.core.utilities.createLogger
 import java.io.IOException
 import java.net.SocketException
 import java.util.HashMap
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
 private val logger = createLogger {}
 
@@ -46,6 +47,7 @@ class PeerSocketHandler(
     private val writeChannel = socket.openWriteChannel()
 
     private val writeEventChannel: Channel<RpcEvent> = Channel(1100)
+    private val pendingWrites = AtomicInteger(0)
 
     private val inputJob: Job = coroutineScope.launch {
         runInput()
@@ -68,6 +70,7 @@ class PeerSocketHandler(
             readChannel.cancel()
             writeChannel.close()
             writeEventChannel.close()
+            P2pMetrics.writesDequeued(pendingWrites.getAndSet(0))
             if (!socket.isClosed) {
                 try {
                     socket.close()
@@ -82,7 +85,11 @@ class PeerSocketHandler(
         logger.debug { "Sending ${message.resultsCase.name} message to $peer" }
         try {
             val result = writeEventChannel.trySend(message)
-            if (!result.isSuccess) {
+            if (result.isSuccess) {
+                pendingWrites.incrementAndGet()
+                P2pMetrics.writeQueued()
+            } else {
+                P2pMetrics.droppedWritesCounter.increment()
                 logger.warn { "Not writing event ${message.resultsCase.name} to peer $peer because write queue is full." }
             }
         } catch (e: InterruptedException) {
@@ -97,6 +104,9 @@ class PeerSocketHandler(
         while (isRunning()) {
             try {
                 val event = writeEventChannel.receive()
+                if (pendingWrites.getAndUpdate { (it - 1).coerceAtLeast(0) } > 0) {
+                    P2pMetrics.writesDequeued()
+                }
                 logBlocks(event)
                 val message = event.toByteArray()
                 writeChannel.writeInt(message.size)
@@ -105,6 +115,7 @@ class PeerSocketHandler(
 
                 peer.lastSuccessfulSend = System.currentTimeMillis()
                 peer.state.recordBytesSent(message.size + 4L)
+                P2pMetrics.recordMessageSent(event.resultsCase, message.size + 4)
             } catch (e: InterruptedException) {
                 logger.debug("Output stream thread shutting down")
                 handleSocketError()
@@ -151,7 +162,11 @@ class PeerSocketHandler(
                     peer.state.recordBytesReceived(nextMessageSize.toLong())
 
                     // Handle message in a different thread
-                    Threading.PEER_READ_THREAD.execute { peer.handleMessage(raw) }
+                    val receivedAt = System.nanoTime()
+                    Threading.PEER_READ_THREAD.execute {
+                        P2pMetrics.readQueueTimer.record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS)
+                        peer.handleMessage(raw)
+                    }
                 }
             } catch (e: SocketException) {
                 logger.info("Attempted to read from a socket that has been closed.")
@@ -187,33 +202,7 @@ class PeerSocketHandler(
         }
 
         coroutineScope.launch {
-            if (peer.ownsConnection) {
-                delay(5000L)
-            }
-
-            if (peer.status == Peer.Status.Closed || peer.status == Peer.Status.Errored) {
-                return@launch
-            }
-
-            var recoverSuccess = false
-
-            if (peer.ownsConnection && peer.reconnectionAttempts < 3) {
-                try {
-                    logger.info { "Attempting to self-heal peer connection to $peer" }
-                    recoverSuccess = peer.reconnect()
-                    if (recoverSuccess) {
-                        logger.info { "Connection to $peer successfully recovered!" }
-                    }
-                } catch (e: Exception) {
-                    logger.warn(e) { "Error while attempting to self-heal P2P connection!" }
-                }
-            }
-
-            if (!recoverSuccess) {
-                peer.status = Peer.Status.Errored
-                P2pEventBus.peerDisconnected.trigger(peer)
-            }
-
+            peer.handleConnectionError()
             coroutineScope.cancel()
         }
     }
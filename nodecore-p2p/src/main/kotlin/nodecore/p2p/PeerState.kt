@@ -38,6 +38,15 @@ class PeerState {
         bytesReceived.addAndGet(size)
     }
     
+    private val latencyMillis = AtomicLong(-1)
+    fun getLatencyMillis(): Long? = latencyMillis.get().takeIf { it >= 0 }
+    fun recordLatency(millis: Long) {
+        // Exponentially weighted moving average
+        latencyMillis.updateAndGet {
+            if (it < 0) millis else (it * 3 + millis) / 4
+        }
+    }
+
     private val unfulfilledRequests = AtomicInteger(0)
     fun getUnfulfilledRequestCount(): Int = unfulfilledRequests.get()
     fun incrementUnfulfilledRequests(): Int {
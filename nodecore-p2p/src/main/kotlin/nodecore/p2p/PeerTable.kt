@@ -7,9 +7,6 @@
 package nodecore.p2p
 
 import com.google.common.net.InetAddresses
-import io.ktor.network.selector.ActorSelectorManager
-import io.ktor.network.sockets.Socket
-import io.ktor.network.sockets.aSocket
 import io.ktor.util.network.NetworkAddress
 import io.ktor.util.network.port
 import kotlinx.coroutines.CoroutineScope
@@ -48,10 +45,10 @@ private val logger = createLogger {}
 class PeerTable(
     configuration: P2pConfiguration,
     private val warden: PeerWarden,
-    private val bootstrapper: PeerTableBootstrapper
+    private val bootstrapper: PeerTableBootstrapper,
+    private val peerDatabase: PeerDatabase = PeerDatabase()
 ) {
-    val socketDispatcher = Threading.PEER_SERVER_THREAD.asCoroutineDispatcher()
-    val selectorManager = ActorSelectorManager(socketDispatcher)
+    val transport: PeerTransport = createPeerTransport(configuration)
 
     private val coroutineDispatcher = Threading.PEER_TABLE_POOL.asCoroutineDispatcher()
     private val coroutineScope = CoroutineScope(coroutineDispatcher)
@@ -77,13 +74,23 @@ class PeerTable(
     private val capabilitiesMapper: PeerCapabilities.(Peer) -> PeerCapabilities = configuration.capabilitiesMapper
     private val neededCapabilities: PeerCapabilities = configuration.neededCapabilities
 
-    private var externalPeers: MutableList<NetworkAddress> = if (configuration.externalPeerEndpoints.isEmpty() && bootstrapEnabled) {
+    private val connectOnlyToExternal = configuration.connectOnlyToExternal
+
+    // Peers known from previous runs, fastest first
+    private val persistedCandidates: List<NodeMetadata> = if (connectOnlyToExternal) {
+        emptyList()
+    } else {
+        peerDatabase.getCandidates().map {
+            NodeMetadata(address = it.address, port = it.port, capabilities = PeerCapabilities.parse(it.capabilities))
+        }
+    }
+
+    private var externalPeers: MutableList<NetworkAddress> = if (configuration.externalPeerEndpoints.isEmpty() && bootstrapEnabled && persistedCandidates.isEmpty()) {
         logger.debug("Discovered 0 external peers configured, searching for bootstrap nodes")
         bootstrapper.getNext(bootstrapPeerLimit)
     } else {
         configuration.externalPeerEndpoints
     }.toMutableList()
-    private val connectOnlyToExternal = configuration.connectOnlyToExternal
 
     private val peers: MutableMap<String, Peer> = ConcurrentHashMap()
     private val peerCandidates: MutableMap<String, NodeMetadata> = ConcurrentHashMap()
@@ -103,6 +110,13 @@ class PeerTable(
         P2pEventBus.externalPeerRemoved.register(this, ::onExternalPeerRemoved)
         P2pEventBus.peerBanned.register(this, ::onPeerBanned)
         P2pEventBus.peerDisconnected.register(this, ::onPeerDisconnected)
+
+        P2pMetrics.bindPeerTable(this)
+
+        for (ban in peerDatabase.getBans()) {
+            denylist[ban.address] = ban
+        }
+        addPeerCandidates(persistedCandidates)
     }
 
     fun initialize(onConnected: Runnable?, onDisconnected: Runnable?) {
@@ -114,6 +128,10 @@ class PeerTable(
         coroutineScope.launch {
             delay(20_000L)
             establishConnectionWithConfiguredPeers(externalPeers)
+            if (externalPeers.isEmpty() && persistedCandidates.isNotEmpty()) {
+                logger.info { "Connecting to the best of ${persistedCandidates.size} peers known from previous runs" }
+                ensureMinimumConnectedPeers()
+            }
         }
         if (!connectOnlyToExternal) {
             coroutineScope.launch {
@@ -130,6 +148,7 @@ class PeerTable(
     fun shutdown() {
         Threading.PEER_TABLE_POOL.safeShutdown()
         warden.shutdown()
+        persistPeers()
 
         for (peer in peers.values) {
             peer.disconnect()
@@ -166,10 +185,8 @@ class PeerTable(
         try {
             logger.debug { "Attempting to establish client connection to peer $address:$port" }
             val socketAddress = NetworkAddress(address, port)
-            val socket = aSocket(selectorManager)
-                .tcp()
-                .connect(socketAddress)
-            return Peer(selectorManager, socket, true)
+            val connection = transport.connect(socketAddress)
+            return Peer(transport, connection, true)
         } catch (e: IOException) {
             logger.debug(e) { "Unable to open connection to $address:$port!" }
         }
@@ -192,33 +209,33 @@ class PeerTable(
             .toList()
     }
 
-    fun registerIncomingConnection(socket: Socket) {
-        val hostAddress = socket.remoteAddress.address
+    fun registerIncomingConnection(connection: PeerConnection) {
+        val hostAddress = connection.remoteAddress.address
         if (peers.size >= maximumPeerCount) {
             logger.info("Maximum amount of peers reached, rejecting connection")
-            socket.close()
+            connection.stop()
             return
         }
         if (denylist.containsKey(hostAddress)) {
             logger.info { "Incoming connection is from a denylisted peer ($hostAddress), closing connection" }
-            socket.close()
+            connection.stop()
             return
         }
 
         // FIXME this key may not be enough (multiple peers may connect from the same IP and port)
-        val addressKey = socket.remoteAddress.addressKey
+        val addressKey = connection.remoteAddress.addressKey
         val original = peers[addressKey]
         if (original != null) {
             if (original.status != Peer.Status.Closed && original.status != Peer.Status.Errored) {
                 logger.info { "Incoming connection is from an already connected peer ($addressKey), closing connection" }
-                socket.close()
+                connection.stop()
                 return
             }
         }
 
         var peer: Peer? = null
         try {
-            peer = Peer(selectorManager, socket, false)
+            peer = Peer(transport, connection, false)
             addPeer(peer)
 
             announce(peer, true)
@@ -282,6 +299,7 @@ class PeerTable(
 
     fun clearBans() {
         denylist.clear()
+        peerDatabase.removeBans()
     }
 
     fun updatePeer(peer: Peer) {
@@ -296,7 +314,9 @@ class PeerTable(
             removePeer(it.key)
         }
         // Add that address to the denylist
-        denylist[address] = createTemporaryBan(address)
+        val ban = createTemporaryBan(address)
+        denylist[address] = ban
+        peerDatabase.recordBan(ban)
     }
 
     private fun addPeer(peer: Peer) {
@@ -344,6 +364,7 @@ class PeerTable(
             }
             logger.debug("Releasing bans...")
             releaseExpiredBans()
+            persistPeers()
         } catch (e: Exception) {
             logger.error(e.message, e)
         }
@@ -391,7 +412,11 @@ class PeerTable(
 
         logger.debug { "Found ${peerCandidates.size} peer candidates" }
 
-        val candidates: List<NodeMetadata> = peerCandidates.values.shuffled()
+        // Prefer the peers that have historically been the fastest, and pick the rest randomly
+        val ranking = peerDatabase.getCandidates().withIndex().associate { it.value.addressKey to it.index }
+        val candidates: List<NodeMetadata> = peerCandidates.values.shuffled().sortedBy {
+            ranking[it.addressKey] ?: Int.MAX_VALUE
+        }
 
         var peerAttempts = 6
         for (candidate in candidates) {
@@ -476,6 +501,15 @@ class PeerTable(
         denylist.values.removeIf { it.isExpired }
     }
 
+    private fun persistPeers() {
+        for (peer in getConnectedPeers()) {
+            if (peer.state.hasAnnounced()) {
+                peerDatabase.recordSeen(peer)
+            }
+        }
+        peerDatabase.save()
+    }
+
     private fun isNodeSelf(id: String, address: String): Boolean {
         return self.id == id || self.address == address
     }
@@ -0,0 +1,65 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.p2p
+
+import io.ktor.util.network.NetworkAddress
+import nodecore.api.grpc.RpcEvent
+import java.io.Closeable
+
+enum class PeerTransportType {
+    /**
+     * Ktor raw sockets on a single selector thread
+     */
+    Ktor,
+
+    /**
+     * Netty event loops, using native epoll when available
+     */
+    Netty
+}
+
+/**
+ * A length-prefixed [RpcEvent] stream with a peer.
+ */
+interface PeerConnection {
+    val remoteAddress: NetworkAddress
+
+    /**
+     * Starts reading the events sent by the remote end and handing them to [peer].
+     */
+    fun start(peer: Peer)
+
+    /**
+     * Queues the event to be sent. Events are dropped if the connection's write queue is full.
+     */
+    fun write(message: RpcEvent)
+
+    fun stop()
+}
+
+/**
+ * Opens and accepts [PeerConnection]s.
+ */
+interface PeerTransport {
+    /**
+     * Connects to the given address.
+     * @throws java.io.IOException if the connection could not be established
+     */
+    suspend fun connect(address: NetworkAddress): PeerConnection
+
+    /**
+     * Binds to the given address and hands every accepted connection to [onAccept] until the returned handle is closed.
+     */
+    fun listen(bindAddress: NetworkAddress, onAccept: (PeerConnection) -> Unit): Closeable
+
+    fun shutdown()
+}
+
+fun createPeerTransport(configuration: P2pConfiguration): PeerTransport = when (configuration.peerTransport) {
+    PeerTransportType.Ktor -> KtorPeerTransport()
+    PeerTransportType.Netty -> NettyPeerTransport(configuration)
+}
@@ -16,9 +16,10 @@ import org.veriblock.core.launchWithFixedDelay
 private val logger = createLogger {}
 
 class PeerWarden(
-    configuration: P2pConfiguration
+    configuration: P2pConfiguration,
+    private val peerDatabase: PeerDatabase = PeerDatabase()
 ) {
-    private val peerScores: ConcurrentHashMap<String, Int> = ConcurrentHashMap()
+    private val peerScores: ConcurrentHashMap<String, Int> = ConcurrentHashMap(peerDatabase.getScores())
     private val peerBanThreshold: Int = configuration.peerBanThreshold
 
     init {
@@ -40,6 +41,7 @@ class PeerWarden(
     
     private fun handleMisbehavior(peer: Peer, reason: PeerMisbehaviorEvent.Reason, message: String) {
         logger.info { "Peer ${peer.address} misbehaved: ${reason.name} - $message" }
+        P2pMetrics.recordMisbehavior(reason)
         val penalty = when (reason) {
             PeerMisbehaviorEvent.Reason.MALFORMED_EVENT ->           20
             PeerMisbehaviorEvent.Reason.UNANNOUNCED ->                5
@@ -58,9 +60,11 @@ class PeerWarden(
 
         val revisedScore = (peerScores[peer.address] ?: 0) + penalty
         peerScores[peer.address] = revisedScore
+        peerDatabase.recordScore(peer.address, revisedScore)
 
         if (revisedScore >= peerBanThreshold) {
             logger.info { "Peer ${peer.address} has exceeded the ban threshold and will be banned" }
+            P2pMetrics.bannedPeersCounter.increment()
             P2pEventBus.peerBanned.trigger(peer)
         }
     }
@@ -69,5 +73,8 @@ class PeerWarden(
         peerScores.replaceAll { _, score ->
             (score - 1).coerceAtLeast(0)
         }
+        for ((address, score) in peerScores) {
+            peerDatabase.recordScore(address, score)
+        }
     }
 }
@@ -24,6 +24,7 @@ class TrafficManager {
     private val txRequestLog: ConcurrentHashMap<String, ConcurrentHashMap<String, TransactionRequest>> = ConcurrentHashMap()
 
     init {
+        P2pMetrics.bindTrafficManager(this)
         Threading.TRAFFIC_MANAGER_THREAD.scheduleWithFixedDelay({ manage() }, 5L, 5L, TimeUnit.SECONDS)
     }
 
@@ -0,0 +1,84 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.tests.p2p
+
+import io.kotest.matchers.shouldBe
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.mockk.every
+import io.mockk.mockk
+import nodecore.api.grpc.RpcEvent
+import nodecore.p2p.P2pMetrics
+import nodecore.p2p.Peer
+import nodecore.p2p.PeerTable
+import nodecore.p2p.TrafficManager
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class P2pMetricsTests {
+    private lateinit var registry: SimpleMeterRegistry
+
+    @Before
+    fun before() {
+        registry = SimpleMeterRegistry()
+        P2pMetrics.bindTo(registry)
+    }
+
+    @Test
+    fun requestsAreTimedByTypeAndOutcome() {
+        P2pMetrics.recordRequest(RpcEvent.ResultsCase.VTB_FOR_BTC_REQUEST, "success", TimeUnit.MILLISECONDS.toNanos(10))
+        P2pMetrics.recordRequest(RpcEvent.ResultsCase.VTB_FOR_BTC_REQUEST, "success", TimeUnit.MILLISECONDS.toNanos(30))
+        P2pMetrics.recordRequest(RpcEvent.ResultsCase.VTB_FOR_BTC_REQUEST, "timeout", TimeUnit.MILLISECONDS.toNanos(5_000))
+
+        val successes = registry.get("nodecore_p2p.request_rtt")
+            .tags("type", "vtb_for_btc_request", "outcome", "success")
+            .timer()
+        val timeouts = registry.get("nodecore_p2p.request_rtt")
+            .tags("type", "vtb_for_btc_request", "outcome", "timeout")
+            .timer()
+        successes.count() shouldBe 2L
+        successes.totalTime(TimeUnit.MILLISECONDS) shouldBe 40.0
+        timeouts.count() shouldBe 1L
+        timeouts.totalTime(TimeUnit.MILLISECONDS) shouldBe 5_000.0
+    }
+
+    @Test
+    fun trafficGaugesReadTheLastBoundTrafficManager() {
+        P2pMetrics.bindTrafficManager(trafficManager(blocksInFlight = 3, transactionsInFlight = 1, queuedBlocks = 2))
+        trafficGauge("in_flight", "block") shouldBe 3.0
+
+        // As when the P2P layer is recreated
+        P2pMetrics.bindTrafficManager(trafficManager(blocksInFlight = 5, transactionsInFlight = 4, queuedBlocks = 0))
+
+        trafficGauge("in_flight", "block") shouldBe 5.0
+        trafficGauge("in_flight", "transaction") shouldBe 4.0
+        trafficGauge("queued", "block") shouldBe 0.0
+    }
+
+    @Test
+    fun peerGaugesReadTheLastBoundPeerTable() {
+        P2pMetrics.bindPeerTable(peerTable(connectedPeers = 1))
+        P2pMetrics.bindPeerTable(peerTable(connectedPeers = 2))
+
+        registry.get("nodecore_p2p.peers").tags("status", "connected").gauge().value() shouldBe 2.0
+        registry.get("nodecore_p2p.peers").tags("status", "candidate").gauge().value() shouldBe 0.0
+    }
+
+    private fun trafficGauge(name: String, type: String) =
+        registry.get("nodecore_p2p.traffic.$name").tags("type", type).gauge().value()
+
+    private fun trafficManager(blocksInFlight: Int, transactionsInFlight: Int, queuedBlocks: Int): TrafficManager = mockk {
+        every { getBlockRequestLogSize() } returns blocksInFlight
+        every { getTxRequestLogSize() } returns transactionsInFlight
+        every { getBlockRequestQueueSize() } returns queuedBlocks
+    }
+
+    private fun peerTable(connectedPeers: Int): PeerTable = mockk {
+        every { getConnectedPeers() } returns List(connectedPeers) { mockk<Peer>() }
+        every { getPeerCandidates() } returns emptyList()
+    }
+}
@@ -0,0 +1,94 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.tests.p2p
+
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import nodecore.p2p.Ban
+import nodecore.p2p.Peer
+import nodecore.p2p.PeerCapabilities
+import nodecore.p2p.PeerDatabase
+import nodecore.p2p.PeerState
+import nodecore.p2p.createPermanentBan
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.veriblock.core.utilities.Utility
+
+class PeerDatabaseTests {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    @Test
+    fun saveAndLoad() {
+        val file = tempFolder.root.resolve("peers.json")
+        val database = PeerDatabase(file)
+        database.recordSeen(mockPeer("10.0.0.1", 7500, latency = 120))
+        database.recordScore("10.0.0.1", 4)
+        database.recordBan(createPermanentBan("10.0.0.2"))
+        database.save()
+
+        val reloaded = PeerDatabase(file)
+        val candidate = reloaded.getCandidates().single()
+        candidate.address shouldBe "10.0.0.1"
+        candidate.port shouldBe 7500
+        candidate.latencyMillis shouldBe 120L
+        candidate.capabilities shouldBe PeerCapabilities.defaultCapabilities().toBitVector()
+        reloaded.getScores() shouldBe mapOf("10.0.0.1" to 4)
+        reloaded.isBanned("10.0.0.2") shouldBe true
+    }
+
+    @Test
+    fun expiredBansAreDropped() {
+        val file = tempFolder.root.resolve("peers.json")
+        val database = PeerDatabase(file)
+        val now = Utility.getCurrentTimeSeconds().toLong()
+        database.recordBan(Ban(Ban.Type.Temporary, "10.0.0.3", now - 10))
+        database.recordBan(Ban(Ban.Type.Temporary, "10.0.0.4", now + 3600))
+        database.isBanned("10.0.0.3") shouldBe false
+        database.save()
+
+        val reloaded = PeerDatabase(file)
+        reloaded.getBans().map { it.address } shouldBe listOf("10.0.0.4")
+        reloaded.isBanned("10.0.0.4") shouldBe true
+    }
+
+    @Test
+    fun candidatesArePrioritizedByLatency() {
+        val database = PeerDatabase()
+        database.recordSeen(mockPeer("10.0.0.5", 7500, latency = 300))
+        database.recordSeen(mockPeer("10.0.0.6", 7500, latency = null))
+        database.recordSeen(mockPeer("10.0.0.7", 7500, latency = 40))
+        database.recordSeen(mockPeer("10.0.0.8", 7500, latency = 90))
+        database.recordBan(createPermanentBan("10.0.0.8"))
+
+        database.getCandidates().map { it.address } shouldBe listOf("10.0.0.7", "10.0.0.5", "10.0.0.6")
+    }
+
+    @Test
+    fun corruptedFileIsIgnored() {
+        val file = tempFolder.newFile("peers.json")
+        file.writeText("{ not json")
+
+        PeerDatabase(file).getCandidates() shouldBe emptyList()
+    }
+
+    private fun mockPeer(address: String, port: Int, latency: Long?): Peer {
+        val peerState = PeerState()
+        if (latency != null) {
+            peerState.recordLatency(latency)
+        }
+        return mockk {
+            every { this@mockk.address } returns address
+            every { this@mockk.port } returns port
+            every { reconnectPort } returns null
+            every { capabilities } returns PeerCapabilities.defaultCapabilities()
+            every { state } returns peerState
+        }
+    }
+}
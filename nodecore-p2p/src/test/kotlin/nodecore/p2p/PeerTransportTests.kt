@@ -0,0 +1,172 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.tests.p2p
+
+import io.kotest.assertions.withClue
+import io.kotest.matchers.shouldBe
+import io.ktor.util.network.NetworkAddress
+import kotlinx.coroutines.runBlocking
+import nodecore.api.grpc.RpcAcknowledgement
+import nodecore.p2p.NodeMetadata
+import nodecore.p2p.P2pConfiguration
+import nodecore.p2p.P2pConstants
+import nodecore.p2p.P2pEventBus
+import nodecore.p2p.Peer
+import nodecore.p2p.PeerTransportType
+import nodecore.p2p.buildMessage
+import nodecore.p2p.createFakeParameters
+import nodecore.p2p.createPeerTransport
+import nodecore.p2p.event.PeerMisbehaviorEvent
+import org.junit.After
+import org.junit.BeforeClass
+import org.junit.Test
+import org.veriblock.core.Context
+import java.io.DataOutputStream
+import java.math.BigInteger
+import java.net.ServerSocket
+import java.net.Socket
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+// Below the write queue capacity, so that no event is dropped
+private const val EVENT_COUNT = 1000
+
+// Exchanges measured for each transport in the comparison, the first one warms it up and is left out
+private const val MEASURED_EXCHANGES = 4
+
+/**
+ * Sends the same stream of events through each transport over loopback, and compares how long it takes them.
+ */
+class PeerTransportTests {
+
+    companion object {
+        @JvmStatic
+        @BeforeClass
+        fun beforeClass() {
+            Context.create(createFakeParameters("mainnet", BigInteger.ONE, 1))
+        }
+    }
+
+    @After
+    fun after() {
+        P2pEventBus.acknowledge.unregister(this)
+        P2pEventBus.peerMisbehavior.unregister(this)
+    }
+
+    @Test
+    fun ktorTransportDeliversEvents() {
+        sendEvents(PeerTransportType.Ktor)
+    }
+
+    @Test
+    fun nettyTransportDeliversEvents() {
+        sendEvents(PeerTransportType.Netty)
+    }
+
+    @Test
+    fun nettyTransportKeepsUpWithKtorTransport() {
+        // The best exchange of each, which is the least disturbed by whatever else runs on the machine
+        val ktorNanos = List(MEASURED_EXCHANGES) { sendEvents(PeerTransportType.Ktor) }.drop(1).minOrNull()!!
+        val nettyNanos = List(MEASURED_EXCHANGES) { sendEvents(PeerTransportType.Netty) }.drop(1).minOrNull()!!
+
+        // Leaves room for the noise of such short measurements, a transport that's really slower is still caught
+        withClue("$EVENT_COUNT events took ${nettyNanos / 1_000} us with Netty and ${ktorNanos / 1_000} us with Ktor") {
+            (nettyNanos <= ktorNanos * 2) shouldBe true
+        }
+    }
+
+    @Test
+    fun nettyTransportSkipsTooLongMessages() {
+        val transport = createPeerTransport(P2pConfiguration(peerTransport = PeerTransportType.Netty))
+        val port = ServerSocket(0).use { it.localPort }
+
+        val misbehaviors = CopyOnWriteArrayList<PeerMisbehaviorEvent.Reason>()
+        P2pEventBus.peerMisbehavior.register(this) {
+            misbehaviors.add(it.reason)
+        }
+        val received = CountDownLatch(1)
+        P2pEventBus.acknowledge.register(this) {
+            received.countDown()
+        }
+
+        val incomingPeer = CompletableFuture<Peer>()
+        val listener = transport.listen(NetworkAddress("127.0.0.1", port)) { connection ->
+            val peer = Peer(transport, connection, false)
+            peer.metadata = NodeMetadata(protocolVersion = Context.get().networkParameters.protocolVersion)
+            peer.state.setAnnounced(true)
+            incomingPeer.complete(peer)
+        }
+        Socket("127.0.0.1", port).use { socket ->
+            val output = DataOutputStream(socket.getOutputStream())
+            val tooLongSize = P2pConstants.PEER_MESSAGE_SIZE_LIMIT + 1
+            output.writeInt(tooLongSize)
+            output.write(ByteArray(tooLongSize))
+            val event = buildMessage {
+                acknowledgement = RpcAcknowledgement.newBuilder().setMessageId("after").build()
+            }.toByteArray()
+            output.writeInt(event.size)
+            output.write(event)
+            output.flush()
+
+            // The message following the too long one is still read from the same connection
+            received.await(30, TimeUnit.SECONDS) shouldBe true
+            misbehaviors shouldBe listOf(PeerMisbehaviorEvent.Reason.MESSAGE_SIZE)
+        }
+
+        incomingPeer.get(10, TimeUnit.SECONDS).disconnect()
+        listener.close()
+        transport.shutdown()
+    }
+
+    /**
+     * Sends the events from one peer to another one, returning the nanoseconds taken from the first one being sent
+     * to the last one being handled
+     */
+    private fun sendEvents(transportType: PeerTransportType): Long {
+        val transport = createPeerTransport(P2pConfiguration(peerTransport = transportType))
+        val port = ServerSocket(0).use { it.localPort }
+        val address = NetworkAddress("127.0.0.1", port)
+
+        val received = CountDownLatch(EVENT_COUNT)
+        P2pEventBus.acknowledge.register(this) {
+            received.countDown()
+        }
+
+        val incomingPeer = CompletableFuture<Peer>()
+        val listener = transport.listen(address) { connection ->
+            val peer = Peer(transport, connection, false)
+            peer.metadata = NodeMetadata(protocolVersion = Context.get().networkParameters.protocolVersion)
+            peer.state.setAnnounced(true)
+            incomingPeer.complete(peer)
+        }
+        val outgoingPeer = runBlocking {
+            Peer(transport, transport.connect(address), true)
+        }
+        val serverPeer = incomingPeer.get(10, TimeUnit.SECONDS)
+
+        val startedAt = System.nanoTime()
+        repeat(EVENT_COUNT) {
+            outgoingPeer.send(buildMessage {
+                acknowledgement = RpcAcknowledgement.newBuilder().setMessageId(it.toString()).build()
+            }) shouldBe true
+        }
+        received.await(30, TimeUnit.SECONDS) shouldBe true
+        val elapsedNanos = System.nanoTime() - startedAt
+
+        outgoingPeer.disconnect()
+        serverPeer.disconnect()
+        listener.close()
+        if (transportType == PeerTransportType.Netty) {
+            // The Ktor transport runs on the shared P2P thread pools, which must stay alive for the other tests
+            transport.shutdown()
+        }
+        P2pEventBus.acknowledge.unregister(this)
+        return elapsedNanos
+    }
+}
@@ -45,6 +45,9 @@ dependencies {
     implementation("org.apache.logging.log4j:log4j-slf4j-impl:$log4jVersion")
     implementation("org.slf4j:slf4j-api:$slf4jVersion")
 
+    // Metrics
+    implementation("io.micrometer:micrometer-registry-prometheus:1.1.4")
+
     // Other
     implementation("me.tongfei:progressbar:0.9.4")
 
@@ -14,6 +14,7 @@ import kotlinx.coroutines.delay
 import kotlinx.coroutines.runBlocking
 import me.tongfei.progressbar.ProgressBarBuilder
 import me.tongfei.progressbar.ProgressBarStyle
+import nodecore.p2p.P2pMetrics
 import org.bouncycastle.jce.provider.BouncyCastleProvider
 import org.veriblock.core.Context
 import org.veriblock.core.SharedConstants
@@ -76,6 +77,9 @@ private fun run(): Int {
     // Create shell before any logging
     val shell = Shell(commandFactory)
 
+    // Start collecting P2P metrics before any peer is connected
+    P2pMetrics.bindTo(SpvMetrics.registry)
+
     logger.info { "Initializing SPV Context (${spvConfig.networkParameters.name})..." }
     val spvContext = SpvContext(spvConfig)
 
@@ -19,6 +19,7 @@ import org.veriblock.shell.core.success
 import org.veriblock.spv.SpvContext
 import org.veriblock.spv.model.Output
 import org.veriblock.spv.model.asLightAddress
+import org.veriblock.spv.standalone.SpvMetrics
 
 fun CommandFactory.spvCommands(
     context: SpvContext
@@ -177,6 +178,16 @@ fun CommandFactory.spvCommands(
         displayResult(result.map { it.hash })
         success()
     }
+
+    command(
+        name = "Get P2P Metrics",
+        form = "getp2pmetrics|p2pmetrics",
+        description = "Displays the P2P traffic and latency metrics in Prometheus format",
+        suggestedCommands = { listOf("getstateinfo") }
+    ) {
+        shell.printInfo(SpvMetrics.registry.scrape(), printToLogger = false)
+        success()
+    }
 }
 
 private val prettyPrintGson = GsonBuilder().apply {
@@ -14,6 +14,7 @@ import nodecore.api.grpc.RpcHeartbeat
 import org.veriblock.sdk.extensions.toByteString
 import nodecore.p2p.DnsResolver
 import nodecore.p2p.P2pConfiguration
+import nodecore.p2p.PeerDatabase
 import nodecore.p2p.PeerTable
 import nodecore.p2p.PeerTableBootstrapper
 import nodecore.p2p.PeerWarden
@@ -130,9 +131,10 @@ class SpvContext(
                 logger.info { "Using direct discovery (${p2pConfiguration.externalPeerEndpoints.joinToString { it.addressKey }})" }
             }
 
-            val warden = PeerWarden(p2pConfiguration)
+            val peerDatabase = PeerDatabase(File(directory, "$filePrefix-peers.json"))
+            val warden = PeerWarden(p2pConfiguration, peerDatabase)
             val bootstrapper = PeerTableBootstrapper(p2pConfiguration, DnsResolver())
-            peerTable = PeerTable(p2pConfiguration, warden, bootstrapper)
+            peerTable = PeerTable(p2pConfiguration, warden, bootstrapper, peerDatabase)
 
             transactionService = TransactionService(addressManager, networkParameters)
             spvService = SpvService(
@@ -18,6 +18,7 @@ import nodecore.api.grpc.RpcAdvertiseBlocks
 import nodecore.api.grpc.RpcAdvertiseTransaction
 import nodecore.api.grpc.RpcAnnounce
 import nodecore.api.grpc.RpcBlockHeader
+import nodecore.api.grpc.RpcCompactBlockHeaders
 import nodecore.api.grpc.RpcCreateFilter
 import nodecore.api.grpc.RpcEvent
 import nodecore.api.grpc.RpcGetStateInfoReply
@@ -42,10 +43,8 @@ import nodecore.p2p.nextMessageId
 import nodecore.p2p.sendMessage
 import nodecore.p2p.toModel
 import org.veriblock.core.crypto.BloomFilter
-import org.veriblock.core.crypto.asVbkHash
 import org.veriblock.core.crypto.asVbkTxId
 import org.veriblock.core.params.NetworkParameters
-import org.veriblock.core.utilities.BlockUtility
 import org.veriblock.core.utilities.createLogger
 import org.veriblock.sdk.models.VeriBlockBlock
 import org.veriblock.sdk.services.SerializeDeserializeService
@@ -87,6 +86,7 @@ class PeerEventListener(
         P2pEventBus.heartbeat.register(this, ::onHeartbeat)
         P2pEventBus.networkInfoRequest.register(this, ::onNetworkInfoRequest)
         P2pEventBus.advertiseBlocks.register(this, ::onAdvertiseBlocks)
+        P2pEventBus.compactAdvertiseBlocks.register(this, ::onCompactAdvertiseBlocks)
         P2pEventBus.advertiseTransaction.register(this, ::onAdvertiseTransactions)
         P2pEventBus.transactionRequest.register(this, ::onTransactionRequest)
         P2pEventBus.getStateInfoReply.register(this, ::onGetStateInfoReply)
@@ -261,37 +261,65 @@ class PeerEventListener(
                 }
             }.awaitAll()
         }
+        handleAdvertisedBlocks(event.producer, veriBlockBlocks)
+    }
+
+    suspend fun onCompactAdvertiseBlocks(event: P2pEvent<RpcCompactBlockHeaders>) {
+        logger.debug { "Got compact advertise blocks event from ${event.producer.address}" }
+        event.acknowledge()
+
+        val headerCount = event.content.headersCount + 1
+        val trustHashes = spvContext.trustPeerHashes && headerCount > 10
+        val veriBlockBlocks: List<VeriBlockBlock> = try {
+            MessageSerializer.deserialize(event.content, trustHashes)
+        } catch (e: IllegalStateException) {
+            P2pEventBus.peerMisbehavior.trigger(PeerMisbehaviorEvent(
+                peer = event.producer,
+                reason = PeerMisbehaviorEvent.Reason.MALFORMED_EVENT,
+                message = "Malformed compact header batch: ${e.message}"
+            ))
+            return
+        }
+        logger.debug { "Received compact advertisement of $headerCount blocks, height: ${veriBlockBlocks.last().height}" }
+        if (!trustHashes) {
+            // pre-calculate hashes in parallel
+            coroutineScope {
+                veriBlockBlocks.map {
+                    async(hashDispatcher) { it.hash }
+                }.awaitAll()
+            }
+        }
+        handleAdvertisedBlocks(event.producer, veriBlockBlocks)
+    }
+
+    private fun handleAdvertisedBlocks(producer: Peer, veriBlockBlocks: List<VeriBlockBlock>) {
         if (SpvState.downloadPeer == null && veriBlockBlocks.last().height > 0) {
-            startBlockchainDownload(event.producer)
+            startBlockchainDownload(producer)
         }
 
         val allBlocksAccepted = veriBlockBlocks
             .sortedBy { it.height }
             .all {
-                blockchain.addNetworkBlock(NetworkBlock(it, event.producer))
+                blockchain.addNetworkBlock(NetworkBlock(it, producer))
             }
 
-        if (advertiseBlocks.headersCount >= 1000) {
+        if (veriBlockBlocks.size >= 1000) {
             if (!allBlocksAccepted) {
-                startBlockchainDownload(event.producer)
+                startBlockchainDownload(producer)
             } else {
-                logger.debug { "Received advertisement of ${advertiseBlocks.headersCount} blocks" }
+                logger.debug { "Received advertisement of ${veriBlockBlocks.size} blocks" }
 
                 // Extract latest keystones and ask for more
-                val extractedKeystones = advertiseBlocks.headersList.asSequence()
-                    // Using the peer's supplied hash because we're using it only to request more blocks. No exercise of trust is made here.
-                    .map { SerializeDeserializeService.parseVeriBlockBlock(it.header.toByteArray(), it.hash.toByteArray().asVbkHash()) }
+                val extractedKeystones = veriBlockBlocks.asSequence()
                     .filter { it.height % 20 == 0 }
                     .sortedByDescending { it.height }
                     .take(10)
                     .toList()
                 logger.debug { "Received keystones ${extractedKeystones.map { it.height }}" }
-                event.producer.requestBlockDownload(extractedKeystones)
+                producer.requestBlockDownload(extractedKeystones)
             }
-        } else if (SpvState.getPeerHeight(event.producer) == 0) { // FIXME: Remove after we're able to retrieve best block height
-            val lastHeader = advertiseBlocks.headersList.last().header.toByteArray()
-            val lastHeight = BlockUtility.extractBlockHeightFromBlockHeader(lastHeader)
-            SpvState.putNetworkHeight(event.producer.addressKey, lastHeight)
+        } else if (SpvState.getPeerHeight(producer) == 0) { // FIXME: Remove after we're able to retrieve best block height
+            SpvState.putNetworkHeight(producer.addressKey, veriBlockBlocks.last().height)
         }
 
         // TODO(warchant): if allBlocksAccepted == false here, block can not be connected or invalid
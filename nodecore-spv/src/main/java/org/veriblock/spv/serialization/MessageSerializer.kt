@@ -10,6 +10,8 @@ package org.veriblock.spv.serialization
 import com.google.protobuf.InvalidProtocolBufferException
 import nodecore.api.grpc.RpcBlock
 import nodecore.api.grpc.RpcBlockHeader
+import nodecore.api.grpc.RpcCompactBlockHeader
+import nodecore.api.grpc.RpcCompactBlockHeaders
 import nodecore.api.grpc.RpcEvent
 import nodecore.api.grpc.RpcSignedMultisigTransaction
 import nodecore.api.grpc.RpcSignedTransaction
@@ -18,9 +20,14 @@ import org.veriblock.sdk.extensions.ByteStringAddressUtility
 import org.veriblock.sdk.extensions.ByteStringUtility
 import org.veriblock.sdk.extensions.asVbkPreviousBlockHash
 import org.veriblock.sdk.extensions.asVbkPreviousKeystoneHash
+import org.veriblock.sdk.extensions.toByteString
 import org.veriblock.core.utilities.createLogger
 import org.veriblock.sdk.models.BitcoinTransaction
+import org.veriblock.sdk.models.Constants
 import org.veriblock.sdk.models.MerklePath
+import org.veriblock.core.crypto.PreviousBlockVbkHash
+import org.veriblock.core.crypto.PreviousKeystoneVbkHash
+import org.veriblock.core.crypto.VbkHash
 import org.veriblock.core.crypto.asVbkHash
 import org.veriblock.core.crypto.asBtcHash
 import org.veriblock.core.crypto.asTruncatedMerkleRoot
@@ -47,6 +54,131 @@ object MessageSerializer {
         }
     }
 
+    /**
+     * Builds a compact header batch out of a list of consecutive headers (sorted by height).
+     * The previous block hash and the keystones are only included when they can't be derived from the previous
+     * headers of the batch, and the rest of the numeric fields are encoded as deltas.
+     */
+    fun serializeCompact(blocks: List<VeriBlockBlock>, includeHashes: Boolean = true): RpcCompactBlockHeaders {
+        require(blocks.isNotEmpty()) {
+            "Unable to build a compact header batch without headers"
+        }
+        val first = blocks.first()
+        val builder = RpcCompactBlockHeaders.newBuilder()
+            .setFirst(
+                RpcBlockHeader.newBuilder()
+                    .setHeader(first.raw.toByteString())
+                    .setHash(first.hash.bytes.toByteString())
+            )
+        val hashesByHeight = HashMap<Int, VbkHash>()
+        hashesByHeight[first.height] = first.hash
+        var previous = first
+        for (block in blocks.subList(1, blocks.size)) {
+            val header = RpcCompactBlockHeader.newBuilder()
+                .setHeightGap(block.height - previous.height - 1)
+                .setVersionDelta(block.version - previous.version)
+                .setMerkleRoot(block.merkleRoot.bytes.toByteString())
+                .setTimestampDelta(block.timestamp - previous.timestamp)
+                .setDifficultyDelta(block.difficulty - previous.difficulty)
+                .setNonce(block.nonce)
+            if (includeHashes) {
+                header.hash = block.hash.bytes.toByteString()
+            }
+            if (derivePreviousHash(previous, block.height, hashesByHeight) != block.previousBlock) {
+                header.previousHash = block.previousBlock.bytes.toByteString()
+            }
+            val keystones = deriveKeystones(previous, block.height, hashesByHeight)
+            if (keystones == null || keystones.first != block.previousKeystone || keystones.second != block.secondPreviousKeystone) {
+                header.previousKeystone = block.previousKeystone.bytes.toByteString()
+                header.secondPreviousKeystone = block.secondPreviousKeystone.bytes.toByteString()
+            }
+            builder.addHeaders(header)
+            hashesByHeight[block.height] = block.hash
+            previous = block
+        }
+        return builder.build()
+    }
+
+    /**
+     * Rebuilds the headers of a compact header batch. The hashes supplied by the peer are only used as the blocks'
+     * hashes when [trustHashes] is enabled; otherwise they are just used to derive the omitted fields, and a wrong
+     * hash will produce a header which does not connect to the previous one and will thus be rejected by the blockchain.
+     *
+     * Any malformed batch, whether truncated or with fields of the wrong size, is reported as an [IllegalStateException].
+     */
+    fun deserialize(compactHeaders: RpcCompactBlockHeaders, trustHashes: Boolean = false): List<VeriBlockBlock> = try {
+        deserializeCompact(compactHeaders, trustHashes)
+    } catch (e: IllegalStateException) {
+        throw e
+    } catch (e: RuntimeException) {
+        throw IllegalStateException(e.message ?: e.javaClass.simpleName, e)
+    }
+
+    private fun deserializeCompact(compactHeaders: RpcCompactBlockHeaders, trustHashes: Boolean): List<VeriBlockBlock> {
+        val first = deserialize(compactHeaders.first, trustHashes)
+        val blocks = ArrayList<VeriBlockBlock>(compactHeaders.headersCount + 1)
+        blocks.add(first)
+        val hashesByHeight = HashMap<Int, VbkHash>()
+        hashesByHeight[first.height] = compactHeaders.first.hash.takeUnless { it.isEmpty }?.toByteArray()?.asVbkHash() ?: first.hash
+        var previous = first
+        for (header in compactHeaders.headersList) {
+            val height = previous.height + header.heightGap + 1
+            val previousBlock = if (header.previousHash.isEmpty) {
+                derivePreviousHash(previous, height, hashesByHeight)
+                    ?: error("Unable to derive the previous block of the compact header @ $height")
+            } else {
+                header.previousHash.asVbkPreviousBlockHash()
+            }
+            val keystones = if (header.previousKeystone.isEmpty) {
+                deriveKeystones(previous, height, hashesByHeight)
+                    ?: error("Unable to derive the keystones of the compact header @ $height")
+            } else {
+                header.previousKeystone.asVbkPreviousKeystoneHash() to header.secondPreviousKeystone.asVbkPreviousKeystoneHash()
+            }
+            val claimedHash = header.hash.takeUnless { it.isEmpty }?.toByteArray()?.asVbkHash()
+            val block = VeriBlockBlock(
+                height,
+                (previous.version + header.versionDelta).toShort(),
+                previousBlock,
+                keystones.first,
+                keystones.second,
+                header.merkleRoot.toByteArray().asTruncatedMerkleRoot(),
+                previous.timestamp + header.timestampDelta,
+                previous.difficulty + header.difficultyDelta,
+                header.nonce,
+                if (trustHashes) claimedHash else null
+            )
+            blocks.add(block)
+            hashesByHeight[height] = claimedHash ?: block.hash
+            previous = block
+        }
+        return blocks
+    }
+
+    private fun derivePreviousHash(
+        previous: VeriBlockBlock,
+        height: Int,
+        hashesByHeight: Map<Int, VbkHash>
+    ): PreviousBlockVbkHash? = if (previous.height == height - 1) {
+        hashesByHeight[previous.height]?.trimToPreviousBlockSize()
+    } else {
+        null
+    }
+
+    private fun deriveKeystones(
+        previous: VeriBlockBlock,
+        height: Int,
+        hashesByHeight: Map<Int, VbkHash>
+    ): Pair<PreviousKeystoneVbkHash, PreviousKeystoneVbkHash>? = when {
+        previous.height != height - 1 ->
+            null
+        // The previous block is the first one after a keystone, so that keystone becomes the previous one
+        height % Constants.KEYSTONE_INTERVAL == 2 ->
+            hashesByHeight[height - 2]?.let { it.trimToPreviousKeystoneSize() to previous.previousKeystone }
+        else ->
+            previous.previousKeystone to previous.secondPreviousKeystone
+    }
+
     @JvmStatic
     fun deserializeNormalTransaction(transactionUnionMessage: RpcTransactionUnion): StandardTransaction {
         return when (transactionUnionMessage.transactionCase) {
@@ -16,6 +16,7 @@ import org.veriblock.core.bitcoinj.BitcoinUtilities
 import org.veriblock.core.crypto.AnyVbkHash
 import org.veriblock.core.crypto.PreviousBlockVbkHash
 import org.veriblock.core.miner.getNextWorkRequired
+import org.veriblock.core.utilities.Utility
 import org.veriblock.core.utilities.createLogger
 import org.veriblock.core.utilities.debugWarn
 import org.veriblock.sdk.blockchain.VeriBlockDifficultyCalculator
@@ -24,6 +25,7 @@ import org.veriblock.sdk.models.VeriBlockBlock
 import org.veriblock.sdk.models.VerificationException
 import org.veriblock.sdk.services.ValidationService
 import org.veriblock.spv.model.StoredVeriBlockBlock
+import org.veriblock.spv.util.ChainUpdate
 import org.veriblock.spv.util.SpvEventBus
 import org.veriblock.spv.util.Threading
 import java.util.concurrent.ConcurrentHashMap
@@ -33,6 +35,10 @@ import kotlinx.coroutines.CancellationException
 
 private val logger = createLogger {}
 
+private const val MAX_NETWORK_BLOCK_BATCH = 500
+// A tip older than this means that the blockchain is still being downloaded
+private const val CATCHING_UP_TIP_AGE_SECONDS = 60 * 60
+
 class Blockchain(
     val blockStore: BlockStore
 ) {
@@ -45,6 +51,10 @@ class Blockchain(
 
     private val networkBlockQueue = Channel<NetworkBlock>(UNLIMITED)
 
+    // Changes to the active chain which have not been published yet, guarded by [lock]
+    private var pendingUpdate: ChainUpdate? = null
+    private var batchDepth = 0
+
     init {
         reindex()
 
@@ -147,6 +157,27 @@ class Blockchain(
      */
     fun acceptBlock(
         block: VeriBlockBlock
+    ): Boolean = batchUpdates {
+        connectBlock(block)
+    }
+
+    /**
+     * Runs [action] publishing a single [ChainUpdate] for all the changes it makes to the active chain,
+     * instead of one per accepted block.
+     */
+    fun <T> batchUpdates(action: () -> T): T = lock.withLock {
+        batchDepth++
+        try {
+            action()
+        } finally {
+            if (--batchDepth == 0) {
+                publishChainUpdate()
+            }
+        }
+    }
+
+    private fun connectBlock(
+        block: VeriBlockBlock
     ): Boolean = lock.withLock {
         if (getBlockIndex(block.hash) != null) {
             // block is valid, we already have it
@@ -205,26 +236,7 @@ class Blockchain(
             // new block wins
             activeChain.setTip(index, stored.work)
 
-            // Trigger events
-            var commonPreviousBlock = oldTip
-            while (!activeChain.contains(commonPreviousBlock)) {
-                commonPreviousBlock = commonPreviousBlock.prev
-                    ?: error("Trying to find a common previous block beyond Genesis!")
-                val removedBlock = blockStore.readBlock(commonPreviousBlock.position)
-                if (removedBlock != null) {
-                    SpvEventBus.removedBestBlockEvent.trigger(removedBlock.header)
-                    SpvEventBus.removedBestBlockFlow.tryEmit(removedBlock.header)
-                }
-            }
-            for (height in commonPreviousBlock.height + 1 until index.height) {
-                val addedBlock = blockStore.readBlock(commonPreviousBlock.position)
-                if (addedBlock != null) {
-                    SpvEventBus.newBestBlockEvent.trigger(addedBlock.header)
-                    SpvEventBus.newBestBlockFlow.tryEmit(addedBlock.header)
-                }
-            }
-            SpvEventBus.newBestBlockEvent.trigger(block)
-            SpvEventBus.newBestBlockFlow.tryEmit(block)
+            recordChainUpdate(oldTip, index, block)
         }
 
         return true
@@ -244,6 +256,55 @@ class Blockchain(
             .toList()
     }
 
+    /**
+     * Collects the blocks that were disconnected from and connected to the active chain when
+     * switching from [oldTip] to [newTip], to be published at the end of the current batch.
+     */
+    private fun recordChainUpdate(oldTip: BlockIndex, newTip: BlockIndex, newTipHeader: VeriBlockBlock) {
+        val removed = ArrayList<VeriBlockBlock>()
+        var commonPreviousBlock = oldTip
+        while (!activeChain.contains(commonPreviousBlock)) {
+            val removedBlock = commonPreviousBlock.readBlock(blockStore)
+            if (removedBlock != null) {
+                removed.add(removedBlock.header)
+            }
+            commonPreviousBlock = commonPreviousBlock.prev
+                ?: error("Trying to find a common previous block beyond Genesis!")
+        }
+        removed.reverse()
+
+        val added = ArrayList<VeriBlockBlock>(newTip.height - commonPreviousBlock.height)
+        for (height in commonPreviousBlock.height + 1 until newTip.height) {
+            val addedBlock = activeChain[height]?.readBlock(blockStore)
+            if (addedBlock != null) {
+                added.add(addedBlock.header)
+            }
+        }
+        added.add(newTipHeader)
+
+        val update = ChainUpdate(removed, added, isCatchingUp(newTipHeader))
+        pendingUpdate = pendingUpdate?.merge(update) ?: update
+    }
+
+    private fun publishChainUpdate() {
+        val update = pendingUpdate
+            ?: return
+        pendingUpdate = null
+
+        for (removedBlock in update.removed.asReversed()) {
+            SpvEventBus.removedBestBlockEvent.trigger(removedBlock)
+            SpvEventBus.removedBestBlockFlow.tryEmit(removedBlock)
+        }
+        for (addedBlock in update.added) {
+            SpvEventBus.newBestBlockEvent.trigger(addedBlock)
+            SpvEventBus.newBestBlockFlow.tryEmit(addedBlock)
+        }
+        SpvEventBus.chainUpdateEvent.trigger(update)
+    }
+
+    private fun isCatchingUp(tip: VeriBlockBlock): Boolean =
+        Utility.getCurrentTimeSeconds() - tip.timestamp > CATCHING_UP_TIP_AGE_SECONDS
+
     private fun appendToBlockIndex(position: Long, block: StoredVeriBlockBlock): BlockIndex {
         val smallHash = block.hash.trimToPreviousBlockSize()
         val prev = blockIndex[block.header.previousBlock]
@@ -403,26 +464,35 @@ class Blockchain(
 
     private suspend fun processNetworkBlocks() {
         while (true) {
+            val batch = ArrayList<NetworkBlock>()
             try {
-                val currentTipHeight = getChainHeadIndex().height
-                val netBlock = try {
-                    networkBlockQueue.receive()
-                } catch (e: CancellationException) {
-                    break
-                } catch (e: NoSuchElementException) {
-                    break
-                }
+                batch.add(networkBlockQueue.receive())
+            } catch (e: CancellationException) {
+                break
+            } catch (e: NoSuchElementException) {
+                break
+            }
+            // Take whatever else is already queued so that listeners are notified once for the whole batch
+            while (batch.size < MAX_NETWORK_BLOCK_BATCH) {
+                batch.add(networkBlockQueue.tryReceive().getOrNull() ?: break)
+            }
 
-                val block = netBlock.block
-                val accepted = acceptBlock(block)
-                if (!accepted && block.height > currentTipHeight) {
-                    // It won't connect, re-add to queue and continue
-                    networkBlockQueue.trySend(netBlock)
-                    continue
+            batchUpdates {
+                for (netBlock in batch) {
+                    try {
+                        val currentTipHeight = getChainHeadIndex().height
+                        val block = netBlock.block
+                        val accepted = connectBlock(block)
+                        if (!accepted && block.height > currentTipHeight) {
+                            // It won't connect, re-add to queue and continue
+                            networkBlockQueue.trySend(netBlock)
+                            continue
+                        }
+                        // TODO If not accepted, trigger misbehavior to source?
+                    } catch (e: Exception) {
+                        logger.debugWarn(e) { "Error processing blocks!" }
+                    }
                 }
-                // TODO If not accepted, trigger misbehavior to source?
-            } catch (e: Exception) {
-                logger.debugWarn(e) { "Error processing blocks!" }
             }
         }
     }
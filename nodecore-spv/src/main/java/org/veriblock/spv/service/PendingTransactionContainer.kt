@@ -10,9 +10,9 @@ import kotlinx.coroutines.launch
 import org.veriblock.core.crypto.VbkTxId
 import org.veriblock.core.utilities.createLogger
 import org.veriblock.sdk.models.Address
-import org.veriblock.sdk.models.VeriBlockBlock
 import org.veriblock.spv.SpvContext
 import org.veriblock.spv.model.Transaction
+import org.veriblock.spv.util.ChainUpdate
 import org.veriblock.spv.util.SpvEventBus
 import org.veriblock.spv.util.Threading
 
@@ -35,7 +35,7 @@ class PendingTransactionContainer(
     private var maxConfirmedSigIndex = -1L
 
     init {
-        SpvEventBus.removedBestBlockEvent.register(this, ::handleRemovedBestBlock)
+        SpvEventBus.chainUpdateEvent.register(this, ::handleChainUpdate)
     }
 
     fun getPendingTransactionIds(): Set<VbkTxId> {
@@ -161,9 +161,13 @@ class PendingTransactionContainer(
         return transactions.maxOf { it.getSignatureIndex() }
     }
 
-    private fun handleRemovedBestBlock(removedBlock: VeriBlockBlock) = lock.withLock {
+    private fun handleChainUpdate(update: ChainUpdate) = lock.withLock {
+        if (update.removed.isEmpty()) {
+            return
+        }
+        val removedHeights = update.removed.mapTo(HashSet()) { it.height }
         val reorganizedTransactions = confirmedTransactionReplies.values.filter {
-            it.blockNumber == removedBlock.height
+            it.blockNumber in removedHeights
         }.mapNotNull {
             confirmedTransactions[it.transaction.txId]
         }
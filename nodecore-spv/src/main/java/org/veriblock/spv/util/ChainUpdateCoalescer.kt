@@ -0,0 +1,53 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.spv.util
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.veriblock.core.utilities.AsyncEventHandler
+
+/**
+ * Delivers the [ChainUpdate]s offered to it to [handler] at most once every [minIntervalMillis] while the
+ * blockchain is catching up, merging the ones received in between. Updates of a synchronized blockchain
+ * are delivered right away.
+ */
+class ChainUpdateCoalescer(
+    private val minIntervalMillis: Long,
+    private val handler: AsyncEventHandler<ChainUpdate>
+) {
+    private val mutex = Mutex()
+    private var pending: ChainUpdate? = null
+    private var deliveryScheduled = false
+    private var lastDelivery = 0L
+
+    suspend fun offer(update: ChainUpdate) {
+        val wait = mutex.withLock {
+            pending = pending?.merge(update) ?: update
+            if (deliveryScheduled) {
+                // The update will go along with the scheduled delivery
+                return
+            }
+            deliveryScheduled = true
+            if (update.isCatchingUp) {
+                lastDelivery + minIntervalMillis - System.currentTimeMillis()
+            } else {
+                0L
+            }
+        }
+        if (wait > 0) {
+            delay(wait)
+        }
+        val toDeliver = mutex.withLock {
+            deliveryScheduled = false
+            lastDelivery = System.currentTimeMillis()
+            pending.also { pending = null }
+        } ?: return
+        handler(toDeliver)
+    }
+}
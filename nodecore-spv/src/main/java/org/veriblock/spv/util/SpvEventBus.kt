@@ -3,6 +3,7 @@ package org.veriblock.spv.util
 import kotlinx.coroutines.channels.BufferOverflow
 import kotlinx.coroutines.flow.MutableSharedFlow
 import org.veriblock.core.utilities.AsyncEvent
+import org.veriblock.core.utilities.AsyncEventHandler
 import org.veriblock.sdk.models.Address
 import org.veriblock.sdk.models.VeriBlockBlock
 import org.veriblock.sdk.models.asCoin
@@ -30,6 +31,51 @@ object SpvEventBus {
         extraBufferCapacity = 1,
         onBufferOverflow = BufferOverflow.DROP_OLDEST
     )
+
+    /**
+     * Published once per batch of accepted blocks with every change of the active chain.
+     * Prefer it over the per-block events for listeners doing heavy work.
+     */
+    val chainUpdateEvent = AsyncEvent<ChainUpdate>("Chain Update", Threading.LISTENER_THREAD)
+
+    /**
+     * Registers [handler] to [chainUpdateEvent]. While the blockchain is catching up the updates are merged and
+     * delivered at most once every [minIntervalMillis].
+     */
+    fun registerChainUpdateListener(listener: Any, minIntervalMillis: Long = 0, handler: AsyncEventHandler<ChainUpdate>) {
+        if (minIntervalMillis <= 0) {
+            chainUpdateEvent.register(listener, handler)
+        } else {
+            chainUpdateEvent.register(listener, ChainUpdateCoalescer(minIntervalMillis, handler)::offer)
+        }
+    }
+}
+
+/**
+ * The blocks disconnected from ([removed]) and connected to ([added]) the active chain, both in ascending
+ * height order. The update is applied by first removing and then adding, so after merging consecutive
+ * updates a block may appear in both lists.
+ */
+data class ChainUpdate(
+    val removed: List<VeriBlockBlock>,
+    val added: List<VeriBlockBlock>,
+    val isCatchingUp: Boolean
+) {
+    val newTip: VeriBlockBlock
+        get() = added.last()
+
+    /**
+     * Combines this update with the [next] one, as if both had happened at once.
+     */
+    fun merge(next: ChainUpdate): ChainUpdate {
+        val revertedHashes = next.removed.mapTo(HashSet()) { it.hash }
+        val addedHashes = added.mapTo(HashSet()) { it.hash }
+        return ChainUpdate(
+            removed = next.removed.filter { it.hash !in addedHashes } + removed,
+            added = added.filter { it.hash !in revertedHashes } + next.added,
+            isCatchingUp = next.isCatchingUp
+        )
+    }
 }
 
 data class AddressStateChangeEvent(
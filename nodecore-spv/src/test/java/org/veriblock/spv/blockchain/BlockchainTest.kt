@@ -11,7 +11,11 @@ import org.veriblock.sdk.models.VeriBlockBlock
 import org.veriblock.spv.model.StoredVeriBlockBlock
 import org.veriblock.spv.service.BlockStore
 import org.veriblock.spv.service.Blockchain
+import org.veriblock.spv.util.ChainUpdate
+import org.veriblock.spv.util.SpvEventBus
 import java.math.BigInteger
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
 import kotlin.io.path.createTempDirectory
 import kotlin.io.path.deleteIfExists
 
@@ -25,6 +29,7 @@ class BlockchainTest {
 
     @After
     fun after() {
+        SpvEventBus.chainUpdateEvent.unregister(this)
         tmpdir.toFile().deleteRecursively()
     }
 
@@ -92,6 +97,33 @@ class BlockchainTest {
         blockchain.activeChain.tip.readBlock(blockStore)!!.header shouldBe tipB.header
     }
 
+    @Test
+    fun `reorg publishes a single chain update per batch`() {
+        val chainA = generateBlock(blockchain.getChainHeadBlock().header)
+            .take(100)
+            .onEach { blockchain.acceptBlock(it) shouldBe true }
+            .toList()
+
+        val updates = LinkedBlockingQueue<ChainUpdate>()
+        SpvEventBus.chainUpdateEvent.register(this) {
+            updates.put(it)
+        }
+
+        // fork at height 50, chain B becomes the active chain once it has more work
+        val chainB = generateBlock(blockchain.activeChain[50]!!.readBlock(blockStore)!!.header)
+            .take(60)
+            .toList()
+        blockchain.batchUpdates {
+            chainB.forEach { blockchain.acceptBlock(it) shouldBe true }
+        }
+
+        val update = updates.poll(10, TimeUnit.SECONDS)!!
+        update.removed shouldBe chainA.drop(50)
+        update.added shouldBe chainB
+        update.newTip shouldBe chainB.last()
+        updates.poll(1, TimeUnit.SECONDS) shouldBe null
+    }
+
     @Test
     fun `during blockchain loading, invalid block found`() {
         val chainGen = generateBlock(regtest.genesisBlock)
@@ -0,0 +1,111 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.spv.serialization
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.ints.shouldBeLessThan
+import io.kotest.matchers.shouldBe
+import nodecore.api.grpc.RpcAdvertiseBlocks
+import nodecore.api.grpc.RpcBlockHeader
+import org.junit.Test
+import org.veriblock.core.Context
+import org.veriblock.core.crypto.PreviousBlockVbkHash
+import org.veriblock.core.miner.vbkBlockGenerator
+import org.veriblock.core.params.getDefaultNetworkParameters
+import org.veriblock.sdk.extensions.toByteString
+import org.veriblock.sdk.models.VeriBlockBlock
+
+class MessageSerializerTest {
+    private val regtest = getDefaultNetworkParameters("regtest")
+
+    init {
+        Context.create(regtest)
+    }
+
+    private val blocks: List<VeriBlockBlock> = run {
+        val generated = HashMap<PreviousBlockVbkHash, VeriBlockBlock>()
+        generated[regtest.genesisBlock.hash.trimToPreviousBlockSize()] = regtest.genesisBlock
+        vbkBlockGenerator(regtest.genesisBlock, regtest) {
+            generated[it.previousBlock]
+        }.take(75).onEach {
+            generated[it.hash.trimToPreviousBlockSize()] = it
+        }.toList()
+    }
+
+    @Test
+    fun `compact headers round trip`() {
+        val compact = MessageSerializer.serializeCompact(blocks)
+
+        val deserialized = MessageSerializer.deserialize(compact)
+
+        deserialized.size shouldBe blocks.size
+        deserialized.zip(blocks).forEach { (actual, expected) ->
+            actual shouldBe expected
+            actual.hash shouldBe expected.hash
+        }
+    }
+
+    @Test
+    fun `compact headers round trip without hashes`() {
+        val compact = MessageSerializer.serializeCompact(blocks, includeHashes = false)
+
+        val deserialized = MessageSerializer.deserialize(compact)
+
+        deserialized.zip(blocks).forEach { (actual, expected) ->
+            actual shouldBe expected
+        }
+    }
+
+    @Test
+    fun `compact headers round trip with gaps`() {
+        val sparseBlocks = blocks.filterIndexed { index, _ -> index % 7 != 3 }
+        val compact = MessageSerializer.serializeCompact(sparseBlocks)
+
+        val deserialized = MessageSerializer.deserialize(compact, trustHashes = true)
+
+        deserialized.zip(sparseBlocks).forEach { (actual, expected) ->
+            actual shouldBe expected
+            actual.hash shouldBe expected.hash
+        }
+    }
+
+    @Test
+    fun `malformed compact headers are reported as an illegal state`() {
+        val compact = MessageSerializer.serializeCompact(blocks)
+        val wrongMerkleRoot = compact.toBuilder().setHeaders(
+            0, compact.getHeaders(0).toBuilder().setMerkleRoot(ByteArray(3).toByteString())
+        ).build()
+        val truncatedFirst = compact.toBuilder().setFirst(
+            compact.first.toBuilder().setHeader(compact.first.header.substring(0, 20))
+        ).build()
+
+        shouldThrow<IllegalStateException> {
+            MessageSerializer.deserialize(wrongMerkleRoot)
+        }
+        shouldThrow<IllegalStateException> {
+            MessageSerializer.deserialize(truncatedFirst)
+        }
+    }
+
+    @Test
+    fun `compact headers are smaller than regular advertisements`() {
+        val regular = RpcAdvertiseBlocks.newBuilder().apply {
+            for (block in blocks) {
+                addHeaders(
+                    RpcBlockHeader.newBuilder()
+                        .setHeader(block.raw.toByteString())
+                        .setHash(block.hash.bytes.toByteString())
+                )
+            }
+        }.build()
+
+        val compact = MessageSerializer.serializeCompact(blocks)
+
+        compact.serializedSize shouldBeLessThan regular.serializedSize * 2 / 3
+    }
+}
@@ -10,8 +10,11 @@ package nodecore.api.ucp.commands;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.commands.client.*;
 import nodecore.api.ucp.commands.server.*;
+import nodecore.api.ucp.utilities.JsonOutputUtility;
 import org.veriblock.core.types.Pair;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -222,5 +225,50 @@ public abstract class UCPCommand {
         return compileCommand().hashCode();
     }
 
-    public abstract String compileCommand();
+    // Commands are immutable, so their serialized forms are only computed once
+    private transient volatile String compiledCommand;
+    private transient volatile ByteBuffer compiledLine;
+
+    /**
+     * Serializes this command, reusing the result of any previous call.
+     * @return The serialized command
+     */
+    public String compileCommand() {
+        String compiled = compiledCommand;
+        if (compiled == null) {
+            StringBuilder builder = new StringBuilder(256);
+            try {
+                compileCommand(builder);
+            } catch (IOException e) {
+                // StringBuilder never throws
+                throw new IllegalStateException(e);
+            }
+            compiled = builder.toString();
+            compiledCommand = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Serializes this command directly into the provided destination, such as a reused StringBuilder or Writer.
+     * @param destination Appendable to write the serialized command into
+     * @throws IOException If the destination could not be written to
+     */
+    public void compileCommand(Appendable destination) throws IOException {
+        UCPCommandEncoder.forCommand(getClass()).encode(this, destination);
+    }
+
+    /**
+     * Gets this command as a newline-terminated UTF-8 line, encoded only once, so that broadcasting the same command
+     * (such as a MiningJob or a MiningMempoolUpdate) to many clients doesn't serialize it again for each of them.
+     * @return A read-only buffer holding the line, positioned at its start
+     */
+    public ByteBuffer compileCommandLine() {
+        ByteBuffer line = compiledLine;
+        if (line == null) {
+            line = JsonOutputUtility.toLine(compileCommand());
+            compiledLine = line;
+        }
+        return line.duplicate();
+    }
 }
@@ -0,0 +1,155 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package nodecore.api.ucp.commands;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import nodecore.api.ucp.arguments.UCPArgument;
+import org.veriblock.core.types.Pair;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes UCP command lines in a single streaming pass, binding the "data" of each argument straight into the
+ * UCPArgument implementation dictated by the command's pattern, without building an intermediate JSON tree.
+ *
+ * The commands a decoder understands are looked up by their case-folded name in a table built once per decoder.
+ */
+final class UCPCommandDecoder<T extends UCPCommand> {
+    static final UCPCommandDecoder<UCPServerCommand> SERVER = new UCPCommandDecoder<>(UCPServerCommand.class);
+    static final UCPCommandDecoder<UCPClientCommand> CLIENT = new UCPCommandDecoder<>(UCPClientCommand.class);
+
+    private static final String COMMAND_KEY = "command";
+    private static final String DATA_KEY = "data";
+
+    private final Map<String, Binding<T>> bindings = new HashMap<>();
+
+    private UCPCommandDecoder(Class<T> commandClass) {
+        for (UCPCommand.Command command : UCPCommand.Command.values()) {
+            if (commandClass.isAssignableFrom(command.getCommandImplementingClass())) {
+                bindings.put(command.name().toUpperCase(), new Binding<>(command, commandClass));
+            }
+        }
+    }
+
+    /**
+     * Decodes the given command line.
+     *
+     * @param commandLine The command line, as received over the wire
+     * @return The decoded command, or null if the command line names a command this decoder doesn't know about
+     * @throws IOException If the command line is not well-formed JSON
+     * @throws IllegalArgumentException If the command line has no command name or its arguments don't match the command's pattern
+     */
+    T decode(String commandLine) throws IOException, ReflectiveOperationException {
+        JsonReader reader = new JsonReader(new StringReader(commandLine));
+        reader.setLenient(true);
+
+        Binding<T> binding = null;
+        String[] data = null;
+        // Only used when arguments precede the command name
+        Map<String, String> deferred = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (COMMAND_KEY.equals(key) && binding == null) {
+                binding = bindings.get(reader.nextString().toUpperCase());
+                if (binding == null) {
+                    return null;
+                }
+                data = new String[binding.argumentConstructors.length];
+                if (deferred != null) {
+                    for (Map.Entry<String, String> entry : deferred.entrySet()) {
+                        Integer index = binding.argumentIndexes.get(entry.getKey());
+                        if (index != null) {
+                            data[index] = entry.getValue();
+                        }
+                    }
+                }
+            } else if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+            } else if (binding != null) {
+                Integer index = binding.argumentIndexes.get(key);
+                if (index != null) {
+                    data[index] = readArgumentData(reader);
+                } else {
+                    reader.skipValue();
+                }
+            } else {
+                if (deferred == null) {
+                    deferred = new HashMap<>();
+                }
+                deferred.put(key, readArgumentData(reader));
+            }
+        }
+        reader.endObject();
+
+        if (binding == null) {
+            throw new IllegalArgumentException("The command line does not contain a command name!");
+        }
+
+        return binding.bind(data);
+    }
+
+    private static String readArgumentData(JsonReader reader) throws IOException {
+        String data = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (DATA_KEY.equals(reader.nextName())) {
+                data = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return data;
+    }
+
+    private static final class Binding<T extends UCPCommand> {
+        private final UCPCommand.Command command;
+        private final Constructor<? extends T> commandConstructor;
+        private final Constructor<? extends UCPArgument>[] argumentConstructors;
+        private final Map<String, Integer> argumentIndexes = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        Binding(UCPCommand.Command command, Class<T> commandClass) {
+            this.command = command;
+            try {
+                this.commandConstructor = command.getCommandImplementingClass()
+                    .asSubclass(commandClass)
+                    .getConstructor(UCPArgument[].class);
+
+                ArrayList<Pair<String, UCPArgument.UCPType>> pattern = command.getPattern();
+                this.argumentConstructors = new Constructor[pattern.size()];
+                for (int i = 0; i < pattern.size(); i++) {
+                    argumentIndexes.put(pattern.get(i).getFirst(), i);
+                    // Every UCPArgument has a constructor parsing its serialized form, which performs the type's validation
+                    argumentConstructors[i] = pattern.get(i).getSecond().getImplementingClass().getConstructor(String.class);
+                }
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Unable to bind the UCP command " + command + "!", e);
+            }
+        }
+
+        T bind(String[] data) throws ReflectiveOperationException {
+            UCPArgument[] arguments = new UCPArgument[data.length];
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] == null) {
+                    throw new IllegalArgumentException("The " + command + " command line is missing the data of the argument at index " + i + "!");
+                }
+                arguments[i] = argumentConstructors[i].newInstance(data[i]);
+            }
+            return commandConstructor.newInstance((Object) arguments);
+        }
+    }
+}
@@ -7,7 +7,6 @@
 
 package nodecore.api.ucp.commands.client;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.*;
 import nodecore.api.ucp.commands.UCPClientCommand;
@@ -91,6 +90,4 @@ public class AddressBalanceAndIndex extends UCPClientCommand {
     public LedgerMerklePath getTransactionInsertionList() {
         return ledger_merkle_path.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
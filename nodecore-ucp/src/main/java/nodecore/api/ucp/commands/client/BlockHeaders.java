@@ -7,7 +7,6 @@
 
 package nodecore.api.ucp.commands.client;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentBlockHeaderList;
@@ -68,6 +67,4 @@ public class BlockHeaders extends UCPClientCommand {
     public BlockHeaderList getBlockHeaders() {
         return block_headers.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -7,7 +7,6 @@
 
 package nodecore.api.ucp.commands.client;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentBitflag;
@@ -72,6 +71,4 @@ public class Capabilities extends UCPClientCommand {
     }
 
     public Bitflag getBitflag() { return capabilities.getData(); }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -7,7 +7,6 @@
 
 package nodecore.api.ucp.commands.client;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentRequestID;
@@ -59,6 +58,4 @@ public class ErrorRangeNotAvailable extends UCPClientCommand {
     public int getRequestId() {
         return request_id.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -7,7 +7,6 @@
 
 package nodecore.api.ucp.commands.client;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.*;
 import nodecore.api.ucp.commands.UCPClientCommand;
@@ -203,7 +202,4 @@ public class MiningJob extends UCPClientCommand {
     public long getExtraNonceEnd() {
         return extra_nonce_end.getData();
     }
-
-    public String compileCommand() {
-        return new Gson().toJson(this); }
 }
@@ -7,7 +7,6 @@
 
 package nodecore.api.ucp.commands.client;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.*;
 import nodecore.api.ucp.commands.UCPClientCommand;
@@ -101,6 +100,4 @@ public class MiningMempoolUpdate extends UCPClientCommand {
     public String getIntermediateMetapackageHash() {
         return intermediate_metapackage_hash.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -7,7 +7,6 @@
 
 package nodecore.api.ucp.commands.client;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentMessage;
@@ -67,6 +66,4 @@ public class MiningSubscribeFailure extends UCPClientCommand {
     public String getReason() {
         return reason.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -6,7 +6,6 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package nodecore.api.ucp.commands.server;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentAddress;
@@ -67,6 +66,4 @@ public class GetAddressBalanceAndIndex extends UCPServerCommand {
     public String getAddress() {
         return address.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -6,7 +6,6 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package nodecore.api.ucp.commands.server;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentBlockIndex;
@@ -74,6 +73,4 @@ public class GetBlockHeaders extends UCPServerCommand {
     public int getStopBlock() {
         return stop_block.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
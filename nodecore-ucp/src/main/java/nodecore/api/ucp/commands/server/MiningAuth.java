@@ -6,7 +6,6 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package nodecore.api.ucp.commands.server;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentPassword;
@@ -75,6 +74,4 @@ public class MiningAuth extends UCPServerCommand {
     public String getPassword() {
         return password.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -6,7 +6,6 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package nodecore.api.ucp.commands.server;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.*;
 import nodecore.api.ucp.commands.UCPCommand;
@@ -86,6 +85,4 @@ public class MiningSubmit extends UCPServerCommand {
     public long getExtraNonce() {
         return extra_nonce.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -6,7 +6,6 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package nodecore.api.ucp.commands.server;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentFrequencyMS;
@@ -65,6 +64,4 @@ public class MiningSubscribe extends UCPServerCommand {
     }
 
     public int getUpdateFrequencyMS() { return update_frequency_ms.getData(); }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -6,7 +6,6 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package nodecore.api.ucp.commands.server;
 
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import nodecore.api.ucp.arguments.UCPArgument;
 import nodecore.api.ucp.arguments.UCPArgumentRequestID;
@@ -67,6 +66,4 @@ public class SendTransaction extends UCPServerCommand {
     public String getRawTransactionData() {
         return raw_transaction_data.getData();
     }
-
-    public String compileCommand() { return new Gson().toJson(this); }
 }
@@ -0,0 +1,86 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package nodecore.api.ucp.utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class JsonOutputUtility {
+    private JsonOutputUtility(){}
+
+    /**
+     * Gets a Writer appending to the provided destination, so that a JsonWriter can output directly into it.
+     * @param destination Appendable to write to
+     * @return The destination itself if it already is a Writer, or a Writer appending to it
+     */
+    public static Writer asWriter(Appendable destination) {
+        if (destination == null) {
+            throw new IllegalArgumentException("asWriter cannot be called with a null destination!");
+        }
+
+        if (destination instanceof Writer) {
+            return (Writer) destination;
+        }
+
+        return new AppendableWriter(destination);
+    }
+
+    /**
+     * Encodes a compiled command as a newline-terminated UTF-8 line, ready to be written to any number of sockets.
+     * @param compiledCommand The compiled command
+     * @return A read-only buffer holding the encoded line
+     */
+    public static ByteBuffer toLine(String compiledCommand) {
+        byte[] command = compiledCommand.getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[command.length + 1];
+        System.arraycopy(command, 0, line, 0, command.length);
+        line[command.length] = '\n';
+        return ByteBuffer.wrap(line).asReadOnlyBuffer();
+    }
+
+    private static final class AppendableWriter extends Writer {
+        private final Appendable destination;
+
+        AppendableWriter(Appendable destination) {
+            this.destination = destination;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            destination.append((char) c);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            destination.append(str, off, off + len);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                destination.append(cbuf[i]);
+            }
+        }
+
+        @Override
+        public Writer append(CharSequence csq) throws IOException {
+            destination.append(csq);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,212 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.api.ucp.commands
+
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import nodecore.api.ucp.commands.client.MiningJob
+import nodecore.api.ucp.commands.client.MiningReset
+import nodecore.api.ucp.commands.client.MiningSubmitSuccess
+import nodecore.api.ucp.commands.server.GetAddressBalanceAndIndex
+import nodecore.api.ucp.commands.server.GetBlockHeaders
+import nodecore.api.ucp.commands.server.GetStatus
+import nodecore.api.ucp.commands.server.GetTransactionsMatchingFilter
+import nodecore.api.ucp.commands.server.MiningAuth
+import nodecore.api.ucp.commands.server.MiningMempoolUpdateACK
+import nodecore.api.ucp.commands.server.MiningResetACK
+import nodecore.api.ucp.commands.server.MiningSubmit
+import nodecore.api.ucp.commands.server.MiningSubscribe
+import nodecore.api.ucp.commands.server.MiningUnsubscribe
+import nodecore.api.ucp.commands.server.SendTransaction
+import org.junit.Assert
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.util.Random
+
+private const val ITERATIONS = 20_000
+private const val CORPUS_SIZE = 200
+
+private const val ADDRESS = "VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW"
+private val USERNAMES = listOf("miner", "rig 0", ADDRESS)
+private val PASSWORDS = listOf("x", "secret phrase", "pa55w0rd!")
+
+private const val SUBMIT_LINE = "{\"command\":\"MINING_SUBMIT\",\"request_id\":{\"type\":\"REQUEST_ID\",\"data\":4821}," +
+    "\"job_id\":{\"type\":\"JOB_ID\",\"data\":37},\"nTime\":{\"type\":\"TIMESTAMP\",\"data\":1612273024}," +
+    "\"nonce\":{\"type\":\"NONCE\",\"data\":-1839584210},\"extra_nonce\":{\"type\":\"EXTRA_NONCE\",\"data\":8589934593}}"
+
+class UCPCommandDecoderTests {
+    private val jobLine = MiningJob(
+        12, 37, 1450230, 2,
+        "0000000000008A5B0F3C8B54F9E3A41C1E39B1ACB1C9C7D0",
+        "000000000000D9A3A4B29A0C3D7A3C9B3C67AB8C3D9F1E2A",
+        "00000000000023B0C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6",
+        "VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW",
+        "A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2E3F4",
+        1612273024, 9999, "000000000000FFFF00000000000000000000000000000000",
+        "B1C2D3E4F5A6B7C8D9E0F1A2B3C4D5E6F7A8B9C0D1E2F3A4",
+        "C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2",
+        "D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2B3C4D5E6F7A8B9C0D1E2",
+        "veriblock",
+        "E1F2A3B4C5D6E7F8A9B0C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6A7B8C9D0E1F2",
+        "F1A2B3C4D5E6F7A8B9C0D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2",
+        "A2B3C4D5E6F7A8B9C0D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2B3",
+        0L, 4294967296L
+    ).compileCommand()
+
+    @Test
+    fun parseServerCommand_decodesMiningSubmit() {
+        val command = UCPIncomingCommandParser.parseServerCommand(SUBMIT_LINE) as MiningSubmit
+
+        Assert.assertEquals(4821, command.requestId)
+        Assert.assertEquals(37, command.jobId)
+        Assert.assertEquals(1612273024, command.nTime)
+        Assert.assertEquals(-1839584210, command.nonce)
+        Assert.assertEquals(8589934593L, command.extraNonce)
+        Assert.assertEquals(MiningSubmit.reconstitute(SUBMIT_LINE), command)
+    }
+
+    @Test
+    fun parseServerCommand_whenCommandNameFollowsArguments() {
+        val reordered = "{\"nonce\":{\"data\":5},\"extra_nonce\":{\"data\":6},\"request_id\":{\"data\":1}," +
+            "\"job_id\":{\"data\":2},\"nTime\":{\"data\":3},\"command\":\"mining_submit\"}"
+
+        val command = UCPIncomingCommandParser.parseServerCommand(reordered) as MiningSubmit
+
+        Assert.assertEquals(MiningSubmit(1, 2, 3, 5, 6L), command)
+    }
+
+    @Test(expected = InvalidUCPCommandException::class)
+    fun parseServerCommand_whenArgumentFailsValidation() {
+        UCPIncomingCommandParser.parseServerCommand(SUBMIT_LINE.replace("\"data\":37", "\"data\":-37"))
+    }
+
+    @Test
+    fun parseClientCommand_decodesMiningJob() {
+        val command = UCPIncomingCommandParser.parseClientCommand(jobLine)
+
+        Assert.assertEquals(MiningJob.reconstitute(jobLine), command)
+        Assert.assertEquals(jobLine, command.compileCommand())
+    }
+
+    @Test
+    fun decodingThroughput() {
+        val treeBytes = measureAllocatedBytes {
+            MiningSubmit.reconstitute(SUBMIT_LINE)
+            MiningJob.reconstitute(jobLine)
+        }
+        val streamingBytes = measureAllocatedBytes {
+            UCPIncomingCommandParser.parseServerCommand(SUBMIT_LINE)
+            UCPIncomingCommandParser.parseClientCommand(jobLine)
+        }
+        // The streaming pass doesn't build a JSON tree for every line
+        Assert.assertTrue(
+            "Decoding $ITERATIONS submit and job lines allocated $streamingBytes bytes streaming, $treeBytes bytes tree-based",
+            streamingBytes < treeBytes
+        )
+    }
+
+    @Test
+    fun streamingAndTreeParsersAgreeOnServerCommands() {
+        val random = Random(1)
+        repeat(CORPUS_SIZE) {
+            val requestId = random.nextInt(Int.MAX_VALUE)
+            val commands = listOf(
+                MiningSubmit(requestId, random.nextInt(Int.MAX_VALUE), random.nextInt(), random.nextInt(), random.nextLong()),
+                MiningAuth(requestId, USERNAMES[random.nextInt(USERNAMES.size)], PASSWORDS[random.nextInt(PASSWORDS.size)]),
+                MiningSubscribe(requestId, random.nextInt(Int.MAX_VALUE)),
+                MiningUnsubscribe(requestId),
+                MiningResetACK(requestId),
+                MiningMempoolUpdateACK(requestId),
+                GetStatus(requestId),
+                GetBlockHeaders(requestId, random.nextInt(1_000_000), random.nextInt(1_000_000)),
+                GetAddressBalanceAndIndex(requestId, random.nextInt(1_000_000), ADDRESS),
+                GetTransactionsMatchingFilter(requestId, randomHex(random, 32), random.nextInt(1_000_000), random.nextInt(1_000_000)),
+                SendTransaction(requestId, randomHex(random, 64))
+            )
+            for (command in commands) {
+                val line = command.compileCommand()
+                for (variant in listOf(line, reverseMembers(line))) {
+                    val streaming = UCPIncomingCommandParser.parseServerCommand(variant)
+                    val tree = reconstituteServerCommand(command, variant)
+                    Assert.assertEquals(variant, tree.compileCommand(), streaming.compileCommand())
+                }
+            }
+        }
+    }
+
+    @Test
+    fun streamingAndTreeParsersAgreeOnClientCommands() {
+        val random = Random(2)
+        repeat(CORPUS_SIZE) {
+            val requestId = random.nextInt(Int.MAX_VALUE)
+            val commands = listOf(
+                MiningJob(
+                    requestId, random.nextInt(Int.MAX_VALUE), random.nextInt(1_000_000), 2,
+                    randomHex(random, 24), randomHex(random, 24), randomHex(random, 24), ADDRESS, randomHex(random, 24),
+                    random.nextInt(Int.MAX_VALUE), random.nextInt(Int.MAX_VALUE), randomHex(random, 24), randomHex(random, 24),
+                    randomHex(random, 32), randomHex(random, 32), "veriblock", randomHex(random, 32), randomHex(random, 32),
+                    randomHex(random, 32), random.nextLong().coerceAtLeast(0), random.nextLong().coerceAtLeast(0)
+                ),
+                MiningSubmitSuccess(requestId),
+                MiningReset(requestId)
+            )
+            for (command in commands) {
+                val line = command.compileCommand()
+                for (variant in listOf(line, reverseMembers(line))) {
+                    val streaming = UCPIncomingCommandParser.parseClientCommand(variant)
+                    val tree = when (command) {
+                        is MiningJob -> MiningJob.reconstitute(variant)
+                        is MiningSubmitSuccess -> MiningSubmitSuccess.reconstitute(variant)
+                        else -> MiningReset.reconstitute(variant)
+                    }
+                    Assert.assertEquals(variant, tree.compileCommand(), streaming.compileCommand())
+                }
+            }
+        }
+    }
+
+    private fun reconstituteServerCommand(command: UCPServerCommand, line: String): UCPServerCommand = when (command) {
+        is MiningSubmit -> MiningSubmit.reconstitute(line)
+        is MiningAuth -> MiningAuth.reconstitute(line)
+        is MiningSubscribe -> MiningSubscribe.reconstitute(line)
+        is MiningUnsubscribe -> MiningUnsubscribe.reconstitute(line)
+        is MiningResetACK -> MiningResetACK.reconstitute(line)
+        is MiningMempoolUpdateACK -> MiningMempoolUpdateACK.reconstitute(line)
+        is GetStatus -> GetStatus.reconstitute(line)
+        is GetBlockHeaders -> GetBlockHeaders.reconstitute(line)
+        is GetAddressBalanceAndIndex -> GetAddressBalanceAndIndex.reconstitute(line)
+        is GetTransactionsMatchingFilter -> GetTransactionsMatchingFilter.reconstitute(line)
+        is SendTransaction -> SendTransaction.reconstitute(line)
+        else -> error("Unexpected command $command")
+    }
+
+    // The same command with its members in the opposite order, which the streaming parser must also accept
+    private fun reverseMembers(line: String): String {
+        val original = JsonParser().parse(line).asJsonObject
+        val reversed = JsonObject()
+        for ((key, value) in original.entrySet().reversed()) {
+            reversed.add(key, value)
+        }
+        return reversed.toString()
+    }
+
+    private fun randomHex(random: Random, bytes: Int): String {
+        val data = ByteArray(bytes)
+        random.nextBytes(data)
+        return data.joinToString("") { String.format("%02X", it) }
+    }
+
+    private inline fun measureAllocatedBytes(block: () -> Unit): Long {
+        val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+        // Warm up before measuring
+        repeat(ITERATIONS / 10) { block() }
+        val before = threadBean.getThreadAllocatedBytes(threadId)
+        repeat(ITERATIONS) { block() }
+        return threadBean.getThreadAllocatedBytes(threadId) - before
+    }
+}
@@ -0,0 +1,63 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package nodecore.api.ucp.commands
+
+import com.google.gson.Gson
+import nodecore.api.ucp.commands.client.MiningAuthFailure
+import nodecore.api.ucp.commands.client.MiningMempoolUpdate
+import nodecore.api.ucp.commands.server.MiningSubmit
+import org.junit.Assert
+import org.junit.Test
+import java.nio.charset.StandardCharsets
+
+class UCPCommandEncoderTests {
+    private val mempoolUpdate = MiningMempoolUpdate(
+        3, 37,
+        "E1F2A3B4C5D6E7F8A9B0C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6A7B8C9D0E1F2",
+        "F1A2B3C4D5E6F7A8B9C0D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2",
+        "C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2",
+        "A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2E3F4",
+        "A2B3C4D5E6F7A8B9C0D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2B3"
+    )
+
+    @Test
+    fun compileCommand_matchesReflectiveSerialization() {
+        val commands = listOf(
+            mempoolUpdate,
+            MiningSubmit(4821, 37, 1612273024, -1839584210, 8589934593L),
+            // Exercises the HTML-safe escaping of strings
+            MiningAuthFailure(7, "Invalid credentials for <user> & password='x'")
+        )
+
+        for (command in commands) {
+            Assert.assertEquals(Gson().toJson(command), command.compileCommand())
+        }
+    }
+
+    @Test
+    fun compileCommand_writesIntoReusedDestination() {
+        val destination = StringBuilder()
+        repeat(3) {
+            destination.setLength(0)
+            mempoolUpdate.compileCommand(destination)
+            Assert.assertEquals(mempoolUpdate.compileCommand(), destination.toString())
+        }
+    }
+
+    @Test
+    fun compileCommandLine_isEncodedOnce() {
+        val first = mempoolUpdate.compileCommandLine()
+        val second = mempoolUpdate.compileCommandLine()
+
+        val bytes = ByteArray(first.remaining())
+        first.get(bytes)
+        Assert.assertEquals(mempoolUpdate.compileCommand() + "\n", String(bytes, StandardCharsets.UTF_8))
+        // Each caller gets its own position over the same encoded line
+        Assert.assertEquals(bytes.size, second.remaining())
+        Assert.assertTrue(second.isReadOnly)
+    }
+}
@@ -25,6 +25,8 @@ import org.veriblock.miners.pop.api.ApiServer
 import org.veriblock.miners.pop.api.webApiModule
 import org.veriblock.miners.pop.securityinheriting.SecurityInheritingService
 import org.veriblock.miners.pop.service.AltchainPopMinerService
+import org.veriblock.miners.pop.service.Metrics
+import org.veriblock.sdk.alt.plugin.PluginMetrics
 import org.veriblock.sdk.alt.plugin.PluginService
 import org.veriblock.sdk.util.checkSystemClock
 import org.veriblock.shell.Shell
@@ -111,6 +113,7 @@ private fun run(autoRestart: Boolean): Int {
     var errored = false
     try {
         shell.initialize()
+        PluginMetrics.bindTo(Metrics.registry)
         pluginService.loadPlugins()
         if (pluginService.getPlugins().isEmpty()) {
             error("In order for APM to run, at least one altchain plugin must be configured properly.")
@@ -31,5 +31,7 @@ class MinerConfig(
     val connectDirectlyTo: List<String> = emptyList(),
     val connectOnlyToDirect: Boolean = true,
     val mock: Boolean = false,
-    val progPowGenesis: Boolean = false
+    val progPowGenesis: Boolean = false,
+    // VBK confirmations after which the endorsement transactions of finished operations are no longer monitored
+    val transactionPruneDepth: Int = 2_000
 )
@@ -17,6 +17,7 @@ import org.jetbrains.exposed.sql.transactions.transactionManager
 import org.koin.dsl.module
 import org.veriblock.miners.pop.core.ApmContext
 import org.veriblock.miners.pop.securityinheriting.SecurityInheritingService
+import org.veriblock.miners.pop.service.AltchainPopMinerService
 import org.veriblock.miners.pop.service.ApmTaskService
 import org.veriblock.miners.pop.service.ApmOperationExplainer
 import org.veriblock.miners.pop.service.DiagnosticService
@@ -25,6 +26,7 @@ import org.veriblock.miners.pop.service.OperationService
 import org.veriblock.miners.pop.shell.configure
 import org.veriblock.miners.pop.storage.KeyValueRepository
 import org.veriblock.miners.pop.storage.KeyValueTable
+import org.veriblock.miners.pop.storage.OperationLogTable
 import org.veriblock.miners.pop.storage.ApmOperationRepository
 import org.veriblock.miners.pop.storage.ApmOperationStateTable
 import org.veriblock.sdk.alt.plugin.PluginService
@@ -42,7 +44,7 @@ val minerModule = module {
         }
     }
     single { Shell(get()) }
-    single { ApmTaskService(get()) }
+    single { ApmTaskService(get()) { get<AltchainPopMinerService>().network } }
     single { OperationSerializer(get(), get()) }
     single { OperationService(get(), get()) }
     single { PluginService(get()) }
@@ -56,6 +58,9 @@ val minerModule = module {
         val hikariConfig = HikariConfig().apply {
             driverClassName = "org.sqlite.JDBC"
             jdbcUrl = url
+            // With a write-ahead log readers don't block the writer, and commits only fsync on checkpoints
+            addDataSourceProperty("journal_mode", "WAL")
+            addDataSourceProperty("synchronous", "NORMAL")
         }
         HikariDataSource(hikariConfig)
     }
@@ -66,6 +71,7 @@ val minerModule = module {
             transaction(this) {
                 SchemaUtils.createMissingTablesAndColumns(
                     ApmOperationStateTable,
+                    OperationLogTable,
                     KeyValueTable
                 )
             }
@@ -54,7 +54,8 @@ class MiningController(
         @QueryParam("Operation altchain key (optional)") val altchainKey: String?,
         @QueryParam("Operation status (optional)") val status: String?,
         @QueryParam("Pagination limit (optional)") val limit: Int?,
-        @QueryParam("Pagination offset (optional)") val offset: Int?
+        @QueryParam("Pagination offset (optional)") val offset: Int?,
+        @QueryParam("Id of the last operation of the previous page, as returned in 'next' (optional)") val after: String?
     )
 
     @Path("operations/{id}")
@@ -119,13 +120,14 @@ class MiningController(
             // Get the given offset filter
             val offset = location.offset ?: 0
             // Get the operations
-            val operations = miner.getOperations(location.altchainKey, status, limit, offset)
+            val operations = miner.getOperationSummaries(location.altchainKey, status, limit, offset, location.after)
             val count = miner.getOperationsCount(location.altchainKey, status)
-            // Paginate and map operations
+            // Map operations, pointing at the next page if this one is full
             val result = operations.map {
                 it.toSummaryResponse()
             }.toList()
-            respond(OperationSummaryListResponse(result, count))
+            val next = if (operations.size == limit) operations.lastOrNull()?.id else null
+            respond(OperationSummaryListResponse(result, count, next))
         }
         get<MinerOperationPath, OperationDetailResponse, UserIdPrincipal>(
             info("Get operation details")
@@ -11,6 +11,9 @@ import com.papsign.ktor.openapigen.annotations.Request
 import com.papsign.ktor.openapigen.annotations.Response
 import java.time.format.DateTimeFormatter
 import org.veriblock.miners.pop.core.ApmOperation
+import org.veriblock.miners.pop.core.ApmOperationState
+import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.miners.pop.storage.ApmOperationSummaryRecord
 import org.veriblock.sdk.models.StateInfo
 
 @Response("Basic miner information")
@@ -41,7 +44,9 @@ class SetConfigRequest(
 @Response("List of operations")
 data class OperationSummaryListResponse(
     val operations: List<OperationSummaryResponse>,
-    val totalCount: Int
+    val totalCount: Int,
+    // Id to pass as the next page's cursor, null when this is the last page
+    val next: String? = null
 )
 
 @Response("Basic mining operation information")
@@ -63,6 +68,20 @@ fun ApmOperation.toSummaryResponse() = OperationSummaryResponse(
     createdAt = createdAt.format(DateTimeFormatter.ISO_DATE_TIME)
 )
 
+fun ApmOperationSummaryRecord.toSummaryResponse(): OperationSummaryResponse {
+    // Rows written by older versions don't have the state's name, so it is derived from the status
+    val operationState = ApmOperationState.ALL.find { it.id == status }
+        ?: listOf(MiningOperationState.COMPLETED, MiningOperationState.FAILED).find { it.id == status }
+    return OperationSummaryResponse(
+        operationId = id,
+        chain = chainId,
+        endorsedBlockHeight = endorsedBlockHeight,
+        state = stateName ?: operationState?.toString() ?: "Unknown",
+        task = task ?: operationState?.taskName ?: "",
+        createdAt = createdAt.format(DateTimeFormatter.ISO_DATE_TIME)
+    )
+}
+
 @Response("Detailed mining operation information")
 data class OperationDetailResponse(
     val operationId: String,
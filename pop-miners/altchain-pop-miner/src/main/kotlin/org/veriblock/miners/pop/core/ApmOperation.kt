@@ -32,7 +32,9 @@ class ApmOperation(
     endorsedBlockHeight: Int? = null,
     createdAt: LocalDateTime = LocalDateTime.now(),
     logs: List<OperationLog> = emptyList(),
-    reconstituting: Boolean = false
+    reconstituting: Boolean = false,
+    // Called right away on every state change, the initial one included, before the asynchronous event is handled
+    private val stateChangeListener: ((ApmOperation) -> Unit)? = null
 ) : MiningOperation(
     id ?: chain.key + UUID.randomUUID().toString().substring(0, 8),
     endorsedBlockHeight,
@@ -43,6 +45,10 @@ class ApmOperation(
         private set
     var endorsementTransaction: ApmSpTransaction? = null
         private set
+    // Id of the endorsement transaction once it was pruned from the transaction monitor, which only happens when
+    // the operation is finished
+    var prunedEndorsementTxId: String? = null
+        private set
     var blockOfProof: VeriBlockBlock? = null
         private set
     var merklePath: VeriBlockMerklePath? = null
@@ -67,6 +73,7 @@ class ApmOperation(
 
     override fun onStateChanged() {
         super.onStateChanged()
+        stateChangeListener?.invoke(this)
         EventBus.operationStateChangedEvent.trigger(this)
     }
 
@@ -100,6 +107,14 @@ class ApmOperation(
         setState(ApmOperationState.ENDORSEMENT_TRANSACTION)
     }
 
+    fun setPrunedTransaction(txId: String) {
+        if (state != ApmOperationState.INSTRUCTION) {
+            error("Trying to set transaction without having the mining instruction")
+        }
+        prunedEndorsementTxId = txId
+        setState(ApmOperationState.ENDORSEMENT_TRANSACTION)
+    }
+
     fun setConfirmed() {
         if (state != ApmOperationState.ENDORSEMENT_TRANSACTION) {
             error("Trying to set as transaction confirmed without such transaction")
@@ -166,6 +181,9 @@ class ApmOperation(
             result["vbkEndorsementTxFee"] = it.fee.formatAtomicLongWithDecimal()
             result["vbkEndorsementTxFeePerByte"] = it.feePerByte.toString()
         }
+        prunedEndorsementTxId?.let {
+            result["vbkEndorsementTxId"] = it
+        }
         blockOfProof?.let {
             result["vbkBlockOfProof"] = it.hash.toString()
             result["vbkBlockOfProofHeight"] = it.height.toString()
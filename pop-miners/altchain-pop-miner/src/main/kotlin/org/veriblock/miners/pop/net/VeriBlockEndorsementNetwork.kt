@@ -0,0 +1,42 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.miners.pop.net
+
+import org.veriblock.core.crypto.AnyVbkHash
+import org.veriblock.core.crypto.VbkTxId
+import org.veriblock.miners.pop.transactionmonitor.WalletTransaction
+import org.veriblock.sdk.models.StateInfo
+import org.veriblock.sdk.models.VeriBlockBlock
+import org.veriblock.sdk.models.VeriBlockTransaction
+
+/**
+ * The VeriBlock network as seen by the tasks of the altchain mining operations: the endorsement transactions are
+ * submitted to it and followed until they can be proven.
+ */
+interface VeriBlockEndorsementNetwork {
+    val latestSpvStateInfo: StateInfo
+
+    fun isReady(): Boolean
+
+    fun isAccessible(): Boolean
+
+    fun isSynchronized(): Boolean
+
+    /**
+     * Submits an endorsement transaction carrying [publicationData] and starts monitoring it
+     */
+    suspend fun submitEndorsement(publicationData: ByteArray, feePerByte: Long, maxFee: Long): VeriBlockTransaction
+
+    /**
+     * Gets a monitored transaction, along with its state in the VeriBlock blockchain
+     */
+    fun getTransaction(txId: VbkTxId): WalletTransaction
+
+    fun getBlock(hash: AnyVbkHash): VeriBlockBlock?
+}
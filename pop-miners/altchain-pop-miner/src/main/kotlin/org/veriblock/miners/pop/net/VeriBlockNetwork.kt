@@ -22,9 +22,11 @@ import org.veriblock.core.contracts.Balance
 import org.veriblock.core.crypto.AnyVbkHash
 import org.veriblock.core.crypto.BtcHash
 import org.veriblock.core.crypto.VbkHash
+import org.veriblock.core.crypto.VbkTxId
 import org.veriblock.core.utilities.debugWarn
 import org.veriblock.miners.pop.core.ApmContext
 import org.veriblock.miners.pop.transactionmonitor.TransactionMonitor
+import org.veriblock.miners.pop.transactionmonitor.WalletTransaction
 import org.veriblock.miners.pop.util.Threading
 import org.veriblock.miners.pop.EventBus
 import org.veriblock.sdk.models.StateInfo
@@ -51,7 +53,7 @@ class VeriBlockNetwork(
     private val gateway: SpvGateway,
     private val transactionMonitor: TransactionMonitor,
     private val addressManager: AddressManager
-) {
+) : VeriBlockEndorsementNetwork {
     private var firstPoll: Boolean = true
 
     private val ready = AtomicBoolean(false)
@@ -61,18 +63,18 @@ class VeriBlockNetwork(
     private val connected = SettableFuture.create<Boolean>()
 
     var latestBalance: Balance = Balance()
-    var latestSpvStateInfo: StateInfo = StateInfo()
+    override var latestSpvStateInfo: StateInfo = StateInfo()
 
     fun isSufficientFunded(): Boolean =
         sufficientFunds.get()
 
-    fun isReady(): Boolean =
+    override fun isReady(): Boolean =
         ready.get()
 
-    fun isAccessible(): Boolean =
+    override fun isAccessible(): Boolean =
         accessible.get()
 
-    fun isSynchronized(): Boolean =
+    override fun isSynchronized(): Boolean =
         synchronized.get()
 
     fun startAsync(): ListenableFuture<Boolean> {
@@ -96,7 +98,7 @@ class VeriBlockNetwork(
     fun importKeyPair(publicKeyBytes: ByteArray, privateKeyBytes: ByteArray): AddressPubKey? =
         addressManager.importKeyPair(publicKeyBytes, privateKeyBytes)
 
-    suspend fun submitEndorsement(publicationData: ByteArray, feePerByte: Long, maxFee: Long): VeriBlockTransaction {
+    override suspend fun submitEndorsement(publicationData: ByteArray, feePerByte: Long, maxFee: Long): VeriBlockTransaction {
         val transaction = gateway.submitEndorsementTransaction(
             publicationData, addressManager, feePerByte, maxFee
         )
@@ -104,7 +106,10 @@ class VeriBlockNetwork(
         return transaction
     }
 
-    fun getBlock(hash: AnyVbkHash): VeriBlockBlock? {
+    override fun getTransaction(txId: VbkTxId): WalletTransaction =
+        transactionMonitor.getTransaction(txId)
+
+    override fun getBlock(hash: AnyVbkHash): VeriBlockBlock? {
         return gateway.getBlock(hash)
     }
 
@@ -56,4 +56,12 @@ object TxmonProto {
         @ProtoNumber(2) val address: String,
         @ProtoNumber(3) val transactions: List<WalletTransaction> = emptyList()
     )
+
+    @Serializable
+    data class JournalEntry(
+        // Added or updated transaction
+        @ProtoNumber(1) val transaction: WalletTransaction? = null,
+        // Id of a removed transaction
+        @ProtoNumber(2) val removedTxId: ByteArray = ByteArray(0)
+    )
 }
@@ -0,0 +1,112 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.miners.pop.securityinheriting
+
+import kotlinx.coroutines.CompletableDeferred
+import org.veriblock.core.utilities.createLogger
+import org.veriblock.core.utilities.debugWarn
+import org.veriblock.sdk.alt.model.Atv
+import java.util.concurrent.CopyOnWriteArrayList
+
+private val logger = createLogger {}
+
+// Blocks an ATV is checked on every block before backing off while it is not in a block
+private const val MEMPOOL_CHECKS_BEFORE_BACKOFF = 3
+private const val MAX_BACKOFF_BLOCKS = 16
+
+/**
+ * Tracks the ATVs the operations of a chain are waiting for. Instead of each operation polling for its own ATV,
+ * all the pending ATVs are retrieved together once per new block and handed to their waiting operations.
+ * ATVs which stay out of a block (in the mempool or not found) are checked less and less often.
+ */
+class AtvTracker(
+    private val chainName: String,
+    private val fetchAtvs: suspend (ids: List<String>) -> List<Atv?>
+) {
+    private class Subscription(
+        val id: String,
+        val predicate: suspend (Atv) -> Boolean
+    ) {
+        val result = CompletableDeferred<Atv>()
+        var nextCheckHeight = 0
+        var checksOutOfBlock = 0
+    }
+
+    private val subscriptions = CopyOnWriteArrayList<Subscription>()
+
+    val pendingCount: Int
+        get() = subscriptions.size
+
+    /**
+     * Suspends until the ATV with the given [id] satisfies the [predicate], which is evaluated every time
+     * the ATV is retrieved.
+     */
+    suspend fun await(id: String, predicate: suspend (Atv) -> Boolean): Atv {
+        val subscription = Subscription(id, predicate)
+        // Check right away instead of waiting for the next block
+        val atv = try {
+            fetchAtvs(listOf(id)).firstOrNull()
+        } catch (e: Exception) {
+            logger.debug { "Can not get ATV=$id from $chainName: ${e.message}" }
+            null
+        }
+        if (atv != null && predicate(atv)) {
+            return atv
+        }
+        subscriptions.add(subscription)
+        try {
+            return subscription.result.await()
+        } finally {
+            subscriptions.remove(subscription)
+        }
+    }
+
+    /**
+     * Retrieves the pending ATVs which are due at the new block [height] at once and notifies their subscribers
+     */
+    suspend fun onNewBlock(height: Int) {
+        val due = subscriptions.filter { it.nextCheckHeight <= height && !it.result.isCompleted }
+        if (due.isEmpty()) {
+            return
+        }
+        val ids = due.map { it.id }.distinct()
+        val atvsById = try {
+            ids.zip(fetchAtvs(ids)).toMap()
+        } catch (e: Exception) {
+            logger.debugWarn(e) { "Unable to retrieve ${ids.size} ATVs from $chainName" }
+            return
+        }
+        for (subscription in due) {
+            val atv = atvsById[subscription.id]
+            subscription.nextCheckHeight = height + if (atv == null || atv.confirmations == 0) {
+                subscription.checksOutOfBlock++
+                backoffBlocks(subscription.checksOutOfBlock)
+            } else {
+                subscription.checksOutOfBlock = 0
+                1
+            }
+            if (atv == null) {
+                continue
+            }
+            try {
+                if (subscription.predicate(atv)) {
+                    subscription.result.complete(atv)
+                }
+            } catch (e: Exception) {
+                subscription.result.completeExceptionally(e)
+            }
+        }
+    }
+
+    private fun backoffBlocks(checksOutOfBlock: Int): Int = if (checksOutOfBlock <= MEMPOOL_CHECKS_BEFORE_BACKOFF) {
+        1
+    } else {
+        (1 shl (checksOutOfBlock - MEMPOOL_CHECKS_BEFORE_BACKOFF).coerceAtMost(4)).coerceAtMost(MAX_BACKOFF_BLOCKS)
+    }
+}
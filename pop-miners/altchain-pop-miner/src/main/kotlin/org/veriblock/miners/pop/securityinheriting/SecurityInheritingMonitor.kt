@@ -11,6 +11,7 @@
 package org.veriblock.miners.pop.securityinheriting
 
 import com.google.common.util.concurrent.SettableFuture
+import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.Job
@@ -54,10 +55,11 @@ import org.veriblock.sdk.alt.model.SecurityInheritingTransaction
 import org.veriblock.sdk.models.StateInfo
 import org.veriblock.sdk.models.VeriBlockPublication
 import org.veriblock.sdk.models.getSynchronizedMessage
-import org.veriblock.sdk.util.checkSuccess
 import org.veriblock.spv.util.SpvEventBus
 import org.veriblock.spv.util.invokeOnFailure
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.ConcurrentSkipListSet
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.locks.ReentrantLock
@@ -68,11 +70,16 @@ import kotlin.concurrent.withLock
 
 private val logger = createLogger {}
 
+// Amount of recently handled tips remembered to find where a reorganization forked from the handled chain
+private const val HANDLED_TIPS_TO_KEEP = 100
+
 class SecurityInheritingMonitor(
     val context: ApmContext,
     configuration: Configuration,
     private val chainId: String,
-    private val chain: SecurityInheritingChain
+    private val chain: SecurityInheritingChain,
+    // Where the polling and the submission tasks run
+    private val dispatcher: CoroutineDispatcher = Threading.SI_MONITOR_POOL.asCoroutineDispatcher()
 ) {
     private val pollingPeriodSeconds = configuration.getLong(
         "securityInheriting.$chainId.pollingPeriodSeconds"
@@ -95,9 +102,22 @@ class SecurityInheritingMonitor(
 
     private var pollSchedule: Job? = null
 
-    private val blockHeightListeners = ConcurrentHashMap<Int, MutableList<Channel<SecurityInheritingBlock>>>()
+    // Ordered by height so that only the heights reached by a new tip have to be looked at
+    private val blockHeightListeners = ConcurrentSkipListMap<Int, MutableList<Channel<SecurityInheritingBlock>>>()
     private val transactionListeners = ConcurrentHashMap<String, MutableList<Channel<SecurityInheritingTransaction>>>()
 
+    // The tip the listeners were last handled at
+    private var handledTip: SecurityInheritingBlock? = null
+    // Hashes of the recently handled tips by height
+    private val handledTipHashes = ConcurrentSkipListMap<Int, String>()
+    // Heights which were subscribed to, or whose block could not be retrieved, since the listeners were last handled.
+    // Once at or below the tip they are not reached by a new tip anymore, so they are checked on the next handling
+    private val uncheckedHeights = ConcurrentSkipListSet<Int>()
+    // Listened transactions which were already in a block, along with the tip height they were retrieved at
+    private val confirmedTransactions = ConcurrentHashMap<String, Pair<SecurityInheritingTransaction, Int>>()
+
+    private val atvTracker = AtvTracker(chain.name) { chain.getAtvs(it) }
+
     fun isPopActive(): Boolean =
         popIsActive.get()
 
@@ -121,21 +141,14 @@ class SecurityInheritingMonitor(
     fun start(miner: AltchainPopMinerService) {
         this.miner = miner
 
-        val coroutineScope = CoroutineScope(Threading.SI_MONITOR_POOL.asCoroutineDispatcher())
+        val coroutineScope = CoroutineScope(dispatcher)
         coroutineScope.launch {
             // Wait for nodeCore to be ready
             while (!miner.network.isReady()) {
                 delay(5_000L)
             }
 
-            logger.info("Connecting to ${chain.name} daemon at ${chain.config.host}...")
-            pollSchedule = launch {
-                delay(5_000L)
-                while (true) {
-                    poll()
-                    delay(pollingPeriodSeconds * 1000)
-                }
-            }
+            startPolling(this)
 
             // Wait for altchain to be ready
             while (!isReady()) {
@@ -166,6 +179,21 @@ class SecurityInheritingMonitor(
         }
     }
 
+    /**
+     * Starts polling the chain in [coroutineScope], without submitting any context to it.
+     * The blocks are only auto mined once the monitor was [started][start] with a miner.
+     */
+    fun startPolling(coroutineScope: CoroutineScope = CoroutineScope(dispatcher)) {
+        logger.info("Connecting to ${chain.name} daemon at ${chain.config.host}...")
+        pollSchedule = coroutineScope.launch {
+            delay(5_000L)
+            while (true) {
+                poll()
+                awaitNextPoll()
+            }
+        }
+    }
+
     /**
      * Stops the polling schedule
      */
@@ -174,17 +202,54 @@ class SecurityInheritingMonitor(
         pollSchedule = null
     }
 
+    /**
+     * Waits for the next polling period. If the chain can notify new blocks, a new block ends the wait early.
+     */
+    internal suspend fun awaitNextPoll() {
+        val pollingPeriodMillis = pollingPeriodSeconds * 1000
+        if (!isReady() || !chain.supportsBlockNotifications()) {
+            delay(pollingPeriodMillis)
+            return
+        }
+        val knownHeight = bestBlockHeight.value
+        val deadline = System.currentTimeMillis() + pollingPeriodMillis
+        while (true) {
+            val remainingMillis = deadline - System.currentTimeMillis()
+            if (remainingMillis <= 0) {
+                return
+            }
+            val notifiedHeight = try {
+                chain.awaitBestBlockHeight(knownHeight, remainingMillis)
+            } catch (e: Exception) {
+                logger.debugWarn(e) { "Error while waiting for a new ${chain.name} block, polling instead" }
+                delay(remainingMillis)
+                return
+            }
+            if (notifiedHeight != knownHeight) {
+                logger.debug { "${chain.name} notified a new block @$notifiedHeight" }
+                return
+            }
+        }
+    }
+
     /**
      * Checks for the best chain's block height. If it changed, it handles all registered listeners.
      * Automining is also triggered here.
      */
-    private suspend fun poll() = coroutineScope {
+    internal suspend fun poll() = coroutineScope {
         try {
-            // Verify if we can make a connection with the Altchain
-            val pinged = checkSuccess { chain.getBestBlockHeight() }
-            if (pinged) {
+            // Verify if we can make a connection with the Altchain. The sync information goes first: chains
+            // which report their tip height along with it don't need to be asked for it again
+            var blockChainInfo = StateInfo()
+            val bestBlockHeight: Int? = try {
+                blockChainInfo = chain.getBlockChainInfo()
+                chain.getBestBlockHeight()
+            } catch (ignored: Exception) {
+                null
+            }
+            if (bestBlockHeight != null) {
                 // At this point the APM<->Altchain connection is fine
-                latestBlockChainInfo = chain.getBlockChainInfo()
+                latestBlockChainInfo = blockChainInfo
 
                 if (!isAccessible()) {
                     accessible.set(true)
@@ -230,7 +295,7 @@ class SecurityInheritingMonitor(
                 }
             }
 
-            if (isAccessible() && isSynchronized() && isOnSameNetwork()) {
+            if (bestBlockHeight != null && isAccessible() && isSynchronized() && isOnSameNetwork()) {
                 if (!isReady()) {
                     ready.set(true)
                     EventBus.altChainReadyEvent.trigger(chainId)
@@ -238,30 +303,14 @@ class SecurityInheritingMonitor(
 
                 // At this point the APM<->Altchain connection is fine and the Altchain is synchronized so
                 // APM can continue with its work
-                val bestBlockHeight: Int = try {
-                    chain.getBestBlockHeight()
-                } catch (e: Exception) {
-                    logger.debugWarn(e) { "Error while retrieving ${chain.name} tip height" }
-                    if (isAccessible()) {
-                        accessible.set(false)
-                        EventBus.altChainNotAccessibleEvent.trigger(chainId)
-                    }
-                    return@coroutineScope
-                }
-
-                // Should not happen, some altchain blocks appear faster than we update the sync information
-                if (latestBlockChainInfo.localBlockchainHeight < bestBlockHeight) {
-                    latestBlockChainInfo = chain.getBlockChainInfo()
-                    logger.debug { "${chain.name} blocks are appearing too fast, forcing the block chain sync info update..." }
-                }
-
                 if (bestBlockHeight != this@SecurityInheritingMonitor.bestBlockHeight.value) {
                     logger.debug { "New chain head detected @${bestBlockHeight}" }
                     if (this@SecurityInheritingMonitor.bestBlockHeight.value != -1) {
-                        val isMinerReady = miner.checkReadyConditions()
+                        val isMinerReady by lazy { miner.checkReadyConditions() }
                         ((this@SecurityInheritingMonitor.bestBlockHeight.value + 1)..bestBlockHeight).forEach { blockHeight ->
-                            if (chain.shouldAutoMine(blockHeight)) {
-                                if (isMinerReady is CheckResult.Success) {
+                            if (this@SecurityInheritingMonitor::miner.isInitialized && chain.shouldAutoMine(blockHeight)) {
+                                val minerReadiness = isMinerReady
+                                if (minerReadiness is CheckResult.Success) {
                                     logger.debug { "Auto mining block @$blockHeight" }
                                     try {
                                         miner.mine(chainId, blockHeight)
@@ -269,7 +318,7 @@ class SecurityInheritingMonitor(
                                         logger.error { "Failed to auto mine the block $blockHeight: ${e.message}" }
                                     }
                                 } else {
-                                   logger.info { "Unable to auto mine the block $blockHeight: ${(isMinerReady as CheckResult.Failure).error.message}" }
+                                   logger.info { "Unable to auto mine the block $blockHeight: ${(minerReadiness as CheckResult.Failure).error.message}" }
                                 }
                             }
                         }
@@ -282,8 +331,19 @@ class SecurityInheritingMonitor(
 
                     handleNewBlock(block)
 
-                    handleBlockHeightListeners()
-                    handleTransactionListeners()
+                    val previousTip = handledTip
+                    // Anything above the last block shared with the previous tip's chain may have changed
+                    val forkHeight = findForkHeight(block)
+                    if (previousTip != null && forkHeight != previousTip.height) {
+                        logger.debug { "${chain.name} tip ${block.hash} @${block.height} does not extend ${previousTip.hash}, forked @$forkHeight" }
+                    }
+                    handleBlockHeightListeners(block, forkHeight)
+                    handleTransactionListeners(block, forkHeight)
+                    atvTracker.onNewBlock(block.height)
+                    handledTip = block
+                    handledTipHashes.tailMap(forkHeight ?: Int.MIN_VALUE, false).clear()
+                    handledTipHashes[block.height] = block.hash
+                    handledTipHashes.headMap(block.height - HANDLED_TIPS_TO_KEEP).clear()
                 }
             } else {
                 if (isReady()) {
@@ -456,9 +516,7 @@ class SecurityInheritingMonitor(
      */
     suspend fun handleContextGap(): Int {
         val popMempool = chain.getPopMempool()
-        val remainingVtbs = popMempool.vtbs.mapNotNull {
-            chain.getVtb(it)
-        }
+        val remainingVtbs = chain.getVtbs(popMempool.vtbs).filterNotNull()
         val btcContextBlockHash = chain.getBestKnownBtcBlockHash().asBtcHash()
         val allPendingBtcBlocks = remainingVtbs.flatMap { it.btcBlockOfProofContext + it.btcBlockOfProof }
         val allPendingBtcBlockHashes = allPendingBtcBlocks.map { it.hash.asBtcHash() }.toSet() + btcContextBlockHash
@@ -540,20 +598,113 @@ class SecurityInheritingMonitor(
         null
     }
 
-    private suspend fun handleBlockHeightListeners() {
-        for ((height, listeners) in blockHeightListeners) {
-            val block = getBlockAtHeight(height)
-            if (block != null) {
-                for (listener in listeners) {
-                    listener.trySend(block).isSuccess
-                }
+    /**
+     * Returns the height of the last block the [tip]'s chain shares with the handled one: the previous tip's height
+     * when the tip builds upon it, the height the chain forked at otherwise. Returns null when there is no previous
+     * tip, or none of the recently handled tips is in the [tip]'s chain anymore.
+     */
+    private suspend fun findForkHeight(tip: SecurityInheritingBlock): Int? {
+        val previousTip = handledTip
+            ?: return null
+        if (tip.height == previousTip.height + 1 && tip.previousHash == previousTip.hash) {
+            return previousTip.height
+        }
+        return try {
+            // The tip may have advanced several blocks at once, check whether the previous tip is still its ancestor
+            if (tip.height > previousTip.height + 1 &&
+                chain.getBlocks(listOf(previousTip.height)).firstOrNull()?.hash == previousTip.hash
+            ) {
+                return previousTip.height
+            }
+            // A fork: look for the highest handled tip still in the chain
+            val candidates = handledTipHashes.headMap(minOf(tip.height, previousTip.height))
+            val blocks = chain.getBlocks(candidates.keys.toList()).filterNotNull().associateBy { it.height }
+            candidates.descendingMap().entries.firstOrNull { (height, hash) -> blocks[height]?.hash == hash }?.key
+        } catch (e: Exception) {
+            logger.debugWarn(e) { "Error when looking for the ${chain.name} fork point below ${tip.hash}" }
+            null
+        }
+    }
+
+    /**
+     * Notifies the listeners of the heights above [forkHeight], or of every height up to the [tip] when the chain
+     * shares no known block with the handled one. The blocks up to the fork height are unchanged, so only the
+     * listeners of the unchecked heights among them are notified.
+     */
+    private suspend fun handleBlockHeightListeners(tip: SecurityInheritingBlock, forkHeight: Int?) {
+        val reachedHeights = if (forkHeight != null) {
+            blockHeightListeners.subMap(forkHeight, false, tip.height, true).keys
+        } else {
+            blockHeightListeners.headMap(tip.height, true).keys
+        }
+        // Taken out before retrieving the blocks, so that the heights subscribed to meanwhile are checked next time
+        val recheckedHeights = uncheckedHeights.headSet(tip.height, true).toList()
+        uncheckedHeights.removeAll(recheckedHeights)
+        val heights = (reachedHeights + recheckedHeights).filter {
+            blockHeightListeners.containsKey(it)
+        }.toSortedSet()
+        if (heights.isEmpty()) {
+            return
+        }
+        // Retrieve all the blocks which aren't the tip at once
+        val missingHeights = heights.filter { it != tip.height }
+        val blocksByHeight = try {
+            chain.getBlocks(missingHeights).filterNotNull().associateBy { it.height }
+        } catch (e: Exception) {
+            logger.debugWarn(e) { "Error when retrieving ${missingHeights.size} ${chain.name} blocks" }
+            emptyMap()
+        }
+        for (height in heights) {
+            val block = if (height == tip.height) {
+                tip
+            } else {
+                blocksByHeight[height]
+            }
+            if (block == null) {
+                uncheckedHeights.add(height)
+                continue
+            }
+            val listeners = blockHeightListeners[height]
+                ?: continue
+            for (listener in listeners) {
+                listener.trySend(block).isSuccess
             }
         }
     }
 
-    private suspend fun handleTransactionListeners() {
+    /**
+     * Notifies the transaction listeners. Only the transactions which were not in a block yet are retrieved again,
+     * the confirmations of the others follow from the tip height unless their block is above the [forkHeight].
+     */
+    private suspend fun handleTransactionListeners(tip: SecurityInheritingBlock, forkHeight: Int?) {
+        if (forkHeight == null) {
+            confirmedTransactions.clear()
+        } else {
+            confirmedTransactions.values.removeIf { (transaction, knownAtHeight) ->
+                knownAtHeight - transaction.confirmations + 1 > forkHeight
+            }
+        }
+        confirmedTransactions.keys.retainAll(transactionListeners.keys)
+        // Retrieve all the transactions which weren't in a block yet at once
+        val unconfirmedTxIds = transactionListeners.keys.filter { it !in confirmedTransactions }
+        val retrievedTransactions = try {
+            chain.getTransactions(unconfirmedTxIds).filterNotNull().associateBy { it.txId }
+        } catch (e: Exception) {
+            logger.debugWarn(e) { "Error when retrieving ${unconfirmedTxIds.size} ${chain.name} transactions" }
+            emptyMap()
+        }
         for ((txId, listeners) in transactionListeners) {
-            val transaction = getTransaction(txId)
+            val confirmed = confirmedTransactions[txId]
+            val transaction = if (confirmed != null) {
+                val (knownTransaction, knownAtHeight) = confirmed
+                knownTransaction.copy(confirmations = knownTransaction.confirmations + tip.height - knownAtHeight)
+            } else {
+                retrievedTransactions[txId]?.also {
+                    if (it.blockHash != null && it.confirmations > 0) {
+                        confirmedTransactions[txId] = it to tip.height
+                    }
+                }
+            }
             if (transaction != null) {
                 for (listener in listeners) {
                     listener.trySend(transaction).isSuccess
@@ -563,13 +714,22 @@ class SecurityInheritingMonitor(
     }
 
     suspend fun getBlockAtHeight(height: Int, predicate: (SecurityInheritingBlock) -> Boolean = { true }): SecurityInheritingBlock {
-        // Check if we can skip the subscription
-        val block = getBlockAtHeight(height)
+        // Subscribe before checking, as a tip reaching the height in between would not look at this listener again.
+        // The height is also checked on the next handling of the listeners, in case this check can't tell yet
+        val channel = subscribe(blockHeightListeners, height)
+        uncheckedHeights.add(height)
+        val block = try {
+            getBlockAtHeight(height)
+        } catch (e: Exception) {
+            channel.close()
+            throw e
+        }
+        // Check if we can skip waiting for the subscription
         if (block != null && predicate(block)) {
+            channel.close()
             return block
         }
 
-        val channel = subscribe(blockHeightListeners, height)
         return channel.consumeAsFlow().first {
             predicate(it)
         }
@@ -588,21 +748,12 @@ class SecurityInheritingMonitor(
         }
     }
 
-    suspend fun getAtv(id: String, delay: Long = 10_000L, predicate: suspend (atv: Atv) -> Boolean): Atv? {
-        var atv: Atv?
-        do {
-            atv = try {
-                chain.getAtv(id)
-            } catch (e: Exception) {
-                logger.debug { "Can not get ATV=${id} from ${chain.name}: ${e.message}" }
-                null
-            }
-
-            delay(delay)
-        } while (atv == null || !predicate(atv))
-
-        return atv
-    }
+    /**
+     * Suspends until the ATV with the given [id] satisfies the [predicate]. The ATV is checked along with
+     * every other awaited one of this chain whenever a new block is found.
+     */
+    suspend fun getAtv(id: String, predicate: suspend (atv: Atv) -> Boolean): Atv =
+        atvTracker.await(id, predicate)
 
     private fun <T, R> subscribe(container: MutableMap<T, MutableList<Channel<R>>>, key: T): Channel<R> {
         val channel = Channel<R>(CONFLATED)
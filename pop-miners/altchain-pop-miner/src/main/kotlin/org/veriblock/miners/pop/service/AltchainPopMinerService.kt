@@ -9,7 +9,6 @@
 package org.veriblock.miners.pop.service
 
 import com.google.protobuf.ByteString
-import java.io.File
 import java.io.IOException
 import java.util.concurrent.ConcurrentHashMap
 import kotlinx.coroutines.CoroutineScope
@@ -17,11 +16,12 @@ import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import nodecore.p2p.P2pMetrics
+import nodecore.p2p.PeerCapabilities
 import org.veriblock.sdk.extensions.ByteStringAddressUtility
 import org.veriblock.sdk.extensions.asHexByteString
 import org.veriblock.sdk.extensions.toHex
 import org.veriblock.sdk.extensions.toProperAddressType
-import nodecore.p2p.PeerCapabilities
 import org.veriblock.core.ImportException
 import org.veriblock.core.MineException
 import org.veriblock.core.WalletException
@@ -41,8 +41,9 @@ import org.veriblock.miners.pop.net.SpvGateway
 import org.veriblock.miners.pop.net.VeriBlockNetwork
 import org.veriblock.miners.pop.securityinheriting.SecurityInheritingMonitor
 import org.veriblock.miners.pop.securityinheriting.SecurityInheritingService
-import org.veriblock.miners.pop.transactionmonitor.TM_FILE_EXTENSION
+import org.veriblock.miners.pop.storage.ApmOperationSummaryRecord
 import org.veriblock.miners.pop.transactionmonitor.TransactionMonitor
+import org.veriblock.miners.pop.transactionmonitor.TransactionMonitorStore
 import org.veriblock.miners.pop.transactionmonitor.loadTransactionMonitor
 import org.veriblock.miners.pop.util.CheckResult
 import org.veriblock.miners.pop.util.Threading
@@ -175,6 +176,35 @@ class AltchainPopMinerService(
         }
     }
 
+    /**
+     * Lists operations newest first without deserializing the ones which are no longer active.
+     * [after] is the id of the last operation of the previous page, and takes the place of [offset] when walking
+     * through many pages.
+     */
+    fun getOperationSummaries(
+        altchainKey: String? = null,
+        status: MiningOperationStatus = MiningOperationStatus.ACTIVE,
+        limit: Int = 50,
+        offset: Int = 0,
+        after: String? = null
+    ): List<ApmOperationSummaryRecord> {
+        if (status != MiningOperationStatus.ACTIVE) {
+            return operationService.getOperationSummaries(altchainKey, status, limit, offset, after)
+        }
+        val newestFirst = compareByDescending<ApmOperation> { it.createdAt }.thenByDescending { it.id }
+        val cursor = after?.let {
+            getOperation(it) ?: return emptyList()
+        }
+        return operations.values.asSequence()
+            .filter { altchainKey == null || it.chain.key == altchainKey }
+            .filter { cursor == null || newestFirst.compare(it, cursor) > 0 }
+            .sortedWith(newestFirst)
+            .drop(offset)
+            .take(limit)
+            .map { it.toSummaryRecord() }
+            .toList()
+    }
+
     fun getOperationsCount(altchainKey: String? = null, status: MiningOperationStatus = MiningOperationStatus.ACTIVE): Int {
         return if (status == MiningOperationStatus.ACTIVE) {
             operations.size
@@ -309,6 +339,7 @@ class AltchainPopMinerService(
         if (this::network.isInitialized) {
             network.shutdown()
         }
+        operationService.shutdown()
     }
 
     fun setIsShuttingDown(b: Boolean) {
@@ -381,30 +412,39 @@ class AltchainPopMinerService(
     }
 
     private fun createOrLoadTransactionMonitor(): TransactionMonitor {
-        val file = File(context.directory, context.filePrefix + TM_FILE_EXTENSION)
-        return if (file.exists()) {
+        val store = TransactionMonitorStore(context.directory, context.filePrefix)
+        val transactionMonitor = if (store.exists()) {
             try {
-                file.loadTransactionMonitor(context, gateway)
+                store.loadTransactionMonitor(context, gateway, config.transactionPruneDepth)
             } catch (e: Exception) {
                 logger.debugWarn(e) { "Unable to load the transaction monitoring data, trying to recreate..." }
-                if (file.delete()) {
-                    createTransactionMonitor()
+                if (store.delete()) {
+                    createTransactionMonitor(store)
                 } else {
                     throw IOException("Unable to load the transaction monitoring data", e)
                 }
             }
         } else {
-            createTransactionMonitor()
+            createTransactionMonitor(store)
+        }
+        // The transactions of the operations in progress are kept however deep they are
+        transactionMonitor.isTransactionInUse = { txId ->
+            operations.values.any { it.endorsementTransaction?.transaction?.id == txId }
         }
+        return transactionMonitor
     }
 
-    private fun createTransactionMonitor(): TransactionMonitor {
+    private fun createTransactionMonitor(store: TransactionMonitorStore): TransactionMonitor {
         val address = Address(spvContext.addressManager.defaultAddress.hash)
-        return TransactionMonitor(context, gateway, address)
+        return TransactionMonitor(context, gateway, address, store, config.transactionPruneDepth).also {
+            // Write the initial snapshot the journal builds upon
+            it.compact()
+        }
     }
 
     private fun initSpvContext(networkParameters: NetworkParameters): SpvContext {
         logger.info { "Initializing SPV..." }
+        P2pMetrics.bindTo(Metrics.registry)
         val spvContext = SpvContext(
             SpvConfig(
                 networkParameters,
@@ -61,7 +61,8 @@ class ApmOperationExplainer(
             operation.atvId != null -> ApmOperationState.SUBMITTED_POP_DATA
             operation.merklePath != null -> ApmOperationState.PROVEN
             operation.blockOfProof != null -> ApmOperationState.BLOCK_OF_PROOF
-            operation.endorsementTransaction != null -> ApmOperationState.ENDORSEMENT_TRANSACTION
+            operation.endorsementTransaction != null || operation.prunedEndorsementTxId != null ->
+                ApmOperationState.ENDORSEMENT_TRANSACTION
             operation.miningInstruction != null -> ApmOperationState.INSTRUCTION
             else -> ApmOperationState.INITIAL
         }
@@ -81,7 +82,7 @@ class ApmOperationExplainer(
         }
         ApmOperationState.ENDORSEMENT_TRANSACTION -> {
             val transaction = operation.endorsementTransaction
-            "${context.vbkTokenName} endorsement transaction id: ${transaction?.txId} (fee: ${transaction?.fee?.formatAtomicLongWithDecimal()}, fee per byte: ${transaction?.feePerByte})"
+            "${context.vbkTokenName} endorsement transaction id: ${transaction?.txId ?: operation.prunedEndorsementTxId} (fee: ${transaction?.fee?.formatAtomicLongWithDecimal()}, fee per byte: ${transaction?.feePerByte})"
         }
         ApmOperationState.ENDORSEMENT_TX_CONFIRMED ->
             ""
@@ -10,8 +10,6 @@ package org.veriblock.miners.pop.service
 
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.first
-import org.koin.core.KoinComponent
-import org.koin.core.inject
 import org.veriblock.core.altchain.AltchainPopEndorsement
 import org.veriblock.core.utilities.AddressUtility
 import org.veriblock.core.utilities.createLogger
@@ -32,6 +30,7 @@ import org.veriblock.miners.pop.core.ApmOperationState
 import org.veriblock.miners.pop.MinerConfig
 import org.veriblock.miners.pop.core.debugWarn
 import org.veriblock.miners.pop.core.warn
+import org.veriblock.miners.pop.net.VeriBlockEndorsementNetwork
 import org.veriblock.miners.pop.securityinheriting.SecurityInheritingMonitor
 import org.veriblock.sdk.alt.PayoutDetectionType
 import org.veriblock.sdk.models.getSynchronizedMessage
@@ -41,10 +40,18 @@ import java.util.*
 private val logger = createLogger {}
 
 class ApmTaskService(
-    private val minerConfig: MinerConfig
-) : TaskService<ApmOperation>(), KoinComponent {
+    private val minerConfig: MinerConfig,
+    // The miner's network is only available once the miner has been initialized
+    private val getNetwork: () -> VeriBlockEndorsementNetwork
+) : TaskService<ApmOperation>() {
 
-    private val miner: AltchainPopMinerService by inject()
+    private val network: VeriBlockEndorsementNetwork
+        get() = getNetwork()
+
+    // Stages doing the expensive work, the ones mostly waiting for the networks are not limited
+    private val endorsementTransactionStage = TaskStage("endorsement_transaction", concurrency = 2)
+    private val blockOfProofStage = TaskStage("block_of_proof", concurrency = 4)
+    private val proofStage = TaskStage("proof", concurrency = 4)
 
     @ExperimentalCoroutinesApi
     override suspend fun runTasksInternal(operation: ApmOperation) {
@@ -64,14 +71,15 @@ class ApmTaskService(
             operation.setMiningInstruction(publicationData)
             logger.info(operation, "Successfully retrieved the mining instruction!")
             val vbkContextBlockHash = publicationData.context[0]
-            miner.network.getBlock(vbkContextBlockHash.asVbkHash())
+            network.getBlock(vbkContextBlockHash.asVbkHash())
                 ?: failOperation("Unable to find the mining instruction's VBK context block ${vbkContextBlockHash.toHex()}")
         }
 
         operation.runTask(
             taskName = "Create Endorsement Transaction",
             targetState = ApmOperationState.ENDORSEMENT_TRANSACTION,
-            timeout = 90.sec
+            timeout = 90.sec,
+            stage = endorsementTransactionStage
         ) {
             verifySpvStatus()
             val miningInstruction = operation.miningInstruction
@@ -88,9 +96,16 @@ class ApmTaskService(
                 }
                 val blockEvidences = operation.chain.extractBlockEvidences(listOf(endorsement))
                 val blockEvidence = blockEvidences.first()
-                val endorsedBlock = operation.chain.getBlock(blockEvidence.hash.toString())
+                // Retrieve the endorsed block along with the blocks it references at once
+                val (endorsedBlockOrNull, previousBlockOrNull, previousKeystoneOrNull, secondKeystoneOrNull) =
+                    operation.chain.getBlocksByHash(
+                        listOf(blockEvidence.hash, blockEvidence.previousHash, blockEvidence.previousKeystone, blockEvidence.secondKeystone).map {
+                            it.toString()
+                        }
+                    )
+                val endorsedBlock = endorsedBlockOrNull
                     ?: failOperation("The endorsed block hash ${blockEvidence.hash} is not present at the chain")
-                val previousBlock = operation.chain.getBlock(blockEvidence.previousHash.toString())
+                val previousBlock = previousBlockOrNull
                     ?: failOperation("The endorsed previous block hash ${blockEvidence.previousHash} is not present at the chain")
                 if (previousBlock.height != (endorsedBlock.height - 1).coerceAtLeast(0)) {
                     failOperation("The endorsed previous block height (${previousBlock.height}) doesn't match with the endorsed block height (${(endorsedBlock.height - 1).coerceAtLeast(0)})")
@@ -100,17 +115,17 @@ class ApmTaskService(
                     1 -> operation.chain.config.keystonePeriod + 1
                     else -> endorsedBlock.height % operation.chain.config.keystonePeriod
                 }
-                val previousKeystone = operation.chain.getBlock(blockEvidence.previousKeystone.toString())
+                val previousKeystone = previousKeystoneOrNull
                     ?: failOperation("The endorsed previous keystone hash ${blockEvidence.previousKeystone} is not present at the chain")
                 if (previousKeystone.height != (endorsedBlock.height - keystoneSkip).coerceAtLeast(0)) {
                     failOperation("The endorsed previous keystone height (${previousKeystone.height}) doesn't match with the endorsed block height (${(endorsedBlock.height - keystoneSkip).coerceAtLeast(0)})")
                 }
-                val secondKeystone = operation.chain.getBlock(blockEvidence.secondKeystone.toString())
+                val secondKeystone = secondKeystoneOrNull
                     ?: failOperation("The endorsed second previous keystone hash ${blockEvidence.secondKeystone} is not present at the chain")
                 if (secondKeystone.height != (endorsedBlock.height - keystoneSkip - operation.chain.config.keystonePeriod).coerceAtLeast(0)) {
                     failOperation("The endorsed second previous keystone height (${secondKeystone.height}) doesn't match with the endorsed block height (${(endorsedBlock.height - keystoneSkip - operation.chain.config.keystonePeriod).coerceAtLeast(0)})")
                 }
-                miner.network.submitEndorsement(
+                network.submitEndorsement(
                     endorsementData,
                     minerConfig.feePerByte,
                     minerConfig.maxFee
@@ -126,7 +141,7 @@ class ApmTaskService(
                 failOperation("Endorsement VBK transaction signature is not valid")
             }
 
-            val walletTransaction = miner.transactionMonitor.getTransaction(transaction.id)
+            val walletTransaction = network.getTransaction(transaction.id)
             operation.setTransaction(ApmSpTransaction(walletTransaction))
             logger.info(operation, "Successfully sent the VBK transaction ${walletTransaction.id} signatureIndex=${transaction.signatureIndex} fee per byte=${operation.endorsementTransaction?.feePerByte}")
             logger.debug(
@@ -157,7 +172,8 @@ class ApmTaskService(
         operation.runTask(
             taskName = "Determine Block of Proof",
             targetState = ApmOperationState.BLOCK_OF_PROOF,
-            timeout = 5.min
+            timeout = 5.min,
+            stage = blockOfProofStage
         ) {
             val transaction = operation.endorsementTransaction?.transaction
                 ?: failTask("The operation has no transaction set!")
@@ -166,7 +182,7 @@ class ApmTaskService(
                 ?: failTask("Unable to retrieve block of proof from transaction")
 
             try {
-                val block = miner.gateway.getBlock(blockHash)
+                val block = network.getBlock(blockHash)
                     ?: failTask("Unable to retrieve VBK block $blockHash")
                 operation.setBlockOfProof(block)
             } catch (e: BlockStoreException) {
@@ -178,7 +194,8 @@ class ApmTaskService(
         operation.runTask(
             taskName = "Prove Transaction",
             targetState = ApmOperationState.PROVEN,
-            timeout = 20.sec
+            timeout = 20.sec,
+            stage = proofStage
         ) {
             val endorsementTransaction = operation.endorsementTransaction
                 ?: failTask("ProveTransactionTask called without VBK endorsement transaction!")
@@ -351,11 +368,11 @@ class ApmTaskService(
     }
 
     private fun verifySpvStatus() {
-        if (!miner.network.isReady()) {
+        if (!network.isReady()) {
             throw TaskException(
-                "SPV is not ready: Connection ${miner.network.isAccessible()}," +
-                    " Synchronized: ${miner.network.isSynchronized()}" +
-                    " (${miner.network.latestSpvStateInfo.getSynchronizedMessage()})"
+                "SPV is not ready: Connection ${network.isAccessible()}," +
+                    " Synchronized: ${network.isSynchronized()}" +
+                    " (${network.latestSpvStateInfo.getSynchronizedMessage()})"
             )
         }
     }
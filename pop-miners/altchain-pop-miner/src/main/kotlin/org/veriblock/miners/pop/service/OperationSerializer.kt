@@ -16,8 +16,10 @@ import org.veriblock.miners.pop.core.ApmOperation
 import org.veriblock.miners.pop.core.ApmSpTransaction
 import org.veriblock.miners.pop.core.OperationLog
 import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.miners.pop.securityinheriting.SecurityInheritingMonitor
 import org.veriblock.miners.pop.securityinheriting.SecurityInheritingService
 import org.veriblock.sdk.alt.ApmInstruction
+import org.veriblock.sdk.alt.SecurityInheritingChain
 import org.veriblock.sdk.alt.plugin.PluginService
 import org.veriblock.sdk.models.PublicationData
 import org.veriblock.sdk.models.VeriBlockMerklePath
@@ -39,7 +41,7 @@ class OperationSerializer(
             } ?: OperationProto.PublicationData(),
             publicationContext = operation.miningInstruction?.context ?: emptyList(),
             publicationBtcContext = operation.miningInstruction?.btcContext ?: emptyList(),
-            txId = operation.endorsementTransaction?.txId ?: "",
+            txId = operation.endorsementTransaction?.txId ?: operation.prunedEndorsementTxId ?: "",
             blockOfProof = operation.blockOfProof?.let {
                 SerializeDeserializeService.serializeHeaders(it)
             } ?: ByteArray(0),
@@ -54,22 +56,34 @@ class OperationSerializer(
     fun deserialize(
         serialized: OperationProto.Operation,
         createdAt: LocalDateTime,
-        logs: List<OperationLog>,
+        storedLogs: () -> List<OperationLog>,
         txFactory: (VbkTxId) -> WalletTransaction
     ): ApmOperation {
         val chain = pluginService[serialized.chainId]
             ?: error("Unable to load plugin ${serialized.chainId} for operation ${serialized.operationId}")
         val chainMonitor = securityInheritingService.getMonitor(serialized.chainId)
             ?: error("Unable to load monitor ${serialized.chainId} for operation ${serialized.operationId}")
+        return deserialize(serialized, chain, chainMonitor, createdAt, storedLogs, txFactory)
+    }
+
+    internal fun deserialize(
+        serialized: OperationProto.Operation,
+        chain: SecurityInheritingChain,
+        chainMonitor: SecurityInheritingMonitor,
+        createdAt: LocalDateTime,
+        storedLogs: () -> List<OperationLog>,
+        txFactory: (VbkTxId) -> WalletTransaction
+    ): ApmOperation {
         return ApmOperation(
             id = serialized.operationId,
             chain = chain,
             chainMonitor = chainMonitor,
-            logs = logs,
             endorsedBlockHeight = serialized.blockHeight,
             createdAt = createdAt,
             reconstituting = true
         ).apply {
+            setStoredLogs(storedLogs)
+
             if (serialized.miningInstruction.header.isNotEmpty()) {
                 setMiningInstruction(
                     ApmInstruction(
@@ -85,9 +99,13 @@ class OperationSerializer(
                 try {
                     setTransaction(ApmSpTransaction(txFactory(serialized.txId.asVbkTxId())))
                 } catch (e: IllegalStateException) {
-                    fail(e.message ?: "Unable to load VBK transaction ${serialized.txId}", e)
-                    reconstituting = false
-                    return this
+                    // Deeply confirmed transactions of finished operations are pruned from the transaction monitor
+                    if (serialized.blockOfProof.isEmpty()) {
+                        fail(e.message ?: "Unable to load VBK transaction ${serialized.txId}", e)
+                        reconstituting = false
+                        return this
+                    }
+                    setPrunedTransaction(serialized.txId)
                 }
             }
 
@@ -18,18 +18,32 @@ import org.veriblock.core.utilities.debugError
 import org.veriblock.miners.pop.proto.OperationProto
 import org.veriblock.miners.pop.transactionmonitor.WalletTransaction
 import org.veriblock.miners.pop.core.ApmOperation
+import org.veriblock.miners.pop.core.ApmOperationState
+import org.veriblock.miners.pop.core.MiningOperationState
 import org.veriblock.miners.pop.core.MiningOperationStatus
-import org.veriblock.miners.pop.core.parseOperationLogs
-import org.veriblock.miners.pop.core.toJson
 import org.veriblock.miners.pop.storage.ApmOperationRepository
 import org.veriblock.miners.pop.storage.ApmOperationStateRecord
+import org.veriblock.miners.pop.storage.ApmOperationSummaryRecord
+import org.veriblock.miners.pop.storage.OperationStateWriter
 
 private val logger = createLogger {}
 
+// States after which the operation must survive a crash, as they follow a transaction being submitted
+private val durableStates = setOf(
+    ApmOperationState.ENDORSEMENT_TRANSACTION,
+    ApmOperationState.SUBMITTED_POP_DATA,
+    MiningOperationState.COMPLETED,
+    MiningOperationState.FAILED
+)
+
 class OperationService(
     private val repository: ApmOperationRepository,
     private val operationSerializer: OperationSerializer
 ) {
+    private val writer = OperationStateWriter<ApmOperationStateRecord> {
+        repository.saveOperationStates(it)
+    }
+
     fun getOperation(id: String, txFactory: (VbkTxId) -> WalletTransaction): ApmOperation? {
         val operation = repository.getOperation(id)
             ?: return null
@@ -44,37 +58,64 @@ class OperationService(
     }
 
     fun getOperations(altchainKey: String?, state: MiningOperationStatus, limit: Int, offset: Int, txFactory: (VbkTxId) -> WalletTransaction): List<ApmOperation> {
+        // Listings are read from the database, so the queued state changes have to be there first
+        writer.flush()
         val operations = repository.getOperations(altchainKey, state, limit, offset)
         return operations.mapNotNull {
             it.deserializeOperation(txFactory)
         }
     }
 
+    fun getOperationSummaries(altchainKey: String?, state: MiningOperationStatus, limit: Int, offset: Int, after: String?): List<ApmOperationSummaryRecord> {
+        writer.flush()
+        return repository.getOperationSummaries(altchainKey, state, limit, offset, after)
+    }
+
     fun getOperationsCount(altchainKey: String?, state: MiningOperationStatus): Int {
+        writer.flush()
         return repository.getOperationsCount(altchainKey, state)
     }
 
     fun storeOperation(operation: ApmOperation) {
         val serialized = operationSerializer.serialize(operation)
-        repository.saveOperationState(
+        writer.write(
+            operation,
             ApmOperationStateRecord(
                 operation.id,
                 operation.chain.key,
                 operation.state.id,
                 ProtoBuf.encodeToByteArray(OperationProto.Operation.serializer(), serialized),
                 operation.createdAt,
-                operation.getLogs().toJson()
-            )
+                operation.toSummaryRecord()
+            ),
+            durable = operation.state in durableStates
         )
     }
 
+    /**
+     * Persists every state change which is still queued
+     */
+    fun shutdown() {
+        writer.shutdown()
+    }
+
     private fun ApmOperationStateRecord.deserializeOperation(txFactory: (VbkTxId) -> WalletTransaction): ApmOperation? {
         val protoData = ProtoBuf.decodeFromByteArray(OperationProto.Operation.serializer(), state)
         return try {
-            operationSerializer.deserialize(protoData, createdAt, logs.parseOperationLogs(), txFactory)
+            operationSerializer.deserialize(protoData, createdAt, repository.getStoredLogsLoader(id), txFactory)
         } catch (exception: Exception) {
             logger.debugError(exception) { "Unable to deserialize the operation" }
             null
         }
     }
 }
+
+fun ApmOperation.toSummaryRecord() = ApmOperationSummaryRecord(
+    id,
+    chain.key,
+    state.id,
+    createdAt,
+    endorsedBlockHeight,
+    state.toString(),
+    getStateDescription()
+)
@@ -1,18 +1,21 @@
 package org.veriblock.miners.pop.storage
 
 import org.jetbrains.exposed.sql.Database
+import org.jetbrains.exposed.sql.FieldSet
 import org.jetbrains.exposed.sql.Op
 import org.jetbrains.exposed.sql.Query
 import org.jetbrains.exposed.sql.SortOrder
 import org.jetbrains.exposed.sql.SqlExpressionBuilder
 import org.jetbrains.exposed.sql.and
-import org.jetbrains.exposed.sql.insert
+import org.jetbrains.exposed.sql.andWhere
+import org.jetbrains.exposed.sql.or
 import org.jetbrains.exposed.sql.select
 import org.jetbrains.exposed.sql.statements.api.ExposedBlob
 import org.jetbrains.exposed.sql.transactions.transaction
-import org.jetbrains.exposed.sql.update
 import org.veriblock.miners.pop.core.MiningOperationState
 import org.veriblock.miners.pop.core.MiningOperationStatus
+import org.veriblock.miners.pop.core.OperationLog
+import org.veriblock.miners.pop.core.parseOperationLogs
 
 open class ApmOperationRepository(
     protected val database: Database
@@ -23,9 +26,9 @@ open class ApmOperationRepository(
         limit: Int = 50,
         offset: Int = 0
     ): List<ApmOperationStateRecord> = transaction(database) {
-        operationsFilterSelect(chainId, status).orderBy (
-            ApmOperationStateTable.createdAt,
-            SortOrder.DESC
+        operationsFilterSelect(ApmOperationStateTable.stateFields, chainId, status).orderBy(
+            ApmOperationStateTable.createdAt to SortOrder.DESC,
+            ApmOperationStateTable.id to SortOrder.DESC
         ).limit(
             limit, offset.toLong()
         ).map {
@@ -33,14 +36,47 @@ open class ApmOperationRepository(
         }.toList()
     }
 
+    /**
+     * Lists operations without reading their state, newest first.
+     * Pages can be walked either by [offset] or, without having to skip over the previous pages, by passing the id
+     * of the last operation of the previous page as [after].
+     */
+    fun getOperationSummaries(
+        chainId: String? = null,
+        status: MiningOperationStatus = MiningOperationStatus.ACTIVE,
+        limit: Int = 50,
+        offset: Int = 0,
+        after: String? = null
+    ): List<ApmOperationSummaryRecord> = transaction(database) {
+        val query = operationsFilterSelect(ApmOperationStateTable.summaryFields, chainId, status)
+        if (after != null) {
+            val afterCreatedAt = ApmOperationStateTable.slice(ApmOperationStateTable.createdAt).select {
+                ApmOperationStateTable.id eq after
+            }.firstOrNull()?.get(ApmOperationStateTable.createdAt)
+                ?: return@transaction emptyList()
+            query.andWhere {
+                (ApmOperationStateTable.createdAt less afterCreatedAt) or
+                    ((ApmOperationStateTable.createdAt eq afterCreatedAt) and (ApmOperationStateTable.id less after))
+            }
+        }
+        query.orderBy(
+            ApmOperationStateTable.createdAt to SortOrder.DESC,
+            ApmOperationStateTable.id to SortOrder.DESC
+        ).limit(
+            limit, offset.toLong()
+        ).map {
+            it.toApmOperationSummaryRecord()
+        }.toList()
+    }
+
     fun getOperationsCount(
         chainId: String? = null,
         status: MiningOperationStatus = MiningOperationStatus.ACTIVE
     ): Int = transaction(database) {
-        operationsFilterSelect(chainId, status).count().toInt()
+        operationsFilterSelect(ApmOperationStateTable.slice(ApmOperationStateTable.id), chainId, status).count().toInt()
     }
 
-    private fun operationsFilterSelect(chainId: String?, status: MiningOperationStatus): Query {
+    private fun operationsFilterSelect(fields: FieldSet, chainId: String?, status: MiningOperationStatus): Query {
         val chainFilter: SqlExpressionBuilder.() -> Op<Boolean> = {
             if (chainId != null) {
                 ApmOperationStateTable.chainId eq chainId
@@ -49,28 +85,28 @@ open class ApmOperationRepository(
             }
         }
         return when (status) {
-            MiningOperationStatus.ACTIVE -> ApmOperationStateTable.select {
+            MiningOperationStatus.ACTIVE -> fields.select {
                 chainFilter() and
                     (ApmOperationStateTable.status greaterEq MiningOperationState.INITIAL_ID) and
                     (ApmOperationStateTable.status less MiningOperationState.COMPLETED_ID)
             }
-            MiningOperationStatus.COMPLETED -> ApmOperationStateTable.select {
+            MiningOperationStatus.COMPLETED -> fields.select {
                 chainFilter() and
                     (ApmOperationStateTable.status eq MiningOperationState.COMPLETED_ID)
             }
-            MiningOperationStatus.FAILED -> ApmOperationStateTable.select {
+            MiningOperationStatus.FAILED -> fields.select {
                 chainFilter() and
                     (ApmOperationStateTable.status eq MiningOperationState.FAILED_ID)
             }
             MiningOperationStatus.ALL ->
-                ApmOperationStateTable.select {
+                fields.select {
                     chainFilter()
                 }
         }
     }
 
     fun getActiveOperations(): List<ApmOperationStateRecord> = transaction(database) {
-        ApmOperationStateTable.select {
+        ApmOperationStateTable.stateFields.select {
             (ApmOperationStateTable.status greaterEq MiningOperationState.INITIAL_ID) and
                 (ApmOperationStateTable.status less MiningOperationState.COMPLETED_ID)
         }.map {
@@ -79,33 +115,64 @@ open class ApmOperationRepository(
     }
 
     fun getOperation(id: String): ApmOperationStateRecord? = transaction(database) {
-        ApmOperationStateTable.select {
+        ApmOperationStateTable.stateFields.select {
             ApmOperationStateTable.id eq id
         }.firstOrNull()?.toApmOperationStateRecord()
     }
 
-    fun saveOperationState(record: ApmOperationStateRecord) {
-        if (getOperation(record.id) != null) {
-            transaction(database) {
-                ApmOperationStateTable.update({
-                    ApmOperationStateTable.id eq record.id
-                }) {
-                    it[status] = record.status
-                    it[state] = ExposedBlob(record.state)
-                    it[logs] = record.logs
-                }
-            }
-        } else {
-            transaction(database) {
-                ApmOperationStateTable.insert {
-                    it[id] = record.id
-                    it[chainId] = record.chainId
-                    it[status] = record.status
-                    it[state] = ExposedBlob(record.state)
-                    it[createdAt] = record.createdAt
-                    it[logs] = record.logs
-                }
+    /**
+     * Gets the logs of an operation: the ones stored by older versions within the state row, followed by the
+     * appended ones up to [upToSequence] when given.
+     */
+    fun getOperationLogs(id: String, upToSequence: Long? = null): List<OperationLog> = transaction(database) {
+        val legacyLogs = ApmOperationStateTable.slice(ApmOperationStateTable.logs).select {
+            ApmOperationStateTable.id eq id
+        }.firstOrNull()?.get(ApmOperationStateTable.logs)?.parseOperationLogs() ?: emptyList()
+        legacyLogs + OperationLogTable.read(id, upToSequence)
+    }
+
+    /**
+     * Gets a loader of the logs an operation being reconstituted has stored so far. The logs it appends from now on
+     * are left out, as the operation also holds them in memory.
+     */
+    fun getStoredLogsLoader(id: String): () -> List<OperationLog> {
+        val lastSequence = transaction(database) {
+            OperationLogTable.lastSequence(id)
+        }
+        return {
+            getOperationLogs(id, lastSequence)
+        }
+    }
+
+    /**
+     * Stores the operation's state along with the logs written since it was last saved.
+     */
+    fun saveOperationState(record: ApmOperationStateRecord, newLogs: List<OperationLog>) = transaction(database) {
+        upsertOperationState(record, newLogs)
+    }
+
+    /**
+     * Stores a batch of operation states in a single transaction.
+     */
+    fun saveOperationStates(states: List<PendingOperationState<ApmOperationStateRecord>>) = transaction(database) {
+        for (pendingState in states) {
+            upsertOperationState(pendingState.record, pendingState.newLogs)
+        }
+    }
+
+    private fun upsertOperationState(record: ApmOperationStateRecord, newLogs: List<OperationLog>) {
+        ApmOperationStateTable.insertOrUpdate(ApmOperationStateTable.id) {
+            it[id] = record.id
+            it[chainId] = record.chainId
+            it[status] = record.status
+            it[state] = ExposedBlob(record.state)
+            it[createdAt] = record.createdAt
+            if (record.summary != null) {
+                it[endorsedBlockHeight] = record.summary.endorsedBlockHeight
+                it[stateName] = record.summary.stateName
+                it[task] = record.summary.task
             }
         }
+        OperationLogTable.append(record.id, newLogs)
     }
 }
@@ -11,9 +11,24 @@ object ApmOperationStateTable : Table("operation_state") {
     val status = integer("status")
     val state = blob("state")
     val createdAt = datetime("created_at")
+    // Logs are appended to the operation_log table, this column only holds the logs written by older versions
     val logs = text("logs").default("[]")
+    // Copied out of the state so that operations can be listed without deserializing it, null for older rows
+    val endorsedBlockHeight = integer("endorsed_block_height").nullable()
+    val stateName = varchar("state_name", 64).nullable()
+    val task = text("task").nullable()
 
     override val primaryKey = PrimaryKey(id)
+
+    // Everything but the legacy logs, which are only read on demand
+    val stateFields = slice(id, chainId, status, state, createdAt)
+    // What an operation listing needs, leaving out the state blob
+    val summaryFields = slice(id, chainId, status, createdAt, endorsedBlockHeight, stateName, task)
+
+    init {
+        index(false, chainId, status, createdAt)
+        index(false, status, createdAt)
+    }
 }
 
 data class ApmOperationStateRecord(
@@ -22,7 +37,7 @@ data class ApmOperationStateRecord(
     val status: Int,
     val state: ByteArray,
     val createdAt: LocalDateTime,
-    val logs: String
+    val summary: ApmOperationSummaryRecord? = null
 )
 
 fun ResultRow.toApmOperationStateRecord() = ApmOperationStateRecord(
@@ -30,6 +45,25 @@ fun ResultRow.toApmOperationStateRecord() = ApmOperationStateRecord(
     this[ApmOperationStateTable.chainId],
     this[ApmOperationStateTable.status],
     this[ApmOperationStateTable.state].bytes,
+    this[ApmOperationStateTable.createdAt]
+)
+
+data class ApmOperationSummaryRecord(
+    val id: String,
+    val chainId: String,
+    val status: Int,
+    val createdAt: LocalDateTime,
+    val endorsedBlockHeight: Int?,
+    val stateName: String?,
+    val task: String?
+)
+
+fun ResultRow.toApmOperationSummaryRecord() = ApmOperationSummaryRecord(
+    this[ApmOperationStateTable.id],
+    this[ApmOperationStateTable.chainId],
+    this[ApmOperationStateTable.status],
     this[ApmOperationStateTable.createdAt],
-    this[ApmOperationStateTable.logs]
+    this[ApmOperationStateTable.endorsedBlockHeight],
+    this[ApmOperationStateTable.stateName],
+    this[ApmOperationStateTable.task]
 )
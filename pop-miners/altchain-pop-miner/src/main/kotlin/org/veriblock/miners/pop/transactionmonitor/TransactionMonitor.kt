@@ -15,13 +15,11 @@ import org.veriblock.core.utilities.debugError
 import org.veriblock.miners.pop.core.ApmContext
 import org.veriblock.miners.pop.core.TransactionMeta
 import org.veriblock.miners.pop.net.SpvGateway
+import org.veriblock.miners.pop.proto.TxmonProto
 import org.veriblock.sdk.models.Address
 import org.veriblock.sdk.models.VeriBlockMerklePath
 import org.veriblock.sdk.models.VeriBlockTransaction
 import org.veriblock.spv.util.SpvEventBus
-import java.io.File
-import java.io.FileInputStream
-import java.io.FileOutputStream
 import java.io.IOException
 import java.util.Collections
 import java.util.concurrent.ConcurrentHashMap
@@ -31,16 +29,31 @@ import kotlin.concurrent.withLock
 private val logger = createLogger {}
 const val TM_FILE_EXTENSION = ".txmon"
 const val MIN_TX_CONFIRMATIONS: Int = 1
+// Minimum time between pending transaction checks while the blockchain is being downloaded
+private const val PENDING_TRANSACTIONS_CHECK_INTERVAL_MS = 10_000L
+// Journal entries after which the journal is folded into a new snapshot
+private const val JOURNAL_COMPACTION_THRESHOLD = 1_000
 
 class TransactionMonitor(
     val context: ApmContext,
     val gateway: SpvGateway,
     val address: Address,
+    private val store: TransactionMonitorStore,
+    // Confirmations after which a transaction is no longer monitored
+    private val pruneDepth: Int,
     transactionsToLoad: List<WalletTransaction> = emptyList()
 ) {
     private val lock = ReentrantLock(true)
     private val transactions: MutableMap<VbkTxId, WalletTransaction> = ConcurrentHashMap()
 
+    /**
+     * Whether a transaction is still needed (e.g. by an active operation) and must not be pruned
+     */
+    var isTransactionInUse: (VbkTxId) -> Boolean = { false }
+
+    // Set when some changes couldn't be written, the next save writes all the transactions to a new snapshot
+    private var compactionPending = false
+
     init {
         for (tx in transactionsToLoad) {
             transactions[tx.id] = tx
@@ -55,44 +68,85 @@ class TransactionMonitor(
             .filter { it.transactionMeta.state == TransactionMeta.MetaState.PENDING }
 
     fun start() {
-        SpvEventBus.newBestBlockEvent.register(this) {
-            checkPendingTransactions()
+        SpvEventBus.registerChainUpdateListener(this, PENDING_TRANSACTIONS_CHECK_INTERVAL_MS) {
+            checkPendingTransactions(it.added.lastOrNull()?.height)
         }
     }
 
-    private fun checkPendingTransactions() {
+    private fun checkPendingTransactions(tipHeight: Int?) {
         val pendingTxs = getPendingTransactions()
             .map { it.id }
             .toList()
 
-        val txsInfo = gateway.getTransactions(pendingTxs)
-
-        txsInfo.asSequence()
-            .filter { it.confirmations >= MIN_TX_CONFIRMATIONS }
-            .forEach {
-                val tx = transactions[it.transaction.txId]
-                    ?: error("Unable to retrieve pending transactions")
-                tx.transactionMeta.depth = it.confirmations
-                tx.transactionMeta.appearsAtChainHeight = it.blockNumber
-                tx.transactionMeta.appearsInBestChainBlock = it.blockHash.asAnyVbkHash()
-                tx.merklePath = VeriBlockMerklePath(it.merklePath)
-                tx.transactionMeta.setState(TransactionMeta.MetaState.CONFIRMED)
-            }
+        val confirmedTxs = if (pendingTxs.isEmpty()) {
+            emptyList()
+        } else {
+            gateway.getTransactions(pendingTxs).asSequence()
+                .filter { it.confirmations >= MIN_TX_CONFIRMATIONS }
+                .map {
+                    val tx = transactions[it.transaction.txId]
+                        ?: error("Unable to retrieve pending transactions")
+                    tx.transactionMeta.depth = it.confirmations
+                    tx.transactionMeta.appearsAtChainHeight = it.blockNumber
+                    tx.transactionMeta.appearsInBestChainBlock = it.blockHash.asAnyVbkHash()
+                    tx.merklePath = VeriBlockMerklePath(it.merklePath)
+                    tx.transactionMeta.setState(TransactionMeta.MetaState.CONFIRMED)
+                    tx
+                }
+                .toList()
+        }
+        val prunedTxs = if (tipHeight != null) {
+            pruneTransactions(tipHeight)
+        } else {
+            emptyList()
+        }
 
-        save()
+        if (confirmedTxs.isNotEmpty() || prunedTxs.isNotEmpty()) {
+            save(confirmedTxs.map { it.toJournalEntry() } + prunedTxs.map { it.toRemovalJournalEntry() })
+        }
     }
 
-    private fun save() {
-        val diskWallet = File(context.directory, context.filePrefix + TM_FILE_EXTENSION)
+    /**
+     * Stops monitoring the transactions confirmed at least [pruneDepth] blocks below [tipHeight]
+     */
+    private fun pruneTransactions(tipHeight: Int): List<VbkTxId> = lock.withLock {
+        val prunedTxs = transactions.values.getPrunableTransactions(tipHeight, pruneDepth, isTransactionInUse)
+        for (txId in prunedTxs) {
+            transactions.remove(txId)
+        }
+        if (prunedTxs.isNotEmpty()) {
+            logger.debug { "Pruned ${prunedTxs.size} transactions confirmed deeper than $pruneDepth blocks" }
+        }
+        prunedTxs
+    }
 
-        lock.withLock {
-            try {
-                FileOutputStream(diskWallet).use { stream ->
-                    stream.writeTransactionMonitor(this@TransactionMonitor)
-                }
-            } catch (e: IOException) {
-                logger.debugError(e) { "Unable to save VBK wallet to disk" }
+    /**
+     * Appends the changes to the journal, or writes a new snapshot once the journal grew long enough
+     */
+    private fun save(changes: List<TxmonProto.JournalEntry>) = lock.withLock {
+        try {
+            if (compactionPending || store.journalEntries + changes.size >= JOURNAL_COMPACTION_THRESHOLD) {
+                store.compact(toProto())
+                compactionPending = false
+            } else {
+                store.append(changes)
             }
+        } catch (e: IOException) {
+            compactionPending = true
+            logger.debugError(e) { "Unable to save VBK wallet to disk" }
+        }
+    }
+
+    /**
+     * Writes all the monitored transactions to a new snapshot
+     */
+    fun compact() = lock.withLock {
+        try {
+            store.compact(toProto())
+            compactionPending = false
+        } catch (e: IOException) {
+            compactionPending = true
+            logger.debugError(e) { "Unable to save VBK wallet to disk" }
         }
     }
 
@@ -104,6 +158,7 @@ class TransactionMonitor(
         val walletTransaction = WalletTransaction.wrap(transaction)
         walletTransaction.transactionMeta.setState(TransactionMeta.MetaState.PENDING)
         transactions[transaction.id] = walletTransaction
+        save(listOf(walletTransaction.toJournalEntry()))
     }
 
     fun getTransaction(transactionId: VbkTxId): WalletTransaction {
@@ -147,10 +202,17 @@ class TransactionMonitor(
     }
 }
 
-fun File.loadTransactionMonitor(context: ApmContext, gateway: SpvGateway): TransactionMonitor = try {
-    FileInputStream(this).use { stream ->
-        stream.readTransactionMonitor(context, gateway)
-    }
-} catch (e: IOException) {
-    throw IllegalStateException("Unable to read VBK wallet from disk")
-}
+/**
+ * Gets the transactions confirmed at least [pruneDepth] blocks below [tipHeight] which are not in use
+ */
+internal fun Collection<WalletTransaction>.getPrunableTransactions(
+    tipHeight: Int,
+    pruneDepth: Int,
+    isTransactionInUse: (VbkTxId) -> Boolean
+): List<VbkTxId> = asSequence()
+    .filter { it.transactionMeta.state == TransactionMeta.MetaState.CONFIRMED }
+    .filter { it.transactionMeta.appearsAtChainHeight > 0 }
+    .filter { tipHeight - it.transactionMeta.appearsAtChainHeight + 1 >= pruneDepth }
+    .map { it.id }
+    .filter { !isTransactionInUse(it) }
+    .toList()
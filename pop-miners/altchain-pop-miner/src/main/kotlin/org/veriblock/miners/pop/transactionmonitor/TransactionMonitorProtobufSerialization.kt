@@ -12,12 +12,12 @@ package org.veriblock.miners.pop.transactionmonitor
 
 
 import kotlinx.serialization.ExperimentalSerializationApi
-import kotlinx.serialization.protobuf.ProtoBuf
 import org.veriblock.miners.pop.core.ApmContext
 import org.veriblock.miners.pop.core.TransactionMeta
 import org.veriblock.miners.pop.proto.TxmonProto
 import org.veriblock.sdk.models.Address
 import org.veriblock.sdk.models.Output
+import org.veriblock.core.crypto.VbkTxId
 import org.veriblock.core.crypto.asAnyVbkHash
 import org.veriblock.core.crypto.asVbkTxId
 import org.veriblock.core.utilities.extensions.toHex
@@ -25,25 +25,26 @@ import org.veriblock.miners.pop.net.SpvGateway
 import org.veriblock.sdk.models.VeriBlockMerklePath
 import org.veriblock.sdk.models.asCoin
 import org.veriblock.sdk.services.SerializeDeserializeService
-import java.io.InputStream
-import java.io.OutputStream
 
-fun OutputStream.writeTransactionMonitor(transactionMonitor: TransactionMonitor) {
-    val data = ProtoBuf.encodeToByteArray(TxmonProto.TransactionMonitor.serializer(), transactionMonitor.toProto())
-    write(data)
-}
-
-fun InputStream.readTransactionMonitor(context: ApmContext, gateway: SpvGateway): TransactionMonitor {
-    val data = ProtoBuf.decodeFromByteArray(TxmonProto.TransactionMonitor.serializer(), readBytes())
-    return data.toModel(context, gateway)
+fun TransactionMonitorStore.loadTransactionMonitor(context: ApmContext, gateway: SpvGateway, pruneDepth: Int): TransactionMonitor {
+    val data = load()
+    if (hasJournal()) {
+        // Start over from a single snapshot, leaving behind any incomplete journal entry
+        compact(data)
+    }
+    return data.toModel(context, gateway, this, pruneDepth)
 }
 
-private fun TransactionMonitor.toProto() = TxmonProto.TransactionMonitor(
+internal fun TransactionMonitor.toProto() = TxmonProto.TransactionMonitor(
     network = context.networkParameters.name,
     address = address.toString(),
     transactions = getTransactions().map { it.toProto() }
 )
 
+internal fun WalletTransaction.toJournalEntry() = TxmonProto.JournalEntry(transaction = toProto())
+
+internal fun VbkTxId.toRemovalJournalEntry() = TxmonProto.JournalEntry(removedTxId = bytes)
+
 private fun WalletTransaction.toProto() = TxmonProto.WalletTransaction(
     txId = id.bytes,
     input = TxmonProto.TransactionInput(sourceAddress.toString(), sourceAmount.atomicUnits),
@@ -72,7 +73,12 @@ private fun TransactionMeta.toProto() = TxmonProto.TransactionMeta(
     depth = depth
 )
 
-private fun TxmonProto.TransactionMonitor.toModel(context: ApmContext, gateway: SpvGateway): TransactionMonitor {
+private fun TxmonProto.TransactionMonitor.toModel(
+    context: ApmContext,
+    gateway: SpvGateway,
+    store: TransactionMonitorStore,
+    pruneDepth: Int
+): TransactionMonitor {
     check(context.networkParameters.name == network) {
         "Network ${context.networkParameters.name} attempting to read ${context.vbkTokenName} wallet for $network"
     }
@@ -80,6 +86,8 @@ private fun TxmonProto.TransactionMonitor.toModel(context: ApmContext, gateway:
         context,
         gateway,
         Address(address),
+        store,
+        pruneDepth,
         transactions.map {
             it.toModel(context)
         }
@@ -0,0 +1,194 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+@file:OptIn(ExperimentalSerializationApi::class)
+
+package org.veriblock.miners.pop.transactionmonitor
+
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.protobuf.ProtoBuf
+import org.veriblock.core.utilities.createLogger
+import org.veriblock.core.utilities.extensions.toHex
+import org.veriblock.miners.pop.proto.TxmonProto
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+private val logger = createLogger {}
+
+const val TM_JOURNAL_EXTENSION = ".journal"
+
+/**
+ * Persists the transaction monitor as a snapshot file plus an append-only journal of the transaction changes
+ * made since the snapshot was written.
+ *
+ * Appending to the journal only writes the changes. Compacting folds the journal into a new snapshot, which is
+ * written aside and then renamed over the previous one, so a crash leaves either the old or the new snapshot.
+ * Replaying the journal is idempotent, so a crash between the rename and the journal removal loses nothing.
+ * An entry which was not completely written (after a crash or a failed append) is cut off the journal before
+ * appending again, so the entries written after it can still be read.
+ */
+class TransactionMonitorStore(
+    directory: File,
+    filePrefix: String
+) {
+    private val snapshotFile = File(directory, filePrefix + TM_FILE_EXTENSION)
+    private val journalFile = File(directory, filePrefix + TM_FILE_EXTENSION + TM_JOURNAL_EXTENSION)
+    private val temporaryFile = File(directory, "$filePrefix$TM_FILE_EXTENSION.tmp")
+
+    /**
+     * Amount of entries in the journal since the last compaction
+     */
+    var journalEntries = 0
+        private set
+
+    // Length of the journal up to the end of its last completely written entry
+    private var journalLength = if (journalFile.exists()) journalFile.length() else 0L
+
+    fun exists(): Boolean = snapshotFile.exists()
+
+    fun hasJournal(): Boolean = journalFile.exists()
+
+    /**
+     * Reads the snapshot and replays the journal over it
+     */
+    fun load(): TxmonProto.TransactionMonitor {
+        val snapshot = ProtoBuf.decodeFromByteArray(TxmonProto.TransactionMonitor.serializer(), snapshotFile.readBytes())
+        if (!journalFile.exists()) {
+            journalEntries = 0
+            journalLength = 0
+            return snapshot
+        }
+        val transactions = snapshot.transactions.associateByTo(LinkedHashMap()) { it.txId.toHex() }
+        val entries = readJournal()
+        try {
+            truncateJournal()
+        } catch (e: IOException) {
+            // Retried before the next append
+            logger.warn { "Unable to truncate the transaction monitor journal: ${e.message}" }
+        }
+        for (entry in entries) {
+            if (entry.transaction != null) {
+                transactions[entry.transaction.txId.toHex()] = entry.transaction
+            }
+            if (entry.removedTxId.isNotEmpty()) {
+                transactions.remove(entry.removedTxId.toHex())
+            }
+        }
+        journalEntries = entries.size
+        return snapshot.copy(transactions = transactions.values.toList())
+    }
+
+    fun append(entries: List<TxmonProto.JournalEntry>) {
+        if (entries.isEmpty()) {
+            return
+        }
+        // Drop whatever a previous append left behind, the entries after it would not be read
+        truncateJournal()
+        var length = journalLength
+        try {
+            FileOutputStream(journalFile, true).use { stream ->
+                val output = DataOutputStream(BufferedOutputStream(stream))
+                for (entry in entries) {
+                    val data = ProtoBuf.encodeToByteArray(TxmonProto.JournalEntry.serializer(), entry)
+                    output.writeInt(data.size)
+                    output.write(data)
+                    length += Int.SIZE_BYTES + data.size
+                }
+                output.flush()
+                stream.fd.sync()
+            }
+        } catch (e: IOException) {
+            try {
+                truncateJournal()
+            } catch (truncationError: IOException) {
+                e.addSuppressed(truncationError)
+            }
+            throw e
+        }
+        journalLength = length
+        journalEntries += entries.size
+    }
+
+    /**
+     * Replaces the snapshot with the given one and clears the journal
+     */
+    fun compact(snapshot: TxmonProto.TransactionMonitor) {
+        val data = ProtoBuf.encodeToByteArray(TxmonProto.TransactionMonitor.serializer(), snapshot)
+        FileOutputStream(temporaryFile).use { stream ->
+            stream.write(data)
+            stream.fd.sync()
+        }
+        try {
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+        } catch (e: AtomicMoveNotSupportedException) {
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        }
+        Files.deleteIfExists(journalFile.toPath())
+        journalEntries = 0
+        journalLength = 0
+    }
+
+    fun delete(): Boolean {
+        Files.deleteIfExists(journalFile.toPath())
+        return snapshotFile.delete()
+    }
+
+    /**
+     * Cuts the journal back to the end of its last completely written entry
+     */
+    private fun truncateJournal() {
+        if (!journalFile.exists() || journalFile.length() == journalLength) {
+            return
+        }
+        logger.warn { "Truncating the transaction monitor journal from ${journalFile.length()} to $journalLength bytes" }
+        FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE).use {
+            it.truncate(journalLength)
+            it.force(true)
+        }
+    }
+
+    /**
+     * Reads the completely written entries of the journal, and sets [journalLength] to where they end
+     */
+    private fun readJournal(): List<TxmonProto.JournalEntry> {
+        val entries = ArrayList<TxmonProto.JournalEntry>()
+        var length = 0L
+        DataInputStream(journalFile.inputStream().buffered()).use { input ->
+            while (true) {
+                var size = 0
+                val entry = try {
+                    size = input.readInt()
+                    require(size >= 0 && size <= journalFile.length()) { "Invalid journal entry size $size" }
+                    val data = ByteArray(size)
+                    input.readFully(data)
+                    ProtoBuf.decodeFromByteArray(TxmonProto.JournalEntry.serializer(), data)
+                } catch (e: EOFException) {
+                    break
+                } catch (e: Exception) {
+                    // The last entry was not completely written
+                    logger.warn { "Ignoring the unreadable end of the transaction monitor journal: ${e.message}" }
+                    break
+                }
+                entries.add(entry)
+                length += Int.SIZE_BYTES + size
+            }
+        }
+        journalLength = length
+        return entries
+    }
+}
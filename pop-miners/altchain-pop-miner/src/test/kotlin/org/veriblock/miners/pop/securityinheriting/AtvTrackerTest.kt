@@ -0,0 +1,86 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.securityinheriting
+
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Test
+import org.veriblock.sdk.alt.model.Atv
+import java.util.concurrent.CopyOnWriteArrayList
+
+class AtvTrackerTest {
+    private val confirmations = HashMap<String, Int>()
+    private val requests = CopyOnWriteArrayList<List<String>>()
+
+    private val tracker = AtvTracker("Test") { ids ->
+        requests.add(ids)
+        ids.map { id -> confirmations[id]?.let { atv(id, it) } }
+    }
+
+    @Test
+    fun pendingAtvsAreRetrievedTogetherOncePerBlock() = runBlocking {
+        confirmations["a"] = 1
+        confirmations["b"] = 1
+        val a = async { tracker.await("a") { it.confirmations >= 3 } }
+        val b = async { tracker.await("b") { it.confirmations >= 2 } }
+        awaitPending(2)
+        requests.clear()
+
+        confirmations["a"] = 2
+        confirmations["b"] = 2
+        tracker.onNewBlock(11)
+        b.await().confirmations shouldBe 2
+        requests shouldBe listOf(listOf("a", "b"))
+
+        confirmations["a"] = 3
+        tracker.onNewBlock(12)
+        a.await().confirmations shouldBe 3
+        requests shouldBe listOf(listOf("a", "b"), listOf("a"))
+        tracker.pendingCount shouldBe 0
+    }
+
+    @Test
+    fun atvsOutOfABlockAreCheckedLessOften() = runBlocking {
+        confirmations["a"] = 0
+        val a = async { tracker.await("a") { it.confirmations > 0 } }
+        awaitPending(1)
+        requests.clear()
+
+        for (height in 1..20) {
+            tracker.onNewBlock(height)
+        }
+        // Every block for the first checks, then after 2, 4, 8 and 16 blocks
+        requests.size shouldBe 7
+
+        confirmations["a"] = 1
+        tracker.onNewBlock(37)
+        a.await().confirmations shouldBe 1
+    }
+
+    @Test
+    fun atvSatisfyingThePredicateIsReturnedWithoutWaitingForABlock() = runBlocking {
+        confirmations["a"] = 5
+
+        tracker.await("a") { it.confirmations >= 5 }.confirmations shouldBe 5
+        tracker.pendingCount shouldBe 0
+    }
+
+    private suspend fun awaitPending(count: Int) {
+        while (tracker.pendingCount < count) {
+            yield()
+        }
+    }
+
+    private fun atv(id: String, confirmations: Int) = Atv(
+        vbkTransactionId = "tx-$id",
+        vbkBlockOfProofHash = "bop-$id",
+        containingBlock = if (confirmations > 0) "block-$id" else "",
+        confirmations = confirmations
+    )
+}
@@ -0,0 +1,145 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.securityinheriting
+
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Test
+import org.veriblock.core.params.NetworkParameters
+import org.veriblock.core.utilities.Configuration
+import org.veriblock.miners.pop.core.ApmContext
+
+class SecurityInheritingMonitorTest {
+    private val configuration = Configuration()
+    private val context = ApmContext(configuration, NetworkParameters())
+    private val chain = StubChain()
+    private val monitor = SecurityInheritingMonitor(context, configuration, chain.key, chain)
+
+    @Test
+    fun listenerAtOrBelowTheTipIsNotifiedRightAway() = runBlocking {
+        chain.mine(10)
+        monitor.poll()
+
+        monitor.getBlockAtHeight(5).height shouldBe 5
+        monitor.getBlockAtHeight(9).height shouldBe 9
+    }
+
+    @Test
+    fun listenerWhoseBlockCouldNotBeRetrievedIsNotifiedOnTheNextTip() = runBlocking {
+        chain.mine(10)
+        monitor.poll()
+        val block = async(start = CoroutineStart.UNDISPATCHED) {
+            monitor.getBlockAtHeight(11)
+        }
+
+        // The block below the new tip can't be retrieved
+        chain.mine(3)
+        chain.failing = true
+        monitor.poll()
+        block.isCompleted shouldBe false
+
+        chain.failing = false
+        chain.mine(1)
+        monitor.poll()
+        withTimeout(1_000) {
+            block.await().height shouldBe 11
+        }
+    }
+
+    @Test
+    fun confirmedTransactionsAreNotRetrievedAgain() = runBlocking {
+        chain.mine(10)
+        monitor.poll()
+        chain.include("tx")
+        val transaction = async(start = CoroutineStart.UNDISPATCHED) {
+            monitor.getTransaction("tx") { it.confirmations >= 3 }
+        }
+
+        chain.mine(1)
+        monitor.poll()
+        chain.mine(1)
+        monitor.poll()
+        withTimeout(1_000) {
+            transaction.await().confirmations shouldBe 3
+        }
+        // Once for the subscription check and once for the first tip it was in a block at
+        chain.transactionRequests shouldBe 2
+    }
+
+    @Test
+    fun tipAdvancingSeveralBlocksDoesNotRecheckTheListenersBelowIt() = runBlocking {
+        chain.mine(10)
+        monitor.poll()
+        chain.include("tx")
+        // Listeners which stay subscribed below the tip
+        val block = async(start = CoroutineStart.UNDISPATCHED) {
+            monitor.getBlockAtHeight(5) { false }
+        }
+        val transaction = async(start = CoroutineStart.UNDISPATCHED) {
+            monitor.getTransaction("tx") { false }
+        }
+        monitor.poll()
+        chain.requestedHeights.clear()
+        val transactionRequests = chain.transactionRequests
+
+        chain.mine(5)
+        monitor.poll()
+
+        // Only the previous tip's block, to check the new tip builds upon it
+        chain.requestedHeights shouldBe listOf(10)
+        chain.transactionRequests shouldBe transactionRequests
+        block.cancel()
+        transaction.cancel()
+    }
+
+    @Test
+    fun forkRechecksTheTransactionsAboveTheForkPoint() = runBlocking {
+        chain.mine(10)
+        monitor.poll()
+        chain.include("tx")
+        val transaction = async(start = CoroutineStart.UNDISPATCHED) {
+            monitor.getTransaction("tx") { it.confirmations >= 3 }
+        }
+        monitor.poll()
+
+        // The block with the transaction is replaced, and the transaction ends up one block higher
+        chain.fork(10, 1)
+        chain.include("tx")
+        monitor.poll()
+        chain.mine(2)
+        monitor.poll()
+
+        withTimeout(1_000) {
+            transaction.await().confirmations shouldBe 3
+        }
+        // The subscription check, the first tip it was in a block at, and the tip after the fork
+        chain.transactionRequests shouldBe 3
+    }
+
+    @Test
+    fun notifiedBlockEndsTheWaitForTheNextPoll() = runBlocking {
+        chain.notifications = true
+        chain.mine(10)
+        monitor.poll()
+
+        // The polling period is 10 seconds
+        withTimeout(1_000) {
+            monitor.awaitNextPoll()
+        }
+        chain.notificationRequests shouldBe 1
+    }
+
+    @Test
+    fun chainsWithoutNotificationsArePolledOnceTheTimeoutElapses() = runBlocking {
+        chain.mine(10)
+
+        chain.awaitBestBlockHeight(9, 10) shouldBe 9
+    }
+}
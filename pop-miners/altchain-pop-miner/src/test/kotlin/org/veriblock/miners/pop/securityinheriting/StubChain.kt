@@ -0,0 +1,129 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.securityinheriting
+
+import org.veriblock.core.altchain.AltchainPopEndorsement
+import org.veriblock.core.contracts.BlockEvidence
+import org.veriblock.sdk.alt.ApmInstruction
+import org.veriblock.sdk.alt.ChainConfig
+import org.veriblock.sdk.alt.SecurityInheritingChain
+import org.veriblock.sdk.alt.model.Atv
+import org.veriblock.sdk.alt.model.PopMempool
+import org.veriblock.sdk.alt.model.PopParamsResponse
+import org.veriblock.sdk.alt.model.SecurityInheritingBlock
+import org.veriblock.sdk.alt.model.SecurityInheritingTransaction
+import org.veriblock.sdk.alt.model.SubmitPopResponse
+import org.veriblock.sdk.alt.model.Vtb
+import org.veriblock.sdk.models.AltPublication
+import org.veriblock.sdk.models.BitcoinBlock
+import org.veriblock.sdk.models.StateInfo
+import org.veriblock.sdk.models.VeriBlockBlock
+import org.veriblock.sdk.models.VeriBlockPublication
+
+/**
+ * In-memory chain answering the calls the monitor makes
+ */
+class StubChain : SecurityInheritingChain {
+    private val blocks = ArrayList<SecurityInheritingBlock>()
+    private val transactionHeights = HashMap<String, Int>()
+
+    var failing = false
+    var notifications = false
+    var transactionRequests = 0
+    var notificationRequests = 0
+    val requestedHeights = ArrayList<Int>()
+    // Prefix of the hashes of the blocks mined from now on, changed by every fork
+    private var branch = ""
+
+    override val config: ChainConfig
+        get() = unsupported()
+    override val id: Long = 1
+    override val key: String = "test"
+    override val name: String = "Test"
+
+    fun mine(count: Int) = repeat(count) {
+        val height = blocks.size
+        blocks.add(
+            SecurityInheritingBlock(
+                "${branch}block$height", height, blocks.lastOrNull()?.hash ?: "", "", "", emptyList(), emptyList(),
+                emptyList(), emptyList(), emptyList()
+            )
+        )
+    }
+
+    /**
+     * Replaces the blocks from [height] on with [count] different ones
+     */
+    fun fork(height: Int, count: Int) {
+        while (blocks.size > height) {
+            blocks.removeAt(blocks.lastIndex)
+        }
+        transactionHeights.values.removeIf { it >= height }
+        branch += "fork"
+        mine(count)
+    }
+
+    fun include(txId: String) {
+        mine(1)
+        transactionHeights[txId] = blocks.last().height
+    }
+
+    override suspend fun getBestBlockHeight(): Int = blocks.last().height
+
+    override fun supportsBlockNotifications(): Boolean = notifications
+
+    override suspend fun awaitBestBlockHeight(knownHeight: Int, timeoutMillis: Long): Int = if (notifications) {
+        notificationRequests++
+        knownHeight + 1
+    } else {
+        super.awaitBestBlockHeight(knownHeight, timeoutMillis)
+    }
+
+    override suspend fun getBlockChainInfo(): StateInfo =
+        StateInfo(networkHeight = blocks.size, localBlockchainHeight = blocks.size, isSynchronized = true)
+
+    override suspend fun getBlock(hash: String): SecurityInheritingBlock? = blocks.find { it.hash == hash }
+
+    override suspend fun getBlock(height: Int): SecurityInheritingBlock? = blocks.getOrNull(height)
+
+    override suspend fun getBlocks(heights: List<Int>): List<SecurityInheritingBlock?> {
+        check(!failing) { "Unreachable" }
+        requestedHeights.addAll(heights)
+        return heights.map { blocks.getOrNull(it) }
+    }
+
+    override suspend fun getTransaction(txId: String, blockHash: String?): SecurityInheritingTransaction? {
+        transactionRequests++
+        val height = transactionHeights[txId]
+            ?: return null
+        return SecurityInheritingTransaction(txId, blocks.size - height, emptyList(), blocks[height].hash)
+    }
+
+    override fun shouldAutoMine(blockHeight: Int): Boolean = false
+
+    override suspend fun checkBlockIsOnMainChain(height: Int, blockHeaderToCheck: ByteArray): Boolean = unsupported()
+    override fun getPayoutDelay(): Int = unsupported()
+    override suspend fun getBestKnownVbkBlockHash(): String = unsupported()
+    override suspend fun getPopParams(): PopParamsResponse = unsupported()
+    override suspend fun getVbkBlock(hash: String): VeriBlockBlock? = unsupported()
+    override suspend fun getBestKnownBtcBlockHash(): String = unsupported()
+    override suspend fun getBtcBlock(hash: String): BitcoinBlock? = unsupported()
+    override suspend fun getPopMempool(): PopMempool = unsupported()
+    override suspend fun getAtv(id: String): Atv? = unsupported()
+    override suspend fun getVtb(id: String): Vtb? = unsupported()
+    override suspend fun getMiningInstructionByHeight(blockHeight: Int?): ApmInstruction = unsupported()
+    override suspend fun submitPopVbk(block: VeriBlockBlock): SubmitPopResponse = unsupported()
+    override suspend fun submitPopAtv(atv: AltPublication): SubmitPopResponse = unsupported()
+    override suspend fun submitPopVtb(vtb: VeriBlockPublication): SubmitPopResponse = unsupported()
+    override fun extractAddressDisplay(addressData: ByteArray): String = unsupported()
+    override suspend fun extractBlockEvidences(altchainPopEndorsements: List<AltchainPopEndorsement>): List<BlockEvidence> =
+        unsupported()
+    override fun validatePayoutAddress() = unsupported()
+    override suspend fun getMissingBtcBlockHashes(): List<String> = unsupported()
+
+    private fun unsupported(): Nothing = throw UnsupportedOperationException("Not used by the tests")
+}
@@ -0,0 +1,98 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.service
+
+import io.kotest.matchers.shouldBe
+import org.junit.Test
+import org.veriblock.core.crypto.VbkTxId
+import org.veriblock.core.params.NetworkParameters
+import org.veriblock.core.utilities.Configuration
+import org.veriblock.lite.core.randomVeriBlockBlock
+import org.veriblock.lite.core.randomVeriBlockMerklePath
+import org.veriblock.miners.pop.core.ApmContext
+import org.veriblock.miners.pop.core.ApmOperationState
+import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.miners.pop.proto.OperationProto
+import org.veriblock.miners.pop.securityinheriting.SecurityInheritingMonitor
+import org.veriblock.miners.pop.securityinheriting.SecurityInheritingService
+import org.veriblock.miners.pop.securityinheriting.StubChain
+import org.veriblock.miners.pop.transactionmonitor.WalletTransaction
+import org.veriblock.sdk.alt.plugin.PluginService
+import org.veriblock.sdk.services.SerializeDeserializeService
+import java.time.LocalDateTime
+
+private const val TX_ID = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff"
+
+class OperationSerializerTest {
+    private val configuration = Configuration()
+    private val context = ApmContext(configuration, NetworkParameters())
+    private val pluginService = PluginService(configuration)
+    private val serializer = OperationSerializer(pluginService, SecurityInheritingService(context, configuration, pluginService))
+    private val chain = StubChain()
+    private val monitor = SecurityInheritingMonitor(context, configuration, chain.key, chain)
+
+    // The transaction monitor no longer has the transaction
+    private val prunedTxFactory: (VbkTxId) -> WalletTransaction = {
+        error("Unable to find VBK transaction $it in the monitored address")
+    }
+
+    @Test
+    fun finishedOperationWhoseTransactionWasPrunedIsLoaded() {
+        val serialized = operation(
+            state = MiningOperationState.COMPLETED_ID,
+            blockOfProof = SerializeDeserializeService.serializeHeaders(randomVeriBlockBlock()),
+            merklePath = randomVeriBlockMerklePath().toCompactString(),
+            atvId = "atv",
+            payoutBlockHash = "payout"
+        )
+
+        val operation = serializer.deserialize(serialized, chain, monitor, LocalDateTime.now(), { emptyList() }, prunedTxFactory)
+
+        operation.isFailed() shouldBe false
+        operation.state shouldBe MiningOperationState.COMPLETED
+        operation.endorsementTransaction shouldBe null
+        operation.prunedEndorsementTxId shouldBe TX_ID
+        // Saving it again keeps the transaction id
+        serializer.serialize(operation).txId shouldBe TX_ID
+    }
+
+    @Test
+    fun unconfirmedOperationWhoseTransactionIsMissingFails() {
+        val serialized = operation(state = ApmOperationState.ENDORSEMENT_TRANSACTION.id)
+
+        val operation = serializer.deserialize(serialized, chain, monitor, LocalDateTime.now(), { emptyList() }, prunedTxFactory)
+
+        operation.isFailed() shouldBe true
+        operation.prunedEndorsementTxId shouldBe null
+    }
+
+    private fun operation(
+        state: Int,
+        blockOfProof: ByteArray = ByteArray(0),
+        merklePath: String = "",
+        atvId: String = "",
+        payoutBlockHash: String = ""
+    ) = OperationProto.Operation(
+        operationId = "test0001",
+        chainId = chain.key,
+        state = state,
+        blockHeight = 100,
+        miningInstruction = OperationProto.PublicationData(
+            identifier = chain.id,
+            header = ByteArray(80) { 1 },
+            payoutInfo = ByteArray(20) { 2 },
+            veriblockContext = ByteArray(0)
+        ),
+        txId = TX_ID,
+        blockOfProof = blockOfProof,
+        merklePath = merklePath,
+        atvId = atvId,
+        payoutBlockHash = payoutBlockHash,
+        payoutAmount = if (payoutBlockHash.isEmpty()) 0 else 1_000,
+        failureReason = ""
+    )
+}
@@ -0,0 +1,137 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.storage
+
+import io.kotest.matchers.shouldBe
+import org.jetbrains.exposed.sql.Database
+import org.jetbrains.exposed.sql.SchemaUtils
+import org.jetbrains.exposed.sql.transactions.transaction
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.miners.pop.core.MiningOperationStatus
+import java.io.File
+import java.sql.Connection
+import java.time.LocalDateTime
+
+class ApmOperationRepositoryTests {
+    private lateinit var databaseFile: File
+    private lateinit var database: Database
+    private lateinit var repository: ApmOperationRepository
+
+    private val now = LocalDateTime.of(2021, 1, 1, 12, 0)
+
+    @Before
+    fun setUp() {
+        databaseFile = File.createTempFile("apm-operation-repository", ".db")
+        database = Database.connect("jdbc:sqlite:${databaseFile.absolutePath}", "org.sqlite.JDBC").apply {
+            transactionManager.defaultIsolationLevel = Connection.TRANSACTION_READ_UNCOMMITTED
+            transaction(this) {
+                SchemaUtils.createMissingTablesAndColumns(ApmOperationStateTable, OperationLogTable)
+            }
+        }
+        repository = ApmOperationRepository(database)
+    }
+
+    @After
+    fun tearDown() {
+        databaseFile.delete()
+    }
+
+    @Test
+    fun summariesArePagedByTheLastIdOfThePreviousPage() {
+        save("a", now.minusMinutes(3))
+        save("b", now.minusMinutes(2))
+        save("c", now.minusMinutes(1))
+        save("d", now)
+
+        val firstPage = repository.getOperationSummaries(status = MiningOperationStatus.ALL, limit = 2)
+        val secondPage = repository.getOperationSummaries(status = MiningOperationStatus.ALL, limit = 2, after = firstPage.last().id)
+
+        firstPage.map { it.id } shouldBe listOf("d", "c")
+        secondPage.map { it.id } shouldBe listOf("b", "a")
+    }
+
+    @Test
+    fun summariesCreatedAtTheSameTimeAreNeitherSkippedNorRepeated() {
+        save("a", now.minusMinutes(1))
+        save("b", now)
+        save("c", now)
+        save("d", now)
+        save("e", now)
+
+        val pages = generateSequence(repository.getOperationSummaries(status = MiningOperationStatus.ALL, limit = 2)) { page ->
+            page.lastOrNull()?.let {
+                repository.getOperationSummaries(status = MiningOperationStatus.ALL, limit = 2, after = it.id)
+            }
+        }.takeWhile { it.isNotEmpty() }.toList()
+
+        pages.map { page -> page.map { it.id } } shouldBe listOf(listOf("e", "d"), listOf("c", "b"), listOf("a"))
+    }
+
+    @Test
+    fun lastPageIsShortAndNothingFollowsIt() {
+        save("a", now.minusMinutes(2))
+        save("b", now.minusMinutes(1))
+        save("c", now)
+
+        val lastPage = repository.getOperationSummaries(status = MiningOperationStatus.ALL, limit = 2, after = "b")
+
+        lastPage.map { it.id } shouldBe listOf("a")
+        repository.getOperationSummaries(status = MiningOperationStatus.ALL, limit = 2, after = "a") shouldBe emptyList()
+    }
+
+    @Test
+    fun unknownCursorGivesAnEmptyPage() {
+        save("a", now)
+
+        repository.getOperationSummaries(status = MiningOperationStatus.ALL, after = "unknown") shouldBe emptyList()
+    }
+
+    @Test
+    fun cursorIsCombinedWithTheChainAndStatusFilters() {
+        save("a", now.minusMinutes(3), chainId = "one")
+        save("b", now.minusMinutes(2), chainId = "two")
+        save("c", now.minusMinutes(1), chainId = "one", status = MiningOperationState.COMPLETED_ID)
+        save("d", now, chainId = "one")
+
+        repository.getOperationSummaries(chainId = "one", after = "d").map { it.id } shouldBe listOf("a")
+    }
+
+    @Test
+    fun legacyRowsAreListedWithoutTheirSummaryColumns() {
+        save("legacy", now.minusMinutes(1), withSummary = false)
+        save("new", now)
+
+        val summaries = repository.getOperationSummaries(status = MiningOperationStatus.ALL)
+        val nextPage = repository.getOperationSummaries(status = MiningOperationStatus.ALL, after = "new")
+
+        summaries.map { it.id } shouldBe listOf("new", "legacy")
+        summaries[0].stateName shouldBe "State new"
+        summaries[0].endorsedBlockHeight shouldBe 100
+        summaries[1].stateName shouldBe null
+        summaries[1].task shouldBe null
+        summaries[1].endorsedBlockHeight shouldBe null
+        nextPage.map { it.id } shouldBe listOf("legacy")
+    }
+
+    private fun save(
+        id: String,
+        createdAt: LocalDateTime,
+        chainId: String = "chain",
+        status: Int = MiningOperationState.INITIAL_ID + 1,
+        withSummary: Boolean = true
+    ) {
+        val summary = if (withSummary) {
+            ApmOperationSummaryRecord(id, chainId, status, createdAt, 100, "State $id", "Task $id")
+        } else {
+            null
+        }
+        repository.saveOperationState(ApmOperationStateRecord(id, chainId, status, ByteArray(0), createdAt, summary), emptyList())
+    }
+}
@@ -0,0 +1,127 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.miners.pop.transactionmonitor
+
+import io.kotest.matchers.shouldBe
+import org.junit.After
+import org.junit.Test
+import org.veriblock.miners.pop.proto.TxmonProto
+import java.io.File
+import java.nio.file.Files
+
+class TransactionMonitorStoreTest {
+    private val directory = Files.createTempDirectory("txmon").toFile()
+    private val store = TransactionMonitorStore(directory, "test")
+    private val journalFile = File(directory, "test$TM_FILE_EXTENSION$TM_JOURNAL_EXTENSION")
+
+    @After
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun journalIsReplayedOverTheSnapshot() {
+        store.compact(snapshot(transaction(1, depth = 0), transaction(2, depth = 0)))
+
+        store.append(listOf(TxmonProto.JournalEntry(transaction = transaction(1, depth = 5))))
+        store.append(
+            listOf(
+                TxmonProto.JournalEntry(removedTxId = txId(2)),
+                TxmonProto.JournalEntry(transaction = transaction(3, depth = 0))
+            )
+        )
+
+        val loaded = TransactionMonitorStore(directory, "test").load()
+        loaded.transactions.map { it.txId[0].toInt() to it.meta.depth } shouldBe listOf(1 to 5, 3 to 0)
+    }
+
+    @Test
+    fun compactionClearsTheJournal() {
+        store.compact(snapshot(transaction(1, depth = 0)))
+        store.append(listOf(TxmonProto.JournalEntry(transaction = transaction(2, depth = 0))))
+        store.journalEntries shouldBe 1
+
+        store.compact(store.load())
+
+        store.journalEntries shouldBe 0
+        journalFile.exists() shouldBe false
+        store.load().transactions.size shouldBe 2
+    }
+
+    @Test
+    fun incompleteLastJournalEntryIsIgnored() {
+        store.compact(snapshot(transaction(1, depth = 0)))
+        store.append(listOf(TxmonProto.JournalEntry(transaction = transaction(2, depth = 0))))
+        // Crash in the middle of an append
+        journalFile.appendBytes(byteArrayOf(0, 0, 1, 0, 42))
+
+        val loaded = store.load()
+
+        loaded.transactions.size shouldBe 2
+        store.journalEntries shouldBe 1
+    }
+
+    @Test
+    fun appendAfterAnIncompleteEntryCutsItOff() {
+        store.compact(snapshot(transaction(1, depth = 0)))
+        store.append(listOf(TxmonProto.JournalEntry(transaction = transaction(2, depth = 0))))
+        // An append which failed halfway through
+        journalFile.appendBytes(byteArrayOf(0, 0, 1, 0, 42))
+
+        store.append(listOf(TxmonProto.JournalEntry(transaction = transaction(3, depth = 0))))
+        store.append(listOf(TxmonProto.JournalEntry(transaction = transaction(2, depth = 7))))
+
+        val reloaded = TransactionMonitorStore(directory, "test")
+        reloaded.load().transactions.map { it.txId[0].toInt() to it.meta.depth } shouldBe listOf(1 to 0, 2 to 7, 3 to 0)
+        reloaded.journalEntries shouldBe 3
+    }
+
+    @Test
+    fun loadCutsOffTheIncompleteEndOfTheJournal() {
+        store.compact(snapshot(transaction(1, depth = 0)))
+        store.append(listOf(TxmonProto.JournalEntry(transaction = transaction(2, depth = 0))))
+        val completeLength = journalFile.length()
+        // Crash in the middle of an append, then a restart
+        journalFile.appendBytes(byteArrayOf(0, 0, 1, 0, 42))
+        val restarted = TransactionMonitorStore(directory, "test")
+        restarted.load()
+
+        journalFile.length() shouldBe completeLength
+        restarted.append(listOf(TxmonProto.JournalEntry(removedTxId = txId(1))))
+        restarted.append(listOf(TxmonProto.JournalEntry(transaction = transaction(3, depth = 0))))
+
+        val loaded = TransactionMonitorStore(directory, "test").load()
+        loaded.transactions.map { it.txId[0].toInt() } shouldBe listOf(2, 3)
+    }
+
+    private fun snapshot(vararg transactions: TxmonProto.WalletTransaction) = TxmonProto.TransactionMonitor(
+        network = "testnet",
+        address = "V5Ujv72h4jEBcKnALGc4fKqs6CDAPX",
+        transactions = transactions.toList()
+    )
+
+    private fun txId(id: Int) = ByteArray(32) { id.toByte() }
+
+    private fun transaction(id: Int, depth: Int) = TxmonProto.WalletTransaction(
+        txId = txId(id),
+        input = TxmonProto.TransactionInput("V5Ujv72h4jEBcKnALGc4fKqs6CDAPX", 100),
+        signatureIndex = 1,
+        data = ByteArray(0),
+        merkleBranch = TxmonProto.MerkleBranch(),
+        meta = TxmonProto.TransactionMeta(
+            txId = txId(id),
+            state = 1,
+            appearsInBestChainBlock = ByteArray(0),
+            appearsAtHeight = 0,
+            depth = depth
+        ),
+        signature = ByteArray(0),
+        publicKey = ByteArray(0)
+    )
+}
@@ -0,0 +1,57 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.transactionmonitor
+
+import io.kotest.matchers.shouldBe
+import org.junit.Test
+import org.veriblock.core.params.NetworkParameters
+import org.veriblock.core.utilities.Configuration
+import org.veriblock.lite.core.randomTransactionMeta
+import org.veriblock.lite.core.randomWalletTransaction
+import org.veriblock.miners.pop.core.ApmContext
+import org.veriblock.miners.pop.core.TransactionMeta
+
+private const val PRUNE_DEPTH = 100
+
+class TransactionPruningTest {
+    private val context = ApmContext(Configuration(), NetworkParameters())
+
+    @Test
+    fun transactionsConfirmedDeeperThanThePruneDepthArePruned() {
+        val deep = confirmedTransaction(height = 1_000)
+        val atTheDepth = confirmedTransaction(height = 1_001)
+        val shallow = confirmedTransaction(height = 1_002)
+
+        val pruned = listOf(deep, atTheDepth, shallow).getPrunableTransactions(1_100, PRUNE_DEPTH) { false }
+
+        pruned shouldBe listOf(deep.id, atTheDepth.id)
+    }
+
+    @Test
+    fun pendingTransactionsAreNotPruned() {
+        val pending = randomWalletTransaction(context, transactionMeta = randomTransactionMeta(metaState = TransactionMeta.MetaState.PENDING))
+
+        listOf(pending).getPrunableTransactions(1_000_000, PRUNE_DEPTH) { false } shouldBe emptyList()
+    }
+
+    @Test
+    fun transactionsInUseAreNotPruned() {
+        val finished = confirmedTransaction(height = 1_000)
+        val inUse = confirmedTransaction(height = 1_000)
+
+        val pruned = listOf(finished, inUse).getPrunableTransactions(2_000, PRUNE_DEPTH) { it == inUse.id }
+
+        pruned shouldBe listOf(finished.id)
+    }
+
+    private fun confirmedTransaction(height: Int) = randomWalletTransaction(
+        context,
+        transactionMeta = randomTransactionMeta(metaState = TransactionMeta.MetaState.CONFIRMED).apply {
+            appearsAtChainHeight = height
+        }
+    )
+}
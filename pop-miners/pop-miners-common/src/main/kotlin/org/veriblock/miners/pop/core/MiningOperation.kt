@@ -25,6 +25,12 @@ abstract class MiningOperation(
 
     private val logs: MutableList<OperationLog> = CopyOnWriteArrayList(logs)
 
+    // Logs written before the operation was reconstituted, only loaded from storage when they are asked for
+    private var storedLogs: Lazy<List<OperationLog>>? = null
+
+    // How many of the in-memory logs have already been persisted, the logs given on construction are assumed to be
+    private var persistedLogCount = logs.size
+
     protected fun setState(state: MiningOperationState) {
         this.state = state
         if (!reconstituting || state == MiningOperationState.FAILED) {
@@ -94,11 +100,35 @@ abstract class MiningOperation(
      * @param level: The log level, Level.TRACE by default
      */
     fun getLogs(level: Level = Level.TRACE): List<OperationLog> {
-        return logs.filter {
+        val allLogs = storedLogs?.let { it.value + logs } ?: logs
+        return allLogs.filter {
             Level.toLevel(it.level).isMoreSpecificThan(level)
         }
     }
 
+    /**
+     * Sets where the logs written before this operation was reconstituted are loaded from, on first use. The loader
+     * must only return those logs, as the ones written since are also held in memory.
+     */
+    fun setStoredLogs(loader: () -> List<OperationLog>) {
+        storedLogs = lazy(loader)
+    }
+
+    /**
+     * Gets the logs which were added since the last time the operation's logs were persisted. They are only
+     * considered persisted once [onLogsPersisted] is called, after they were written.
+     */
+    @Synchronized
+    fun getUnpersistedLogs(): List<OperationLog> {
+        val snapshot = logs.toList()
+        return snapshot.subList(persistedLogCount.coerceAtMost(snapshot.size), snapshot.size)
+    }
+
+    @Synchronized
+    fun onLogsPersisted(count: Int) {
+        persistedLogCount += count
+    }
+
     abstract fun getDetailedInfo(): Map<String, String>
 
     override fun toString(): String {
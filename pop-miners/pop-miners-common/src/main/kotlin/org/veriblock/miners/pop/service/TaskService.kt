@@ -43,6 +43,7 @@ abstract class TaskService<MO : MiningOperation> {
         taskName: String,
         targetState: MiningOperationState,
         timeout: Duration,
+        stage: TaskStage? = null,
         block: suspend () -> Unit
     ) {
         // Check if this operation needs to run this task first
@@ -58,13 +59,16 @@ abstract class TaskService<MO : MiningOperation> {
         var success = false
         var attempts = 1
         do {
-            val timerSample = Timer.start(Metrics.registry)
             try {
-                withTimeout(timeout) {
-                    block()
+                // Waiting for the stage counts neither towards the task timeout nor towards its timer
+                if (stage != null) {
+                    stage.withPermit(this) {
+                        runTimed(timer, timeout, block)
+                    }
+                } else {
+                    runTimed(timer, timeout, block)
                 }
                 success = true
-                timerSample.stop(timer)
             } catch (e: TaskException) {
                 logger.debugWarn(this, e, "Task '$taskName' has failed")
                 if (attempts < MAX_TASK_RETRIES) {
@@ -85,6 +89,14 @@ abstract class TaskService<MO : MiningOperation> {
             }
         } while (!success)
     }
+
+    private suspend fun runTimed(timer: Timer, timeout: Duration, block: suspend () -> Unit) {
+        val timerSample = Timer.start(Metrics.registry)
+        withTimeout(timeout) {
+            block()
+        }
+        timerSample.stop(timer)
+    }
 }
 
 class TaskException(override val message: String) : RuntimeException()
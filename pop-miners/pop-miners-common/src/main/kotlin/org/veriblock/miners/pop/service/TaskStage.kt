@@ -0,0 +1,109 @@
+package org.veriblock.miners.pop.service
+
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.Timer
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import org.veriblock.miners.pop.core.MiningOperation
+import java.time.LocalDateTime
+import java.util.PriorityQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * Limits how many operations can run the tasks of a pipeline stage at the same time.
+ *
+ * Operations over the limit wait in a queue ordered by age (the oldest operation first) and then by endorsed
+ * block height (the lowest first), so a burst of new operations doesn't hold back the ones already in progress.
+ * The queue depth, the operations running the stage and the time spent waiting are reported through [Metrics].
+ */
+class TaskStage(
+    val name: String,
+    val concurrency: Int
+) {
+    private class Waiter(
+        val createdAt: LocalDateTime,
+        val endorsedBlockHeight: Int,
+        val sequence: Long
+    ) {
+        val granted = CompletableDeferred<Unit>()
+    }
+
+    private val lock = Any()
+    private var available = concurrency
+    private var sequence = 0L
+    private val waiters = PriorityQueue(
+        compareBy<Waiter>({ it.createdAt }, { it.endorsedBlockHeight }, { it.sequence })
+    )
+
+    private val waitTimer = Timer.builder("pop_miner.stage_wait")
+        .description("Time spent waiting for a free slot in the $name stage")
+        .tags("stage", name)
+        .publishPercentiles(0.5, 0.9, 0.95, 0.99)
+        .register(Metrics.registry)
+
+    init {
+        Gauge.builder("pop_miner.stage_queued", this) { it.queued.toDouble() }
+            .description("Number of operations waiting for the $name stage")
+            .tags("stage", name)
+            .register(Metrics.registry)
+        Gauge.builder("pop_miner.stage_running", this) { it.running.toDouble() }
+            .description("Number of operations running the $name stage")
+            .tags("stage", name)
+            .register(Metrics.registry)
+    }
+
+    val queued: Int
+        get() = synchronized(lock) { waiters.size }
+
+    val running: Int
+        get() = synchronized(lock) { concurrency - available }
+
+    suspend fun <T> withPermit(operation: MiningOperation, block: suspend () -> T): T {
+        acquire(operation)
+        try {
+            return block()
+        } finally {
+            release()
+        }
+    }
+
+    private suspend fun acquire(operation: MiningOperation) {
+        val waiter = synchronized(lock) {
+            if (available > 0 && waiters.isEmpty()) {
+                available--
+                waitTimer.record(0, TimeUnit.NANOSECONDS)
+                return
+            }
+            Waiter(operation.createdAt, operation.endorsedBlockHeight ?: Int.MAX_VALUE, sequence++).also {
+                waiters.add(it)
+            }
+        }
+        val waitStart = System.nanoTime()
+        try {
+            waiter.granted.await()
+        } catch (e: CancellationException) {
+            synchronized(lock) {
+                if (!waiters.remove(waiter)) {
+                    // The slot was granted in the meantime, hand it over to the next operation
+                    releaseLocked()
+                }
+            }
+            throw e
+        } finally {
+            waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS)
+        }
+    }
+
+    private fun release() = synchronized(lock) {
+        releaseLocked()
+    }
+
+    private fun releaseLocked() {
+        val next = waiters.poll()
+        if (next != null) {
+            next.granted.complete(Unit)
+        } else {
+            available++
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.veriblock.miners.pop.storage
+
+import org.jetbrains.exposed.sql.ResultRow
+import org.jetbrains.exposed.sql.Table
+import org.jetbrains.exposed.sql.and
+import org.jetbrains.exposed.sql.batchInsert
+import org.jetbrains.exposed.sql.max
+import org.jetbrains.exposed.sql.select
+import org.veriblock.miners.pop.core.OperationLog
+
+/**
+ * Append-only log of the operations, one row per [OperationLog] in the order they were written.
+ */
+object OperationLogTable : Table("operation_log") {
+    val sequence = long("seq").autoIncrement()
+    val operationId = varchar("operation_id", 32)
+    val timestamp = long("timestamp")
+    val level = varchar("level", 10)
+    val msg = text("msg")
+
+    override val primaryKey = PrimaryKey(sequence)
+
+    init {
+        index(false, operationId, sequence)
+    }
+}
+
+fun ResultRow.toOperationLog() = OperationLog(
+    this[OperationLogTable.timestamp],
+    this[OperationLogTable.level],
+    this[OperationLogTable.msg]
+)
+
+/**
+ * Appends the given logs of an operation. Must be called within a transaction.
+ */
+fun OperationLogTable.append(id: String, logs: List<OperationLog>) {
+    if (logs.isEmpty()) {
+        return
+    }
+    batchInsert(logs) { log ->
+        this[operationId] = id
+        this[timestamp] = log.timestamp
+        this[level] = log.level
+        this[msg] = log.msg
+    }
+}
+
+/**
+ * Gets the sequence of the last log appended for an operation, or 0 if there is none. Must be called within a
+ * transaction.
+ */
+fun OperationLogTable.lastSequence(id: String): Long {
+    val maxSequence = sequence.max()
+    return slice(maxSequence).select {
+        operationId eq id
+    }.firstOrNull()?.get(maxSequence) ?: 0
+}
+
+/**
+ * Reads the logs appended for an operation, oldest first, up to [upToSequence] when given. Must be called within
+ * a transaction.
+ */
+fun OperationLogTable.read(id: String, upToSequence: Long? = null): List<OperationLog> = select {
+    if (upToSequence != null) {
+        (operationId eq id) and (sequence lessEq upToSequence)
+    } else {
+        operationId eq id
+    }
+}.orderBy(
+    sequence
+).map {
+    it.toOperationLog()
+}
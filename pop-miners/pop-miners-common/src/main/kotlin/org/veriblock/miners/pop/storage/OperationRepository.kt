@@ -1,16 +1,20 @@
 package org.veriblock.miners.pop.storage
 
 import org.jetbrains.exposed.sql.Database
+import org.jetbrains.exposed.sql.FieldSet
 import org.jetbrains.exposed.sql.Query
+import org.jetbrains.exposed.sql.SortOrder
 import org.jetbrains.exposed.sql.and
-import org.jetbrains.exposed.sql.insert
+import org.jetbrains.exposed.sql.andWhere
+import org.jetbrains.exposed.sql.or
 import org.jetbrains.exposed.sql.select
 import org.jetbrains.exposed.sql.selectAll
 import org.jetbrains.exposed.sql.statements.api.ExposedBlob
 import org.jetbrains.exposed.sql.transactions.transaction
-import org.jetbrains.exposed.sql.update
 import org.veriblock.miners.pop.core.MiningOperationState
 import org.veriblock.miners.pop.core.MiningOperationStatus
+import org.veriblock.miners.pop.core.OperationLog
+import org.veriblock.miners.pop.core.parseOperationLogs
 
 open class OperationRepository(
     protected val database: Database
@@ -20,7 +24,7 @@ open class OperationRepository(
         limit: Int = 50,
         offset: Int = 0
     ): List<OperationStateRecord> = transaction(database) {
-        operationsFilterSelect(status).orderBy(
+        operationsFilterSelect(OperationStateTable.stateFields, status).orderBy(
             OperationStateTable.createdAt
         ).limit(
             limit, offset.toLong()
@@ -29,31 +33,63 @@ open class OperationRepository(
         }.toList()
     }
 
+    /**
+     * Lists operations without reading their state, newest first.
+     * Pages can be walked either by [offset] or, without having to skip over the previous pages, by passing the id
+     * of the last operation of the previous page as [after].
+     */
+    fun getOperationSummaries(
+        status: MiningOperationStatus = MiningOperationStatus.ACTIVE,
+        limit: Int = 50,
+        offset: Int = 0,
+        after: String? = null
+    ): List<OperationSummaryRecord> = transaction(database) {
+        val query = operationsFilterSelect(OperationStateTable.summaryFields, status)
+        if (after != null) {
+            val afterCreatedAt = OperationStateTable.slice(OperationStateTable.createdAt).select {
+                OperationStateTable.id eq after
+            }.firstOrNull()?.get(OperationStateTable.createdAt)
+                ?: return@transaction emptyList()
+            query.andWhere {
+                (OperationStateTable.createdAt less afterCreatedAt) or
+                    ((OperationStateTable.createdAt eq afterCreatedAt) and (OperationStateTable.id less after))
+            }
+        }
+        query.orderBy(
+            OperationStateTable.createdAt to SortOrder.DESC,
+            OperationStateTable.id to SortOrder.DESC
+        ).limit(
+            limit, offset.toLong()
+        ).map {
+            it.toOperationSummaryRecord()
+        }.toList()
+    }
+
     fun getOperationsCount(
         status: MiningOperationStatus = MiningOperationStatus.ACTIVE
     ): Int = transaction(database) {
-        operationsFilterSelect(status).count().toInt()
+        operationsFilterSelect(OperationStateTable.slice(OperationStateTable.id), status).count().toInt()
     }
 
-    private fun operationsFilterSelect(status: MiningOperationStatus): Query {
+    private fun operationsFilterSelect(fields: FieldSet, status: MiningOperationStatus): Query {
         return when (status) {
-            MiningOperationStatus.ACTIVE -> OperationStateTable.select {
+            MiningOperationStatus.ACTIVE -> fields.select {
                 (OperationStateTable.status greaterEq MiningOperationState.INITIAL_ID) and
                     (OperationStateTable.status less MiningOperationState.COMPLETED_ID)
             }
-            MiningOperationStatus.COMPLETED -> OperationStateTable.select {
+            MiningOperationStatus.COMPLETED -> fields.select {
                 OperationStateTable.status eq MiningOperationState.COMPLETED_ID
             }
-            MiningOperationStatus.FAILED -> OperationStateTable.select {
+            MiningOperationStatus.FAILED -> fields.select {
                 OperationStateTable.status eq MiningOperationState.FAILED_ID
             }
             MiningOperationStatus.ALL ->
-                OperationStateTable.selectAll()
+                fields.selectAll()
         }
     }
 
     fun getActiveOperations(): List<OperationStateRecord> = transaction(database) {
-        OperationStateTable.select {
+        OperationStateTable.stateFields.select {
             (OperationStateTable.status greaterEq MiningOperationState.INITIAL_ID) and
                 (OperationStateTable.status less MiningOperationState.COMPLETED_ID)
         }.map {
@@ -62,32 +98,63 @@ open class OperationRepository(
     }
 
     fun getOperation(id: String): OperationStateRecord? = transaction(database) {
-        OperationStateTable.select {
+        OperationStateTable.stateFields.select {
             OperationStateTable.id eq id
         }.firstOrNull()?.toOperationStateRecord()
     }
 
-    fun saveOperationState(record: OperationStateRecord) {
-        if (getOperation(record.id) != null) {
-            transaction(database) {
-                OperationStateTable.update({
-                    OperationStateTable.id eq record.id
-                }) {
-                    it[status] = record.status
-                    it[state] = ExposedBlob(record.state)
-                    it[logs] = record.logs
-                }
-            }
-        } else {
-            transaction(database) {
-                OperationStateTable.insert {
-                    it[id] = record.id
-                    it[status] = record.status
-                    it[state] = ExposedBlob(record.state)
-                    it[createdAt] = record.createdAt
-                    it[logs] = record.logs
-                }
+    /**
+     * Gets the logs of an operation: the ones stored by older versions within the state row, followed by the
+     * appended ones up to [upToSequence] when given.
+     */
+    fun getOperationLogs(id: String, upToSequence: Long? = null): List<OperationLog> = transaction(database) {
+        val legacyLogs = OperationStateTable.slice(OperationStateTable.logs).select {
+            OperationStateTable.id eq id
+        }.firstOrNull()?.get(OperationStateTable.logs)?.parseOperationLogs() ?: emptyList()
+        legacyLogs + OperationLogTable.read(id, upToSequence)
+    }
+
+    /**
+     * Gets a loader of the logs an operation being reconstituted has stored so far. The logs it appends from now on
+     * are left out, as the operation also holds them in memory.
+     */
+    fun getStoredLogsLoader(id: String): () -> List<OperationLog> {
+        val lastSequence = transaction(database) {
+            OperationLogTable.lastSequence(id)
+        }
+        return {
+            getOperationLogs(id, lastSequence)
+        }
+    }
+
+    /**
+     * Stores the operation's state along with the logs written since it was last saved.
+     */
+    fun saveOperationState(record: OperationStateRecord, newLogs: List<OperationLog>) = transaction(database) {
+        upsertOperationState(record, newLogs)
+    }
+
+    /**
+     * Stores a batch of operation states in a single transaction.
+     */
+    fun saveOperationStates(states: List<PendingOperationState<OperationStateRecord>>) = transaction(database) {
+        for (pendingState in states) {
+            upsertOperationState(pendingState.record, pendingState.newLogs)
+        }
+    }
+
+    private fun upsertOperationState(record: OperationStateRecord, newLogs: List<OperationLog>) {
+        OperationStateTable.insertOrUpdate(OperationStateTable.id) {
+            it[id] = record.id
+            it[status] = record.status
+            it[state] = ExposedBlob(record.state)
+            it[createdAt] = record.createdAt
+            if (record.summary != null) {
+                it[endorsedBlockHeight] = record.summary.endorsedBlockHeight
+                it[stateName] = record.summary.stateName
+                it[task] = record.summary.task
             }
         }
+        OperationLogTable.append(record.id, newLogs)
     }
 }
@@ -10,9 +10,23 @@ object OperationStateTable : Table("operation_state") {
     val status = integer("status")
     val state = blob("state")
     val createdAt = datetime("created_at")
+    // Logs are appended to the operation_log table, this column only holds the logs written by older versions
     val logs = text("logs").default("[]")
+    // Copied out of the state so that operations can be listed without deserializing it, null for older rows
+    val endorsedBlockHeight = integer("endorsed_block_height").nullable()
+    val stateName = varchar("state_name", 64).nullable()
+    val task = text("task").nullable()
 
     override val primaryKey = PrimaryKey(id)
+
+    // Everything but the legacy logs, which are only read on demand
+    val stateFields = slice(id, status, state, createdAt)
+    // What an operation listing needs, leaving out the state blob
+    val summaryFields = slice(id, status, createdAt, endorsedBlockHeight, stateName, task)
+
+    init {
+        index(false, status, createdAt)
+    }
 }
 
 data class OperationStateRecord(
@@ -20,13 +34,30 @@ data class OperationStateRecord(
     val status: Int,
     val state: ByteArray,
     val createdAt: LocalDateTime,
-    val logs: String
+    val summary: OperationSummaryRecord? = null
 )
 
 fun ResultRow.toOperationStateRecord() = OperationStateRecord(
     this[OperationStateTable.id],
     this[OperationStateTable.status],
     this[OperationStateTable.state].bytes,
+    this[OperationStateTable.createdAt]
+)
+
+data class OperationSummaryRecord(
+    val id: String,
+    val status: Int,
+    val createdAt: LocalDateTime,
+    val endorsedBlockHeight: Int?,
+    val stateName: String?,
+    val task: String?
+)
+
+fun ResultRow.toOperationSummaryRecord() = OperationSummaryRecord(
+    this[OperationStateTable.id],
+    this[OperationStateTable.status],
     this[OperationStateTable.createdAt],
-    this[OperationStateTable.logs]
+    this[OperationStateTable.endorsedBlockHeight],
+    this[OperationStateTable.stateName],
+    this[OperationStateTable.task]
 )
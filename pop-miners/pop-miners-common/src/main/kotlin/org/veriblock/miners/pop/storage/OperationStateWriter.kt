@@ -0,0 +1,114 @@
+package org.veriblock.miners.pop.storage
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.veriblock.core.utilities.createLogger
+import org.veriblock.miners.pop.core.MiningOperation
+import org.veriblock.miners.pop.core.OperationLog
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+private val logger = createLogger {}
+
+/**
+ * A state change of an operation being persisted, along with the logs written since they were last persisted.
+ */
+class PendingOperationState<R>(
+    val id: String,
+    val record: R,
+    val newLogs: List<OperationLog>
+)
+
+private class QueuedOperationState<R>(
+    val operation: MiningOperation,
+    val record: R
+)
+
+/**
+ * Write-behind persistence of operation states.
+ *
+ * State changes are queued and coalesced per operation, only keeping the latest state, and are written by
+ * [writeBatch] in a single transaction every [flushIntervalMillis] or as soon as [flushThreshold] operations are
+ * waiting. The logs an operation has written since they were last persisted are taken when its state is written,
+ * and only marked as persisted once [writeBatch] returns, so a failed write keeps them for the next one. Writes
+ * which must not be lost on a crash are passed as durable, which flushes everything queued before returning.
+ * Once the writer is shut down, writes are flushed right away.
+ */
+class OperationStateWriter<R>(
+    private val flushIntervalMillis: Long = 250,
+    private val flushThreshold: Int = 64,
+    private val writeBatch: (List<PendingOperationState<R>>) -> Unit
+) {
+    private val pending = ConcurrentHashMap<String, QueuedOperationState<R>>()
+    private val flushLock = Any()
+
+    @Volatile
+    private var isShutdown = false
+
+    private val executor = Executors.newSingleThreadScheduledExecutor(
+        ThreadFactoryBuilder().setNameFormat("operation-state-writer").setDaemon(true).build()
+    )
+
+    init {
+        executor.scheduleWithFixedDelay(::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS)
+    }
+
+    fun write(operation: MiningOperation, record: R, durable: Boolean = false) {
+        pending[operation.id] = QueuedOperationState(operation, record)
+        if (durable) {
+            flush()
+        } else if (isShutdown) {
+            flushQuietly()
+        } else if (pending.size >= flushThreshold) {
+            try {
+                executor.execute(::flushQuietly)
+            } catch (e: RejectedExecutionException) {
+                // Shut down in the meantime
+                flushQuietly()
+            }
+        }
+    }
+
+    /**
+     * Writes every queued state change. Once this returns, all the writes made before the call are persisted.
+     */
+    fun flush() {
+        synchronized(flushLock) {
+            if (pending.isEmpty()) {
+                return
+            }
+            val queued = pending.keys.mapNotNull { pending.remove(it) }
+            val batch = queued.map {
+                PendingOperationState(it.operation.id, it.record, it.operation.getUnpersistedLogs())
+            }
+            try {
+                writeBatch(batch)
+            } catch (e: Exception) {
+                // Put the states back unless a newer one was queued in the meantime, their logs are still unpersisted
+                for (failed in queued) {
+                    pending.putIfAbsent(failed.operation.id, failed)
+                }
+                throw e
+            }
+            for ((written, state) in queued.zip(batch)) {
+                written.operation.onLogsPersisted(state.newLogs.size)
+            }
+        }
+    }
+
+    fun shutdown() {
+        isShutdown = true
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+        flush()
+    }
+
+    private fun flushQuietly() {
+        try {
+            flush()
+        } catch (e: Exception) {
+            logger.error(e) { "Unable to persist ${pending.size} operation states, they will be retried" }
+        }
+    }
+}
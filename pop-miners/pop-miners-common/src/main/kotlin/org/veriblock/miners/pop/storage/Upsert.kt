@@ -7,7 +7,7 @@ import org.jetbrains.exposed.sql.statements.InsertStatement
 import org.jetbrains.exposed.sql.transactions.TransactionManager
 
 /**
- * Statement using SQLite upsert.
+ * Statement using SQLite upsert. On conflict, only the columns which were set in the statement are updated.
  */
 class InsertOrUpdate<Key : Any>(
     table: Table,
@@ -17,7 +17,7 @@ class InsertOrUpdate<Key : Any>(
 
     override fun prepareSQL(transaction: Transaction): String {
         val tm = TransactionManager.current()
-        val updateSetter = table.columns.joinToString { "${tm.identity(it)} = EXCLUDED.${tm.identity(it)}" }
+        val updateSetter = values.keys.filter { it !in keys }.joinToString { "${tm.identity(it)} = EXCLUDED.${tm.identity(it)}" }
         val onConflict = "ON CONFLICT (${keys.joinToString { tm.identity(it) }}) DO UPDATE SET $updateSetter"
         return "${super.prepareSQL(transaction)} $onConflict"
     }
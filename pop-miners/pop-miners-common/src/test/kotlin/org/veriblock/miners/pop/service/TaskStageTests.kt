@@ -0,0 +1,103 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.service
+
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Test
+import org.veriblock.miners.pop.core.MiningOperation
+import java.time.LocalDateTime
+
+class TaskStageTests {
+    private val now = LocalDateTime.now()
+
+    @Test
+    fun concurrencyIsBounded() = runBlocking {
+        val stage = TaskStage("bounded", concurrency = 2)
+        var running = 0
+        var maxRunning = 0
+
+        (1..10).map {
+            async {
+                stage.withPermit(operation("$it")) {
+                    running++
+                    maxRunning = maxOf(maxRunning, running)
+                    delay(10)
+                    running--
+                }
+            }
+        }.awaitAll()
+
+        maxRunning shouldBe 2
+        stage.running shouldBe 0
+        stage.queued shouldBe 0
+    }
+
+    @Test
+    fun oldestOperationsGoFirst() = runBlocking {
+        val stage = TaskStage("priority", concurrency = 1)
+        val order = mutableListOf<String>()
+        val release = CompletableDeferred<Unit>()
+
+        val first = launch {
+            stage.withPermit(operation("first")) { release.await() }
+        }
+        yield()
+        val waiting = listOf(
+            operation("newest", createdAt = now.plusMinutes(2)),
+            operation("older-high", createdAt = now.plusMinutes(1), endorsedBlockHeight = 100),
+            operation("older-low", createdAt = now.plusMinutes(1), endorsedBlockHeight = 50)
+        ).map { operation ->
+            launch {
+                stage.withPermit(operation) { order.add(operation.id) }
+            }
+        }
+        yield()
+        stage.queued shouldBe 3
+
+        release.complete(Unit)
+        first.join()
+        waiting.forEach { it.join() }
+
+        order shouldBe listOf("older-low", "older-high", "newest")
+    }
+
+    @Test
+    fun cancelledWaiterDoesNotTakeTheSlot() = runBlocking {
+        val stage = TaskStage("cancellation", concurrency = 1)
+        val release = CompletableDeferred<Unit>()
+
+        val first = launch {
+            stage.withPermit(operation("first")) { release.await() }
+        }
+        yield()
+        val cancelled = launch {
+            stage.withPermit(operation("cancelled")) { error("Should not run") }
+        }
+        yield()
+        cancelled.cancel()
+        release.complete(Unit)
+        first.join()
+
+        stage.withPermit(operation("last")) { stage.running } shouldBe 1
+        stage.running shouldBe 0
+    }
+
+    private fun operation(
+        id: String,
+        createdAt: LocalDateTime = now,
+        endorsedBlockHeight: Int? = null
+    ) = object : MiningOperation(id, endorsedBlockHeight, createdAt, emptyList(), false) {
+        override fun getDetailedInfo(): Map<String, String> = emptyMap()
+    }
+}
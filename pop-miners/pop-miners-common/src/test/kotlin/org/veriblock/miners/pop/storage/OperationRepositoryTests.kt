@@ -0,0 +1,145 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.storage
+
+import io.kotest.matchers.shouldBe
+import org.jetbrains.exposed.sql.Database
+import org.jetbrains.exposed.sql.SchemaUtils
+import org.jetbrains.exposed.sql.selectAll
+import org.jetbrains.exposed.sql.transactions.transaction
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.veriblock.miners.pop.core.MiningOperationStatus
+import org.veriblock.miners.pop.core.OperationLog
+import java.io.File
+import java.sql.Connection
+import java.time.LocalDateTime
+
+class OperationRepositoryTests {
+    private lateinit var databaseFile: File
+    private lateinit var database: Database
+    private lateinit var repository: OperationRepository
+
+    @Before
+    fun setUp() {
+        databaseFile = File.createTempFile("operation-repository", ".db")
+        database = Database.connect("jdbc:sqlite:${databaseFile.absolutePath}", "org.sqlite.JDBC").apply {
+            transactionManager.defaultIsolationLevel = Connection.TRANSACTION_READ_UNCOMMITTED
+            transaction(this) {
+                SchemaUtils.createMissingTablesAndColumns(OperationStateTable, OperationLogTable)
+            }
+        }
+        repository = OperationRepository(database)
+    }
+
+    @After
+    fun tearDown() {
+        databaseFile.delete()
+    }
+
+    @Test
+    fun logsAreReadInTheOrderTheyWereAppended() {
+        transaction(database) {
+            OperationLogTable.append("a", listOf(log("first"), log("second")))
+            OperationLogTable.append("b", listOf(log("other")))
+            OperationLogTable.append("a", listOf(log("third")))
+        }
+
+        transaction(database) {
+            OperationLogTable.read("a").map { it.msg } shouldBe listOf("first", "second", "third")
+            OperationLogTable.read("b").map { it.msg } shouldBe listOf("other")
+            OperationLogTable.read("c") shouldBe emptyList()
+        }
+    }
+
+    @Test
+    fun logsAreReadUpToTheGivenSequence() {
+        val lastSequence = transaction(database) {
+            OperationLogTable.append("a", listOf(log("first"), log("second")))
+            OperationLogTable.lastSequence("a")
+        }
+        transaction(database) {
+            OperationLogTable.append("a", listOf(log("third")))
+        }
+
+        transaction(database) {
+            OperationLogTable.read("a", lastSequence).map { it.msg } shouldBe listOf("first", "second")
+            OperationLogTable.lastSequence("b") shouldBe 0L
+            OperationLogTable.read("b", 0) shouldBe emptyList()
+        }
+    }
+
+    @Test
+    fun savingAnOperationStateUpdatesItsRow() {
+        repository.saveOperationState(record("a", status = 1), listOf(log("created")))
+        repository.saveOperationState(record("a", status = 2), listOf(log("instruction")))
+
+        transaction(database) {
+            OperationStateTable.selectAll().count() shouldBe 1L
+        }
+        repository.getOperation("a")!!.status shouldBe 2
+        repository.getOperationLogs("a").map { it.msg } shouldBe listOf("created", "instruction")
+    }
+
+    @Test
+    fun reconstitutedOperationLogsAreNotDuplicatedOnceSaved() {
+        repository.saveOperationState(record("a", status = 1), listOf(log("created"), log("instruction")))
+
+        // Reconstitute the operation, then persist a new log before its stored logs are first asked for
+        val operation = TestOperation("a")
+        operation.setStoredLogs(repository.getStoredLogsLoader("a"))
+        operation.log("resumed")
+        val newLogs = operation.getUnpersistedLogs()
+        repository.saveOperationState(record("a", status = 2), newLogs)
+        operation.onLogsPersisted(newLogs.size)
+
+        operation.getLogs().map { it.msg } shouldBe listOf("created", "instruction", "resumed")
+        repository.getOperationLogs("a").map { it.msg } shouldBe listOf("created", "instruction", "resumed")
+    }
+
+    @Test
+    fun summariesArePagedByTheLastIdOfThePreviousPageAcrossEqualCreationTimes() {
+        val now = LocalDateTime.now()
+        saveWithSummary("a", now.minusMinutes(1))
+        saveWithSummary("b", now)
+        saveWithSummary("c", now)
+        saveWithSummary("d", now)
+
+        val firstPage = repository.getOperationSummaries(MiningOperationStatus.ALL, limit = 2)
+        val lastPage = repository.getOperationSummaries(MiningOperationStatus.ALL, limit = 2, after = firstPage.last().id)
+
+        firstPage.map { it.id } shouldBe listOf("d", "c")
+        lastPage.map { it.id } shouldBe listOf("b", "a")
+        repository.getOperationSummaries(MiningOperationStatus.ALL, limit = 2, after = "a") shouldBe emptyList()
+        repository.getOperationSummaries(MiningOperationStatus.ALL, after = "unknown") shouldBe emptyList()
+    }
+
+    @Test
+    fun legacyRowsAreListedWithoutTheirSummaryColumns() {
+        val now = LocalDateTime.now()
+        repository.saveOperationState(record("legacy", status = 1).copy(createdAt = now.minusMinutes(1)), emptyList())
+        saveWithSummary("new", now)
+
+        val summaries = repository.getOperationSummaries(MiningOperationStatus.ALL)
+
+        summaries.map { it.id } shouldBe listOf("new", "legacy")
+        summaries[0].stateName shouldBe "State new"
+        summaries[1].stateName shouldBe null
+        summaries[1].endorsedBlockHeight shouldBe null
+        repository.getOperationSummaries(MiningOperationStatus.ALL, after = "new").map { it.id } shouldBe listOf("legacy")
+    }
+
+    private fun saveWithSummary(id: String, createdAt: LocalDateTime) {
+        val summary = OperationSummaryRecord(id, 1, createdAt, 100, "State $id", "Task $id")
+        repository.saveOperationState(OperationStateRecord(id, 1, ByteArray(0), createdAt, summary), emptyList())
+    }
+
+    private fun record(id: String, status: Int) = OperationStateRecord(id, status, ByteArray(0), LocalDateTime.now())
+
+    private fun log(msg: String) = OperationLog(0, "INFO", msg)
+}
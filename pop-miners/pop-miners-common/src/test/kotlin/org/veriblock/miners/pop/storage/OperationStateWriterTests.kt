@@ -0,0 +1,114 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.storage
+
+import io.kotest.matchers.shouldBe
+import org.junit.Test
+import java.util.concurrent.CopyOnWriteArrayList
+
+class OperationStateWriterTests {
+    private val batches = CopyOnWriteArrayList<List<PendingOperationState<String>>>()
+
+    @Test
+    fun writeCoalescesStatesAndAccumulatesLogs() {
+        val writer = OperationStateWriter<String>(flushIntervalMillis = 60_000) { batches.add(it) }
+        val a = TestOperation("a")
+        val b = TestOperation("b")
+
+        a.log("created")
+        writer.write(a, "INITIAL")
+        a.log("instruction")
+        writer.write(a, "INSTRUCTION")
+        writer.write(b, "INITIAL")
+        writer.flush()
+
+        batches.size shouldBe 1
+        val states = batches[0].associateBy { it.id }
+        states.getValue("a").record shouldBe "INSTRUCTION"
+        states.getValue("a").newLogs.map { it.msg } shouldBe listOf("created", "instruction")
+        states.getValue("b").record shouldBe "INITIAL"
+        writer.shutdown()
+    }
+
+    @Test
+    fun durableWriteFlushesBeforeReturning() {
+        val writer = OperationStateWriter<String>(flushIntervalMillis = 60_000) { batches.add(it) }
+
+        writer.write(TestOperation("a"), "INITIAL")
+        writer.write(TestOperation("b"), "ENDORSEMENT_TRANSACTION", durable = true)
+
+        batches.size shouldBe 1
+        batches[0].map { it.id }.toSet() shouldBe setOf("a", "b")
+        writer.shutdown()
+    }
+
+    @Test
+    fun failedBatchIsRetriedAheadOfNewerStates() {
+        var failing = true
+        val writer = OperationStateWriter<String>(flushIntervalMillis = 60_000) {
+            if (failing) {
+                error("disk full")
+            }
+            batches.add(it)
+        }
+        val a = TestOperation("a")
+
+        a.log("created")
+        writer.write(a, "INITIAL")
+        try {
+            writer.flush()
+        } catch (e: IllegalStateException) {
+        }
+        failing = false
+        a.log("instruction")
+        writer.write(a, "INSTRUCTION")
+        writer.flush()
+
+        batches.size shouldBe 1
+        batches[0].single().record shouldBe "INSTRUCTION"
+        batches[0].single().newLogs.map { it.msg } shouldBe listOf("created", "instruction")
+        writer.shutdown()
+    }
+
+    @Test
+    fun logsAreOnlyMarkedAsPersistedOnceWritten() {
+        var failing = true
+        val writer = OperationStateWriter<String>(flushIntervalMillis = 60_000) {
+            if (failing) {
+                error("disk full")
+            }
+            batches.add(it)
+        }
+        val a = TestOperation("a")
+
+        a.log("created")
+        writer.write(a, "INITIAL")
+        try {
+            writer.flush()
+        } catch (e: IllegalStateException) {
+        }
+
+        a.getUnpersistedLogs().map { it.msg } shouldBe listOf("created")
+        failing = false
+        writer.flush()
+        a.getUnpersistedLogs() shouldBe emptyList()
+        writer.shutdown()
+    }
+
+    @Test
+    fun writesAfterShutdownAreFlushedRightAway() {
+        val writer = OperationStateWriter<String>(flushIntervalMillis = 60_000, flushThreshold = 1) { batches.add(it) }
+        writer.shutdown()
+        val a = TestOperation("a")
+
+        a.log("completed")
+        writer.write(a, "COMPLETED")
+
+        batches.size shouldBe 1
+        batches[0].single().newLogs.map { it.msg } shouldBe listOf("completed")
+    }
+}
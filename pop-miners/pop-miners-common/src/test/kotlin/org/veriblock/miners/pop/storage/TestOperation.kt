@@ -0,0 +1,17 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.storage
+
+import org.veriblock.miners.pop.core.MiningOperation
+import org.veriblock.miners.pop.core.OperationLog
+import java.time.LocalDateTime
+
+class TestOperation(id: String) : MiningOperation(id, null, LocalDateTime.now(), emptyList(), false) {
+    fun log(msg: String) = addLog(OperationLog(0, "INFO", msg))
+
+    override fun getDetailedInfo(): Map<String, String> = emptyMap()
+}
@@ -27,6 +27,7 @@ import org.veriblock.miners.pop.shell.commands.standardCommands
 import org.veriblock.miners.pop.shell.commands.veriBlockWalletCommands
 import org.veriblock.miners.pop.storage.KeyValueRepository
 import org.veriblock.miners.pop.storage.KeyValueTable
+import org.veriblock.miners.pop.storage.OperationLogTable
 import org.veriblock.miners.pop.storage.OperationRepository
 import org.veriblock.miners.pop.storage.OperationStateTable
 import org.veriblock.miners.pop.tasks.ProcessManager
@@ -69,6 +70,9 @@ val bootstrapModule = module {
         val hikariConfig = HikariConfig().apply {
             driverClassName = "org.sqlite.JDBC"
             jdbcUrl = url
+            // With a write-ahead log readers don't block the writer, and commits only fsync on checkpoints
+            addDataSourceProperty("journal_mode", "WAL")
+            addDataSourceProperty("synchronous", "NORMAL")
         }
         HikariDataSource(hikariConfig)
     }
@@ -79,6 +83,7 @@ val bootstrapModule = module {
             transaction(this) {
                 SchemaUtils.createMissingTablesAndColumns(
                     OperationStateTable,
+                    OperationLogTable,
                     KeyValueTable
                 )
             }
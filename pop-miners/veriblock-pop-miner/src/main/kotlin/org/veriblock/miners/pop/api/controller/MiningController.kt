@@ -24,7 +24,9 @@ import org.veriblock.miners.pop.api.model.MinerInfoResponse
 import org.veriblock.miners.pop.api.model.OperationDetailResponse
 import org.veriblock.miners.pop.api.model.OperationSummaryListResponse
 import org.veriblock.miners.pop.api.model.toResponse
+import org.veriblock.miners.pop.core.MiningOperationStatus
 import org.veriblock.miners.pop.service.MinerService
+import java.util.Locale
 
 class MiningController(
     private val minerService: MinerService
@@ -37,7 +39,12 @@ class MiningController(
     class MinerPath
 
     @Path("operations")
-    class MinerOperationsPath
+    class MinerOperationsPath(
+        @QueryParam("Operation status (optional)") val status: String?,
+        @QueryParam("Pagination limit (optional)") val limit: Int?,
+        @QueryParam("Pagination offset (optional)") val offset: Int?,
+        @QueryParam("Id of the last operation of the previous page, as returned in 'next' (optional)") val after: String?
+    )
 
     @Path("operations/{id}")
     class MinerOperationPath(
@@ -80,11 +87,19 @@ class MiningController(
         }
         get<MinerOperationsPath, OperationSummaryListResponse, UserIdPrincipal>(
             info("Get operations list")
-        ) {
-            val operationSummaries = minerService.listOperations()
+        ) { location ->
+            val status = location.status?.let { stateString ->
+                MiningOperationStatus.values().find { it.name == stateString.uppercase(Locale.getDefault()) }
+                    ?: throw BadRequestException("'$stateString' is not valid. Available options: 'active', 'failed', 'completed', 'all'")
+            } ?: MiningOperationStatus.ACTIVE
+            val limit = location.limit ?: 50
+            val offset = location.offset ?: 0
+            val operationSummaries = minerService.getOperationSummaries(status, limit, offset, location.after)
 
             val responseModel = operationSummaries.map { it.toResponse() }
-            respond(OperationSummaryListResponse(responseModel))
+            // Point at the next page if this one is full
+            val next = if (operationSummaries.size == limit) operationSummaries.lastOrNull()?.operationId else null
+            respond(OperationSummaryListResponse(responseModel, next))
         }
         get<MinerOperationPath, OperationDetailResponse, UserIdPrincipal>(
             info("Get operation details")
@@ -93,8 +108,9 @@ class MiningController(
 
             val operationState = minerService.getOperation(id)
                 ?: throw NotFoundException("Operation $id not found")
+            val proofOfProofConfirmations = minerService.getProofOfProofConfirmations(operationState)
 
-            val responseModel = operationState.toResponse()
+            val responseModel = operationState.toResponse(proofOfProofConfirmations)
             respond(responseModel)
         }
         post<CancelOperationPath, Unit, Unit, UserIdPrincipal>(
@@ -14,11 +14,11 @@ import org.veriblock.miners.pop.model.result.MineResult
 import org.veriblock.miners.pop.model.result.Result
 import org.veriblock.miners.pop.model.result.ResultMessage
 
-fun VpmOperation.toResponse() = OperationDetailResponse(
+fun VpmOperation.toResponse(proofOfProofConfirmations: Int? = null) = OperationDetailResponse(
     operationId = id,
     status = state.name,
     currentAction = state.taskName,
-    detail = getDetailedInfo(),
+    detail = getDetailedInfo(proofOfProofConfirmations),
     createdAt = createdAt.format(DateTimeFormatter.ISO_DATE_TIME)
 )
 
@@ -20,7 +20,9 @@ class OperationDetailResponse(
 
 @Response("List of operations")
 class OperationSummaryListResponse(
-    val operations: List<OperationSummaryResponse>
+    val operations: List<OperationSummaryResponse>,
+    // Id to pass as the next page's cursor, null when this is the last page
+    val next: String? = null
 )
 
 @Response("Basic operation information")
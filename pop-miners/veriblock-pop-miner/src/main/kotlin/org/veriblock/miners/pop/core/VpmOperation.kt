@@ -167,7 +167,13 @@ class VpmOperation(
         EventBus.popMiningOperationFinishedEvent.trigger(this)
     }
 
-    override fun getDetailedInfo(): Map<String, String> {
+    override fun getDetailedInfo(): Map<String, String> =
+        getDetailedInfo(proofOfProofConfirmations = null)
+
+    /**
+     * The detailed info, along with the PoP transaction's confirmations when they were looked up in NodeCore
+     */
+    fun getDetailedInfo(proofOfProofConfirmations: Int?): Map<String, String> {
         val result = LinkedHashMap<String, String>()
         miningInstruction?.let {
             result["publicationData"] = it.publicationData.toHex()
@@ -192,6 +198,9 @@ class VpmOperation(
         proofOfProofId?.let {
             result["proofOfProofId"] = it
         }
+        proofOfProofConfirmations?.let {
+            result["proofOfProofConfirmations"] = it.toString()
+        }
         payoutBlockHash?.let {
             result["payoutBlockHash"] = it
         }
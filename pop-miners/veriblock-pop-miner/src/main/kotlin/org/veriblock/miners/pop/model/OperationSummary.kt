@@ -6,6 +6,9 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package org.veriblock.miners.pop.model
 
+import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.miners.pop.core.VpmOperationState
+import org.veriblock.miners.pop.storage.OperationSummaryRecord
 import java.time.LocalDateTime
 
 class OperationSummary(
@@ -14,4 +17,17 @@ class OperationSummary(
     val status: String,
     val action: String,
     val createdAt: LocalDateTime
-) 
+)
+
+fun OperationSummaryRecord.toOperationSummary(): OperationSummary {
+    // Rows written by older versions don't have the state's name, so it is derived from the status
+    val operationState = VpmOperationState.ALL.find { it.id == status }
+        ?: listOf(MiningOperationState.COMPLETED, MiningOperationState.FAILED).find { it.id == status }
+    return OperationSummary(
+        operationId = id,
+        endorsedBlockNumber = endorsedBlockHeight ?: -1,
+        status = stateName ?: operationState?.name ?: "Unknown",
+        action = task ?: operationState?.taskName ?: "",
+        createdAt = createdAt
+    )
+}
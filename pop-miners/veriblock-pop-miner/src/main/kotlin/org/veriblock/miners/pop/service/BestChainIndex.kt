@@ -0,0 +1,90 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.service
+
+import org.bitcoinj.core.Sha256Hash
+import org.bitcoinj.core.StoredBlock
+import java.util.TreeMap
+
+/**
+ * Hash and height index of the last [capacity] blocks of the best chain.
+ *
+ * It is brought up to date with [sync], which only reads the blocks added since the previous call
+ * (plus the ones replaced by a reorganization), so that looking up which blocks are on the best chain
+ * doesn't need to walk the chain back from its head.
+ */
+class BestChainIndex(
+    private val capacity: Int
+) {
+    private val hashesByHeight = TreeMap<Int, Sha256Hash>()
+    private val heightsByHash = HashMap<Sha256Hash, Int>()
+
+    val size: Int
+        @Synchronized get() = hashesByHeight.size
+
+    /**
+     * Height of the deepest indexed block, or null if the index is empty
+     */
+    val lowestHeight: Int?
+        @Synchronized get() = if (hashesByHeight.isEmpty()) null else hashesByHeight.firstKey()
+
+    /**
+     * Makes [head] the tip of the index, reading its ancestors with [getPrev] until reaching an indexed one
+     */
+    @Synchronized
+    fun sync(head: StoredBlock, getPrev: (StoredBlock) -> StoredBlock?) {
+        val added = ArrayList<StoredBlock>()
+        var cursor: StoredBlock? = head
+        while (cursor != null && hashesByHeight[cursor.height] != cursor.header.hash && added.size < capacity) {
+            added.add(cursor)
+            cursor = getPrev(cursor)
+        }
+        if (cursor == null || added.size >= capacity) {
+            // Nothing in common with the indexed chain within reach
+            clear()
+        } else {
+            removeAbove(cursor.height)
+        }
+        for (block in added.asReversed()) {
+            hashesByHeight[block.height] = block.header.hash
+            heightsByHash[block.header.hash] = block.height
+        }
+        while (hashesByHeight.size > capacity) {
+            heightsByHash.remove(hashesByHeight.pollFirstEntry().value)
+        }
+    }
+
+    /**
+     * Forgets the blocks above the [splitPoint] of a reorganization, the new ones are indexed on the next [sync]
+     */
+    @Synchronized
+    fun onReorganize(splitPoint: StoredBlock) {
+        removeAbove(splitPoint.height)
+    }
+
+    @Synchronized
+    fun getHeight(hash: Sha256Hash): Int? = heightsByHash[hash]
+
+    /**
+     * Returns the highest of the given [hashes] among the indexed best chain blocks, or null if none of them is indexed
+     */
+    @Synchronized
+    fun getBest(hashes: Collection<Sha256Hash>): Sha256Hash? =
+        hashes.filter { it in heightsByHash }.maxByOrNull { heightsByHash.getValue(it) }
+
+    @Synchronized
+    fun clear() {
+        hashesByHeight.clear()
+        heightsByHash.clear()
+    }
+
+    private fun removeAbove(height: Int) {
+        val removed = hashesByHeight.tailMap(height, false)
+        removed.values.forEach { heightsByHash.remove(it) }
+        removed.clear()
+    }
+}
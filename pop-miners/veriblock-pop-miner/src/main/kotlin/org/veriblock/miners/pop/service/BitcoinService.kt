@@ -6,7 +6,6 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package org.veriblock.miners.pop.service
 
-import com.google.common.util.concurrent.ListenableFuture
 import com.google.common.util.concurrent.ThreadFactoryBuilder
 import kotlinx.coroutines.*
 import kotlinx.coroutines.guava.asDeferred
@@ -38,7 +37,6 @@ import org.veriblock.miners.pop.model.ApplicationExceptions.ExceededMaxTransacti
 import java.io.File
 import java.time.Instant
 import java.util.*
-import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledExecutorService
@@ -68,6 +66,7 @@ class BitcoinService(
     var feePerKb = configuration.feePerKB
 
     private val blockCache = AwaitableCache<String, FilteredBlock>(maxSize = 150)
+    private val bestChainIndex = BestChainIndex(configuration.blockStoreCapacity)
 
     private var kit: WalletAppKit
 
@@ -181,7 +180,12 @@ class BitcoinService(
                     }
                 }
 
-                blockChain = chain()
+                blockChain = chain().apply {
+                    addReorganizeListener { splitPoint, _, _ ->
+                        bestChainIndex.onReorganize(splitPoint)
+                    }
+                }
+                syncBestChainIndex()
 
                 peerGroup = peerGroup().apply {
                     useLocalhostPeerWhenPossible = configuration.useLocalhostPeer
@@ -382,20 +386,55 @@ class BitcoinService(
 
     fun getBestBlock(hashes: Set<Sha256Hash>): Block? {
         // Check all given hashes exist
-        hashes.forEach { hash ->
-            if (blockStore.get(hash) == null) {
-                error("Unable to find bitcoin block $hash")
-            }
+        val candidates = hashes.map { hash ->
+            blockStore.get(hash) ?: error("Unable to find bitcoin block $hash")
+        }
+        syncBestChainIndex()
+        bestChainIndex.getBest(hashes)?.let {
+            return blockStore.get(it).header
+        }
+        val lowestIndexedHeight = bestChainIndex.lowestHeight
+        if (lowestIndexedHeight != null && candidates.none { it.height < lowestIndexedHeight }) {
+            // None of them is in the best chain
+            return null
         }
+        // Some candidates are older than the indexed part of the chain
         var cursor = blockChain.chainHead
         while (cursor.header.hash !in hashes) {
-            cursor = cursor.getPrev(blockStore)
+            cursor = cursor.getPrev(blockStore) ?: return null
         }
         return cursor.header
     }
 
-    private val downloadLock = Any()
-    private val blockDownloader = ConcurrentHashMap<String, ListenableFuture<Block>>()
+    private fun syncBestChainIndex() {
+        try {
+            bestChainIndex.sync(blockChain.chainHead) { it.getPrev(blockStore) }
+        } catch (e: BlockStoreException) {
+            logger.warn("Unable to index the best chain: {}", e.message)
+            bestChainIndex.clear()
+        }
+    }
+
+    private val blockDownloader = BlockDownloadCache<Sha256Hash, Peer, Block>(
+        scope = coroutineScope,
+        maxBlocks = configuration.blockCacheMaxBlocks,
+        maxBytes = configuration.blockCacheMaxBytes,
+        attempts = configuration.blockDownloadAttempts,
+        attemptTimeoutMillis = configuration.blockDownloadTimeoutMillis,
+        raceAfterMillis = configuration.blockDownloadRaceAfterMillis,
+        peers = ::getDownloadPeers,
+        fetch = { peer, hash -> peer.getBlock(hash).asDeferred().await() },
+        sizeOf = { it.messageSize }
+    )
+
+    /**
+     * The connected peers, starting with the peer group's download peer
+     */
+    private fun getDownloadPeers(): List<Peer> {
+        val downloadPeer = peerGroup.downloadPeer
+        val connectedPeers = peerGroup.connectedPeers.filter { it != downloadPeer }
+        return listOfNotNull(downloadPeer) + connectedPeers
+    }
 
     suspend fun getFilteredBlock(hash: Sha256Hash): FilteredBlock {
         return blockCache.get(hash.toString())
@@ -417,42 +456,8 @@ class BitcoinService(
     }
 
     suspend fun downloadBlock(hash: Sha256Hash): Block? {
-        var attempts = 0
-        var block: Block? = null
-        while (block == null && attempts < 5) {
-            logger.trace("Attempting to download block with hash {}", hash.toString())
-            attempts++
-            // Lock for read to see if we've got a download already started
-            val blockFuture: ListenableFuture<Block> = synchronized(downloadLock) {
-                blockDownloader[hash.toString()]?.also {
-                    logger.trace("Found existing download of block {}", hash.toString())
-                } ?: run {
-                    logger.trace("Starting download of block {} from peer group", hash.toString())
-                    val blockFuture = peerGroup.downloadPeer.getBlock(hash)
-                    blockDownloader.putIfAbsent(hash.toString(), blockFuture)
-                    blockFuture
-                }
-            }
-            try {
-                logger.trace("Waiting for block {} to finish downloading", hash.toString())
-                block = blockFuture.asDeferred().await()
-            } catch (e: TimeoutException) {
-                logger.error("Unable to download Bitcoin block at the #{} attempt: {}", attempts, e.message)
-                blockDownloader.remove(hash.toString())
-            } catch (e: InterruptedException) {
-                logger.error("Unable to download Bitcoin block at the #{} attempt: {}", attempts, e.message)
-                blockDownloader.remove(hash.toString())
-            } catch (e: ExecutionException) {
-                logger.error("Unable to download Bitcoin block at the #{} attempt: {}", attempts, e.message)
-                blockDownloader.remove(hash.toString())
-            }
-        }
-        if (block != null) {
-            logger.trace(
-                "Finished downloading block with hash {} at the #{} attempt", hash.toString(), attempts
-            )
-        }
-        return block
+        logger.trace("Attempting to download block with hash {}", hash.toString())
+        return blockDownloader.get(hash)
     }
 
     fun makeBlock(raw: ByteArray): Block {
@@ -564,6 +569,7 @@ class BitcoinService(
             logger.trace("FilteredBlock {} downloaded", block.hashAsString)
             blockCache.put(block.hashAsString, filteredBlock)
         }
+        syncBestChainIndex()
     }
 
     private suspend fun sendTxRequest(requestBuilder: () -> SendRequest): Transaction? {
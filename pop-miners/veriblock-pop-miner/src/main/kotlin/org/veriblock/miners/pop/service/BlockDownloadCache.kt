@@ -0,0 +1,165 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.service
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.selects.select
+import kotlinx.coroutines.supervisorScope
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
+import org.veriblock.core.utilities.createLogger
+import java.util.LinkedHashMap
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+private val logger = createLogger {}
+
+/**
+ * Downloads blocks from peers and keeps the most recently used ones.
+ *
+ * Concurrent requests for the same block share a single download. The downloaded blocks are evicted in LRU order
+ * once there are more than [maxBlocks] of them or they take more than [maxBytes] (as measured by [sizeOf]).
+ * Each attempt asks the next peer returned by [peers], and asks the one after it as well if the first one
+ * didn't answer within [raceAfterMillis]: the first answer wins.
+ */
+class BlockDownloadCache<K, P, B : Any>(
+    private val scope: CoroutineScope,
+    private val maxBlocks: Int,
+    private val maxBytes: Long,
+    private val attempts: Int,
+    private val attemptTimeoutMillis: Long,
+    private val raceAfterMillis: Long,
+    private val peers: () -> List<P>,
+    private val fetch: suspend (peer: P, key: K) -> B,
+    private val sizeOf: (B) -> Int
+) {
+    private val lock = ReentrantLock()
+    private val downloaded = LinkedHashMap<K, B>(16, 0.75f, true)
+    private var downloadedBytes = 0L
+    private val downloads = HashMap<K, Deferred<B?>>()
+
+    val size: Int
+        get() = lock.withLock { downloaded.size }
+
+    val sizeInBytes: Long
+        get() = lock.withLock { downloadedBytes }
+
+    /**
+     * Returns the block for the given [key], downloading it if needed, or null if no peer could provide it
+     */
+    suspend fun get(key: K): B? {
+        val download = lock.withLock {
+            downloaded[key]?.let {
+                return it
+            }
+            downloads.getOrPut(key) {
+                logger.trace { "Starting download of block $key" }
+                // The download belongs to the cache, so that it isn't cancelled along with the first requester
+                scope.async {
+                    val block = download(key)
+                    lock.withLock {
+                        downloads.remove(key)
+                        if (block != null) {
+                            put(key, block)
+                        }
+                    }
+                    block
+                }
+            }
+        }
+        return download.await()
+    }
+
+    private fun put(key: K, block: B) {
+        val blockSize = sizeOf(block)
+        if (blockSize > maxBytes) {
+            return
+        }
+        downloaded.put(key, block)?.let {
+            downloadedBytes -= sizeOf(it)
+        }
+        downloadedBytes += blockSize
+        val iterator = downloaded.values.iterator()
+        while (downloaded.size > maxBlocks || downloadedBytes > maxBytes) {
+            downloadedBytes -= sizeOf(iterator.next())
+            iterator.remove()
+        }
+    }
+
+    private suspend fun download(key: K): B? {
+        var peerIndex = 0
+        for (attempt in 1..attempts) {
+            val candidates = peers()
+            if (candidates.isEmpty()) {
+                logger.warn { "Unable to download block $key at the #$attempt attempt: there are no connected peers" }
+                continue
+            }
+            val first = candidates[peerIndex % candidates.size]
+            val second = candidates[(peerIndex + 1) % candidates.size].takeIf { candidates.size > 1 }
+            // The next attempt starts with the peer which wasn't asked first this time
+            peerIndex++
+            try {
+                val block = withTimeout(attemptTimeoutMillis) {
+                    race(key, first, second)
+                }
+                logger.trace { "Finished downloading block $key at the #$attempt attempt" }
+                return block
+            } catch (e: TimeoutCancellationException) {
+                logger.warn { "Unable to download block $key at the #$attempt attempt: timed out after $attemptTimeoutMillis ms" }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                logger.warn { "Unable to download block $key at the #$attempt attempt: ${e.message}" }
+            }
+        }
+        return null
+    }
+
+    private suspend fun race(key: K, first: P, second: P?): B = supervisorScope {
+        val requests = mutableListOf(async { fetch(first, key) })
+        if (second != null) {
+            // Give the first peer some time before asking another one as well
+            val answered = withTimeoutOrNull(raceAfterMillis) {
+                requests[0].join()
+            }
+            if (answered == null) {
+                logger.debug { "Block $key took longer than $raceAfterMillis ms, asking another peer as well" }
+                requests.add(async { fetch(second, key) })
+            }
+        }
+        try {
+            firstAnswer(requests)
+        } finally {
+            requests.forEach { it.cancel() }
+        }
+    }
+
+    private suspend fun firstAnswer(requests: List<Deferred<B>>): B {
+        var pending = requests
+        var failure: Exception? = null
+        while (pending.isNotEmpty()) {
+            val answered = select<Deferred<B>> {
+                for (request in pending) {
+                    request.onJoin { request }
+                }
+            }
+            pending = pending - answered
+            try {
+                return answered.await()
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                failure = e
+            }
+        }
+        throw failure ?: IllegalStateException("No peer was asked for the block")
+    }
+}
@@ -6,6 +6,7 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package org.veriblock.miners.pop.service
 
+import io.grpc.StatusRuntimeException
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.delay
@@ -28,12 +29,14 @@ import org.veriblock.miners.pop.common.CheckResult
 import org.veriblock.miners.pop.common.amountToCoin
 import org.veriblock.miners.pop.common.formatBtcFriendlyString
 import org.veriblock.miners.pop.common.generateOperationId
+import org.veriblock.miners.pop.core.MiningOperationStatus
 import org.veriblock.miners.pop.core.VpmOperation
 import org.veriblock.miners.pop.core.VpmOperationState
 import org.veriblock.miners.pop.model.ApplicationExceptions.DuplicateTransactionException
 import org.veriblock.miners.pop.model.ApplicationExceptions.ExceededMaxTransactionFee
 import org.veriblock.miners.pop.model.ApplicationExceptions.UnableToAcquireTransactionLock
 import org.veriblock.miners.pop.model.OperationSummary
+import org.veriblock.miners.pop.model.toOperationSummary
 import org.veriblock.miners.pop.model.result.MineResult
 import org.veriblock.miners.pop.model.result.OperationNotFoundException
 import org.veriblock.miners.pop.model.result.Result
@@ -179,6 +182,7 @@ class MinerService(
         EventBus.nodeCoreNotReadyEvent.unregister(this)
 
         processManager.shutdown()
+        stateService.shutdown()
         bitcoinService.shutdown()
         nodeCoreService.shutdown()
     }
@@ -196,8 +200,65 @@ class MinerService(
         }.toList()
     }
 
+    /**
+     * Lists operations newest first without deserializing the ones which are no longer active.
+     * [after] is the id of the last operation of the previous page, and takes the place of [offset] when walking
+     * through many pages.
+     */
+    fun getOperationSummaries(
+        status: MiningOperationStatus = MiningOperationStatus.ACTIVE,
+        limit: Int = 50,
+        offset: Int = 0,
+        after: String? = null
+    ): List<OperationSummary> {
+        if (status != MiningOperationStatus.ACTIVE) {
+            return stateService.getOperationSummaries(status, limit, offset, after).map { it.toOperationSummary() }
+        }
+        val newestFirst = compareByDescending<VpmOperation> { it.createdAt }.thenByDescending { it.id }
+        val cursor = after?.let {
+            getOperation(it) ?: return emptyList()
+        }
+        return operations.values.asSequence()
+            .filter { cursor == null || newestFirst.compare(it, cursor) > 0 }
+            .sortedWith(newestFirst)
+            .drop(offset)
+            .take(limit)
+            .map { it.toSummaryRecord().toOperationSummary() }
+            .toList()
+    }
+
+    fun getOperationsCount(status: MiningOperationStatus = MiningOperationStatus.ACTIVE): Int {
+        return if (status == MiningOperationStatus.ACTIVE) {
+            operations.size
+        } else {
+            stateService.getOperationsCount(status)
+        }
+    }
+
+    // Active operations are read from memory, as their latest state may not have been written yet
     fun getOperation(id: String) =
-        stateService.getOperation(id)
+        operations[id] ?: stateService.getOperation(id)
+
+    /**
+     * Returns how many confirmations the operation's PoP transaction has in NodeCore, or null when it wasn't submitted
+     * yet or it can't be looked up. Concurrent lookups are answered by a single NodeCore request.
+     */
+    suspend fun getProofOfProofConfirmations(operation: VpmOperation): Int? {
+        val proofOfProofId = operation.proofOfProofId
+            ?: return null
+        if (!nodeCoreService.isAccessible()) {
+            return null
+        }
+        return try {
+            nodeCoreGateway.getTransactionConfirmationsById(proofOfProofId)
+        } catch (e: StatusRuntimeException) {
+            logger.debug { "Unable to retrieve the confirmations of PoP transaction $proofOfProofId: ${e.status}" }
+            null
+        } catch (e: TimeoutError) {
+            logger.debug { "Unable to retrieve the confirmations of PoP transaction $proofOfProofId: ${e.message}" }
+            null
+        }
+    }
 
     suspend fun checkReadyConditions(): CheckResult {
         // Verify if the miner is shutting down
@@ -319,7 +380,7 @@ class MinerService(
         processManager.cancel(operation)
     }
 
-    fun getMinerAddress(): String? {
+    suspend fun getMinerAddress(): String? {
         return if (nodeCoreService.isAccessible()) {
             nodeCoreGateway.getMinerAddress()
         } else {
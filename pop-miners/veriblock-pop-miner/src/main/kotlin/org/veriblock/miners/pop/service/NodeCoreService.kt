@@ -25,6 +25,9 @@ import java.util.concurrent.atomic.AtomicBoolean
 
 private val logger = createLogger {}
 
+// The last block is retrieved at least once every this many polls, even if the reported height didn't change
+private const val LAST_BLOCK_REFRESH_POLLS = 10
+
 class NodeCoreService(
     private val config: VpmConfig,
     private val nodeCoreGateway: NodeCoreGateway,
@@ -32,6 +35,7 @@ class NodeCoreService(
     private var bitcoinService: BitcoinService
 ) {
     private var firstPoll: Boolean = true
+    private var pollsSinceLastBlock = 0
 
     private val ready = AtomicBoolean(false)
     private val accessible = AtomicBoolean(false)
@@ -81,7 +85,7 @@ class NodeCoreService(
         nodeCoreGateway.shutdown()
     }
 
-    private fun poll() {
+    private suspend fun poll() {
         try {
             var nodeCoreStateInfo: StateInfo?
             // Verify if we can make a connection with NodeCore
@@ -152,18 +156,26 @@ class NodeCoreService(
 
                 // At this point the VPM<->NodeCore connection is fine and the NodeCore is synchronized so
                 // VPM can continue with its work
-                val latestBlock = try {
-                    nodeCoreGateway.getLastBlock()
-                } catch (e: Exception) {
-                    logger.error("Unable to get the last block from NodeCore")
-                    accessible.set(false)
-                    EventBus.nodeCoreNotAccessibleEvent.trigger()
-                    return
-                }
                 val chainHead = blockStore.getChainHead()
-                if (latestBlock != chainHead) {
-                    blockStore.setChainHead(latestBlock)
-                    EventBus.newVeriBlockFoundEvent.trigger(NewVeriBlockFoundEventDto(latestBlock, chainHead))
+                // Unless the tip height changed, the last block is most likely the known one. A different block
+                // at the same height is picked up by the periodic refresh.
+                val tipUnchanged = chainHead != null &&
+                    chainHead.getHeight() == latestNodeCoreStateInfo.localBlockchainHeight &&
+                    ++pollsSinceLastBlock < LAST_BLOCK_REFRESH_POLLS
+                if (!tipUnchanged) {
+                    val latestBlock = try {
+                        nodeCoreGateway.getLastBlock()
+                    } catch (e: Exception) {
+                        logger.error("Unable to get the last block from NodeCore")
+                        accessible.set(false)
+                        EventBus.nodeCoreNotAccessibleEvent.trigger()
+                        return
+                    }
+                    pollsSinceLastBlock = 0
+                    if (latestBlock != chainHead) {
+                        blockStore.setChainHead(latestBlock)
+                        EventBus.newVeriBlockFoundEvent.trigger(NewVeriBlockFoundEventDto(latestBlock, chainHead))
+                    }
                 }
             } else {
                 if (isReady()) {
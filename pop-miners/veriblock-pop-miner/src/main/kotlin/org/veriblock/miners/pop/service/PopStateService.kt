@@ -12,26 +12,40 @@ import org.bitcoinj.core.Transaction
 import org.veriblock.core.utilities.createLogger
 import org.veriblock.miners.pop.EventBus
 import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.miners.pop.core.MiningOperationStatus
 import org.veriblock.miners.pop.core.VpmContext
 import org.veriblock.miners.pop.core.VpmMerklePath
 import org.veriblock.miners.pop.core.VpmOperation
+import org.veriblock.miners.pop.core.VpmOperationState
 import org.veriblock.miners.pop.core.VpmSpBlock
 import org.veriblock.miners.pop.core.VpmSpTransaction
 import org.veriblock.miners.pop.core.debug
-import org.veriblock.miners.pop.core.parseOperationLogs
-import org.veriblock.miners.pop.core.toJson
 import org.veriblock.miners.pop.model.PopMiningInstruction
 import org.veriblock.miners.pop.model.proto.OperationProto
 import org.veriblock.miners.pop.storage.OperationRepository
 import org.veriblock.miners.pop.storage.OperationStateRecord
+import org.veriblock.miners.pop.storage.OperationStateWriter
+import org.veriblock.miners.pop.storage.OperationSummaryRecord
 import java.util.ArrayList
 
 private val logger = createLogger {}
 
+// States after which the operation must survive a crash, as they follow a transaction being broadcast
+private val durableStates = setOf(
+    VpmOperationState.ENDORSEMENT_TRANSACTION,
+    VpmOperationState.SUBMITTED_POP_DATA,
+    MiningOperationState.COMPLETED,
+    MiningOperationState.FAILED
+)
+
 class PopStateService(
     private val repository: OperationRepository,
     private val bitcoinService: BitcoinService
 ) {
+    private val writer = OperationStateWriter<OperationStateRecord> {
+        repository.saveOperationStates(it)
+    }
+
     init {
         EventBus.popMiningOperationStateChangedEvent.register(this, ::onMiningOperationStateChanged)
     }
@@ -42,6 +56,20 @@ class PopStateService(
         }
     }
 
+    /**
+     * Lists the stored operations newest first, without deserializing them. [after] is the id of the last operation
+     * of the previous page.
+     */
+    fun getOperationSummaries(status: MiningOperationStatus, limit: Int, offset: Int, after: String?): List<OperationSummaryRecord> {
+        writer.flush()
+        return repository.getOperationSummaries(status, limit, offset, after)
+    }
+
+    fun getOperationsCount(status: MiningOperationStatus): Int {
+        writer.flush()
+        return repository.getOperationsCount(status)
+    }
+
     fun getOperation(id: String): VpmOperation? {
         val stateData = repository.getOperation(id)
             ?: return null
@@ -61,14 +89,21 @@ class PopStateService(
                 status = operation.state.id,
                 state = serializedState,
                 createdAt = operation.createdAt,
-                logs = operation.getLogs().toJson()
+                summary = operation.toSummaryRecord()
             )
-            repository.saveOperationState(stateData)
+            writer.write(operation, stateData, durable = operation.state in durableStates)
         } catch (e: Exception) {
             logger.error(e.message, e)
         }
     }
 
+    /**
+     * Persists every state change which is still queued
+     */
+    fun shutdown() {
+        writer.shutdown()
+    }
+
     @OptIn(ExperimentalSerializationApi::class)
     private fun serialize(operation: VpmOperation): ByteArray {
         val protoData = OperationProto.Operation(
@@ -103,9 +138,9 @@ class PopStateService(
         val operation = VpmOperation(
             id = record.id,
             createdAt = record.createdAt,
-            logs = record.logs.parseOperationLogs(),
             reconstituting = true
         )
+        operation.setStoredLogs(repository.getStoredLogsLoader(record.id))
         val protoData = ProtoBuf.decodeFromByteArray(OperationProto.Operation.serializer(), record.state)
         logger.debug("Reconstituting operation {}", protoData.id)
         if (protoData.endorsedBlockNumber >= 0) {
@@ -159,3 +194,12 @@ class PopStateService(
         return operation
     }
 }
+
+fun VpmOperation.toSummaryRecord() = OperationSummaryRecord(
+    id,
+    state.id,
+    createdAt,
+    endorsedBlockHeight,
+    state.name,
+    getStateDescription()
+)
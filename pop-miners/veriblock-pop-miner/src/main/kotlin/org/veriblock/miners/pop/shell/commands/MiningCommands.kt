@@ -69,7 +69,8 @@ fun CommandFactory.miningCommands(
         val id: String = getParameter("id")
         val operation = minerService.getOperation(id)
         if (operation != null) {
-            printInfo(prettyPrintGson.toJson(OperationInfo(operation)))
+            val proofOfProofConfirmations = minerService.getProofOfProofConfirmations(operation)
+            printInfo(prettyPrintGson.toJson(OperationInfo(operation, proofOfProofConfirmations)))
             success()
         } else {
             failure {
@@ -158,11 +159,11 @@ class OperationInfo(
     val task: String,
     val stateDetail: Map<String, String>
 ) {
-    constructor(operation: VpmOperation) : this(
+    constructor(operation: VpmOperation, proofOfProofConfirmations: Int? = null) : this(
         operation.id,
         operation.state.name,
         operation.endorsedBlockHeight,
         operation.state.taskName,
-        operation.getDetailedInfo()
+        operation.getDetailedInfo(proofOfProofConfirmations)
     )
 }
@@ -4,6 +4,7 @@ import io.grpc.StatusRuntimeException
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.flow.onEach
+import org.bitcoinj.core.Block
 import org.bitcoinj.core.TransactionConfidence
 import org.veriblock.core.utilities.createLogger
 import org.veriblock.core.utilities.extensions.formatAtomicLongWithDecimal
@@ -26,6 +27,7 @@ import org.veriblock.miners.pop.service.PopSubmitRejected
 import org.veriblock.miners.pop.service.SEGWIT_TX_FEE_RATE
 import org.veriblock.miners.pop.service.TaskException
 import org.veriblock.miners.pop.service.TaskService
+import org.veriblock.miners.pop.service.TaskStage
 import org.veriblock.miners.pop.service.failOperation
 import org.veriblock.miners.pop.service.failTask
 import org.veriblock.miners.pop.service.hr
@@ -42,6 +44,11 @@ class VpmTaskService(
     private val nodeCoreGateway: NodeCoreGateway,
     private val bitcoinService: BitcoinService
 ) : TaskService<VpmOperation>() {
+    // Stages doing the expensive work, the ones mostly waiting for the networks are not limited
+    private val endorsementTransactionStage = TaskStage("endorsement_transaction", concurrency = 2)
+    private val proofStage = TaskStage("proof", concurrency = 4)
+    private val publicationContextStage = TaskStage("publication_context", concurrency = 4)
+
     override suspend fun runTasksInternal(operation: VpmOperation) {
 
         operation.runTask(
@@ -64,7 +71,8 @@ class VpmTaskService(
         operation.runTask(
             taskName = "Create Bitcoin Endorsement Transaction",
             targetState = VpmOperationState.ENDORSEMENT_TRANSACTION,
-            timeout = 15.min
+            timeout = 15.min,
+            stage = endorsementTransactionStage
         ) {
             val miningInstruction = operation.miningInstruction
                 ?: failOperation(
@@ -152,7 +160,8 @@ class VpmTaskService(
         operation.runTask(
             taskName = "Prove Transaction",
             targetState = VpmOperationState.PROVEN,
-            timeout = 30.min
+            timeout = 30.min,
+            stage = proofStage
         ) {
             val endorsementTransaction = operation.endorsementTransaction
                 ?: failTask("Trying to prove transaction without the actual transaction!")
@@ -214,7 +223,8 @@ class VpmTaskService(
         operation.runTask(
             taskName = "Build Publication Context",
             targetState = VpmOperationState.CONTEXT,
-            timeout = 10.min
+            timeout = 10.min,
+            stage = publicationContextStage
         ) {
             verifyNodeCoreStatus()
             val miningInstruction = operation.miningInstruction
@@ -224,10 +234,12 @@ class VpmTaskService(
 
             val contextChainProvided = miningInstruction.endorsedBlockContextHeaders.isNotEmpty()
             // Get all the previous blocks until we find
-            val context = generateSequence(blockOfProof) { block ->
-                bitcoinService.getBlock(block.prevBlockHash)
-                    ?: failOperation("Could not retrieve block '${block.prevBlockHash}'")
-            }.drop(1).takeWhile { block ->
+            val context = ArrayList<Block>()
+            var block = blockOfProof
+            while (true) {
+                val previousBlockHash = block.prevBlockHash
+                block = bitcoinService.getBlock(previousBlockHash)
+                    ?: failOperation("Could not retrieve block '$previousBlockHash'")
                 val found = if (contextChainProvided) {
                     miningInstruction.endorsedBlockContextHeaders.any {
                         it.contentEquals(block.serializeHeader())
@@ -239,9 +251,12 @@ class VpmTaskService(
                 val prefix = if (found) "Found" else "Did not find"
                 val where = if (contextChainProvided) "endorsed block context headers" else "search of current NodeCore view"
                 logger.trace(operation, "$prefix block ${block.hashAsString} in $where")
-                !found
-            }.toList().reversed()
-            operation.setContext(context)
+                if (found) {
+                    break
+                }
+                context.add(block)
+            }
+            operation.setContext(context.reversed())
         }
 
         operation.runTask(
@@ -0,0 +1,124 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.miners.pop.service
+
+import io.kotest.matchers.shouldBe
+import org.bitcoinj.core.Block
+import org.bitcoinj.core.Sha256Hash
+import org.bitcoinj.core.StoredBlock
+import org.bitcoinj.params.RegTestParams
+import org.junit.Test
+import java.math.BigInteger
+
+class BestChainIndexTest {
+    private val params = RegTestParams.get()
+    private val blocks = HashMap<Sha256Hash, StoredBlock>()
+    private var reads = 0
+
+    private val getPrev: (StoredBlock) -> StoredBlock? = {
+        reads++
+        blocks[it.header.prevBlockHash]
+    }
+
+    private val genesis = store(params.genesisBlock, 0)
+
+    @Test
+    fun onlyNewBlocksAreRead() {
+        val index = BestChainIndex(capacity = 100)
+        val chain = extend(genesis, 10)
+        index.sync(chain.last(), getPrev)
+        index.getHeight(chain[4].header.hash) shouldBe 5
+
+        reads = 0
+        val longer = extend(chain.last(), 2)
+        index.sync(longer.last(), getPrev)
+
+        reads shouldBe 2
+        index.getHeight(longer.last().header.hash) shouldBe 12
+    }
+
+    @Test
+    fun bestOfTheCandidatesIsTheHighestInTheBestChain() {
+        val index = BestChainIndex(capacity = 100)
+        val chain = extend(genesis, 10)
+        val fork = extend(chain[2], 3, nonce = 1)
+        index.sync(chain.last(), getPrev)
+
+        index.getBest(listOf(chain[3].header.hash, chain[7].header.hash, fork[2].header.hash)) shouldBe chain[7].header.hash
+        index.getBest(listOf(fork[0].header.hash, fork[1].header.hash)) shouldBe null
+    }
+
+    @Test
+    fun reorganizationReplacesTheForkedBlocks() {
+        val index = BestChainIndex(capacity = 100)
+        val chain = extend(genesis, 10)
+        index.sync(chain.last(), getPrev)
+
+        val fork = extend(chain[5], 8, nonce = 1)
+        index.onReorganize(chain[5])
+        reads = 0
+        index.sync(fork.last(), getPrev)
+
+        reads shouldBe 8
+        index.getHeight(chain[9].header.hash) shouldBe null
+        index.getHeight(fork.last().header.hash) shouldBe 14
+        index.getBest(listOf(chain[5].header.hash, chain[6].header.hash)) shouldBe chain[5].header.hash
+    }
+
+    @Test
+    fun reorganizationIsDetectedWithoutTheCallback() {
+        val index = BestChainIndex(capacity = 100)
+        val chain = extend(genesis, 10)
+        index.sync(chain.last(), getPrev)
+
+        val fork = extend(chain[5], 8, nonce = 1)
+        index.sync(fork.last(), getPrev)
+
+        index.getHeight(chain[9].header.hash) shouldBe null
+        index.getHeight(fork[0].header.hash) shouldBe 7
+    }
+
+    @Test
+    fun onlyTheLastBlocksAreKept() {
+        val index = BestChainIndex(capacity = 5)
+        val chain = extend(genesis, 10)
+        index.sync(chain.last(), getPrev)
+
+        index.size shouldBe 5
+        index.lowestHeight shouldBe 6
+        index.getHeight(chain[4].header.hash) shouldBe null
+
+        index.sync(extend(chain.last(), 1).last(), getPrev)
+        index.size shouldBe 5
+        index.lowestHeight shouldBe 7
+    }
+
+    private fun store(block: Block, height: Int) = StoredBlock(block, BigInteger.valueOf(height.toLong()), height).also {
+        blocks[block.hash] = it
+    }
+
+    private fun extend(from: StoredBlock, count: Int, nonce: Long = 0): List<StoredBlock> {
+        val result = ArrayList<StoredBlock>()
+        var previous = from
+        repeat(count) {
+            val header = Block(
+                params,
+                Block.BLOCK_VERSION_GENESIS,
+                previous.header.hash,
+                Sha256Hash.ZERO_HASH,
+                previous.header.timeSeconds + 600,
+                Block.EASIEST_DIFFICULTY_TARGET,
+                nonce,
+                emptyList()
+            )
+            previous = store(header, previous.height + 1)
+            result.add(previous)
+        }
+        return result
+    }
+}
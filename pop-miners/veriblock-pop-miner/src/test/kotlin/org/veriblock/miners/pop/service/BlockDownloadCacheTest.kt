@@ -0,0 +1,123 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.miners.pop.service
+
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import java.util.Collections
+
+class BlockDownloadCacheTest {
+    private val requests: MutableList<Pair<String, String>> = Collections.synchronizedList(ArrayList())
+
+    private fun CoroutineScope.cache(
+        peers: List<String> = listOf("peer1", "peer2"),
+        maxBlocks: Int = 10,
+        maxBytes: Long = 1_000,
+        raceAfterMillis: Long = 1_000,
+        fetch: suspend (peer: String, hash: String) -> String = { _, hash -> delay(10); "block $hash" }
+    ) = BlockDownloadCache<String, String, String>(
+        scope = this,
+        maxBlocks = maxBlocks,
+        maxBytes = maxBytes,
+        attempts = 3,
+        attemptTimeoutMillis = 5_000,
+        raceAfterMillis = raceAfterMillis,
+        peers = { peers },
+        fetch = { peer, hash ->
+            requests.add(peer to hash)
+            fetch(peer, hash)
+        },
+        sizeOf = { it.length }
+    )
+
+    @Test
+    fun concurrentRequestsShareTheDownload() = runBlocking {
+        val cache = cache()
+
+        val blocks = (1..5).map { async { cache.get("a") } }.awaitAll()
+
+        blocks.toSet() shouldBe setOf("block a")
+        requests.size shouldBe 1
+        cache.get("a") shouldBe "block a"
+        requests.size shouldBe 1
+    }
+
+    @Test
+    fun leastRecentlyUsedBlocksAreEvicted() = runBlocking {
+        val cache = cache(maxBlocks = 2)
+
+        cache.get("a")
+        cache.get("b")
+        cache.get("a")
+        cache.get("c")
+
+        cache.size shouldBe 2
+        requests.clear()
+        cache.get("a")
+        requests.size shouldBe 0
+        cache.get("b")
+        requests.size shouldBe 1
+    }
+
+    @Test
+    fun blocksAreEvictedOverTheMemoryBudget() = runBlocking {
+        // Each block takes 7 bytes
+        val cache = cache(maxBytes = 15)
+
+        cache.get("a")
+        cache.get("b")
+        cache.get("c")
+
+        cache.size shouldBe 2
+        cache.sizeInBytes shouldBe 14L
+    }
+
+    @Test
+    fun slowPeerIsRacedByAnotherOne() = runBlocking {
+        val cache = cache(raceAfterMillis = 50) { peer, hash ->
+            if (peer == "peer1") {
+                awaitCancellation()
+            }
+            "block $hash from $peer"
+        }
+
+        cache.get("a") shouldBe "block a from peer2"
+        requests shouldBe listOf("peer1" to "a", "peer2" to "a")
+    }
+
+    @Test
+    fun failedAttemptsRotateAcrossPeers() = runBlocking {
+        val cache = cache(peers = listOf("peer1", "peer2", "peer3")) { peer, hash ->
+            delay(10)
+            if (peer != "peer3") {
+                error("$peer is unavailable")
+            }
+            "block $hash from $peer"
+        }
+
+        cache.get("a") shouldBe "block a from peer3"
+        requests.map { it.first } shouldBe listOf("peer1", "peer2", "peer3")
+    }
+
+    @Test
+    fun failedDownloadsAreNotCached() = runBlocking {
+        val cache = cache(peers = listOf("peer1")) { peer, _ ->
+            error("$peer is unavailable")
+        }
+
+        cache.get("a") shouldBe null
+        requests.size shouldBe 3
+        cache.size shouldBe 0
+    }
+}
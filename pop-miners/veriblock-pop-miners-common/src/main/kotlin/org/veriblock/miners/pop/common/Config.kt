@@ -45,7 +45,12 @@ class BitcoinConfig(
     val peerPingIntervalMillis: Long = 2_000L,
     val downloadBlockchainPeriodSeconds: Int = 10,
     val downloadBlockchainBytesPerSecond: Int = 800,
-    val blockStoreCapacity: Int = 5_000
+    val blockStoreCapacity: Int = 5_000,
+    val blockCacheMaxBlocks: Int = 20,
+    val blockCacheMaxBytes: Long = 64L * 1024 * 1024,
+    val blockDownloadAttempts: Int = 5,
+    val blockDownloadTimeoutMillis: Long = 30_000L,
+    val blockDownloadRaceAfterMillis: Long = 5_000L
 ) {
     val network = when (network.lowercase(Locale.getDefault())) {
         "mainnet" -> BitcoinNetwork.MainNet
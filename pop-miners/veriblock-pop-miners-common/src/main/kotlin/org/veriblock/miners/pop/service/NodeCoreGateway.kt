@@ -11,6 +11,11 @@ import io.grpc.ManagedChannel
 import io.grpc.Status
 import io.grpc.StatusRuntimeException
 import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.guava.await
 import nodecore.api.grpc.AdminGrpc
 import nodecore.api.grpc.RpcBitcoinBlockHeader
 import nodecore.api.grpc.RpcBlockFilter
@@ -53,7 +58,12 @@ class NodeCoreGateway(
     private val channelBuilder: ChannelBuilder
 ) {
     private lateinit var channel: ManagedChannel
-    private lateinit var blockingStub: AdminGrpc.AdminBlockingStub
+    private lateinit var stub: AdminGrpc.AdminFutureStub
+
+    private val coroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    // Concurrent confirmation lookups are answered by a single GetTransactions request
+    private val transactionConfirmations = RequestBatcher(coroutineScope, maxBatchSize = 100, request = ::getTransactionConfirmations)
 
     init {
         initializeClient()
@@ -62,21 +72,23 @@ class NodeCoreGateway(
     private fun initializeClient() {
         try {
             channel = channelBuilder.buildManagedChannel()
-            blockingStub = AdminGrpc.newBlockingStub(channelBuilder.attachPasswordInterceptor(channel))
+            stub = AdminGrpc.newFutureStub(channelBuilder.attachPasswordInterceptor(channel))
         } catch (e: SSLException) {
             logger.error("NodeCore SSL configuration error", e)
         }
     }
 
     fun shutdown() {
+        transactionConfirmations.close()
+        coroutineScope.cancel()
         channel.shutdown().awaitTermination(15, TimeUnit.SECONDS)
     }
 
-    fun ping(): Boolean {
-        return if (!::blockingStub.isInitialized) {
+    suspend fun ping(): Boolean {
+        return if (!::stub.isInitialized) {
             false
         } else try {
-            blockingStub.withDeadlineAfter(5, TimeUnit.SECONDS).ping(RpcPingRequest.newBuilder().build())
+            stub.withDeadlineAfter(5, TimeUnit.SECONDS).ping(RpcPingRequest.newBuilder().build()).await()
             true
         } catch (e: StatusRuntimeException) {
             logger.debug("Unable to connect ping NodeCore at this time")
@@ -88,12 +100,12 @@ class NodeCoreGateway(
      * Retrieve the 'state info' from NodeCore
      * This function will return an empty StateInfo if NodeCore is not accessible or if NodeCore still loading (networkHeight = 0)
      */
-    fun getNodeCoreStateInfo(): StateInfo {
+    suspend fun getNodeCoreStateInfo(): StateInfo {
         return try {
             val request = checkGrpcError {
-                blockingStub
+                stub
                     .withDeadlineAfter(5L, TimeUnit.SECONDS)
-                    .getStateInfo(RpcGetStateInfoRequest.newBuilder().build())
+                    .getStateInfo(RpcGetStateInfoRequest.newBuilder().build()).await()
             }
 
             val blockDifference = abs(request.networkHeight - request.localBlockchainHeight)
@@ -111,16 +123,16 @@ class NodeCoreGateway(
         }
     }
 
-    fun getPop(blockNumber: Int?): PopMiningInstruction {
+    suspend fun getPop(blockNumber: Int?): PopMiningInstruction {
         val requestBuilder = RpcGetPopRequest.newBuilder()
         if (blockNumber != null && blockNumber > 0) {
             requestBuilder.blockNum = blockNumber
         }
         val request = requestBuilder.build()
         val reply = checkGrpcError {
-            blockingStub
+            stub
                 .withDeadlineAfter(15, TimeUnit.SECONDS)
-                .getPop(request)
+                .getPop(request).await()
         }
         if (reply.success) {
             val publicationData = reply.fullPop.toByteArray()
@@ -146,7 +158,7 @@ class NodeCoreGateway(
         }
     }
 
-    fun submitPop(popMiningTransaction: PopMiningTransaction): String {
+    suspend fun submitPop(popMiningTransaction: PopMiningTransaction): String {
         val blockOfProofBuilder = RpcBitcoinBlockHeader.newBuilder()
         blockOfProofBuilder.header = ByteString.copyFrom(popMiningTransaction.bitcoinBlockHeaderOfProof)
         val request = RpcSubmitPopRequest.newBuilder().apply {
@@ -162,71 +174,78 @@ class NodeCoreGateway(
                 addContextBitcoinBlockHeaders(header)
             }
         }.build()
-        val reply = blockingStub.submitPop(request)
+        val reply = stub.submitPop(request).await()
         if (reply.success) {
             return reply.getResults(0).details
         }
         throw PopSubmitRejected()
     }
 
-    fun getTransactionConfirmationsById(txId: String): Int? {
+    suspend fun getTransactionConfirmationsById(txId: String): Int? =
+        transactionConfirmations.get(txId.lowercase())
+
+    private suspend fun getTransactionConfirmations(txIds: List<String>): Map<String, Int> {
         val request = RpcGetTransactionsRequest.newBuilder().apply {
-            addIds(ByteString.copyFrom(txId.asHexBytes()))
+            for (txId in txIds) {
+                addIds(ByteString.copyFrom(txId.asHexBytes()))
+            }
         }.build()
         val reply = checkGrpcError {
-            blockingStub
+            stub
                 .withDeadlineAfter(90, TimeUnit.SECONDS)
-                .getTransactions(request)
+                .getTransactions(request).await()
         }
 
-        return reply.transactionsList.firstOrNull()?.confirmations
+        return reply.transactionsList.associate {
+            it.transaction.txId.toByteArray().toHex().lowercase() to it.confirmations
+        }
     }
 
-    fun getPopEndorsementInfo(): List<PopEndorsementInfo> {
+    suspend fun getPopEndorsementInfo(): List<PopEndorsementInfo> {
         val request = RpcGetPopEndorsementsInfoRequest.newBuilder().apply {
             searchLength = 750
         }.build()
-        val reply = blockingStub.getPopEndorsementsInfo(request)
+        val reply = stub.getPopEndorsementsInfo(request).await()
         return reply.popEndorsementsList.map {
             PopEndorsementInfo(it)
         }
     }
 
-    fun getBitcoinBlockIndex(blockHeader: ByteArray): Int? {
+    suspend fun getBitcoinBlockIndex(blockHeader: ByteArray): Int? {
         val request = RpcGetBitcoinBlockIndexRequest.newBuilder().apply {
             setBlockHeader(ByteString.copyFrom(blockHeader))
             searchLength = 20
         }.build()
-        val reply = blockingStub.getBitcoinBlockIndex(request)
+        val reply = stub.getBitcoinBlockIndex(request).await()
         return if (reply.success && reply.resultsCount > 0) {
             reply.getResults(0).details.toInt()
         } else null
     }
 
-    fun getMinerAddress(): String {
+    suspend fun getMinerAddress(): String {
         val request = RpcGetInfoRequest.newBuilder().build()
-        val reply = blockingStub.getInfo(request)
+        val reply = stub.getInfo(request).await()
         return reply.defaultAddress.address.toByteArray().toBase58()
     }
 
-    fun getLastBlock(): VeriBlockHeader {
+    suspend fun getLastBlock(): VeriBlockHeader {
         val reply = checkGrpcError {
-            blockingStub
+            stub
                 .withDeadlineAfter(10, TimeUnit.SECONDS)
-                .getLastBlock(RpcGetLastBlockRequest.newBuilder().build())
+                .getLastBlock(RpcGetLastBlockRequest.newBuilder().build()).await()
         }
         return VeriBlockHeader(reply.header.header.toByteArray())
     }
 
-    fun getBlockHash(height: Int): String? {
+    suspend fun getBlockHash(height: Int): String? {
         val request = RpcGetBlocksRequest.newBuilder().addFilters(
             RpcBlockFilter.newBuilder().setIndex(height)
         ).build()
 
         val reply = checkGrpcError {
-            blockingStub
+            stub
                 .withDeadlineAfter(10, TimeUnit.SECONDS)
-                .getBlocks(request)
+                .getBlocks(request).await()
         }
         if (reply.success && reply.blocksCount > 0) {
             val deserialized = reply.getBlocks(0)
@@ -236,11 +255,11 @@ class NodeCoreGateway(
         return null
     }
 
-    fun unlockWallet(passphrase: String?): Result {
+    suspend fun unlockWallet(passphrase: String?): Result {
         val request = RpcUnlockWalletRequest.newBuilder().setPassphrase(
             passphrase
         ).build()
-        val protocolReply = blockingStub.unlockWallet(request)
+        val protocolReply = stub.unlockWallet(request).await()
         val result = Result()
         if (!protocolReply.success) {
             result.fail()
@@ -251,9 +270,9 @@ class NodeCoreGateway(
         return result
     }
 
-    fun lockWallet(): Result {
+    suspend fun lockWallet(): Result {
         val request = RpcLockWalletRequest.newBuilder().build()
-        val protocolReply = blockingStub.lockWallet(request)
+        val protocolReply = stub.lockWallet(request).await()
         val result = Result()
         if (!protocolReply.success) {
             result.fail()
@@ -264,14 +283,14 @@ class NodeCoreGateway(
         return result
     }
 
-    fun getPopEstimates(keystonesToSearch: Int): List<RpcRewardEstimate> {
+    suspend fun getPopEstimates(keystonesToSearch: Int): List<RpcRewardEstimate> {
         val request = RpcGetPopRewardEstimatesRequest.newBuilder().apply {
             this.keystonesToSearch = keystonesToSearch
         }.build()
         val reply = checkGrpcError {
-            blockingStub
+            stub
                 .withDeadlineAfter(15, TimeUnit.SECONDS)
-                .getPopRewardEstimates(request)
+                .getPopRewardEstimates(request).await()
         }
         if (reply.success) {
             return reply.rewardEstimatesList
@@ -289,7 +308,7 @@ class NodeCoreGateway(
         }
     }
 
-    fun sendCoins(address: String, amount: Long, takeFeeFromOutputs: Boolean): List<String> {
+    suspend fun sendCoins(address: String, amount: Long, takeFeeFromOutputs: Boolean): List<String> {
         val request = RpcSendCoinsRequest.newBuilder().apply {
             addAmounts(RpcOutput.newBuilder().apply {
                 this.address = ByteStringAddressUtility.createProperByteStringAutomatically(address)
@@ -298,9 +317,9 @@ class NodeCoreGateway(
             this.takeFeeFromOutputs = takeFeeFromOutputs
         }.build()
         val reply = checkGrpcError {
-            blockingStub
+            stub
                 .withDeadlineAfter(15, TimeUnit.SECONDS)
-                .sendCoins(request)
+                .sendCoins(request).await()
         }
         if (reply.success) {
             return reply.txIdsList.map { it.toByteArray().toHex() }
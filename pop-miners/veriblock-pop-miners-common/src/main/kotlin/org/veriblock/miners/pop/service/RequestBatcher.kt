@@ -0,0 +1,86 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.veriblock.miners.pop.service
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.launch
+import org.veriblock.core.utilities.createLogger
+import kotlin.coroutines.coroutineContext
+
+private val logger = createLogger {}
+
+/**
+ * Groups concurrent lookups into batched requests.
+ *
+ * Lookups are queued while a batch is in flight, and the next batch takes all of them (up to [maxBatchSize]),
+ * so the amount of requests depends on how long they take rather than on how many lookups there are.
+ * Lookups of the same key in a batch are only requested once.
+ */
+class RequestBatcher<K : Any, V : Any>(
+    scope: CoroutineScope,
+    private val maxBatchSize: Int,
+    private val request: suspend (keys: List<K>) -> Map<K, V>
+) {
+    private class Lookup<K, V>(
+        val key: K,
+        val result: CompletableDeferred<V?> = CompletableDeferred()
+    )
+
+    private val lookups = Channel<Lookup<K, V>>(Channel.UNLIMITED)
+
+    init {
+        scope.launch {
+            for (first in lookups) {
+                val batch = mutableListOf(first)
+                while (batch.size < maxBatchSize) {
+                    batch.add(lookups.tryReceive().getOrNull() ?: break)
+                }
+                process(batch)
+            }
+        }
+    }
+
+    /**
+     * Returns the value for [key] from the next batched request, or null if the reply didn't include it
+     */
+    suspend fun get(key: K): V? {
+        val lookup = Lookup<K, V>(key)
+        lookups.send(lookup)
+        try {
+            return lookup.result.await()
+        } catch (e: CancellationException) {
+            lookup.result.cancel()
+            throw e
+        }
+    }
+
+    private suspend fun process(batch: List<Lookup<K, V>>) {
+        // Skip the lookups whose callers are no longer waiting
+        val pending = batch.filter { !it.result.isCancelled }
+        if (pending.isEmpty()) {
+            return
+        }
+        val keys = pending.map { it.key }.distinct()
+        try {
+            val values = request(keys)
+            pending.forEach { it.result.complete(values[it.key]) }
+        } catch (e: Exception) {
+            logger.debug { "Batched request for ${keys.size} keys failed: ${e.message}" }
+            pending.forEach { it.result.completeExceptionally(e) }
+            // A failed request only fails its batch, unless the batcher itself is being cancelled
+            coroutineContext.ensureActive()
+        }
+    }
+
+    fun close() {
+        lookups.close()
+    }
+}
@@ -0,0 +1,81 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.miners.pop.service
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Test
+import java.util.Collections
+
+class RequestBatcherTest {
+    private val requests: MutableList<List<String>> = Collections.synchronizedList(ArrayList())
+
+    @Test
+    fun lookupsQueuedDuringARequestShareTheNextOne() = runBlocking {
+        val firstRequestReleased = CompletableDeferred<Unit>()
+        val batcher = RequestBatcher<String, Int>(this, maxBatchSize = 10) { keys ->
+            requests.add(keys)
+            if (requests.size == 1) {
+                firstRequestReleased.await()
+            }
+            keys.associateWith { it.length }
+        }
+
+        val first = async { batcher.get("a") }
+        yield()
+        val others = listOf("bb", "ccc", "bb", "dddd").map { async { batcher.get(it) } }
+        yield()
+        firstRequestReleased.complete(Unit)
+
+        first.await() shouldBe 1
+        others.awaitAll() shouldBe listOf(2, 3, 2, 4)
+        requests shouldBe listOf(listOf("a"), listOf("bb", "ccc", "dddd"))
+        batcher.close()
+    }
+
+    @Test
+    fun batchesAreLimitedInSize() = runBlocking {
+        val batcher = RequestBatcher<Int, Int>(this, maxBatchSize = 2) { keys ->
+            keys.associateWith { it * 2 }
+        }
+
+        (1..5).map { async { batcher.get(it) } }.awaitAll() shouldBe listOf(2, 4, 6, 8, 10)
+        batcher.close()
+    }
+
+    @Test
+    fun missingValuesAreNull() = runBlocking {
+        val batcher = RequestBatcher<String, Int>(this, maxBatchSize = 10) { emptyMap() }
+
+        batcher.get("a") shouldBe null
+        batcher.close()
+    }
+
+    @Test
+    fun failedRequestOnlyFailsItsBatch() = runBlocking {
+        var fail = true
+        val batcher = RequestBatcher<String, Int>(this, maxBatchSize = 10) { keys ->
+            if (fail) {
+                fail = false
+                error("NodeCore is unavailable")
+            }
+            keys.associateWith { it.length }
+        }
+
+        shouldThrow<IllegalStateException> {
+            batcher.get("a")
+        }
+        batcher.get("bb") shouldBe 2
+        batcher.close()
+    }
+}
@@ -34,6 +34,19 @@ dependencies {
     runtimeOnly("org.codehaus.groovy:groovy:2.4.12")
 
     implementation(project(":veriblock-core"))
+    implementation(project(":pop-miners:pop-miners-common"))
+    // The simulator runs the altchain PoP miner's monitor and tasks
+    implementation(project(":altchain-sdk"))
+    implementation(project(":nodecore-spv"))
+    implementation(project(":pop-miners:altchain-pop-miner"))
+
+    // Simulator
+    implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:$coroutinesVersion")
+    implementation("org.jetbrains.kotlinx:kotlinx-coroutines-test:$coroutinesVersion")
+    implementation("org.apache.logging.log4j:log4j-api:$log4jVersion")
+    implementation("org.jetbrains.exposed:exposed-jdbc:$exposedVersion")
+    implementation("com.zaxxer:HikariCP:$hikariCPVersion")
+    implementation("org.xerial:sqlite-jdbc:$sqliteVersion")
 
     testImplementation("junit:junit:4.12")
     testImplementation("org.apache.commons:commons-lang3:3.8.1")
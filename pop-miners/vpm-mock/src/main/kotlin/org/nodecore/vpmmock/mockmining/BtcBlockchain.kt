@@ -74,8 +74,11 @@ class BtcBlockchain(
         return list.reversed()
     }
 
-    fun mine(data: BitcoinBlockData, prev: BtcBlockIndex = activeChain.tip): BitcoinBlock {
-        val timestamp = prev.header.timestamp.coerceAtLeast(Utility.getCurrentTimestamp())
+    fun mine(
+        data: BitcoinBlockData,
+        prev: BtcBlockIndex = activeChain.tip,
+        timestamp: Int = prev.header.timestamp.coerceAtLeast(Utility.getCurrentTimestamp())
+    ): BitcoinBlock {
         // TODO(warchant): eventually add diff calculator
         val difficulty = prev.header.difficulty
         for (nonce in 0 until Int.MAX_VALUE) {
@@ -12,7 +12,7 @@ class BtcChain(
 
     // get by height
     operator fun get(index: Int): BtcBlockIndex? {
-        if (index < minHeight || index >= chain.size - minHeight) return null
+        if (index < minHeight || index - minHeight >= chain.size) return null
         return chain[index - minHeight]
     }
 
@@ -33,19 +33,23 @@ class BtcChain(
             return
         }
 
-        chain.ensureCapacity(block.height + 1)
+        // drop the blocks above the new tip, the new chain may be shorter but have more work
+        while (chain.size > block.height + 1 - minHeight) {
+            chain.removeAt(chain.size - 1)
+        }
 
-        // FIXME: workaround for ArrayList to allow usage of operator[] in next while loop
-        while (chain.size <= block.height) {
+        // FIXME: workaround for ArrayList to allow usage of operator[] in next loop
+        while (chain.size <= block.height - minHeight) {
             // this `block` will be overwritten in the next loop anyway
             chain.add(block)
         }
 
+        // the tip itself is always written, as the placeholders above make it look like it is already in the chain
         var cursor: BtcBlockIndex? = block
-        while (cursor != null && !contains(cursor)) {
-            chain[cursor.height - minHeight] = cursor
+        do {
+            chain[cursor!!.height - minHeight] = cursor
             cursor = cursor.prev
-        }
+        } while (cursor != null && !contains(cursor))
     }
 
     // finds a fork between current tip and a block
@@ -0,0 +1,339 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+@file:OptIn(ExperimentalCoroutinesApi::class)
+
+package org.nodecore.vpmmock.simulation
+
+import com.zaxxer.hikari.HikariConfig
+import com.zaxxer.hikari.HikariDataSource
+import kotlinx.coroutines.CoroutineExceptionHandler
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import org.jetbrains.exposed.sql.Database
+import org.jetbrains.exposed.sql.SchemaUtils
+import org.jetbrains.exposed.sql.transactions.transaction
+import org.jetbrains.exposed.sql.transactions.transactionManager
+import org.nodecore.vpmmock.mockmining.VeriBlockPopMinerMock
+import org.veriblock.core.crypto.VbkHash
+import org.veriblock.core.utilities.Configuration
+import org.veriblock.core.utilities.createLogger
+import org.veriblock.miners.pop.MinerConfig
+import org.veriblock.miners.pop.core.ApmContext
+import org.veriblock.miners.pop.core.ApmOperation
+import org.veriblock.miners.pop.core.ApmOperationState
+import org.veriblock.miners.pop.core.MiningOperation
+import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.miners.pop.core.MiningOperationStatus
+import org.veriblock.miners.pop.securityinheriting.SecurityInheritingMonitor
+import org.veriblock.miners.pop.service.ApmTaskService
+import org.veriblock.miners.pop.storage.OperationLogTable
+import org.veriblock.miners.pop.storage.OperationRepository
+import org.veriblock.miners.pop.storage.OperationStateRecord
+import org.veriblock.miners.pop.storage.OperationStateTable
+import org.veriblock.miners.pop.storage.OperationStateWriter
+import java.io.File
+import java.security.KeyPair
+import java.security.KeyPairGenerator
+import java.security.SecureRandom
+import java.security.spec.ECGenParameterSpec
+import java.sql.Connection
+import java.time.Duration
+import java.time.LocalDateTime
+import kotlin.math.ln
+import kotlin.random.Random
+
+private val logger = createLogger {}
+
+// The virtual clock's origin, for the operations' creation dates
+private val SIMULATION_EPOCH = LocalDateTime.of(2021, 1, 1, 0, 0)
+
+// Blocks mined on every chain before the miners start
+private const val INITIAL_BLOCKS = 10
+
+// The simulated altchain's key in the altchain miner's configuration
+private const val ALTCHAIN_KEY = "sim"
+
+// Same as the miners': states after which the operation must survive a crash
+private val durableStates = setOf(
+    SimulatedOperationState.ENDORSEMENT_TRANSACTION,
+    SimulatedOperationState.SUBMITTED_POP_DATA,
+    ApmOperationState.ENDORSEMENT_TRANSACTION,
+    ApmOperationState.SUBMITTED_POP_DATA,
+    MiningOperationState.COMPLETED,
+    MiningOperationState.FAILED
+)
+
+/**
+ * Runs a VeriBlock PoP miner and an altchain PoP miner against simulated Bitcoin, VeriBlock and altchain networks
+ * for [SimulationConfig.durationHours] of virtual time, measuring the throughput and the latency of every task.
+ *
+ * The altchain operations are run by the altchain PoP miner's own [ApmTaskService] and [SecurityInheritingMonitor],
+ * against a [StubAltchain] and a [StubVeriBlockNetwork]. The VeriBlock PoP miner's tasks are replicated by
+ * [VpmSimulationTaskService], as its task service depends on bitcoinj and on a NodeCore connection.
+ *
+ * Everything runs on a single paused test dispatcher whose clock is advanced by the simulator, so hours of mining
+ * take seconds and the same configuration always gives the same report. The operations are persisted to a
+ * temporary SQLite database through the miners' own repository and state writer.
+ */
+class PopMiningSimulator(
+    private val config: SimulationConfig
+) {
+    private val dispatcher = TestCoroutineDispatcher().apply {
+        pauseDispatcher()
+    }
+
+    private val timelines = HashMap<String, OperationTimeline>()
+    private val measurements = SimulatedOperationKind.values().associateWith { KindMeasurements() }
+    private var finished = false
+
+    private lateinit var writer: OperationStateWriter<OperationStateRecord>
+
+    fun run(): SimulationReport {
+        val wallClockStart = System.currentTimeMillis()
+        val random = Random(config.seed)
+
+        val mock = VeriBlockPopMinerMock()
+        // The altchain monitor reads its polling period from the miner's configuration
+        val configurationFile = File.createTempFile("pop-simulation", ".conf").apply {
+            writeText("securityInheriting.$ALTCHAIN_KEY.pollingPeriodSeconds = ${config.altchainPollingPeriodSeconds}\n")
+        }
+        val configuration = try {
+            Configuration(configurationFile.absolutePath)
+        } finally {
+            configurationFile.delete()
+        }
+        val context = ApmContext(configuration, mock.veriBlockParameters)
+
+        val bitcoin = SimulatedBitcoinNetwork(
+            mock, config.btcBlockCapacity, config.btcReorgProbability, config.maxReorgDepth, Random(random.nextLong())
+        )
+        val vbk = SimulatedChain(
+            "VeriBlock", config.vbkBlockCapacity, config.vbkReorgProbability, config.maxReorgDepth, Random(random.nextLong()),
+            VbkHash.HASH_LENGTH
+        )
+        val altchain = SimulatedChain(
+            "Altchain", config.altBlockCapacity, config.altReorgProbability, config.maxReorgDepth, Random(random.nextLong())
+        )
+        val minerKey = generateMinerKey(config.seed)
+        val vpmTaskService = VpmSimulationTaskService(config, vbk, bitcoin, minerKey)
+        val network = StubVeriBlockNetwork(vbk, minerKey, config.endorsementTransactionMillis)
+        val stubAltchain = StubAltchain(
+            ALTCHAIN_KEY, altchain, vbk, network, bitcoin,
+            config.altKeystonePeriod, config.altPayoutDelay, config.altBlockTimeSeconds, config.rpcLatencyMillis
+        )
+        val apmTaskService = ApmTaskService(MinerConfig()) { network }
+        val monitor = SecurityInheritingMonitor(context, configuration, stubAltchain.key, stubAltchain, dispatcher)
+
+        val databaseFile = File.createTempFile("pop-simulation", ".db")
+        val dataSource = HikariDataSource(HikariConfig().apply {
+            driverClassName = "org.sqlite.JDBC"
+            jdbcUrl = "jdbc:sqlite:${databaseFile.absolutePath}"
+            addDataSourceProperty("journal_mode", "WAL")
+            addDataSourceProperty("synchronous", "NORMAL")
+        })
+        try {
+            val database = Database.connect(dataSource).apply {
+                transactionManager.defaultIsolationLevel = Connection.TRANSACTION_READ_UNCOMMITTED
+                transaction(this) {
+                    SchemaUtils.createMissingTablesAndColumns(OperationStateTable, OperationLogTable)
+                }
+            }
+            val repository = OperationRepository(database)
+            writer = OperationStateWriter {
+                repository.saveOperationStates(it)
+            }
+
+            val bitcoinEpoch = bitcoin.tip.header.timestamp
+            fun mineBitcoin() = bitcoin.mine(bitcoinEpoch + (dispatcher.currentTime / 1000).toInt())
+            repeat(INITIAL_BLOCKS) {
+                mineBitcoin()
+                vbk.mine(dispatcher.currentTime)
+                altchain.mine(dispatcher.currentTime)
+            }
+
+            val scope = CoroutineScope(dispatcher + SupervisorJob() + CoroutineExceptionHandler { _, e ->
+                logger.error(e) { "Simulation coroutine failed" }
+            })
+            scope.launchPoisson(config.btcBlockTimeSeconds * 1000.0, Random(random.nextLong())) {
+                mineBitcoin()
+            }
+            scope.launchPoisson(config.vbkBlockTimeSeconds * 1000.0, Random(random.nextLong())) {
+                vbk.mine(dispatcher.currentTime)
+            }
+            scope.launchPoisson(config.altBlockTimeSeconds * 1000.0, Random(random.nextLong())) {
+                altchain.mine(dispatcher.currentTime)
+            }
+            monitor.startPolling(scope)
+            network.start(scope)
+
+            var operationCount = 0
+            fun nextOperationId() = String.format("%08x", ++operationCount)
+            fun now() = SIMULATION_EPOCH.plus(Duration.ofMillis(dispatcher.currentTime))
+            val vpmRandom = Random(random.nextLong())
+            if (config.vpmOperationsPerHour > 0) {
+                scope.launchPoisson(3_600_000.0 / config.vpmOperationsPerHour, vpmRandom) {
+                    val operation = SimulatedOperation(nextOperationId(), null, now()) {
+                        onStateChanged(SimulatedOperationKind.VPM, it)
+                    }
+                    operation.job = scope.launch {
+                        vpmTaskService.runTasks(operation)
+                    }
+                }
+            }
+            val apmRandom = Random(random.nextLong())
+            if (config.apmOperationsPerHour > 0) {
+                scope.launchPoisson(3_600_000.0 / config.apmOperationsPerHour, apmRandom) {
+                    // Like the APM's auto miner, nothing is mined until the monitor has seen the altchain
+                    if (monitor.isReady()) {
+                        val endorsedBlockHeight = monitor.latestBlockChainInfo.localBlockchainHeight
+                        val operation = ApmOperation(
+                            id = nextOperationId(),
+                            chain = stubAltchain,
+                            chainMonitor = monitor,
+                            endorsedBlockHeight = endorsedBlockHeight,
+                            createdAt = now()
+                        ) {
+                            onStateChanged(SimulatedOperationKind.APM, it)
+                        }
+                        operation.job = scope.launch {
+                            apmTaskService.runTasks(operation)
+                        }
+                    }
+                }
+            }
+
+            dispatcher.advanceTimeBy(config.durationHours * 3_600_000L)
+            finished = true
+            monitor.stop()
+            scope.cancel()
+            // Lets the cancelled coroutines run their cleanup
+            dispatcher.runCurrent()
+            writer.shutdown()
+
+            return SimulationReport(
+                config = config,
+                operations = measurements.mapValues { (_, it) -> it.toReport(config.durationHours) },
+                bitcoin = ChainReport(bitcoin.tip.height + 1, bitcoin.reorganizations, bitcoin.mempoolSize),
+                veriBlock = ChainReport(vbk.tip.height + 1, vbk.reorganizations, vbk.mempoolSize),
+                altchain = ChainReport(altchain.tip.height + 1, altchain.reorganizations, altchain.mempoolSize),
+                altchainDaemonCalls = stubAltchain.calls,
+                persistedOperations = repository.getOperationsCount(MiningOperationStatus.ALL),
+                persistedCompletedOperations = repository.getOperationsCount(MiningOperationStatus.COMPLETED),
+                wallClockMillis = System.currentTimeMillis() - wallClockStart
+            )
+        } finally {
+            dataSource.close()
+            for (suffix in listOf("", "-wal", "-shm")) {
+                File(databaseFile.absolutePath + suffix).delete()
+            }
+        }
+    }
+
+    private fun onStateChanged(kind: SimulatedOperationKind, operation: MiningOperation) {
+        if (finished) {
+            return
+        }
+        val now = dispatcher.currentTime
+        val timeline = timelines.getOrPut(operation.id) {
+            OperationTimeline(now, operation.state)
+        }
+        val kindMeasurements = measurements.getValue(kind)
+        when (operation.state.id) {
+            MiningOperationState.INITIAL_ID -> {
+                kindMeasurements.started++
+            }
+            MiningOperationState.COMPLETED_ID -> {
+                kindMeasurements.completed++
+                kindMeasurements.endToEndLatencies.add(now - timeline.createdAt)
+                timelines.remove(operation.id)
+            }
+            MiningOperationState.FAILED_ID -> {
+                kindMeasurements.failed++
+                kindMeasurements.failuresByTask.merge(timeline.lastState.taskName, 1, Int::plus)
+                timelines.remove(operation.id)
+            }
+            else -> {
+                kindMeasurements.taskLatencies.getOrPut(timeline.lastState.taskName) {
+                    ArrayList()
+                }.add(now - timeline.lastStateChange)
+            }
+        }
+        timeline.lastState = operation.state
+        timeline.lastStateChange = now
+        persist(kind, operation)
+    }
+
+    private fun persist(kind: SimulatedOperationKind, operation: MiningOperation) {
+        val detailedInfo = mapOf("kind" to kind.name) + operation.getDetailedInfo()
+        val record = OperationStateRecord(
+            id = operation.id,
+            status = operation.state.id,
+            state = detailedInfo.entries.joinToString("\n") { "${it.key}=${it.value}" }.toByteArray(),
+            createdAt = operation.createdAt
+        )
+        writer.write(operation, record, durable = operation.state in durableStates)
+    }
+
+    /**
+     * Runs [action] at exponentially distributed intervals averaging [meanIntervalMillis]
+     */
+    private fun CoroutineScope.launchPoisson(meanIntervalMillis: Double, random: Random, action: () -> Unit) = launch {
+        while (true) {
+            delay((-ln(1.0 - random.nextDouble()) * meanIntervalMillis).toLong())
+            action()
+        }
+    }
+}
+
+private class OperationTimeline(
+    val createdAt: Long,
+    var lastState: MiningOperationState
+) {
+    var lastStateChange: Long = createdAt
+}
+
+private class KindMeasurements {
+    var started = 0
+    var completed = 0
+    var failed = 0
+    // By the task which led to the state, in the order they were first seen
+    val taskLatencies = LinkedHashMap<String, MutableList<Long>>()
+    val endToEndLatencies = ArrayList<Long>()
+    val failuresByTask = LinkedHashMap<String, Int>()
+}
+
+private fun KindMeasurements.toReport(durationHours: Int) = OperationKindReport(
+    started = started,
+    completed = completed,
+    failed = failed,
+    completedPerHour = completed.toDouble() / durationHours,
+    taskLatencies = taskLatencies.mapValues { (_, it) -> LatencyStats.of(it) },
+    endToEndLatency = LatencyStats.of(endToEndLatencies),
+    failuresByTask = failuresByTask
+)
+
+/**
+ * The same miner key for the same seed, so that the PoP transactions are the same from one run to the next
+ */
+private fun generateMinerKey(seed: Long): KeyPair {
+    val random = SecureRandom.getInstance("SHA1PRNG").apply {
+        setSeed(seed)
+    }
+    return KeyPairGenerator.getInstance("EC").apply {
+        initialize(ECGenParameterSpec("secp256k1"), random)
+    }.generateKeyPair()
+}
+
+fun main(args: Array<String>) {
+    println(PopMiningSimulator(SimulationConfig.parse(args)).run())
+}
@@ -0,0 +1,118 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import org.nodecore.vpmmock.mockmining.BitcoinBlockData
+import org.nodecore.vpmmock.mockmining.BtcBlockIndex
+import org.nodecore.vpmmock.mockmining.VeriBlockPopMinerMock
+import org.veriblock.core.crypto.Sha256Hash
+import org.veriblock.sdk.models.BitcoinTransaction
+import kotlin.random.Random
+
+/**
+ * Bitcoin network on top of the mock's [org.nodecore.vpmmock.mockmining.BtcBlockchain], mining real blocks with a
+ * mempool limited by [blockCapacity] per block and occasional reorganizations.
+ *
+ * Transactions are submitted along with a key to find them by, as the endorsements of the same VeriBlock block
+ * by the same miner have the same bytes.
+ */
+class SimulatedBitcoinNetwork(
+    val mock: VeriBlockPopMinerMock,
+    private val blockCapacity: Int,
+    private val reorgProbability: Double,
+    private val maxReorgDepth: Int,
+    private val random: Random
+) {
+    private val blockchain = mock.bitcoinBlockchain
+    private val mempool = ArrayDeque<Pair<String, BitcoinTransaction>>()
+    // The transactions of every block mined, in the same order as in its body
+    private val blockTransactions = HashMap<Sha256Hash, List<Pair<String, BitcoinTransaction>>>()
+    private val transactionBlocks = HashMap<String, Sha256Hash>()
+
+    private val mutableTipChanges = MutableStateFlow(0)
+    val tipChanges: StateFlow<Int> = mutableTipChanges
+
+    var reorganizations = 0
+        private set
+
+    val tip: BtcBlockIndex
+        get() = blockchain.activeChain.tip
+
+    val mempoolSize: Int
+        get() = mempool.size
+
+    fun submit(key: String, transaction: BitcoinTransaction) {
+        mempool.addLast(key to transaction)
+    }
+
+    /**
+     * Gets the best chain block containing the transaction submitted as [key], along with its index in the block
+     */
+    fun findTransaction(key: String): Pair<BtcBlockIndex, Int>? {
+        val hash = transactionBlocks[key]
+            ?: return null
+        val block = blockchain.getBlockIndex(hash)
+            ?: return null
+        return block to blockTransactions.getValue(hash).indexOfFirst { it.first == key }
+    }
+
+    /**
+     * Gets a block by hash, whether it's on the best chain or on a branch which was reorganized out
+     */
+    fun getBlock(hash: Sha256Hash): BtcBlockIndex? = blockchain.getBlockIndex(hash)
+
+    /**
+     * Mines the next block at [timestamp] (in seconds)
+     */
+    fun mine(timestamp: Int) {
+        val tip = tip
+        val depth = if (maxReorgDepth > 0 && random.nextDouble() < reorgProbability) {
+            random.nextInt(1, maxReorgDepth + 1).coerceAtMost(tip.height - blockchain.genesisBlockHeight)
+        } else {
+            0
+        }
+        var prev = tip
+        if (depth > 0) {
+            prev = tip.getAncestorAtHeight(tip.height - depth)
+                ?: error("Unable to find the ancestor of ${tip.hash} at height ${tip.height - depth}")
+            val replaced = generateSequence(tip) { it.prev }.takeWhile { it.height > prev.height }.toList()
+            val returning = replaced.asReversed().flatMap { block ->
+                blockTransactions.remove(block.hash).orEmpty()
+            }
+            returning.forEach { transactionBlocks.remove(it.first) }
+            // Back to the front of the mempool, ahead of the transactions submitted later
+            returning.asReversed().forEach { mempool.addFirst(it) }
+            reorganizations++
+        }
+        // The replacing branch only becomes the active chain with its last block, which gives it more work
+        repeat(depth + 1) {
+            prev = mineBlock(prev, timestamp)
+        }
+        check(blockchain.activeChain.tip.hash == prev.hash) {
+            "The mined block ${prev.hash} did not become the tip"
+        }
+        mutableTipChanges.value = mutableTipChanges.value + 1
+    }
+
+    private fun mineBlock(prev: BtcBlockIndex, timestamp: Int): BtcBlockIndex {
+        val transactions = ArrayList<Pair<String, BitcoinTransaction>>()
+        while (transactions.size < blockCapacity && mempool.isNotEmpty()) {
+            transactions.add(mempool.removeFirst())
+        }
+        val body = BitcoinBlockData().apply {
+            addAll(transactions.map { it.second.rawBytes })
+        }
+        val header = blockchain.mine(body, prev, timestamp.coerceAtLeast(prev.header.timestamp))
+        blockTransactions[header.hash] = transactions
+        transactions.forEach { transactionBlocks[it.first] = header.hash }
+        return blockchain.getBlockIndex(header.hash)
+            ?: error("The mined block ${header.hash} is not in the block index")
+    }
+}
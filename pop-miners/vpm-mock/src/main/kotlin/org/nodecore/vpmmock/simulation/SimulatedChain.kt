@@ -0,0 +1,150 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import org.nodecore.vpmmock.mockmining.BitcoinBlockData
+import org.veriblock.core.crypto.MerkleRoot
+import org.veriblock.core.utilities.extensions.flip
+import org.veriblock.core.utilities.extensions.toHex
+import org.veriblock.sdk.models.MerklePath
+import kotlin.random.Random
+
+class SimulatedBlock(
+    val hash: String,
+    val height: Int,
+    val previousHash: String?,
+    // Virtual time the block was mined at
+    val timestamp: Long,
+    val transactions: List<String>
+) {
+    private val body by lazy {
+        BitcoinBlockData().apply {
+            addAll(transactions.map { it.toByteArray() })
+        }
+    }
+
+    val merkleRoot: MerkleRoot by lazy {
+        body.merkleRoot
+    }
+
+    fun getMerklePath(transactionId: String): MerklePath? {
+        val index = transactions.indexOf(transactionId)
+        if (index < 0) {
+            return null
+        }
+        return body.getMerklePath(index)
+    }
+}
+
+/**
+ * Whether the path leads to the merkle root of a block mined from a [BitcoinBlockData]
+ */
+fun MerklePath.leadsTo(blockMerkleRoot: MerkleRoot): Boolean =
+    merkleRoot.bytes.flip().contentEquals(blockMerkleRoot.bytes)
+
+/**
+ * Synthetic chain standing for the VeriBlock network and for the altchains.
+ *
+ * Only the best chain is kept: transactions are identified by their ids, wait in the mempool in the order they
+ * were submitted and are taken by the blocks up to [blockCapacity]. Every now and then a block replaces the last
+ * ones with a longer branch, sending the transactions of the replaced blocks back to the mempool.
+ */
+class SimulatedChain(
+    val name: String,
+    private val blockCapacity: Int,
+    private val reorgProbability: Double,
+    private val maxReorgDepth: Int,
+    private val random: Random,
+    // Bytes of the block hashes, VeriBlock's are shorter than Bitcoin's and the altchains' ones
+    private val hashLength: Int = 32
+) {
+    private val blocks = ArrayList<SimulatedBlock>()
+    private val blocksByHash = HashMap<String, SimulatedBlock>()
+    private val transactionBlocks = HashMap<String, SimulatedBlock>()
+    private val mempool = ArrayDeque<String>()
+
+    // Changes every time the tip does, for the ones waiting on the chain to progress
+    private val mutableTipChanges = MutableStateFlow(0)
+    val tipChanges: StateFlow<Int> = mutableTipChanges
+
+    var reorganizations = 0
+        private set
+
+    init {
+        appendBlock(0)
+    }
+
+    val tip: SimulatedBlock
+        get() = blocks.last()
+
+    val mempoolSize: Int
+        get() = mempool.size
+
+    /**
+     * Gets a block of the best chain by hash, blocks which have been reorganized out are unknown
+     */
+    fun getBlock(hash: String): SimulatedBlock? = blocksByHash[hash]
+
+    fun getBlockAtHeight(height: Int): SimulatedBlock? = blocks.getOrNull(height)
+
+    fun submit(transactionId: String) {
+        mempool.addLast(transactionId)
+    }
+
+    /**
+     * Gets the best chain block containing the transaction, if any
+     */
+    fun findTransaction(transactionId: String): SimulatedBlock? = transactionBlocks[transactionId]
+
+    /**
+     * Mines the next block at the virtual time [timestamp]
+     */
+    fun mine(timestamp: Long) {
+        val depth = if (maxReorgDepth > 0 && random.nextDouble() < reorgProbability) {
+            random.nextInt(1, maxReorgDepth + 1).coerceAtMost(blocks.size - 1)
+        } else {
+            0
+        }
+        if (depth > 0) {
+            val replaced = blocks.subList(blocks.size - depth, blocks.size)
+            val returning = replaced.flatMap { it.transactions }
+            for (block in replaced) {
+                blocksByHash.remove(block.hash)
+                block.transactions.forEach { transactionBlocks.remove(it) }
+            }
+            replaced.clear()
+            // Back to the front of the mempool, ahead of the transactions submitted later
+            returning.asReversed().forEach { mempool.addFirst(it) }
+            reorganizations++
+        }
+        // The replacing branch is one block longer than the replaced one
+        repeat(depth + 1) {
+            appendBlock(timestamp)
+        }
+        mutableTipChanges.value = mutableTipChanges.value + 1
+    }
+
+    private fun appendBlock(timestamp: Long) {
+        val transactions = ArrayList<String>()
+        while (transactions.size < blockCapacity && mempool.isNotEmpty()) {
+            transactions.add(mempool.removeFirst())
+        }
+        val block = SimulatedBlock(
+            hash = random.nextBytes(hashLength).toHex(),
+            height = blocks.size,
+            previousHash = blocks.lastOrNull()?.hash,
+            timestamp = timestamp,
+            transactions = transactions
+        )
+        blocks.add(block)
+        blocksByHash[block.hash] = block
+        transactions.forEach { transactionBlocks[it] = block }
+    }
+}
@@ -0,0 +1,135 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+import org.veriblock.miners.pop.core.MiningOperation
+import org.veriblock.miners.pop.core.MiningOperationState
+import org.veriblock.sdk.models.BitcoinBlock
+import org.veriblock.sdk.models.VeriBlockBlock
+import java.time.LocalDateTime
+
+enum class SimulatedOperationKind {
+    // Endorses VeriBlock blocks into Bitcoin
+    VPM,
+    // Endorses altchain blocks into VeriBlock
+    APM
+}
+
+object SimulatedOperationState {
+    val INITIAL = MiningOperationState(MiningOperationState.INITIAL_ID, "Initial", "Retrieve Mining Instruction")
+    val INSTRUCTION = MiningOperationState(1, "Mining Instruction retrieved", "Submit Endorsement Transaction", INITIAL)
+    val ENDORSEMENT_TRANSACTION = MiningOperationState(2, "Endorsement Transaction submitted", "Confirm Endorsement Transaction", INSTRUCTION)
+    val ENDORSEMENT_TX_CONFIRMED = MiningOperationState(3, "Endorsement Transaction Confirmed", "Determine Block of Proof", ENDORSEMENT_TRANSACTION)
+    val BLOCK_OF_PROOF = MiningOperationState(4, "Block of Proof determined", "Prove Endorsement Transaction", ENDORSEMENT_TX_CONFIRMED)
+    val PROVEN = MiningOperationState(5, "Endorsement Transaction proven", "Submit PoP Transaction", BLOCK_OF_PROOF)
+    val SUBMITTED_POP_DATA = MiningOperationState(6, "PoP Transaction submitted", "Detect Payout", PROVEN)
+    val PAYOUT_DETECTED = MiningOperationState(7, "Payout detected", "Complete and save", SUBMITTED_POP_DATA)
+
+    val ALL = listOf(
+        INITIAL, INSTRUCTION, ENDORSEMENT_TRANSACTION, ENDORSEMENT_TX_CONFIRMED,
+        BLOCK_OF_PROOF, PROVEN, SUBMITTED_POP_DATA, PAYOUT_DETECTED
+    )
+}
+
+class SimulatedMiningInstruction(
+    val endorsedBlockHeight: Int,
+    val endorsedBlockHash: String,
+    // The header to publish in Bitcoin and the Bitcoin block to build the context from
+    val endorsedBlockHeader: VeriBlockBlock,
+    val lastKnownBitcoinBlock: BitcoinBlock
+)
+
+/**
+ * VeriBlock PoP mining operation of the simulation, run by [VpmSimulationTaskService] on top of the miners'
+ * [org.veriblock.miners.pop.service.TaskService]. Every state change is handed to [onStateChange] to be measured
+ * and persisted.
+ */
+class SimulatedOperation(
+    id: String,
+    endorsedBlockHeight: Int?,
+    createdAt: LocalDateTime,
+    private val onStateChange: (SimulatedOperation) -> Unit
+) : MiningOperation(id, endorsedBlockHeight, createdAt, emptyList(), false) {
+    var miningInstruction: SimulatedMiningInstruction? = null
+        private set
+    // The Bitcoin mempool key of the endorsement transaction
+    var endorsementTransactionId: String? = null
+        private set
+    var blockOfProofHash: String? = null
+        private set
+    var proofOfProofId: String? = null
+        private set
+    var payoutBlockHeight: Int? = null
+        private set
+
+    init {
+        setState(SimulatedOperationState.INITIAL)
+    }
+
+    override fun onStateChanged() {
+        super.onStateChanged()
+        onStateChange(this)
+    }
+
+    fun setMiningInstruction(miningInstruction: SimulatedMiningInstruction) {
+        this.miningInstruction = miningInstruction
+        endorsedBlockHeight = miningInstruction.endorsedBlockHeight
+        setState(SimulatedOperationState.INSTRUCTION)
+    }
+
+    fun setEndorsementTransaction(transactionId: String) {
+        endorsementTransactionId = transactionId
+        setState(SimulatedOperationState.ENDORSEMENT_TRANSACTION)
+    }
+
+    fun setConfirmed() {
+        setState(SimulatedOperationState.ENDORSEMENT_TX_CONFIRMED)
+    }
+
+    fun setBlockOfProof(blockHash: String) {
+        blockOfProofHash = blockHash
+        setState(SimulatedOperationState.BLOCK_OF_PROOF)
+    }
+
+    fun setProven(proofOfProofId: String) {
+        this.proofOfProofId = proofOfProofId
+        setState(SimulatedOperationState.PROVEN)
+    }
+
+    fun setSubmitted() {
+        setState(SimulatedOperationState.SUBMITTED_POP_DATA)
+    }
+
+    fun setPayoutDetected(blockHeight: Int) {
+        payoutBlockHeight = blockHeight
+        setState(SimulatedOperationState.PAYOUT_DETECTED)
+    }
+
+    override fun getDetailedInfo(): Map<String, String> {
+        val result = LinkedHashMap<String, String>()
+        miningInstruction?.let {
+            result["endorsedBlockHash"] = it.endorsedBlockHash
+        }
+        endorsementTransactionId?.let {
+            result["endorsementTransactionId"] = it
+        }
+        blockOfProofHash?.let {
+            result["blockOfProofHash"] = it
+        }
+        proofOfProofId?.let {
+            result["proofOfProofId"] = it
+        }
+        payoutBlockHeight?.let {
+            result["payoutBlockHeight"] = it.toString()
+        }
+        failureReason?.let {
+            result["failureReason"] = it
+        }
+        return result
+    }
+}
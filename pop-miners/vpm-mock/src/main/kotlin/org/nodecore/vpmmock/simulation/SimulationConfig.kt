@@ -0,0 +1,89 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+/**
+ * Parameters of a [PopMiningSimulator] run. All the times are virtual.
+ */
+data class SimulationConfig(
+    val durationHours: Int = 6,
+    // The same seed and parameters always produce the same report
+    val seed: Long = 1,
+
+    // Operation arrival rates, endorsing VeriBlock blocks into Bitcoin and altchain blocks into VeriBlock
+    val vpmOperationsPerHour: Int = 100,
+    val apmOperationsPerHour: Int = 2000,
+
+    // Synthetic chains
+    val btcBlockTimeSeconds: Int = 600,
+    val btcReorgProbability: Double = 0.01,
+    val btcBlockCapacity: Int = 2000,
+    val vbkBlockTimeSeconds: Int = 30,
+    val vbkReorgProbability: Double = 0.02,
+    val vbkBlockCapacity: Int = 500,
+    val altBlockTimeSeconds: Int = 60,
+    val altReorgProbability: Double = 0.02,
+    val altBlockCapacity: Int = 200,
+    val altKeystonePeriod: Int = 5,
+    val maxReorgDepth: Int = 3,
+
+    // Blocks after the endorsed one by which the proof has to be in a block to be rewarded
+    val vbkPayoutDelay: Int = 100,
+    val altPayoutDelay: Int = 50,
+
+    // Latency of every call to the NodeCore and altchain daemons
+    val rpcLatencyMillis: Long = 50,
+    val altchainPollingPeriodSeconds: Int = 10,
+
+    // Time spent on the expensive tasks, and how many operations can run each of them at once. Only the
+    // endorsement transaction's time applies to the altchain operations, which run the altchain miner's own stages
+    val endorsementTransactionMillis: Long = 200,
+    val endorsementTransactionConcurrency: Int = 2,
+    val blockOfProofMillis: Long = 50,
+    val blockOfProofConcurrency: Int = 4,
+    val proofMillis: Long = 100,
+    val proofConcurrency: Int = 4
+) {
+    companion object {
+        /**
+         * Overrides the defaults with `name=value` arguments, e.g. `durationHours=24 apmOperationsPerHour=5000`
+         */
+        fun parse(args: Array<String>): SimulationConfig = args.fold(SimulationConfig()) { config, arg ->
+            val (name, value) = arg.split('=', limit = 2).takeIf { it.size == 2 }
+                ?: throw IllegalArgumentException("Invalid argument '$arg', expected name=value")
+            when (name) {
+                "durationHours" -> config.copy(durationHours = value.toInt())
+                "seed" -> config.copy(seed = value.toLong())
+                "vpmOperationsPerHour" -> config.copy(vpmOperationsPerHour = value.toInt())
+                "apmOperationsPerHour" -> config.copy(apmOperationsPerHour = value.toInt())
+                "btcBlockTimeSeconds" -> config.copy(btcBlockTimeSeconds = value.toInt())
+                "btcReorgProbability" -> config.copy(btcReorgProbability = value.toDouble())
+                "btcBlockCapacity" -> config.copy(btcBlockCapacity = value.toInt())
+                "vbkBlockTimeSeconds" -> config.copy(vbkBlockTimeSeconds = value.toInt())
+                "vbkReorgProbability" -> config.copy(vbkReorgProbability = value.toDouble())
+                "vbkBlockCapacity" -> config.copy(vbkBlockCapacity = value.toInt())
+                "altBlockTimeSeconds" -> config.copy(altBlockTimeSeconds = value.toInt())
+                "altReorgProbability" -> config.copy(altReorgProbability = value.toDouble())
+                "altBlockCapacity" -> config.copy(altBlockCapacity = value.toInt())
+                "altKeystonePeriod" -> config.copy(altKeystonePeriod = value.toInt())
+                "maxReorgDepth" -> config.copy(maxReorgDepth = value.toInt())
+                "vbkPayoutDelay" -> config.copy(vbkPayoutDelay = value.toInt())
+                "altPayoutDelay" -> config.copy(altPayoutDelay = value.toInt())
+                "rpcLatencyMillis" -> config.copy(rpcLatencyMillis = value.toLong())
+                "altchainPollingPeriodSeconds" -> config.copy(altchainPollingPeriodSeconds = value.toInt())
+                "endorsementTransactionMillis" -> config.copy(endorsementTransactionMillis = value.toLong())
+                "endorsementTransactionConcurrency" -> config.copy(endorsementTransactionConcurrency = value.toInt())
+                "blockOfProofMillis" -> config.copy(blockOfProofMillis = value.toLong())
+                "blockOfProofConcurrency" -> config.copy(blockOfProofConcurrency = value.toInt())
+                "proofMillis" -> config.copy(proofMillis = value.toLong())
+                "proofConcurrency" -> config.copy(proofConcurrency = value.toInt())
+                else -> throw IllegalArgumentException("Unknown simulation parameter '$name'")
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+import kotlin.math.ceil
+
+data class LatencyStats(
+    val count: Int,
+    val meanMillis: Long,
+    val p50Millis: Long,
+    val p90Millis: Long,
+    val p99Millis: Long,
+    val maxMillis: Long
+) {
+    override fun toString(): String = if (count == 0) {
+        "n=0"
+    } else {
+        "n=$count mean=${meanMillis.formatMillis()} p50=${p50Millis.formatMillis()} p90=${p90Millis.formatMillis()}" +
+            " p99=${p99Millis.formatMillis()} max=${maxMillis.formatMillis()}"
+    }
+
+    companion object {
+        fun of(samples: List<Long>): LatencyStats {
+            if (samples.isEmpty()) {
+                return LatencyStats(0, 0, 0, 0, 0, 0)
+            }
+            val sorted = samples.sorted()
+            fun percentile(p: Double) = sorted[(ceil(p * sorted.size).toInt() - 1).coerceIn(0, sorted.size - 1)]
+            return LatencyStats(
+                count = sorted.size,
+                meanMillis = sorted.sum() / sorted.size,
+                p50Millis = percentile(0.5),
+                p90Millis = percentile(0.9),
+                p99Millis = percentile(0.99),
+                maxMillis = sorted.last()
+            )
+        }
+    }
+}
+
+private fun Long.formatMillis(): String = when {
+    this < 1_000 -> "${this}ms"
+    this < 60_000 -> String.format("%.1fs", this / 1_000.0)
+    else -> String.format("%.1fm", this / 60_000.0)
+}
+
+data class OperationKindReport(
+    val started: Int,
+    val completed: Int,
+    val failed: Int,
+    val completedPerHour: Double,
+    // By task, in the order they run. Includes the time spent waiting for a stage and the reattempts.
+    val taskLatencies: Map<String, LatencyStats>,
+    val endToEndLatency: LatencyStats,
+    // The task the failed operations were at
+    val failuresByTask: Map<String, Int>
+) {
+    val active: Int
+        get() = started - completed - failed
+}
+
+data class ChainReport(
+    val blocks: Int,
+    val reorganizations: Int,
+    val mempoolSize: Int
+)
+
+/**
+ * Outcome of a [PopMiningSimulator] run. Everything but [wallClockMillis] only depends on the configuration.
+ */
+data class SimulationReport(
+    val config: SimulationConfig,
+    val operations: Map<SimulatedOperationKind, OperationKindReport>,
+    val bitcoin: ChainReport,
+    val veriBlock: ChainReport,
+    val altchain: ChainReport,
+    val altchainDaemonCalls: Long,
+    val persistedOperations: Int,
+    val persistedCompletedOperations: Int,
+    val wallClockMillis: Long
+) {
+    override fun toString(): String = buildString {
+        appendLine("Simulated ${config.durationHours} hours in ${wallClockMillis.formatMillis()}")
+        for ((kind, report) in operations) {
+            appendLine()
+            appendLine(
+                "$kind operations: ${report.started} started, ${report.completed} completed" +
+                    " (${String.format("%.1f", report.completedPerHour)}/hour), ${report.failed} failed, ${report.active} active"
+            )
+            for ((task, latency) in report.taskLatencies) {
+                appendLine("  $task: $latency")
+            }
+            appendLine("  End to end: ${report.endToEndLatency}")
+            for ((task, failures) in report.failuresByTask) {
+                appendLine("  Failed at '$task': $failures")
+            }
+        }
+        appendLine()
+        appendLine("Bitcoin: $bitcoin")
+        appendLine("VeriBlock: $veriBlock")
+        appendLine("Altchain: $altchain, $altchainDaemonCalls daemon calls")
+        append("Persisted operations: $persistedOperations ($persistedCompletedOperations completed)")
+    }
+}
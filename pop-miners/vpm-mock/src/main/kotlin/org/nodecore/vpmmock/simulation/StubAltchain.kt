@@ -0,0 +1,478 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+import kotlinx.coroutines.delay
+import org.veriblock.core.altchain.AltchainPopEndorsement
+import org.veriblock.core.contracts.BlockEvidence
+import org.veriblock.core.crypto.PreviousBlockVbkHash
+import org.veriblock.core.crypto.asVbkHash
+import org.veriblock.core.crypto.sha256HashOf
+import org.veriblock.core.utilities.Utility
+import org.veriblock.core.utilities.extensions.asHexBytes
+import org.veriblock.core.utilities.extensions.toHex
+import org.veriblock.sdk.alt.ApmInstruction
+import org.veriblock.sdk.alt.ChainConfig
+import org.veriblock.sdk.alt.ExplorerBaseUrls
+import org.veriblock.sdk.alt.PayoutDetectionType
+import org.veriblock.sdk.alt.SecurityInheritingChain
+import org.veriblock.sdk.alt.model.Atv
+import org.veriblock.sdk.alt.model.NetworkParam
+import org.veriblock.sdk.alt.model.PopMempool
+import org.veriblock.sdk.alt.model.PopParamsResponse
+import org.veriblock.sdk.alt.model.PopPayoutParams
+import org.veriblock.sdk.alt.model.SecurityInheritingBlock
+import org.veriblock.sdk.alt.model.SecurityInheritingTransaction
+import org.veriblock.sdk.alt.model.SecurityInheritingTransactionVout
+import org.veriblock.sdk.alt.model.SubmitPopResponse
+import org.veriblock.sdk.alt.model.Validity
+import org.veriblock.sdk.alt.model.Vtb
+import org.veriblock.sdk.alt.model.VtbBitcoinBlock
+import org.veriblock.sdk.alt.plugin.HttpAuthConfig
+import org.veriblock.sdk.models.AltPublication
+import org.veriblock.sdk.models.BitcoinBlock
+import org.veriblock.sdk.models.PublicationData
+import org.veriblock.sdk.models.StateInfo
+import org.veriblock.sdk.models.VeriBlockBlock
+import org.veriblock.sdk.models.VeriBlockPublication
+
+// Where the altchain pays the PoP rewards to, and how much it pays for each rewarded ATV
+private val PAYOUT_INFO = "simulated-pop-payout".toByteArray()
+private const val PAYOUT_AMOUNT = 100_000_000L
+
+private const val BLOCK_HASH_LENGTH = 32
+
+private class StubAltchainConfig(
+    override val keystonePeriod: Int,
+    override val payoutDelay: Int,
+    override val blockPeriodSeconds: Int
+) : ChainConfig() {
+    override val host: String = "in-process"
+    override val auth: HttpAuthConfig? = null
+    override val neededConfirmations: Int = 1
+    override val spFinalityDelay: Int = 100
+    override val payoutAddress: String = PAYOUT_INFO.toHex()
+    override val blockRoundIndices: List<Int> = List(keystonePeriod) { 1 }
+    override val payoutDetectionType: PayoutDetectionType = PayoutDetectionType.COINBASE
+    override val explorerBaseUrls: ExplorerBaseUrls = ExplorerBaseUrls()
+}
+
+/**
+ * Stands in for an altchain plugin and its daemon, answering the calls the altchain PoP miner makes from a
+ * [SimulatedChain]. The mining instructions reference the endorsed block and its keystones the way the real chains
+ * do, the submitted ATVs are mined by the chain, and the coinbase of every block pays the ATVs which were mined in
+ * time for the block they endorse.
+ *
+ * The VeriBlock context blocks and the VTBs go through the PoP mempool and are mined the same way as the ATVs. The
+ * altchain knows the VeriBlock and Bitcoin blocks they carry once they are in one of its blocks, on top of the
+ * genesis blocks of the simulated VeriBlock and Bitcoin chains it was bootstrapped with.
+ *
+ * The calls made to the daemon are counted and take [latencyMillis]. It runs in process rather than behind a socket,
+ * so that its latency is virtual time like everything else in the simulation.
+ */
+class StubAltchain(
+    override val key: String,
+    private val chain: SimulatedChain,
+    // The VeriBlock chain, the instructions are given its tip as context
+    private val vbk: SimulatedChain,
+    // Where the VeriBlock and Bitcoin blocks the altchain is bootstrapped with are taken from
+    private val veriBlockNetwork: StubVeriBlockNetwork,
+    private val bitcoin: SimulatedBitcoinNetwork,
+    keystonePeriod: Int,
+    payoutDelay: Int,
+    blockPeriodSeconds: Int,
+    private val latencyMillis: Long
+) : SecurityInheritingChain {
+    override val config: ChainConfig = StubAltchainConfig(keystonePeriod, payoutDelay, blockPeriodSeconds)
+    override val id: Long = 0x53494dL
+    override val name: String = chain.name
+
+    // The hash of the block endorsed by every ATV which was submitted, whether it's in the mempool or in a block
+    private val atvEndorsedBlocks = HashMap<String, String>()
+    // The ATVs which were submitted, by id
+    private val atvs = LinkedHashMap<String, AltPublication>()
+    // The VeriBlock context blocks which were submitted and the bootstrap one, by their previous block sized hash
+    private val vbkBlocks = LinkedHashMap<String, VeriBlockBlock>()
+    // The VTBs which were submitted, by id
+    private val vtbs = LinkedHashMap<String, VeriBlockPublication>()
+    // The VeriBlock blocks which went through the PoP mempool, which the bootstrap one didn't
+    private val submittedIds = HashSet<String>()
+
+    private val bootstrapVbkBlock: VeriBlockBlock
+    private val bootstrapBtcBlock: BitcoinBlock
+    // The payouts of the blocks whose coinbase was asked for. A block's payouts only depend on its ancestors
+    private val coinbasePayouts = HashMap<String, List<SecurityInheritingTransactionVout>>()
+
+    var calls = 0L
+        private set
+
+    init {
+        val vbkGenesis = vbk.getBlockAtHeight(0)!!
+        bootstrapVbkBlock = veriBlockNetwork.getBlock(vbkGenesis.hash.asVbkHash())
+            ?: error("Unable to find the ${vbk.name} genesis block ${vbkGenesis.hash}")
+        vbkBlocks[getVbkBlockId(bootstrapVbkBlock.hash.toString())] = bootstrapVbkBlock
+        bootstrapBtcBlock = bitcoin.tip.header
+    }
+
+    override suspend fun getBestBlockHeight(): Int {
+        call()
+        return chain.tip.height
+    }
+
+    override suspend fun getBlockChainInfo(): StateInfo {
+        call()
+        val height = chain.tip.height
+        return StateInfo(networkHeight = height, localBlockchainHeight = height, isSynchronized = true)
+    }
+
+    override suspend fun getBlock(hash: String): SecurityInheritingBlock? {
+        call()
+        return chain.getBlock(hash)?.toSecurityInheritingBlock()
+    }
+
+    override suspend fun getBlock(height: Int): SecurityInheritingBlock? {
+        call()
+        return chain.getBlockAtHeight(height)?.toSecurityInheritingBlock()
+    }
+
+    override suspend fun getBlocksByHash(hashes: List<String>): List<SecurityInheritingBlock?> {
+        call()
+        return hashes.map { chain.getBlock(it)?.toSecurityInheritingBlock() }
+    }
+
+    override suspend fun getBlocks(heights: List<Int>): List<SecurityInheritingBlock?> {
+        call()
+        return heights.map { chain.getBlockAtHeight(it)?.toSecurityInheritingBlock() }
+    }
+
+    override suspend fun getTransaction(txId: String, blockHash: String?): SecurityInheritingTransaction? {
+        call()
+        return findTransaction(txId, blockHash)
+    }
+
+    override suspend fun getTransactions(txIds: List<String>, blockHash: String?): List<SecurityInheritingTransaction?> {
+        call()
+        return txIds.map { findTransaction(it, blockHash) }
+    }
+
+    override fun getPayoutDelay(): Int = config.payoutDelay
+
+    override suspend fun getAtv(id: String): Atv? {
+        call()
+        return findAtv(id)
+    }
+
+    override suspend fun getAtvs(ids: List<String>): List<Atv?> {
+        call()
+        return ids.map { findAtv(it) }
+    }
+
+    override suspend fun getMiningInstructionByHeight(blockHeight: Int?): ApmInstruction {
+        call()
+        val height = blockHeight ?: chain.tip.height
+        val block = chain.getBlockAtHeight(height)
+            ?: throw IllegalStateException("There is no ${chain.name} block @ $height, the best block is @ ${chain.tip.height}")
+        val (previousKeystoneHeight, secondPreviousKeystoneHeight) = getKeystoneHeights(height)
+        val context = listOf(
+            block.hash,
+            block.previousHash ?: block.hash,
+            chain.getBlockAtHeight(previousKeystoneHeight)!!.hash,
+            chain.getBlockAtHeight(secondPreviousKeystoneHeight)!!.hash
+        ).joinToString("")
+        val publicationData = PublicationData(
+            id,
+            block.getHeader(),
+            PAYOUT_INFO,
+            context.asHexBytes()
+        )
+        return ApmInstruction(height, publicationData, listOf(vbk.tip.hash.asHexBytes()), emptyList())
+    }
+
+    /**
+     * Adds the ATV to the PoP mempool. It's rejected if the block it endorses is no longer on the best chain.
+     */
+    override suspend fun submitPopAtv(atv: AltPublication): SubmitPopResponse {
+        call()
+        val header = atv.transaction.publicationData?.header
+            ?: return SubmitPopResponse(false, Validity.INVALID, "no-publication-data", "The ATV has no publication data")
+        val endorsedBlockHash = header.copyOfRange(4, header.size).toHex()
+        if (chain.getBlock(endorsedBlockHash) == null) {
+            return SubmitPopResponse(
+                false, Validity.INVALID, "endorsed-block-not-found",
+                "The endorsed block $endorsedBlockHash is no longer on the ${chain.name} main chain"
+            )
+        }
+        val atvId = atv.getId().toHex()
+        if (atvs.put(atvId, atv) == null) {
+            atvEndorsedBlocks[atvId] = endorsedBlockHash
+            chain.submit(atvId)
+        }
+        return SubmitPopResponse(true, Validity.VALID, "", "")
+    }
+
+    override fun extractAddressDisplay(addressData: ByteArray): String = addressData.toHex()
+
+    override suspend fun extractBlockEvidences(altchainPopEndorsements: List<AltchainPopEndorsement>): List<BlockEvidence> =
+        altchainPopEndorsements.map { endorsement ->
+            val height = Utility.byteArrayToInt(endorsement.getHeader().copyOfRange(0, 4))
+            val context = endorsement.getContextInfo()
+            fun contextHash(index: Int) = context.copyOfRange(index * BLOCK_HASH_LENGTH, (index + 1) * BLOCK_HASH_LENGTH)
+            BlockEvidence(height, contextHash(0), contextHash(1), contextHash(2), contextHash(3))
+        }
+
+    override suspend fun checkBlockIsOnMainChain(height: Int, blockHeaderToCheck: ByteArray): Boolean {
+        call()
+        val block = chain.getBlockAtHeight(height)
+            ?: return false
+        return block.getHeader().contentEquals(blockHeaderToCheck)
+    }
+
+    override suspend fun getPopParams(): PopParamsResponse {
+        call()
+        return PopParamsResponse(
+            popActivationHeight = 0,
+            networkId = id,
+            payoutParams = PopPayoutParams(config.payoutDelay),
+            vbkBootstrapBlock = NetworkParam(bitcoin.mock.veriBlockParameters.name)
+        )
+    }
+
+    /**
+     * Gets the highest VeriBlock block the altchain knows, whether it's still on the VeriBlock best chain or not
+     */
+    override suspend fun getBestKnownVbkBlockHash(): String {
+        call()
+        return vbkBlocks.entries.filter { (blockId, _) ->
+            isKnown(blockId)
+        }.maxByOrNull { (_, block) ->
+            block.height
+        }!!.value.hash.toString()
+    }
+
+    /**
+     * Gets a VeriBlock block the altchain knows by its full hash or by its previous block sized one
+     */
+    override suspend fun getVbkBlock(hash: String): VeriBlockBlock? {
+        call()
+        val blockId = getVbkBlockId(hash)
+        return vbkBlocks[blockId]?.takeIf { isKnown(blockId) }
+    }
+
+    /**
+     * Gets the highest Bitcoin block the altchain knows
+     */
+    override suspend fun getBestKnownBtcBlockHash(): String {
+        call()
+        return getKnownBtcBlocks().maxByOrNull {
+            bitcoin.getBlock(it.hash)?.height ?: -1
+        }!!.hash.toString()
+    }
+
+    override suspend fun getBtcBlock(hash: String): BitcoinBlock? {
+        call()
+        return getKnownBtcBlocks().firstOrNull { it.hash.toString().equals(hash, ignoreCase = true) }
+    }
+
+    override suspend fun getPopMempool(): PopMempool {
+        call()
+        return PopMempool(
+            vbkBlockHashes = vbkBlocks.keys.filter { chain.findTransaction(it) == null && it in submittedIds },
+            atvs = atvs.keys.filter { chain.findTransaction(it) == null },
+            vtbs = vtbs.keys.filter { chain.findTransaction(it) == null }
+        )
+    }
+
+    override suspend fun getVtb(id: String): Vtb? {
+        call()
+        val vtb = vtbs[id]
+            ?: return null
+        return Vtb(
+            btcBlockOfProof = vtb.transaction.blockOfProof.toVtbBitcoinBlock(),
+            btcBlockOfProofContext = vtb.transaction.blockOfProofContext.map { it.toVtbBitcoinBlock() }
+        )
+    }
+
+    /**
+     * Adds the VeriBlock block to the PoP mempool. It's rejected unless it connects to a block the altchain knows
+     * or already has in its mempool.
+     */
+    override suspend fun submitPopVbk(block: VeriBlockBlock): SubmitPopResponse {
+        call()
+        val blockId = getVbkBlockId(block.hash.toString())
+        if (blockId in vbkBlocks) {
+            return SubmitPopResponse(false, Validity.VALID, "duplicate", "The VBK block ${block.hash} was already submitted")
+        }
+        if (getVbkBlockId(block.previousBlock.toString()) !in vbkBlocks) {
+            return SubmitPopResponse(
+                false, Validity.INVALID, "vbk-bad-prev", "The previous block of the VBK block ${block.hash} is unknown"
+            )
+        }
+        vbkBlocks[blockId] = block
+        submittedIds.add(blockId)
+        chain.submit(blockId)
+        return SubmitPopResponse(true, Validity.VALID, "", "")
+    }
+
+    /**
+     * Adds the VTB to the PoP mempool. It's rejected unless the VeriBlock block containing it was submitted first.
+     * Its Bitcoin blocks don't need to connect to the ones the altchain knows, the missing ones are reported by
+     * [getMissingBtcBlockHashes].
+     */
+    override suspend fun submitPopVtb(vtb: VeriBlockPublication): SubmitPopResponse {
+        call()
+        if (getVbkBlockId(vtb.containingBlock.hash.toString()) !in vbkBlocks) {
+            return SubmitPopResponse(
+                false, Validity.INVALID, "vbk-block-unknown",
+                "The VBK block ${vtb.containingBlock.hash} containing the VTB is unknown"
+            )
+        }
+        val vtbId = sha256HashOf(vtb.transaction.id.bytes + vtb.containingBlock.hash.bytes).toHex()
+        if (vtbs.put(vtbId, vtb) == null) {
+            chain.submit(vtbId)
+        }
+        return SubmitPopResponse(true, Validity.VALID, "", "")
+    }
+
+    override fun validatePayoutAddress() {
+        check(config.payoutAddress?.asHexBytes()?.contentEquals(PAYOUT_INFO) == true) {
+            "$name's payout address must be ${PAYOUT_INFO.toHex()}"
+        }
+    }
+
+    /**
+     * Gets the hashes of the Bitcoin blocks the submitted VTBs build upon but which neither the altchain nor any
+     * other submitted VTB has
+     */
+    override suspend fun getMissingBtcBlockHashes(): List<String> {
+        call()
+        val vtbBlocks = vtbs.values.flatMap { it.transaction.getBlocks() }
+        val availableHashes = (getKnownBtcBlocks() + vtbBlocks).map { it.hash.toString() }.toSet()
+        return vtbBlocks.map { it.previousBlock.toString() }.filter { it !in availableHashes }.distinct()
+    }
+
+    /**
+     * Whether the altchain knows the VeriBlock block: the bootstrap one, or a submitted one which was mined
+     */
+    private fun isKnown(vbkBlockId: String): Boolean =
+        vbkBlockId == getVbkBlockId(bootstrapVbkBlock.hash.toString()) || chain.findTransaction(vbkBlockId) != null
+
+    /**
+     * Gets the Bitcoin blocks the altchain knows: the bootstrap one and the ones of the VTBs which were mined
+     */
+    private fun getKnownBtcBlocks(): List<BitcoinBlock> = listOf(bootstrapBtcBlock) + vtbs.entries.filter { (vtbId, _) ->
+        chain.findTransaction(vtbId) != null
+    }.flatMap { (_, vtb) ->
+        vtb.transaction.getBlocks()
+    }
+
+    /**
+     * Gets the heights of the keystones referenced by the block at [height], the same way the miner verifies them
+     */
+    private fun getKeystoneHeights(height: Int): Pair<Int, Int> {
+        val keystonePeriod = config.keystonePeriod
+        val keystoneSkip = when (height % keystonePeriod) {
+            0 -> keystonePeriod
+            1 -> keystonePeriod + 1
+            else -> height % keystonePeriod
+        }
+        return (height - keystoneSkip).coerceAtLeast(0) to (height - keystoneSkip - keystonePeriod).coerceAtLeast(0)
+    }
+
+    private fun SimulatedBlock.toSecurityInheritingBlock(): SecurityInheritingBlock {
+        val (previousKeystoneHeight, secondPreviousKeystoneHeight) = getKeystoneHeights(height)
+        return SecurityInheritingBlock(
+            hash = hash,
+            height = height,
+            previousHash = previousHash ?: "",
+            merkleRoot = merkleRoot.toString(),
+            coinbaseTransactionId = getCoinbaseTransactionId(hash),
+            transactionIds = transactions,
+            endorsedBy = emptyList(),
+            knownVbkHashes = transactions.filter { it in vbkBlocks },
+            veriBlockPublicationIds = transactions.filter { it in atvs },
+            bitcoinPublicationIds = transactions.filter { it in vtbs },
+            previousKeystone = chain.getBlockAtHeight(previousKeystoneHeight)?.hash,
+            secondPreviousKeystone = chain.getBlockAtHeight(secondPreviousKeystoneHeight)?.hash
+        )
+    }
+
+    private fun findTransaction(txId: String, blockHash: String?): SecurityInheritingTransaction? {
+        if (blockHash != null) {
+            val block = chain.getBlock(blockHash)
+            if (block != null && getCoinbaseTransactionId(block.hash) == txId) {
+                return SecurityInheritingTransaction(txId, chain.tip.height - block.height + 1, getPayouts(block), block.hash)
+            }
+        }
+        if (txId !in atvs) {
+            return null
+        }
+        val block = chain.findTransaction(txId)
+            ?: return SecurityInheritingTransaction(txId, 0, emptyList(), null)
+        return SecurityInheritingTransaction(txId, chain.tip.height - block.height + 1, emptyList(), block.hash)
+    }
+
+    private fun findAtv(id: String): Atv? {
+        val atv = atvs[id]
+            ?: return null
+        val block = chain.findTransaction(id)
+        return Atv(
+            vbkTransactionId = atv.transaction.id.toString(),
+            vbkBlockOfProofHash = atv.blockOfProof.hash.toString(),
+            containingBlock = block?.hash ?: "",
+            confirmations = block?.let { chain.tip.height - it.height + 1 } ?: 0
+        )
+    }
+
+    /**
+     * Gets the rewards paid by the [block]'s coinbase: one for every ATV endorsing the block [payout delay][getPayoutDelay]
+     * blocks below it which was mined after the endorsed block and no later than the [block]
+     */
+    private fun getPayouts(block: SimulatedBlock): List<SecurityInheritingTransactionVout> = coinbasePayouts.getOrPut(block.hash) {
+        val endorsedHeight = block.height - config.payoutDelay
+        val endorsedBlock = chain.getBlockAtHeight(endorsedHeight)
+            ?: return@getOrPut emptyList()
+        (endorsedHeight + 1..block.height).flatMap { height ->
+            chain.getBlockAtHeight(height)!!.transactions.filter {
+                atvEndorsedBlocks[it] == endorsedBlock.hash
+            }
+        }.map {
+            SecurityInheritingTransactionVout(PAYOUT_AMOUNT, PAYOUT_INFO.toHex())
+        }
+    }
+
+    private suspend fun call() {
+        calls++
+        delay(latencyMillis)
+    }
+
+}
+
+/**
+ * The header an altchain block is endorsed by: its height followed by its hash
+ */
+private fun SimulatedBlock.getHeader(): ByteArray =
+    Utility.intToByteArray(height) + hash.asHexBytes()
+
+/**
+ * Identifies a VeriBlock block by its previous block sized hash, which is what the blocks reference each other by
+ */
+private fun getVbkBlockId(hash: String): String =
+    hash.takeLast(PreviousBlockVbkHash.HASH_LENGTH * 2).lowercase()
+
+private fun BitcoinBlock.toVtbBitcoinBlock() = VtbBitcoinBlock(
+    hash = hash.toString(),
+    version = version,
+    previousBlock = previousBlock.toString(),
+    merkleRoot = merkleRoot.toString(),
+    timestamp = timestamp,
+    bits = difficulty,
+    nonce = nonce
+)
+
+private fun getCoinbaseTransactionId(blockHash: String): String =
+    sha256HashOf(blockHash.asHexBytes()).toHex()
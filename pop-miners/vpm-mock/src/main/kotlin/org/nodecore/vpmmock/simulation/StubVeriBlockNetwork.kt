@@ -0,0 +1,194 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.launch
+import org.veriblock.core.Context
+import org.veriblock.core.crypto.AnyVbkHash
+import org.veriblock.core.crypto.MerkleRoot
+import org.veriblock.core.crypto.PreviousKeystoneVbkHash
+import org.veriblock.core.crypto.VbkHash
+import org.veriblock.core.crypto.VbkTxId
+import org.veriblock.core.crypto.asMerkleRoot
+import org.veriblock.core.crypto.asSha256Hash
+import org.veriblock.core.crypto.asVbkHash
+import org.veriblock.core.crypto.merkleRootHashOf
+import org.veriblock.core.crypto.sha256HashOf
+import org.veriblock.core.utilities.Utility
+import org.veriblock.core.utilities.extensions.asHexBytes
+import org.veriblock.miners.pop.core.TransactionMeta
+import org.veriblock.miners.pop.net.VeriBlockEndorsementNetwork
+import org.veriblock.miners.pop.transactionmonitor.WalletTransaction
+import org.veriblock.sdk.models.Address
+import org.veriblock.sdk.models.StateInfo
+import org.veriblock.sdk.models.VeriBlockBlock
+import org.veriblock.sdk.models.VeriBlockMerklePath
+import org.veriblock.sdk.models.VeriBlockTransaction
+import org.veriblock.sdk.models.asCoin
+import org.veriblock.sdk.services.SerializeDeserializeService
+import org.veriblock.spv.model.TransactionTypeIdentifier
+import org.veriblock.spv.service.TransactionService
+import java.security.KeyPair
+
+// The regular transactions' tree of every block, the simulated VeriBlock blocks only contain PoP transactions
+private val EMPTY_TREE_ROOT = ByteArray(32)
+
+/**
+ * A block's PoP transactions tree, along with the path of each of them to the block's merkle root
+ */
+private class VbkBlockContent(
+    val merkleRoot: MerkleRoot,
+    val merklePaths: Map<String, VeriBlockMerklePath>
+)
+
+/**
+ * Stands in for the altchain PoP miner's SPV connection to the VeriBlock network, over the simulated VeriBlock chain.
+ *
+ * The endorsement transactions are really built and signed with the miner's key, and they are confirmed with a
+ * merkle path which leads to the merkle root of their block's header, the same way the transaction monitor does.
+ */
+class StubVeriBlockNetwork(
+    private val vbk: SimulatedChain,
+    private val minerKey: KeyPair,
+    // Time spent creating, signing and submitting every endorsement transaction
+    private val endorsementTransactionMillis: Long
+) : VeriBlockEndorsementNetwork {
+    private val minerAddress = Address.fromPublicKey(minerKey.public.encoded)
+    private var signatureIndex = 0L
+
+    private val transactions = HashMap<String, WalletTransaction>()
+    // In the order they were submitted
+    private val pendingTransactions = LinkedHashMap<String, WalletTransaction>()
+    private val blockContents = HashMap<String, VbkBlockContent>()
+
+    override val latestSpvStateInfo: StateInfo
+        get() = StateInfo(vbk.tip.height, vbk.tip.height, isSynchronized = true)
+
+    override fun isReady(): Boolean = true
+
+    override fun isAccessible(): Boolean = true
+
+    override fun isSynchronized(): Boolean = true
+
+    /**
+     * Confirms the pending transactions as soon as they are found in a block, until the [coroutineScope] is cancelled
+     */
+    fun start(coroutineScope: CoroutineScope) = coroutineScope.launch {
+        vbk.tipChanges.collect {
+            confirmPendingTransactions()
+        }
+    }
+
+    override suspend fun submitEndorsement(publicationData: ByteArray, feePerByte: Long, maxFee: Long): VeriBlockTransaction {
+        delay(endorsementTransactionMillis)
+        val nextSignatureIndex = signatureIndex + 1
+        val fee = feePerByte * TransactionService.predictAltChainEndorsementTransactionSize(publicationData.size, nextSignatureIndex)
+        check(fee <= maxFee) {
+            "Calculated fee $fee was above the maximum configured amount $maxFee"
+        }
+        val unsignedTransaction = VeriBlockTransaction(
+            TransactionTypeIdentifier.STANDARD.id,
+            minerAddress,
+            fee.asCoin(),
+            emptyList(),
+            nextSignatureIndex,
+            SerializeDeserializeService.parsePublicationData(publicationData),
+            ByteArray(1),
+            minerKey.public.encoded,
+            Context.get().networkParameters.transactionPrefix
+        )
+        val transaction = WalletTransaction(
+            unsignedTransaction.id,
+            unsignedTransaction.type,
+            unsignedTransaction.sourceAddress,
+            unsignedTransaction.sourceAmount,
+            unsignedTransaction.outputs,
+            unsignedTransaction.signatureIndex,
+            unsignedTransaction.publicationData,
+            Utility.signMessageWithPrivateKey(unsignedTransaction.id.bytes, minerKey.private),
+            unsignedTransaction.publicKey,
+            unsignedTransaction.networkByte
+        )
+        signatureIndex = nextSignatureIndex
+        val transactionId = transaction.id.toString()
+        transaction.transactionMeta.setState(TransactionMeta.MetaState.PENDING)
+        transactions[transactionId] = transaction
+        pendingTransactions[transactionId] = transaction
+        vbk.submit(transactionId)
+        return transaction
+    }
+
+    override fun getTransaction(txId: VbkTxId): WalletTransaction =
+        transactions[txId.toString()]
+            ?: error("Unable to find VBK transaction $txId in the monitored address ($minerAddress)")
+
+    override fun getBlock(hash: AnyVbkHash): VeriBlockBlock? {
+        val block = vbk.getBlock(hash.toString())
+            ?: return null
+        return VeriBlockBlock(
+            height = block.height,
+            version = 2,
+            previousBlock = (block.previousHash?.asVbkHash() ?: VbkHash.EMPTY_HASH).trimToPreviousBlockSize(),
+            previousKeystone = PreviousKeystoneVbkHash.EMPTY_HASH,
+            secondPreviousKeystone = PreviousKeystoneVbkHash.EMPTY_HASH,
+            merkleRoot = block.getContent().merkleRoot.truncate(),
+            timestamp = (block.timestamp / 1000).toInt(),
+            difficulty = 1,
+            nonce = block.height.toLong(),
+            precomputedHash = block.hash.asVbkHash()
+        )
+    }
+
+    private fun confirmPendingTransactions() {
+        val confirmed = pendingTransactions.values.mapNotNull { transaction ->
+            vbk.findTransaction(transaction.id.toString())?.let { transaction to it }
+        }
+        for ((transaction, block) in confirmed) {
+            transaction.transactionMeta.depth = vbk.tip.height - block.height + 1
+            transaction.transactionMeta.appearsAtChainHeight = block.height
+            transaction.transactionMeta.appearsInBestChainBlock = block.hash.asVbkHash()
+            transaction.merklePath = block.getContent().merklePaths.getValue(transaction.id.toString())
+            transaction.transactionMeta.setState(TransactionMeta.MetaState.CONFIRMED)
+            pendingTransactions.remove(transaction.id.toString())
+        }
+    }
+
+    /**
+     * Builds the block's PoP transactions tree the way VeriBlock does: the PoP transactions' root is joined with
+     * the regular transactions' one, and the result with the block's metapackage hash.
+     */
+    private fun SimulatedBlock.getContent(): VbkBlockContent = blockContents.getOrPut(hash) {
+        // From the transaction ids up to the PoP transactions' root, every layer repeats its last odd node
+        val layers = mutableListOf(transactions.map { it.asHexBytes() })
+        while (layers.last().size > 1) {
+            val layer = layers.last()
+            layers.add((layer.indices step 2).map { merkleRootHashOf(layer[it], layer.getOrElse(it + 1) { _ -> layer[it] }).bytes })
+        }
+        val popTreeRoot = layers.last().firstOrNull() ?: EMPTY_TREE_ROOT
+        val metapackageHash = sha256HashOf(hash.asHexBytes())
+        val merkleRoot = merkleRootHashOf(metapackageHash, merkleRootHashOf(EMPTY_TREE_ROOT, popTreeRoot).bytes)
+
+        val merklePaths = transactions.withIndex().associate { (index, transactionId) ->
+            var layerIndex = index
+            val siblings = layers.dropLast(1).map { layer ->
+                val sibling = layer.getOrElse(layerIndex xor 1) { layer[layerIndex] }
+                layerIndex /= 2
+                sibling.asSha256Hash()
+            }
+            // Tree index 1 places the PoP transactions' root on the right of the regular transactions' one
+            transactionId to VeriBlockMerklePath(
+                1, index, transactionId.asMerkleRoot(),
+                (siblings + EMPTY_TREE_ROOT.asSha256Hash() + metapackageHash.asSha256Hash()).toMutableList()
+            )
+        }
+        VbkBlockContent(merkleRoot, merklePaths)
+    }
+}
@@ -0,0 +1,180 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.nodecore.vpmmock.simulation
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.map
+import org.veriblock.core.crypto.EMPTY_TRUNCATED_MERKLE_ROOT
+import org.veriblock.core.crypto.PreviousBlockVbkHash
+import org.veriblock.core.crypto.PreviousKeystoneVbkHash
+import org.veriblock.miners.pop.service.TaskService
+import org.veriblock.miners.pop.service.TaskStage
+import org.veriblock.miners.pop.service.days
+import org.veriblock.miners.pop.service.failOperation
+import org.veriblock.miners.pop.service.failTask
+import org.veriblock.miners.pop.service.hr
+import org.veriblock.miners.pop.service.min
+import org.veriblock.miners.pop.service.sec
+import org.veriblock.sdk.models.Address
+import org.veriblock.sdk.models.VeriBlockBlock
+import java.security.KeyPair
+
+/**
+ * A replica of the VeriBlock PoP miner's task chain, endorsing the simulated VeriBlock chain's blocks into Bitcoin
+ * through the mock's real Bitcoin transactions, merkle paths and signed PoP transactions. It is not the miner's own
+ * VpmTaskService, which needs bitcoinj and a NodeCore connection, so only the altchain operations measure the
+ * miner's real task path.
+ */
+class VpmSimulationTaskService(
+    private val config: SimulationConfig,
+    private val vbk: SimulatedChain,
+    private val bitcoin: SimulatedBitcoinNetwork,
+    private val minerKey: KeyPair
+) : TaskService<SimulatedOperation>() {
+    private val minerAddress = Address.fromPublicKey(minerKey.public.encoded)
+
+    private val endorsementTransactionStage = TaskStage("vpm_endorsement_transaction", config.endorsementTransactionConcurrency)
+    private val blockOfProofStage = TaskStage("vpm_block_of_proof", config.blockOfProofConcurrency)
+    private val proofStage = TaskStage("vpm_proof", config.proofConcurrency)
+
+    override suspend fun runTasksInternal(operation: SimulatedOperation) {
+        operation.runTask(
+            taskName = "Retrieve Mining Instruction from NodeCore",
+            targetState = SimulatedOperationState.INSTRUCTION,
+            timeout = 90.sec
+        ) {
+            delay(config.rpcLatencyMillis)
+            val endorsedBlock = vbk.tip
+            operation.setMiningInstruction(
+                SimulatedMiningInstruction(
+                    endorsedBlockHeight = endorsedBlock.height,
+                    endorsedBlockHash = endorsedBlock.hash,
+                    endorsedBlockHeader = endorsedBlock.toVeriBlockBlock(),
+                    lastKnownBitcoinBlock = bitcoin.tip.header
+                )
+            )
+        }
+
+        operation.runTask(
+            taskName = "Create Bitcoin Endorsement Transaction",
+            targetState = SimulatedOperationState.ENDORSEMENT_TRANSACTION,
+            timeout = 90.sec,
+            stage = endorsementTransactionStage
+        ) {
+            val endorsedBlockHeader = operation.miningInstruction?.endorsedBlockHeader
+                ?: failTask("CreateEndorsementTransactionTask called without mining instruction!")
+            delay(config.endorsementTransactionMillis)
+            val transaction = bitcoin.mock.createBtcTx(endorsedBlockHeader, minerAddress)
+            bitcoin.submit(operation.id, transaction)
+            operation.setEndorsementTransaction(operation.id)
+        }
+
+        operation.runTask(
+            taskName = "Confirm Bitcoin Transaction",
+            targetState = SimulatedOperationState.ENDORSEMENT_TX_CONFIRMED,
+            timeout = 6.hr
+        ) {
+            val transactionKey = operation.endorsementTransactionId
+                ?: failTask("ConfirmTransactionTask called without transaction!")
+            bitcoin.tipChanges.first {
+                bitcoin.findTransaction(transactionKey) != null
+            }
+            operation.setConfirmed()
+        }
+
+        operation.runTask(
+            taskName = "Determine Block of Proof",
+            targetState = SimulatedOperationState.BLOCK_OF_PROOF,
+            timeout = 5.min,
+            stage = blockOfProofStage
+        ) {
+            val transactionKey = operation.endorsementTransactionId
+                ?: failTask("The operation has no transaction set!")
+            delay(config.blockOfProofMillis)
+            val (blockOfProof, _) = bitcoin.findTransaction(transactionKey)
+                ?: failTask("Unable to find the block of proof of the transaction")
+            operation.setBlockOfProof(blockOfProof.hash.toString())
+        }
+
+        operation.runTask(
+            taskName = "Prove Transaction",
+            targetState = SimulatedOperationState.PROVEN,
+            timeout = 20.sec,
+            stage = proofStage
+        ) {
+            val miningInstruction = operation.miningInstruction
+                ?: failTask("ProveTransactionTask called without mining instruction!")
+            val transactionKey = operation.endorsementTransactionId
+                ?: failTask("ProveTransactionTask called without transaction!")
+            val lastKnownBitcoinBlock = miningInstruction.lastKnownBitcoinBlock
+            delay(config.proofMillis)
+            val (blockOfProof, index) = bitcoin.findTransaction(transactionKey)
+                ?: failTask("The transaction is no longer in a block of the Bitcoin main chain")
+            val popTransaction = bitcoin.mock.createVbkPopTx(blockOfProof.hash, index, minerKey, lastKnownBitcoinBlock)
+                ?: failTask("Unable to create the PoP transaction from block ${blockOfProof.hash}")
+            if (!popTransaction.merklePath.leadsTo(blockOfProof.header.merkleRoot)) {
+                failOperation("Unable to verify merkle path! Block of proof's merkle root: ${blockOfProof.header.merkleRoot}")
+            }
+            operation.setProven(popTransaction.id.toString())
+        }
+
+        operation.runTask(
+            taskName = "Submit PoP Transaction",
+            targetState = SimulatedOperationState.SUBMITTED_POP_DATA,
+            timeout = 240.hr
+        ) {
+            val miningInstruction = operation.miningInstruction
+                ?: failTask("SubmitProofOfProofTask called without mining instruction!")
+            val popTransactionId = operation.proofOfProofId
+                ?: failTask("SubmitProofOfProofTask called without PoP transaction!")
+            delay(config.rpcLatencyMillis)
+            if (vbk.getBlock(miningInstruction.endorsedBlockHash) == null) {
+                failOperation("The endorsed block ${miningInstruction.endorsedBlockHash} is no longer on the VeriBlock main chain")
+            }
+            vbk.submit(popTransactionId)
+            operation.setSubmitted()
+        }
+
+        operation.runTask(
+            taskName = "Payout Detection",
+            targetState = SimulatedOperationState.PAYOUT_DETECTED,
+            timeout = 10.days
+        ) {
+            val miningInstruction = operation.miningInstruction
+                ?: failTask("PayoutDetectionTask called without mining instruction!")
+            val popTransactionId = operation.proofOfProofId
+                ?: failTask("PayoutDetectionTask called without PoP transaction!")
+            val payoutBlockHeight = miningInstruction.endorsedBlockHeight + config.vbkPayoutDelay
+            val containingBlock = vbk.tipChanges.map {
+                vbk.findTransaction(popTransactionId)?.takeIf { vbk.tip.height >= payoutBlockHeight }
+            }.filterNotNull().first()
+            if (containingBlock.height > payoutBlockHeight) {
+                failOperation(
+                    "No PoP payout: the PoP transaction was mined @ ${containingBlock.height}, after the payout block @ $payoutBlockHeight"
+                )
+            }
+            operation.setPayoutDetected(payoutBlockHeight)
+        }
+
+        operation.complete()
+    }
+}
+
+private fun SimulatedBlock.toVeriBlockBlock() = VeriBlockBlock(
+    height = height,
+    version = 2,
+    previousBlock = PreviousBlockVbkHash.EMPTY_HASH,
+    previousKeystone = PreviousKeystoneVbkHash.EMPTY_HASH,
+    secondPreviousKeystone = PreviousKeystoneVbkHash.EMPTY_HASH,
+    merkleRoot = EMPTY_TRUNCATED_MERKLE_ROOT,
+    timestamp = (timestamp / 1000).toInt(),
+    difficulty = 1,
+    nonce = height.toLong()
+)
@@ -0,0 +1,86 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.nodecore.vpmmock.tests
+
+import io.kotest.matchers.shouldBe
+import org.junit.Test
+import org.nodecore.vpmmock.mockmining.BitcoinBlockData
+import org.nodecore.vpmmock.mockmining.BtcBlockIndex
+import org.nodecore.vpmmock.mockmining.BtcChain
+import org.veriblock.core.crypto.EMPTY_BITCOIN_HASH
+import org.veriblock.sdk.models.BitcoinBlock
+import java.math.BigInteger
+
+// The chain starts above the genesis, like the mock's chains bootstrapped at the network's origin block
+private const val MIN_HEIGHT = 100
+
+class BtcChainTest {
+    private val genesis = block(null, MIN_HEIGHT)
+
+    @Test
+    fun getReturnsTheBlocksOfTheChainByHeight() {
+        val chain = BtcChain(MIN_HEIGHT, genesis)
+        val blocks = extend(genesis, 4)
+        blocks.forEach { chain.setTip(it) }
+
+        chain.tip shouldBe blocks.last()
+        chain[MIN_HEIGHT] shouldBe genesis
+        chain[MIN_HEIGHT + 4] shouldBe blocks.last()
+        chain[MIN_HEIGHT - 1] shouldBe null
+        chain[MIN_HEIGHT + 5] shouldBe null
+    }
+
+    @Test
+    fun setTipToALongerForkReplacesTheBlocksAboveTheFork() {
+        val chain = BtcChain(MIN_HEIGHT, genesis)
+        val blocks = extend(genesis, 3)
+        blocks.forEach { chain.setTip(it) }
+
+        val fork = extend(blocks[0], 4, nonce = 1)
+        chain.setTip(fork.last())
+
+        chain.tip shouldBe fork.last()
+        chain[MIN_HEIGHT + 1] shouldBe blocks[0]
+        (2..5).forEach {
+            chain[MIN_HEIGHT + it] shouldBe fork[it - 2]
+        }
+        chain.contains(blocks[1]) shouldBe false
+    }
+
+    @Test
+    fun setTipToAShorterForkDropsTheBlocksAboveIt() {
+        val chain = BtcChain(MIN_HEIGHT, genesis)
+        val blocks = extend(genesis, 4)
+        blocks.forEach { chain.setTip(it) }
+
+        val fork = extend(blocks[1], 1, nonce = 1)
+        chain.setTip(fork.last())
+
+        chain.tip shouldBe fork.last()
+        chain[MIN_HEIGHT + 2] shouldBe blocks[1]
+        chain[MIN_HEIGHT + 3] shouldBe fork.last()
+        chain[MIN_HEIGHT + 4] shouldBe null
+        chain.getLast(2) shouldBe listOf(blocks[1], fork.last())
+    }
+
+    private fun extend(from: BtcBlockIndex, count: Int, nonce: Int = 0): List<BtcBlockIndex> {
+        val blocks = ArrayList<BtcBlockIndex>()
+        var prev = from
+        repeat(count) {
+            prev = block(prev, prev.height + 1, nonce)
+            blocks.add(prev)
+        }
+        return blocks
+    }
+
+    private fun block(prev: BtcBlockIndex?, height: Int, nonce: Int = 0): BtcBlockIndex {
+        val body = BitcoinBlockData()
+        val header = BitcoinBlock(1, prev?.hash ?: EMPTY_BITCOIN_HASH, body.merkleRoot, height, 0x207fffff, nonce)
+        return BtcBlockIndex(header, body, BigInteger.valueOf(height.toLong()), height, prev)
+    }
+}
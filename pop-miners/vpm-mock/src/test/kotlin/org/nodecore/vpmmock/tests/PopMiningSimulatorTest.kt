@@ -0,0 +1,53 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.nodecore.vpmmock.tests
+
+import io.kotest.matchers.shouldBe
+import org.junit.Test
+import org.nodecore.vpmmock.simulation.PopMiningSimulator
+import org.nodecore.vpmmock.simulation.SimulatedOperationKind
+import org.nodecore.vpmmock.simulation.SimulationConfig
+
+class PopMiningSimulatorTest {
+    private val config = SimulationConfig(
+        durationHours = 3,
+        vpmOperationsPerHour = 20,
+        apmOperationsPerHour = 200,
+        vbkPayoutDelay = 20,
+        altPayoutDelay = 10
+    )
+
+    @Test
+    fun operationsComplete() {
+        val report = PopMiningSimulator(config).run()
+
+        for (kind in SimulatedOperationKind.values()) {
+            val operations = report.operations.getValue(kind)
+            (operations.started > 0) shouldBe true
+            (operations.completed > 0) shouldBe true
+            operations.endToEndLatency.count shouldBe operations.completed
+        }
+        report.persistedOperations shouldBe report.operations.values.sumOf { it.started }
+        report.persistedCompletedOperations shouldBe report.operations.values.sumOf { it.completed }
+    }
+
+    @Test
+    fun sameConfigurationGivesTheSameReport() {
+        val first = PopMiningSimulator(config).run()
+        val second = PopMiningSimulator(config).run()
+
+        first.copy(wallClockMillis = 0) shouldBe second.copy(wallClockMillis = 0)
+    }
+
+    @Test
+    fun configurationIsParsed() {
+        val parsed = SimulationConfig.parse(arrayOf("durationHours=2", "seed=7", "altKeystonePeriod=3"))
+
+        parsed shouldBe SimulationConfig(durationHours = 2, seed = 7, altKeystonePeriod = 3)
+    }
+}
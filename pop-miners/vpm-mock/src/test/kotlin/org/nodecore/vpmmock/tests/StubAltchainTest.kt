@@ -0,0 +1,80 @@
+// VeriBlock PoP Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.nodecore.vpmmock.tests
+
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import org.nodecore.vpmmock.mockmining.VeriBlockPopMinerMock
+import org.nodecore.vpmmock.simulation.SimulatedBitcoinNetwork
+import org.nodecore.vpmmock.simulation.SimulatedChain
+import org.nodecore.vpmmock.simulation.StubAltchain
+import org.nodecore.vpmmock.simulation.StubVeriBlockNetwork
+import org.veriblock.core.crypto.VbkHash
+import org.veriblock.core.crypto.asVbkHash
+import org.veriblock.core.utilities.Utility
+import org.veriblock.core.utilities.extensions.asHexBytes
+import java.security.KeyPairGenerator
+import java.security.spec.ECGenParameterSpec
+import kotlin.random.Random
+
+class StubAltchainTest {
+    private val vbk = SimulatedChain("VeriBlock", 10, 0.0, 0, Random(1), VbkHash.HASH_LENGTH)
+    private val altchain = SimulatedChain("Altchain", 10, 0.0, 0, Random(2))
+    private val network = StubVeriBlockNetwork(
+        vbk,
+        KeyPairGenerator.getInstance("EC").apply { initialize(ECGenParameterSpec("secp256k1")) }.generateKeyPair(),
+        endorsementTransactionMillis = 0
+    )
+    private val bitcoin = SimulatedBitcoinNetwork(VeriBlockPopMinerMock(), 10, 0.0, 0, Random(3))
+    private val stubAltchain = StubAltchain("sim", altchain, vbk, network, bitcoin, 5, 10, 60, latencyMillis = 0)
+
+    @Test
+    fun vbkBlocksAreKnownOnceMinedByTheAltchain() = runBlocking {
+        repeat(2) { vbk.mine(0) }
+        val first = network.getBlock(vbk.getBlockAtHeight(1)!!.hash.asVbkHash())!!
+        val second = network.getBlock(vbk.getBlockAtHeight(2)!!.hash.asVbkHash())!!
+
+        stubAltchain.getBestKnownVbkBlockHash() shouldBe vbk.getBlockAtHeight(0)!!.hash.asVbkHash().toString()
+        // It doesn't connect to any block the altchain has
+        stubAltchain.submitPopVbk(second).accepted shouldBe false
+        stubAltchain.submitPopVbk(first).accepted shouldBe true
+        stubAltchain.submitPopVbk(second).accepted shouldBe true
+        stubAltchain.getPopMempool().vbkBlockHashes.size shouldBe 2
+        stubAltchain.getVbkBlock(second.hash.toString()) shouldBe null
+
+        altchain.mine(0)
+
+        stubAltchain.getPopMempool().vbkBlockHashes shouldBe emptyList()
+        stubAltchain.getBestKnownVbkBlockHash() shouldBe second.hash.toString()
+        // Blocks are also found by the hash they are referenced with
+        stubAltchain.getVbkBlock(second.previousBlock.toString()) shouldBe first
+        stubAltchain.getBlock(1)!!.knownVbkHashes.size shouldBe 2
+    }
+
+    @Test
+    fun bestKnownBtcBlockIsTheBootstrapOneUntilVtbsAreMined() = runBlocking {
+        val bootstrapHash = bitcoin.tip.hash.toString()
+        bitcoin.mine(bitcoin.tip.header.timestamp + 600)
+
+        stubAltchain.getBestKnownBtcBlockHash() shouldBe bootstrapHash
+        stubAltchain.getBtcBlock(bootstrapHash)!!.hash.toString() shouldBe bootstrapHash
+        stubAltchain.getBtcBlock(bitcoin.tip.hash.toString()) shouldBe null
+        stubAltchain.getMissingBtcBlockHashes() shouldBe emptyList()
+    }
+
+    @Test
+    fun blocksAreCheckedAgainstTheAltchainBestChain() = runBlocking {
+        altchain.mine(0)
+        val block = altchain.getBlockAtHeight(1)!!
+
+        stubAltchain.checkBlockIsOnMainChain(1, Utility.intToByteArray(1) + block.hash.asHexBytes()) shouldBe true
+        stubAltchain.checkBlockIsOnMainChain(1, Utility.intToByteArray(1) + altchain.getBlockAtHeight(0)!!.hash.asHexBytes()) shouldBe false
+        stubAltchain.checkBlockIsOnMainChain(2, Utility.intToByteArray(2) + block.hash.asHexBytes()) shouldBe false
+    }
+}
@@ -1,5 +1,7 @@
 package org.veriblock.extensions.stratumapi.commands;
 
+import com.google.gson.stream.JsonWriter;
+import nodecore.api.ucp.utilities.JsonOutputUtility;
 import org.veriblock.core.types.Pair;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
 import org.veriblock.extensions.stratumapi.commands.toclient.MiningNotify;
@@ -11,6 +13,8 @@ import org.veriblock.extensions.stratumapi.commands.toserver.MiningHello;
 import org.veriblock.extensions.stratumapi.commands.toserver.MiningSubmit;
 import org.veriblock.extensions.stratumapi.commands.toserver.MiningSubscribe;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -110,7 +114,62 @@ public class StratumCommand {
         }
     }
 
+    // Commands are immutable, so their serialized forms are only computed once
+    private transient volatile String compiledCommand;
+    private transient volatile ByteBuffer compiledLine;
+
+    /**
+     * Serializes this command, reusing the result of any previous call.
+     * @return The serialized command
+     */
     public String compileCommand() {
-        return toString();
+        String compiled = compiledCommand;
+        if (compiled == null) {
+            StringBuilder builder = new StringBuilder(256);
+            try {
+                compileCommand(builder);
+            } catch (IOException e) {
+                // StringBuilder never throws
+                throw new IllegalStateException(e);
+            }
+            compiled = builder.toString();
+            compiledCommand = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Serializes this command directly into the provided destination, such as a reused StringBuilder or Writer.
+     * @param destination Appendable to write the serialized command into
+     * @throws IOException If the destination could not be written to
+     */
+    public void compileCommand(Appendable destination) throws IOException {
+        JsonWriter writer = new JsonWriter(JsonOutputUtility.asWriter(destination));
+        writer.setLenient(true);
+        writeCommand(writer);
+        writer.flush();
+    }
+
+    /**
+     * Gets this command as a newline-terminated UTF-8 line, encoded only once, so that broadcasting the same command
+     * (such as a MiningNotify) to many miners doesn't serialize it again for each of them.
+     * @return A read-only buffer holding the line, positioned at its start
+     */
+    public ByteBuffer compileCommandLine() {
+        ByteBuffer line = compiledLine;
+        if (line == null) {
+            line = JsonOutputUtility.toLine(compileCommand());
+            compiledLine = line;
+        }
+        return line.duplicate();
+    }
+
+    /**
+     * Writes the JSON representation of this command.
+     * @param writer JsonWriter to write the command with
+     * @throws IOException If the underlying destination could not be written to
+     */
+    protected void writeCommand(JsonWriter writer) throws IOException {
+        writer.jsonValue(toString());
     }
 }
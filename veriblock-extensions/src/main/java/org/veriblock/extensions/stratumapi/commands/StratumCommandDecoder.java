@@ -0,0 +1,190 @@
+// VeriBlock NodeCore
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.extensions.stratumapi.commands;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.veriblock.core.types.Pair;
+import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningAuthorize;
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningExtraNonceSubscribe;
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningHello;
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningSubmit;
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningSubscribe;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes the Stratum requests sent by miners in a single streaming pass, without building an intermediate JSON tree.
+ *
+ * The "params" of a request are read into an array laid out like the pattern of its command (positionally when they
+ * are sent as an array, by key when they are sent as an object) and handed to the command's fromParams factory, which
+ * is looked up by the case-folded method name in a table built once.
+ */
+final class StratumCommandDecoder {
+    private static final String ID_KEY = "id";
+    private static final String METHOD_KEY = "method";
+    private static final String PARAMS_KEY = "params";
+    private static final String RESULT_KEY = "result";
+
+    private static final Map<String, Binding> bindings = new HashMap<>();
+
+    static {
+        register(StratumCommand.Command.MINING_HELLO, MiningHello::fromParams);
+        register(StratumCommand.Command.MINING_SUBSCRIBE, MiningSubscribe::fromParams);
+        register(StratumCommand.Command.MINING_EXTRA_NONCE_SUBSCRIBE, MiningExtraNonceSubscribe::fromParams);
+        register(StratumCommand.Command.MINING_AUTHORIZE, MiningAuthorize::fromParams);
+        register(StratumCommand.Command.MINING_SUBMIT, MiningSubmit::fromParams);
+    }
+
+    private static void register(StratumCommand.Command command, ParamsBinder binder) {
+        bindings.put(command.getFriendlyName().toLowerCase(), new Binding(command, binder));
+    }
+
+    private StratumCommandDecoder() {
+    }
+
+    /**
+     * Decodes the given request line.
+     *
+     * @param commandLine The request line, as received over the wire
+     * @return The decoded command, or null if the line is a result or names a method which isn't a known server command
+     * @throws IOException If the line is not well-formed JSON
+     * @throws InvalidStratumCommandException If the line is neither a request nor a result, or it has no id
+     */
+    static StratumServerCommand decode(String commandLine) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(commandLine));
+        reader.setLenient(true);
+
+        Integer id = null;
+        Binding binding = null;
+        boolean hasResult = false;
+        String[] params = null;
+        // Only used when the params are sent as an object before the method name
+        Map<String, String> deferred = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (ID_KEY.equals(key) && reader.peek() != JsonToken.NULL) {
+                id = reader.nextInt();
+            } else if (METHOD_KEY.equals(key) && reader.peek() != JsonToken.NULL) {
+                binding = bindings.get(reader.nextString().toLowerCase());
+                if (binding == null) {
+                    return null;
+                }
+                if (deferred != null) {
+                    params = new String[binding.indexes.size()];
+                    for (Map.Entry<String, String> entry : deferred.entrySet()) {
+                        Integer index = binding.indexes.get(entry.getKey());
+                        if (index != null) {
+                            params[index] = entry.getValue();
+                        }
+                    }
+                }
+            } else if (PARAMS_KEY.equals(key) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                params = readPositionalParams(reader);
+            } else if (PARAMS_KEY.equals(key) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                if (binding != null) {
+                    params = new String[binding.indexes.size()];
+                    readNamedParams(reader, binding.indexes, params);
+                } else {
+                    deferred = readNamedParams(reader);
+                }
+            } else {
+                hasResult |= RESULT_KEY.equals(key);
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (binding == null) {
+            if (hasResult) {
+                return null;
+            }
+            throw new InvalidStratumCommandException();
+        }
+
+        if (id == null) {
+            throw new InvalidStratumCommandException();
+        }
+
+        return binding.binder.bind(id, params != null ? params : new String[0]);
+    }
+
+    private static String[] readPositionalParams(JsonReader reader) throws IOException {
+        ArrayList<String> values = new ArrayList<>(4);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(readValue(reader));
+        }
+        reader.endArray();
+        return values.toArray(new String[0]);
+    }
+
+    private static void readNamedParams(JsonReader reader, Map<String, Integer> indexes, String[] params) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            Integer index = indexes.get(reader.nextName());
+            if (index != null) {
+                params[index] = readValue(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static Map<String, String> readNamedParams(JsonReader reader) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            params.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return params;
+    }
+
+    private static String readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return Boolean.toString(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    interface ParamsBinder {
+        /**
+         * @param id The id of the request
+         * @param params The params of the request, laid out like the pattern of the command; missing params are null
+         */
+        StratumServerCommand bind(int id, String[] params);
+    }
+
+    private static final class Binding {
+        private final ParamsBinder binder;
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        Binding(StratumCommand.Command command, ParamsBinder binder) {
+            this.binder = binder;
+            ArrayList<Pair<String, StratumArgument.StratumType>> pattern = command.getPattern();
+            for (int i = 0; i < pattern.size(); i++) {
+                indexes.put(pattern.get(i).getFirst(), i);
+            }
+        }
+    }
+}
@@ -1,4 +1,15 @@
 package org.veriblock.extensions.stratumapi.commands;
 
 public abstract class StratumServerCommand extends StratumCommand {
+    /**
+     * Gets the param at the given index of the params handed to a command's fromParams factory.
+     *
+     * @throws IllegalArgumentException If the param was not sent
+     */
+    protected static String requireParam(String[] params, int index) {
+        if (index >= params.length || params[index] == null) {
+            throw new IllegalArgumentException("The required param at index " + index + " is missing!");
+        }
+        return params[index];
+    }
 }
@@ -9,8 +9,8 @@ package org.veriblock.extensions.stratumapi.commands.toclient;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentBlockHeight;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentBoolean;
@@ -22,6 +22,7 @@ import org.veriblock.extensions.stratumapi.commands.StratumCommand;
 import org.veriblock.core.types.Pair;
 import org.veriblock.core.utilities.Utility;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class MiningNotify extends StratumClientCommand {
@@ -108,30 +109,23 @@ public class MiningNotify extends StratumClientCommand {
         return cleanJobs.getData();
     }
 
-    public String compileCommand() {
-        JsonArray params = new JsonArray();
-
-        String jobIdHex = Utility.bytesToHex(Utility.intToByteArray(jobId.getData())).toLowerCase();
-        while (jobIdHex.charAt(0) == '0' && jobIdHex.length() > 1) {
-            jobIdHex = jobIdHex.substring(1);
-        }
-
-        params.add(jobIdHex);
-        params.add(seedHash.getData());
-        params.add(headerHash.getData());
-        params.add(blockHeight.getData());
-
-        params.add(cleanJobs.getData());
-
-        JsonObject root = new JsonObject();
+    @Override
+    protected void writeCommand(JsonWriter writer) throws IOException {
+        writer.beginObject();
 
         // Mining notifications don't need a top-level id
-        root.add("id", JsonNull.INSTANCE);
+        writer.name("id").nullValue();
 
-        root.addProperty("method", command.getFriendlyName());
+        writer.name("method").value(command.getFriendlyName());
 
-        root.add("params", params);
+        writer.name("params").beginArray()
+            .value(Integer.toHexString(jobId.getData()))
+            .value(seedHash.getData())
+            .value(headerHash.getData())
+            .value(blockHeight.getData())
+            .value(cleanJobs.getData())
+            .endArray();
 
-        return root.toString();
+        writer.endObject();
     }
 }
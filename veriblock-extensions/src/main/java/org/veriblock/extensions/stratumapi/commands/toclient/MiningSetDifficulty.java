@@ -9,14 +9,15 @@ package org.veriblock.extensions.stratumapi.commands.toclient;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentDifficulty;
 import org.veriblock.extensions.stratumapi.commands.StratumClientCommand;
 import org.veriblock.extensions.stratumapi.commands.StratumCommand;
 import org.veriblock.core.types.Pair;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class MiningSetDifficulty extends StratumClientCommand {
@@ -67,20 +68,19 @@ public class MiningSetDifficulty extends StratumClientCommand {
         return difficulty.getData();
     }
 
-    public String compileCommand() {
-        JsonArray params = new JsonArray();
-
-        params.add(difficulty.getData());
-
-        JsonObject root = new JsonObject();
+    @Override
+    protected void writeCommand(JsonWriter writer) throws IOException {
+        writer.beginObject();
 
         // Mining notifications don't need a top-level id
-        root.add("id", JsonNull.INSTANCE);
+        writer.name("id").nullValue();
 
-        root.addProperty("method", command.getFriendlyName());
+        writer.name("method").value(command.getFriendlyName());
 
-        root.add("params", params);
+        writer.name("params").beginArray()
+            .value(difficulty.getData())
+            .endArray();
 
-        return root.toString();
+        writer.endObject();
     }
 }
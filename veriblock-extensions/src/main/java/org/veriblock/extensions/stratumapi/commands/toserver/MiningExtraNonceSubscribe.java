@@ -7,15 +7,16 @@
 
 package org.veriblock.extensions.stratumapi.commands.toserver;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentId;
 import org.veriblock.extensions.stratumapi.commands.StratumCommand;
 import org.veriblock.extensions.stratumapi.commands.StratumServerCommand;
 import org.veriblock.core.types.Pair;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class MiningExtraNonceSubscribe extends StratumServerCommand {
@@ -60,18 +61,23 @@ public class MiningExtraNonceSubscribe extends StratumServerCommand {
         return new MiningExtraNonceSubscribe(id);
     }
 
+    /**
+     * Creates a MiningExtraNonceSubscribe from the params of a request, which it has none of.
+     */
+    public static MiningExtraNonceSubscribe fromParams(int id, String[] params) {
+        return new MiningExtraNonceSubscribe(id);
+    }
+
     public int getId() {
         return id.getData();
     }
 
-    public String compileCommand() {
-        JsonArray params = new JsonArray();
-
-        JsonObject root = new JsonObject();
-        root.addProperty("id", id.getData());
-        root.addProperty("method", command.getFriendlyName());
-        root.add("params", params);
-
-        return root.toString();
+    @Override
+    protected void writeCommand(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(id.getData());
+        writer.name("method").value(command.getFriendlyName());
+        writer.name("params").beginArray().endArray();
+        writer.endObject();
     }
 }
@@ -9,6 +9,7 @@ package org.veriblock.extensions.stratumapi.commands.toserver;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentAgent;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentHost;
@@ -20,6 +21,7 @@ import org.veriblock.extensions.stratumapi.commands.StratumServerCommand;
 import org.veriblock.core.types.Pair;
 import org.veriblock.core.utilities.Utility;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -81,19 +83,30 @@ public class MiningHello extends StratumServerCommand {
 
         String agent = params.get("agent").getAsString();
         String host = params.get("host").getAsString();
-        StringBuilder portHex = new StringBuilder(params.get("port").getAsString());
-
-        while (portHex.length() != 8) { // 4 bytes in an Integer
-            portHex.insert(0, "0");
-        }
-
-        int port = Utility.byteArrayToInt(Utility.hexToBytes(portHex.toString()));
+        int port = parsePort(params.get("port").getAsString());
 
         String protocol = params.get("proto").getAsString();
 
         return new MiningHello(id, agent, host, port, protocol);
     }
 
+    /**
+     * Creates a MiningHello from the params of a request, laid out like the MINING_HELLO pattern.
+     */
+    public static MiningHello fromParams(int id, String[] params) {
+        return new MiningHello(id, requireParam(params, 0), requireParam(params, 1), parsePort(requireParam(params, 2)), requireParam(params, 3));
+    }
+
+    private static int parsePort(String port) {
+        StringBuilder portHex = new StringBuilder(port);
+
+        while (portHex.length() < 8) { // 4 bytes in an Integer
+            portHex.insert(0, "0");
+        }
+
+        return Utility.byteArrayToInt(Utility.hexToBytes(portHex.toString()));
+    }
+
     public int getId() {
         return id.getData();
     }
@@ -115,25 +128,21 @@ public class MiningHello extends StratumServerCommand {
     }
 
     @Override
-    public String toString() {
-        JsonObject params = new JsonObject();
-        params.addProperty("agent", agent.getData());
-        params.addProperty("host", host.getData());
-
-        String portHex = Utility.bytesToHex(Utility.intToByteArray(port.getData())).toLowerCase();
-        while (portHex.charAt(0) == '0' && portHex.length() > 1) {
-            portHex = portHex.substring(1);
-        }
-
-        params.addProperty("port", portHex);
-
-        params.addProperty("proto", protocol.getData());
-
-        JsonObject root = new JsonObject();
-        root.addProperty("id", id.getData());
-        root.addProperty("method", command.getFriendlyName());
-        root.add("params", params);
+    protected void writeCommand(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(id.getData());
+        writer.name("method").value(command.getFriendlyName());
+        writer.name("params").beginObject()
+            .name("agent").value(agent.getData())
+            .name("host").value(host.getData())
+            .name("port").value(Integer.toHexString(port.getData()))
+            .name("proto").value(protocol.getData())
+            .endObject();
+        writer.endObject();
+    }
 
-        return root.toString();
+    @Override
+    public String toString() {
+        return compileCommand();
     }
 }
@@ -10,6 +10,7 @@ package org.veriblock.extensions.stratumapi.commands.toserver;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentId;
@@ -21,6 +22,7 @@ import org.veriblock.extensions.stratumapi.commands.StratumServerCommand;
 import org.veriblock.core.types.Pair;
 import org.veriblock.core.utilities.Utility;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class MiningSubmit extends StratumServerCommand {
@@ -73,11 +75,7 @@ public class MiningSubmit extends StratumServerCommand {
 
         JsonArray params = rootObject.get("params").getAsJsonArray();
 
-        StringBuilder jobIdHex = new StringBuilder(params.get(1).getAsString());
-        while (jobIdHex.length() < 8) {
-            jobIdHex.insert(0, "0");
-        }
-        int jobIdParsed = Utility.byteArrayToInt(Utility.hexToBytes(jobIdHex.toString()));
+        int jobIdParsed = parseJobId(params.get(1).getAsString());
 
         String username = params.get(0).getAsString();
 
@@ -86,6 +84,21 @@ public class MiningSubmit extends StratumServerCommand {
         return new MiningSubmit(id, username, jobIdParsed, nonce);
     }
 
+    /**
+     * Creates a MiningSubmit from the params of a request, laid out like the MINING_SUBMIT pattern.
+     */
+    public static MiningSubmit fromParams(int id, String[] params) {
+        return new MiningSubmit(id, requireParam(params, 0), parseJobId(requireParam(params, 1)), requireParam(params, 2));
+    }
+
+    private static int parseJobId(String jobId) {
+        StringBuilder jobIdHex = new StringBuilder(jobId);
+        while (jobIdHex.length() < 8) {
+            jobIdHex.insert(0, "0");
+        }
+        return Utility.byteArrayToInt(Utility.hexToBytes(jobIdHex.toString()));
+    }
+
     public int getId() {
         return id.getData();
     }
@@ -102,24 +115,16 @@ public class MiningSubmit extends StratumServerCommand {
         return nonce.getData();
     }
 
-    public String compileCommand() {
-        JsonArray params = new JsonArray();
-        params.add(username.getData());
-
-        String jobIdHex = Utility.bytesToHex(Utility.intToByteArray(jobId.getData())).toLowerCase();
-        while (jobIdHex.charAt(0) == '0' && jobIdHex.length() > 1) {
-            jobIdHex = jobIdHex.substring(1);
-        }
-
-        params.add(jobIdHex);
-
-        params.add(nonce.getData());
-
-        JsonObject root = new JsonObject();
-        root.addProperty("id", id.getData());
-        root.addProperty("method", command.getFriendlyName());
-        root.add("params", params);
-
-        return root.toString();
+    @Override
+    protected void writeCommand(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(id.getData());
+        writer.name("method").value(command.getFriendlyName());
+        writer.name("params").beginArray()
+            .value(username.getData())
+            .value(Integer.toHexString(jobId.getData()))
+            .value(nonce.getData())
+            .endArray();
+        writer.endObject();
     }
 }
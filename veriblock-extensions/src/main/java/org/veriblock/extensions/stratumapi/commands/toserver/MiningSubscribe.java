@@ -10,6 +10,7 @@ package org.veriblock.extensions.stratumapi.commands.toserver;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgument;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentAgent;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentId;
@@ -18,6 +19,7 @@ import org.veriblock.extensions.stratumapi.commands.StratumCommand;
 import org.veriblock.extensions.stratumapi.commands.StratumServerCommand;
 import org.veriblock.core.types.Pair;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class MiningSubscribe extends StratumServerCommand {
@@ -74,6 +76,13 @@ public class MiningSubscribe extends StratumServerCommand {
         return new MiningSubscribe(id, agent, protocol);
     }
 
+    /**
+     * Creates a MiningSubscribe from the params of a request, laid out like the MINING_SUBSCRIBE pattern.
+     */
+    public static MiningSubscribe fromParams(int id, String[] params) {
+        return new MiningSubscribe(id, requireParam(params, 0), requireParam(params, 1));
+    }
+
     public int getId() {
         return id.getData();
     }
@@ -86,17 +95,15 @@ public class MiningSubscribe extends StratumServerCommand {
         return protocol.getData();
     }
 
-    public String compileCommand() {
-        JsonArray params = new JsonArray();
-        params.add(agent.getData());
-
-        params.add(protocol.getData());
-
-        JsonObject root = new JsonObject();
-        root.addProperty("id", id.getData());
-        root.addProperty("method", command.getFriendlyName());
-        root.add("params", params);
-
-        return root.toString();
+    @Override
+    protected void writeCommand(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(id.getData());
+        writer.name("method").value(command.getFriendlyName());
+        writer.name("params").beginArray()
+            .value(agent.getData())
+            .value(protocol.getData())
+            .endArray();
+        writer.endObject();
     }
 }
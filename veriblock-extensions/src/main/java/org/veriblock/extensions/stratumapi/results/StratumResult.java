@@ -1,10 +1,53 @@
 package org.veriblock.extensions.stratumapi.results;
 
+import com.google.gson.stream.JsonWriter;
+import nodecore.api.ucp.utilities.JsonOutputUtility;
+import org.veriblock.extensions.stratumapi.arguments.StratumArgumentError;
+
+import java.io.IOException;
+
 /**
  * Not all messages sent with Stratum are commands; some are responses to commands.
  */
 public class StratumResult {
     public String compileResult() {
-        return toString();
+        StringBuilder builder = new StringBuilder(128);
+        try {
+            compileResult(builder);
+        } catch (IOException e) {
+            // StringBuilder never throws
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Serializes this result directly into the provided destination, such as a reused StringBuilder or Writer.
+     * @param destination Appendable to write the serialized result into
+     * @throws IOException If the destination could not be written to
+     */
+    public void compileResult(Appendable destination) throws IOException {
+        JsonWriter writer = new JsonWriter(JsonOutputUtility.asWriter(destination));
+        writer.setLenient(true);
+        writeResult(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes the JSON representation of this result.
+     * @param writer JsonWriter to write the result with
+     * @throws IOException If the underlying destination could not be written to
+     */
+    protected void writeResult(JsonWriter writer) throws IOException {
+        writer.jsonValue(toString());
+    }
+
+    protected static void writeError(JsonWriter writer, StratumArgumentError error) throws IOException {
+        writer.name("error");
+        if (error == null) {
+            writer.nullValue();
+        } else {
+            writer.jsonValue(error.getSerialized());
+        }
     }
 }
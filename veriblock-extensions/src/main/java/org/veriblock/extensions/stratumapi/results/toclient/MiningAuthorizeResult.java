@@ -1,12 +1,13 @@
 package org.veriblock.extensions.stratumapi.results.toclient;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentBoolean;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentError;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentId;
 import org.veriblock.extensions.stratumapi.results.StratumResult;
 
+import java.io.IOException;
+
 public class MiningAuthorizeResult extends StratumResult {
     private final StratumArgumentId id;
     private final StratumArgumentBoolean result;
@@ -30,17 +31,12 @@ public class MiningAuthorizeResult extends StratumResult {
         this.errorString = errorString;
     }
 
-    public String compileResult() {
-        JsonObject root = new JsonObject();
-        root.addProperty("id", id.getData());
-        root.addProperty("result", result.getData());
-
-        if (errorString == null){
-            root.add("error", JsonNull.INSTANCE);
-        } else {
-            root.add("error", errorString.getJsonArray());
-        }
-
-        return root.toString();
+    @Override
+    protected void writeResult(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(id.getData());
+        writer.name("result").value(result.getData());
+        writeError(writer, errorString);
+        writer.endObject();
     }
 }
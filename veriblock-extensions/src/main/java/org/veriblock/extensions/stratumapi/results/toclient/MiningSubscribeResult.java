@@ -1,14 +1,13 @@
 package org.veriblock.extensions.stratumapi.results.toclient;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentError;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentId;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentSubscriptionTriple;
 import org.veriblock.extensions.stratumapi.arguments.StratumArgumentSyntheticExtraNonce;
 import org.veriblock.extensions.stratumapi.results.StratumResult;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -65,24 +64,19 @@ public class MiningSubscribeResult extends StratumResult {
         this.errorString = errorString;
     }
 
-    public String compileResult() {
-        JsonArray result = new JsonArray();
-        for (StratumArgumentSubscriptionTriple triple : subscriptionTriples) {
-            result.add(triple.getJsonArray());
-        }
-
-        result.add(syntheticExtraNonce.getSerialized());
+    @Override
+    protected void writeResult(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(id.getData());
 
-        JsonObject root = new JsonObject();
-        root.addProperty("id", id.getData());
-        root.add("result", result);
-
-        if (errorString == null){
-            root.add("error", JsonNull.INSTANCE);
-        } else {
-            root.add("error", errorString.getJsonArray());
+        writer.name("result").beginArray();
+        for (StratumArgumentSubscriptionTriple triple : subscriptionTriples) {
+            writer.jsonValue(triple.getSerialized());
         }
+        writer.value(syntheticExtraNonce.getSerialized());
+        writer.endArray();
 
-        return root.toString();
+        writeError(writer, errorString);
+        writer.endObject();
     }
 }
@@ -0,0 +1,134 @@
+package org.veriblock.extensions.stratumapi.commands
+
+import com.google.gson.JsonArray
+import com.google.gson.JsonElement
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import com.google.gson.JsonPrimitive
+import io.kotest.matchers.shouldBe
+import org.junit.Test
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningAuthorize
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningExtraNonceSubscribe
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningHello
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningSubmit
+import org.veriblock.extensions.stratumapi.commands.toserver.MiningSubscribe
+import java.lang.management.ManagementFactory
+import kotlin.random.Random
+
+private const val ITERATIONS = 50_000
+private const val CORPUS_SIZE = 200
+
+private val USERNAMES = listOf("VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW", "VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW.rig0", "worker")
+
+private const val SUBMIT_LINE = "{\"id\":4,\"method\":\"mining.submit\",\"params\":[\"VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW.rig0\",\"1a\",\"8d3c5f2e00000000\"]}"
+
+class StratumIncomingCommandParserTests {
+    @Test
+    fun parseServerCommand_decodesMiningSubmit() {
+        val command = StratumIncomingCommandParser.parseServerCommand(SUBMIT_LINE) as MiningSubmit
+
+        command.id shouldBe 4
+        command.username shouldBe "VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW.rig0"
+        command.jobId shouldBe 0x1a
+        command.nonce shouldBe "8d3c5f2e00000000"
+        command.compileCommand() shouldBe MiningSubmit.reconstitute(JsonParser().parse(SUBMIT_LINE)).compileCommand()
+    }
+
+    @Test
+    fun parseServerCommand_whenMethodFollowsParams() {
+        val line = "{\"params\":{\"proto\":\"EthereumStratum/2.0.0\",\"port\":\"7e4\",\"host\":\"pool\",\"agent\":\"ethminer-0.18.0\"},\"id\":1,\"method\":\"Mining.Hello\"}"
+
+        val command = StratumIncomingCommandParser.parseServerCommand(line) as MiningHello
+
+        command.id shouldBe 1
+        command.agent shouldBe "ethminer-0.18.0"
+        command.host shouldBe "pool"
+        command.port shouldBe 0x7e4
+        command.protocol shouldBe "EthereumStratum/2.0.0"
+    }
+
+    @Test(expected = InvalidStratumCommandException::class)
+    fun parseServerCommand_whenMessageIsNotJson() {
+        StratumIncomingCommandParser.parseServerCommand("SELECT * FROM table")
+    }
+
+    @Test(expected = InvalidStratumCommandException::class)
+    fun parseServerCommand_whenParamsAreMissing() {
+        StratumIncomingCommandParser.parseServerCommand("{\"id\":4,\"method\":\"mining.submit\",\"params\":[\"user\"]}")
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun parseServerCommand_whenMethodIsUnknown() {
+        StratumIncomingCommandParser.parseServerCommand("{\"id\":4,\"method\":\"mining.unknown\",\"params\":[]}")
+    }
+
+    @Test
+    fun decodingThroughput() {
+        val treeBytes = measureAllocatedBytes {
+            MiningSubmit.reconstitute(JsonParser().parse(SUBMIT_LINE))
+        }
+        val streamingBytes = measureAllocatedBytes {
+            StratumIncomingCommandParser.parseServerCommand(SUBMIT_LINE)
+        }
+        // The streaming pass doesn't build a JSON tree for every line
+        (streamingBytes < treeBytes) shouldBe true
+    }
+
+    @Test
+    fun streamingAndTreeParsersAgree() {
+        val random = Random(1)
+        repeat(CORPUS_SIZE) {
+            val id = random.nextInt(Int.MAX_VALUE)
+            val user = USERNAMES[random.nextInt(USERNAMES.size)]
+            val hello = listOf(
+                "agent" to JsonPrimitive("ethminer-0.${random.nextInt(20)}.0"),
+                "host" to JsonPrimitive("pool${random.nextInt(10)}.example.com"),
+                "port" to JsonPrimitive(Integer.toHexString(random.nextInt(65536))),
+                "proto" to JsonPrimitive("EthereumStratum/2.0.0")
+            ).shuffled(random)
+            val lines = listOf(
+                commandLine(random, id, "mining.hello", JsonObject().apply { hello.forEach { (key, value) -> add(key, value) } }),
+                commandLine(random, id, "mining.subscribe", params("ethminer-0.18.0", "EthereumStratum/2.0.0")),
+                commandLine(random, id, "mining.extranonce.subscribe", JsonArray()),
+                commandLine(random, id, "mining.authorize", params(user, "x")),
+                commandLine(random, id, "mining.submit", params(user, Integer.toHexString(random.nextInt(Int.MAX_VALUE)), randomNonce(random)))
+            )
+            for (line in lines) {
+                val tree = JsonParser().parse(line)
+                val expected = when (tree.asJsonObject["method"].asString) {
+                    "mining.hello" -> MiningHello.reconstitute(tree)
+                    "mining.subscribe" -> MiningSubscribe.reconstitute(tree)
+                    "mining.extranonce.subscribe" -> MiningExtraNonceSubscribe.reconstitute(tree)
+                    "mining.authorize" -> MiningAuthorize.reconstitute(tree)
+                    else -> MiningSubmit.reconstitute(tree)
+                }
+
+                StratumIncomingCommandParser.parseServerCommand(line).compileCommand() shouldBe expected.compileCommand()
+            }
+        }
+    }
+
+    // Members in a random order, which the streaming parser must accept as the tree one does
+    private fun commandLine(random: Random, id: Int, method: String, params: JsonElement): String {
+        val members = listOf("id" to JsonPrimitive(id), "method" to JsonPrimitive(method), "params" to params).shuffled(random)
+        return JsonObject().apply { members.forEach { (key, value) -> add(key, value) } }.toString()
+    }
+
+    private fun params(vararg values: String) = JsonArray().apply { values.forEach { add(it) } }
+
+    private fun randomNonce(random: Random): String {
+        val nonce = ByteArray(8)
+        random.nextBytes(nonce)
+        return nonce.joinToString("") { String.format("%02x", it) }
+    }
+
+    private inline fun measureAllocatedBytes(block: () -> Unit): Long {
+        val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+        // Warm up before measuring
+        repeat(ITERATIONS / 10) { block() }
+        val before = threadBean.getThreadAllocatedBytes(threadId)
+        repeat(ITERATIONS) { block() }
+        return threadBean.getThreadAllocatedBytes(threadId) - before
+    }
+}
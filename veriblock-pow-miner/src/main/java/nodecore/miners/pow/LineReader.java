@@ -0,0 +1,71 @@
+// VeriBlock PoW CPU Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package nodecore.miners.pow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits the bytes read from a UCP connection into command lines. It works with the channel in blocking mode during
+ * the handshake and in non-blocking mode afterwards, and keeps whatever was read past the last line in between.
+ */
+class LineReader {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    /**
+     * Reads the next line, blocking until it is complete. The channel must be in blocking mode.
+     * @param channel The channel to read from
+     * @return The line, without its terminator
+     * @throws EOFException If the host closed the connection before the line was complete
+     */
+    String readLine(SocketChannel channel) throws IOException {
+        String next;
+        while ((next = nextLine()) == null) {
+            if (!fill(channel)) {
+                throw new EOFException("The connection was closed by the remote host");
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Reads the bytes which are currently available, without blocking when the channel is in non-blocking mode.
+     * @param channel The channel to read from
+     * @return False if the host closed the connection
+     */
+    boolean fill(SocketChannel channel) throws IOException {
+        return channel.read(buffer) >= 0;
+    }
+
+    /**
+     * Takes the next line out of the bytes read so far.
+     * @return The line, without its terminator, or null if no complete line has been read yet
+     */
+    String nextLine() {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                buffer.compact();
+                String next = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                line.reset();
+                return next.endsWith("\r") ? next.substring(0, next.length() - 1) : next;
+            }
+            line.write(b);
+        }
+        buffer.clear();
+        return null;
+    }
+}
@@ -13,35 +13,32 @@ import org.veriblock.core.utilities.Utility;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class MinerThread extends Thread {
     private static final int NUM_HASHES_PER_CYCLE = 100_000;
 
-    private MiningPackage miningPackage;
+    private final AtomicReference<MiningPackage> currentPackage;
     private int localTimeOffset = 0;
 
-    private final Object lock;
     private final int threadNum;
     private final int incrementOffset;
-    private final long extraNonce;
 
     private final ShareRepo shareRepo;
 
-    private double speed;
+    private volatile double speed;
 
-    private boolean shouldContinue = true;
+    private volatile boolean shouldContinue = true;
 
-    MinerThread(MiningPackage miningPackage, int threadNum, int incrementOffset, long extraNonce, ShareRepo shareRepo) {
-        this.miningPackage = miningPackage;
+    MinerThread(AtomicReference<MiningPackage> currentPackage, int threadNum, int incrementOffset, ShareRepo shareRepo) {
+        this.currentPackage = currentPackage;
         this.threadNum = threadNum;
         this.incrementOffset = incrementOffset;
         this.shareRepo = shareRepo;
-        this.extraNonce = extraNonce;
-        lock = new Object();
     }
 
     public void run() {
-        this.localTimeOffset = (int)Instant.now().getEpochSecond() - miningPackage.getLowestTimestamp();
+        this.localTimeOffset = (int)Instant.now().getEpochSecond() - currentPackage.get().getLowestTimestamp();
         int workingTimestamp;
         int nonce = threadNum;
 
@@ -53,55 +50,56 @@ public class MinerThread extends Thread {
         System.out.println("Starting thread " + threadNum + "...");
 
         while (shouldContinue) {
-            synchronized (lock) {
-                workingTimestamp = (int)Instant.now().getEpochSecond();// + localTimeOffset;
+            MiningPackage miningPackage = currentPackage.get();
+            workingTimestamp = (int)Instant.now().getEpochSecond();// + localTimeOffset;
 
-                if (nonce < 0 || nonce + NUM_HASHES_PER_CYCLE * incrementOffset < 0) {
-                    nonce = threadNum;
-                }
+            if (nonce < 0 || nonce + NUM_HASHES_PER_CYCLE * incrementOffset < 0) {
+                nonce = threadNum;
+            }
 
-                for (int i = 0; i < NUM_HASHES_PER_CYCLE; i++) {
-                    byte[] header = BlockUtility.assembleBlockHeader(
-                            miningPackage.getBlockHeight(),
-                            miningPackage.getVersion(),
-                            miningPackage.getPreviousBlockHash(),
-                            miningPackage.getSecondPreviousBlockHash(),
-                            miningPackage.getThirdPreviousBlockHash(),
-                            miningPackage.getMerkleRoot(),
+            // The cycle is cut short as soon as new work is published, so that no time is spent hashing stale work
+            for (int i = 0; i < NUM_HASHES_PER_CYCLE && miningPackage == currentPackage.get(); i++) {
+                byte[] header = BlockUtility.assembleBlockHeader(
+                        miningPackage.getBlockHeight(),
+                        miningPackage.getVersion(),
+                        miningPackage.getPreviousBlockHash(),
+                        miningPackage.getSecondPreviousBlockHash(),
+                        miningPackage.getThirdPreviousBlockHash(),
+                        miningPackage.getMerkleRoot(),
+                        workingTimestamp,
+                        miningPackage.getBlockchainDifficulty(),
+                        nonce);
+
+                String blockHash = c.vBlakeReturnHex(header);
+
+                BigInteger blockHashNumber = new BigInteger(blockHash, 16);
+
+                if (blockHashNumber.compareTo(miningPackage.getPoolTarget()) < 0) {
+                    shareRepo.addShare(new FoundSharePackage(
+                            miningPackage.getJobId(),
                             workingTimestamp,
-                            miningPackage.getBlockchainDifficulty(),
-                            nonce);
-
-                    String blockHash = c.vBlakeReturnHex(header);
-
-                    BigInteger blockHashNumber = new BigInteger(blockHash, 16);
-
-                    if (blockHashNumber.compareTo(miningPackage.getPoolTarget()) < 0) {
-                        shareRepo.addShare(new FoundSharePackage(
-                                miningPackage.getJobId(),
-                                workingTimestamp,
-                                nonce,
-                                extraNonce,
-                                blockHash,
-                                miningPackage.getPreviousBlockHash()));
-
-                        System.out.println("Share on thread " + threadNum + " on block " + Utility.zeroPad(miningPackage.getPreviousBlockHash(), 48));
-                    }
+                            nonce,
+                            miningPackage.getExtraNonce(),
+                            blockHash,
+                            miningPackage.getPreviousBlockHash()));
 
-                    nonce += incrementOffset;
+                    System.out.println("Share on thread " + threadNum + " on block " + Utility.zeroPad(miningPackage.getPreviousBlockHash(), 48));
                 }
 
-                if (nonce > lastUpdateNonce) {
+                nonce += incrementOffset;
+            }
+
+            long timeDiff = System.currentTimeMillis() - lastUpdate;
+            if (nonce > lastUpdateNonce) {
+                if (timeDiff > 0) {
                     double difference = (nonce - lastUpdateNonce) / incrementOffset;
-                    long timeDiff = System.currentTimeMillis() - lastUpdate;
                     lastUpdate = System.currentTimeMillis();
                     lastUpdateNonce = nonce;
                     this.speed = (difference / timeDiff) * 1000; // hashes per second
-
-                } else {
-                    // Account for resets
-                    lastUpdateNonce = nonce;
                 }
+            } else {
+                // Account for resets
+                lastUpdateNonce = nonce;
             }
         }
     }
@@ -113,9 +111,4 @@ public class MinerThread extends Thread {
     double getSpeed() {
         return speed;
     }
-
-    void updateMiningPackage(MiningPackage updatedPackage) {
-        this.miningPackage = updatedPackage;
-        this.localTimeOffset = (int)Instant.now().getEpochSecond() - this.miningPackage.getLowestTimestamp();
-    }
 }
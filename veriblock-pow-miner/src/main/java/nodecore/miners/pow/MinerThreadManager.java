@@ -10,62 +10,36 @@ package nodecore.miners.pow;
 import nodecore.api.ucp.commands.UCPClientCommand;
 import nodecore.api.ucp.commands.client.MiningJob;
 import nodecore.api.ucp.commands.client.MiningMempoolUpdate;
-import org.veriblock.core.utilities.Utility;
 
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class MinerThreadManager extends Thread {
-    private MiningPackage miningPackage;
-    private MiningPackage pendingMiningPackage;
-    private MinerThread[] miners;
-    private final Object lock = new Object();
-
-    boolean shouldContinue = true;
-
-    private final LinkedList<UCPClientCommand> queue = new LinkedList<>();
+public class MinerThreadManager {
+    // The work every miner thread should be hashing; miner threads check it without locking and switch as soon as it changes
+    private final AtomicReference<MiningPackage> currentPackage;
+    private final MinerThread[] miners;
 
     MinerThreadManager(
             int numThreads,
             MiningJob miningJob,
             ShareRepo shareRepo) {
-        this.miningPackage = new MiningPackage(miningJob);
+        this.currentPackage = new AtomicReference<>(new MiningPackage(miningJob));
 
         miners = new MinerThread[numThreads];
 
         for (int threadCount = 0; threadCount < miners.length; threadCount++) {
             miners[threadCount] = new MinerThread(
-                    miningPackage,
+                    currentPackage,
                     threadCount,
                     numThreads,
-                    miningJob.getExtraNonceStart(),
                     shareRepo);
             miners[threadCount].start();
         }
     }
 
-    public void run() {
-        while (shouldContinue) {
-            synchronized (lock) {
-                UCPClientCommand command;
-                while ((command = queue.poll()) != null) {
-                    handleCommand(command);
-
-                    for (MinerThread miner : miners) {
-                        miner.updateMiningPackage(pendingMiningPackage);
-                    }
-                    this.miningPackage = pendingMiningPackage;
-                }
-            }
-            Utility.sleep(25);
-        }
-
-        for (int i = 0; i < miners.length; i++) {
-            miners[i].shutdown();
-        }
-    }
-
     public void shutdown() {
-        this.shouldContinue = false;
+        for (MinerThread miner : miners) {
+            miner.shutdown();
+        }
     }
 
     double getHashrate() {
@@ -77,35 +51,26 @@ public class MinerThreadManager extends Thread {
         return totalHashrate;
     }
 
+    /**
+     * Publishes the work described by the command to the miner threads, which pick it up before their next hash.
+     */
     void update(UCPClientCommand command) {
-        synchronized (lock) {
-            queue.add(command);
-        }
-    }
-
-    private void handleCommand(UCPClientCommand command) {
         if (command instanceof MiningJob) {
-            update((MiningJob)command);
+            currentPackage.set(new MiningPackage((MiningJob) command));
         } else if (command instanceof MiningMempoolUpdate) {
-            update((MiningMempoolUpdate) command);
+            MiningMempoolUpdate mempoolUpdate = (MiningMempoolUpdate) command;
+            currentPackage.updateAndGet(miningPackage -> new MiningPackage(
+                    miningPackage.getBlockHeight(),
+                    miningPackage.getVersion(),
+                    miningPackage.getPreviousBlockHash(),
+                    miningPackage.getSecondPreviousBlockHash(),
+                    miningPackage.getThirdPreviousBlockHash(),
+                    mempoolUpdate.getNewMerkleRoot(),
+                    miningPackage.getLowestTimestamp(),
+                    miningPackage.getBlockchainDifficulty(),
+                    miningPackage.getPoolTarget(),
+                    mempoolUpdate.getJobId(),
+                    miningPackage.getExtraNonce()));
         }
     }
-
-    private void update(MiningJob newMiningJob) {
-        this.pendingMiningPackage = new MiningPackage(newMiningJob);
-    }
-
-    private void update(MiningMempoolUpdate mempoolUpdate) {
-        this.pendingMiningPackage = new MiningPackage(
-                miningPackage.getBlockHeight(),
-                miningPackage.getVersion(),
-                miningPackage.getPreviousBlockHash(),
-                miningPackage.getSecondPreviousBlockHash(),
-                miningPackage.getThirdPreviousBlockHash(),
-                mempoolUpdate.getNewMerkleRoot(),
-                miningPackage.getLowestTimestamp(),
-                miningPackage.getBlockchainDifficulty(),
-                miningPackage.getPoolTarget(),
-                mempoolUpdate.getJobId());
-    }
 }
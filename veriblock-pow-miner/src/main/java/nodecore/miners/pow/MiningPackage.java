@@ -22,6 +22,7 @@ class MiningPackage {
     private final int blockchainDifficulty;
     private final BigInteger poolTarget;
     private final int jobId;
+    private final long extraNonce;
 
     MiningPackage(
             int blockHeight,
@@ -33,7 +34,8 @@ class MiningPackage {
             int lowestTimestamp,
             int blockchainDifficulty,
             BigInteger poolTarget,
-            int jobId) {
+            int jobId,
+            long extraNonce) {
         this.blockHeight = blockHeight;
         this.version = version;
         this.previousBlockHash = previousBlockHash;
@@ -44,6 +46,7 @@ class MiningPackage {
         this.blockchainDifficulty = blockchainDifficulty;
         this.poolTarget = poolTarget;
         this.jobId = jobId;
+        this.extraNonce = extraNonce;
     }
 
     MiningPackage(MiningJob miningJob) {
@@ -57,6 +60,7 @@ class MiningPackage {
         this.blockchainDifficulty = miningJob.getDifficulty();
         this.poolTarget = new BigInteger(miningJob.getMiningTarget(), 16);
         this.jobId = miningJob.getJobId();
+        this.extraNonce = miningJob.getExtraNonceStart();
     }
 
     int getBlockHeight() {
@@ -98,4 +102,8 @@ class MiningPackage {
     int getJobId() {
         return jobId;
     }
+
+    long getExtraNonce() {
+        return extraNonce;
+    }
 }
@@ -0,0 +1,261 @@
+// VeriBlock PoW CPU Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package nodecore.miners.pow;
+
+import nodecore.api.ucp.commands.UCPClientCommand;
+import nodecore.api.ucp.commands.UCPCommand;
+import nodecore.api.ucp.commands.UCPIncomingCommandParser;
+import nodecore.api.ucp.commands.client.Capabilities;
+import nodecore.api.ucp.commands.client.MiningAuthFailure;
+import nodecore.api.ucp.commands.client.MiningAuthSuccess;
+import nodecore.api.ucp.commands.client.MiningJob;
+import nodecore.api.ucp.commands.client.MiningSubscribeFailure;
+import nodecore.api.ucp.commands.client.MiningSubscribeSuccess;
+import nodecore.api.ucp.commands.server.MiningAuth;
+import nodecore.api.ucp.commands.server.MiningSubscribe;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The miner's connection to a UCP mining host: authenticates and subscribes over a blocking channel, then hands the
+ * channel to a non-blocking PoolConnection which mines the jobs it is sent and submits shares as soon as they are
+ * found. When the connection is lost it reconnects and resubscribes with an increasing delay, while the miner threads
+ * keep running.
+ */
+class MiningSession {
+    private static final String CPU_POOL_TARGET = "000000FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+    private static final long STATUS_INTERVAL_MILLIS = 2500;
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    private final String hostName;
+    private final int port;
+    private final String address;
+    private final int numThreads;
+    private final ShareRepo shareRepo;
+    private final boolean cpuPoolOnly;
+
+    // Request ids are unique across reconnections, so that late answers from a lost connection can't be mismatched
+    private final AtomicInteger requestIds = new AtomicInteger();
+
+    private volatile boolean isRunning = true;
+    private volatile SocketChannel channel;
+    private volatile PoolConnection connection;
+    private volatile MinerThreadManager minerThreadManager;
+
+    MiningSession(String hostName, int port, String address, int numThreads, ShareRepo shareRepo, boolean cpuPoolOnly) {
+        this.hostName = hostName;
+        this.port = port;
+        this.address = address;
+        this.numThreads = numThreads;
+        this.shareRepo = shareRepo;
+        this.cpuPoolOnly = cpuPoolOnly;
+    }
+
+    /**
+     * Connects to the mining host and mines until shutdown() is called. If the first connection attempt fails
+     * the session ends, later connection losses are retried with backoff.
+     * @return Whether mining was ever started
+     */
+    boolean run() {
+        boolean workedFirstTime = false;
+        long reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+
+        try {
+            while (isRunning) {
+                if (workedFirstTime) {
+                    System.out.println("Attempting to reconnect to " + hostName + ":" + port);
+                } else {
+                    System.out.println("Attempting to connect to " + hostName + ":" + port);
+                }
+
+                try {
+                    if (mine()) {
+                        workedFirstTime = true;
+                        reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+                    }
+                } catch (IOException e) {
+                    if (isRunning) {
+                        System.out.println("The Reference PoW miner is unable to connect to the specified remote mining host!");
+                        System.out.println("Make sure that NodeCore is running on host:port " + hostName + ":" + port + ", and that a pool is started (run the command startpool)");
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    System.out.println("The connection to the mining host failed: " + e.getMessage());
+                }
+
+                if (!workedFirstTime || !isRunning) {
+                    break;
+                }
+
+                System.out.println("Reconnecting in " + reconnectDelay + " ms...");
+                synchronized (this) {
+                    if (isRunning) {
+                        wait(reconnectDelay);
+                    }
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            MinerThreadManager manager = minerThreadManager;
+            if (manager != null) {
+                manager.shutdown();
+            }
+        }
+
+        return workedFirstTime;
+    }
+
+    /**
+     * Stops mining and closes the connection to the mining host.
+     */
+    void shutdown() {
+        isRunning = false;
+
+        PoolConnection currentConnection = connection;
+        if (currentConnection != null) {
+            currentConnection.shutdown();
+        }
+
+        SocketChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    MinerThreadManager getMinerThreadManager() {
+        return minerThreadManager;
+    }
+
+    private boolean mine() throws IOException, InterruptedException {
+        try (SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(hostName, port))) {
+            channel = socketChannel;
+            if (!isRunning) {
+                return false;
+            }
+
+            // The reader keeps whatever the handshake reads past the initial job for the pool connection
+            LineReader in = new LineReader();
+
+            UCPClientCommand serverToClientCommand = UCPIncomingCommandParser.parseClientCommand(in.readLine(socketChannel));
+
+            if (serverToClientCommand instanceof Capabilities) {
+                System.out.println("Note: server capabilities are " + ((Capabilities) serverToClientCommand).getBitflag());
+            } else {
+                System.out.println("The server did not send it's capabilities!");
+            }
+
+            // Authenticate
+            send(socketChannel, new MiningAuth(requestIds.incrementAndGet(), address, ""));
+
+            UCPClientCommand authResponse = UCPIncomingCommandParser.parseClientCommand(in.readLine(socketChannel));
+            if (authResponse instanceof MiningAuthSuccess) {
+                System.out.println("Authentication successful!");
+            } else if (authResponse instanceof MiningAuthFailure) {
+                MiningAuthFailure failure = (MiningAuthFailure) authResponse;
+                System.out.println("Failed to authenticate: " + failure.getReason() + "! Exiting...");
+                System.exit(1);
+            } else {
+                System.out.println("Server replied with an unexpected command: " + authResponse.compileCommand());
+            }
+
+            // Subscribe
+            send(socketChannel, new MiningSubscribe(requestIds.incrementAndGet(), 500));
+
+            UCPClientCommand subscribeResponse = UCPIncomingCommandParser.parseClientCommand(in.readLine(socketChannel));
+            if (subscribeResponse instanceof MiningSubscribeSuccess) {
+                System.out.println("Mining subscription successful!");
+            } else if (subscribeResponse instanceof MiningSubscribeFailure) {
+                MiningSubscribeFailure failure = (MiningSubscribeFailure) subscribeResponse;
+                System.out.println("Failed to subscribe: " + failure.getReason() + "! Exiting...");
+                System.exit(1);
+            } else {
+                System.out.println("Server replied with an unexpected command: " + subscribeResponse.compileCommand());
+            }
+
+            String initialJob = in.readLine(socketChannel);
+
+            UCPClientCommand initialMiningJob = UCPIncomingCommandParser.parseClientCommand(initialJob);
+            System.out.println("Initial job: " + initialMiningJob.compileCommand());
+            if (!(initialMiningJob instanceof MiningJob)) {
+                System.out.println("Remote host didn't send a mining job after describing it's capabilities!");
+                return false;
+            }
+
+            String targetCheck = ((MiningJob) initialMiningJob).getMiningTarget();
+            if (cpuPoolOnly && !targetCheck.equalsIgnoreCase(CPU_POOL_TARGET)) {
+                System.out.println("A CPU miner must connect to a CPU pool.");
+                System.out.println("The pool <insert_url_Here> you are attempting to connect is a GPU pool!");
+                System.out.println("Please see a list of CPU pools here:");
+                System.out.println("https://wiki.veriblock.org/index.php?title=List_of_mining_pools_testnet#CPU_Pools");
+                try { Thread.sleep(1000); } catch (Exception e) { }
+                System.exit(0);
+            }
+
+            // The miner threads survive reconnections, they only switch over to the new connection's job
+            if (minerThreadManager == null) {
+                minerThreadManager = new MinerThreadManager(numThreads, (MiningJob) initialMiningJob, shareRepo);
+            } else {
+                minerThreadManager.update(initialMiningJob);
+            }
+            // Shares found for a previous connection refer to jobs the new connection doesn't know about
+            shareRepo.clearPendingShares();
+
+            PoolConnection poolConnection = new PoolConnection(socketChannel, in, minerThreadManager, shareRepo, requestIds);
+            // A shutdown from here on either stops the connection or is seen by the loop below
+            connection = poolConnection;
+            poolConnection.start();
+
+            try {
+                while (isRunning && poolConnection.isRunning()) {
+                    System.out.println("Current Hashrate: " +
+                            String.format("%.3f", (minerThreadManager.getHashrate() / (1024 * 1024))) +
+                            " MH/s        VALID: " + shareRepo.getValidShares() +
+                            "        INVALID: " + shareRepo.getInvalidShares() +
+                            "        AWAITING: " + shareRepo.getUnacknowledgedShares());
+                    poolConnection.join(STATUS_INTERVAL_MILLIS);
+                }
+            } finally {
+                poolConnection.shutdown();
+                // Only one connection may listen for shares at a time
+                poolConnection.join();
+
+                int unanswered = shareRepo.clearSubmittedShares();
+                if (unanswered > 0) {
+                    System.out.println(unanswered + " submitted shares were not answered before the connection was lost");
+                }
+            }
+
+            return true;
+        } finally {
+            connection = null;
+            channel = null;
+        }
+    }
+
+    private static void send(SocketChannel channel, UCPCommand command) throws IOException {
+        ByteBuffer line = command.compileCommandLine();
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+    }
+}
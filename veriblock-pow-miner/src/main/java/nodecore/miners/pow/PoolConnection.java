@@ -0,0 +1,189 @@
+// VeriBlock PoW CPU Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package nodecore.miners.pow;
+
+import nodecore.api.ucp.commands.UCPClientCommand;
+import nodecore.api.ucp.commands.UCPIncomingCommandParser;
+import nodecore.api.ucp.commands.client.MiningJob;
+import nodecore.api.ucp.commands.client.MiningMempoolUpdate;
+import nodecore.api.ucp.commands.client.MiningSubmitFailure;
+import nodecore.api.ucp.commands.client.MiningSubmitSuccess;
+import nodecore.api.ucp.commands.server.MiningSubmit;
+import org.veriblock.core.utilities.Utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives an established UCP connection from a single selector thread. Shares are written as soon as the miner
+ * threads find them, waking the selector up, and every submit found since the last write goes out in one gathering
+ * write. Submissions are pipelined: the pool's answers are matched to the shares by request id when they are read,
+ * so nothing waits for them.
+ */
+class PoolConnection extends Thread {
+    private final SocketChannel channel;
+    private final LineReader reader;
+    private final MinerThreadManager minerThreadManager;
+    private final ShareRepo shareRepo;
+    private final AtomicInteger requestIds;
+    private final Selector selector;
+
+    // Submits which did not fit into the socket's send buffer yet, only touched by the selector thread
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private volatile boolean isRunning = true;
+
+    PoolConnection(SocketChannel channel, LineReader reader, MinerThreadManager minerThreadManager, ShareRepo shareRepo, AtomicInteger requestIds) throws IOException {
+        super("Pool Connection");
+        this.channel = channel;
+        this.reader = reader;
+        this.minerThreadManager = minerThreadManager;
+        this.shareRepo = shareRepo;
+        this.requestIds = requestIds;
+        this.selector = Selector.open();
+    }
+
+    public void run() {
+        shareRepo.setShareListener(selector::wakeup);
+        try {
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+
+            // The handshake may have read past the initial job already
+            handleReceivedLines();
+
+            while (isRunning) {
+                // Shares found after this point wake the selector up, so none can be left waiting
+                queueShares();
+                if (!flush()) {
+                    System.out.println("Failed to submit shares to the server...");
+                    break;
+                }
+                key.interestOps(pendingWrites.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+                selector.select();
+                selector.selectedKeys().clear();
+                if (isRunning && key.isReadable()) {
+                    if (!reader.fill(channel)) {
+                        System.out.println("The connection was closed by the server...");
+                        break;
+                    }
+                    handleReceivedLines();
+                }
+            }
+        } catch (Exception e) {
+            if (isRunning) {
+                System.out.println("Failed to read command from server...");
+            }
+        } finally {
+            isRunning = false;
+            shareRepo.setShareListener(null);
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Stops the selector loop and closes the connection.
+     */
+    void shutdown() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    private void handleReceivedLines() {
+        String update;
+        while ((update = reader.nextLine()) != null) {
+            handle(update);
+        }
+    }
+
+    private void handle(String update) {
+        UCPClientCommand updateCommand = UCPIncomingCommandParser.parseClientCommand(update);
+        System.out.println("Update: " + update);
+
+        if (updateCommand instanceof MiningJob) {
+            System.out.println("New job received!");
+            minerThreadManager.update(updateCommand);
+        } else if (updateCommand instanceof MiningMempoolUpdate) {
+            System.out.println("New Mempool Update Received for Current Round!");
+            minerThreadManager.update(updateCommand);
+        } else if (updateCommand instanceof MiningSubmitSuccess) {
+            FoundSharePackage share = shareRepo.acknowledge(((MiningSubmitSuccess)updateCommand).getRequestId());
+            if (share != null) {
+                System.out.println("Share successfully submitted! Job Id: " + share.getJobId() + ", Nonce: " + share.getNonce());
+            } else {
+                System.out.println("Share successfully submitted!");
+            }
+            shareRepo.countValidShare();
+        } else if (updateCommand instanceof MiningSubmitFailure) {
+            MiningSubmitFailure failure = (MiningSubmitFailure)updateCommand;
+            FoundSharePackage share = shareRepo.acknowledge(failure.getRequestId());
+            if (share != null) {
+                System.out.println("Share rejected! Job Id: " + share.getJobId() + ", Nonce: " + share.getNonce() + ", Reason: " + failure.getReason());
+            } else {
+                System.out.println("Share rejected! Reason: " + failure.getReason());
+            }
+            shareRepo.countInvalidShare();
+        } else {
+            System.out.println("An unexpected command was received: " + update + "!");
+        }
+    }
+
+    private void queueShares() {
+        List<FoundSharePackage> shares = shareRepo.getAllShares();
+        for (FoundSharePackage foundShare : shares) {
+            int requestId = requestIds.incrementAndGet();
+            shareRepo.markSubmitted(requestId, foundShare);
+
+            System.out.println("*** Miner submitted share (partial block) to pool ***" +
+                    "\n\tRequest Id: " + requestId +
+                    "\n\tNonce: " + foundShare.getNonce() +
+                    "\n\tTimestamp: " + foundShare.getTimestamp() +
+                    "\n\tJob Id: " + foundShare.getJobId() +
+                    "\n\tBlock Hash: " + Utility.zeroPad(foundShare.getHash(), 48) +
+                    "\n\tPrevious Block Hash: " + Utility.zeroPad(foundShare.getPreviousHash(), 16));
+            pendingWrites.add(new MiningSubmit(requestId, foundShare.getJobId(), foundShare.getTimestamp(), foundShare.getNonce(), foundShare.getExtraNonce()).compileCommandLine());
+        }
+    }
+
+    /**
+     * Writes as much of the queued submits as the socket takes without blocking.
+     * @return False if the connection failed
+     */
+    private boolean flush() {
+        if (pendingWrites.isEmpty()) {
+            return true;
+        }
+
+        try {
+            channel.write(pendingWrites.toArray(new ByteBuffer[0]));
+        } catch (IOException e) {
+            return false;
+        }
+        while (!pendingWrites.isEmpty() && !pendingWrites.peekFirst().hasRemaining()) {
+            pendingWrites.removeFirst();
+        }
+        return true;
+    }
+}
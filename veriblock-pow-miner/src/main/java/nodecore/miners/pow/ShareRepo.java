@@ -8,45 +8,99 @@
 package nodecore.miners.pow;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class ShareRepo {
-    private int validShares = 0;
-    private int invalidShares = 0;
+    private final AtomicInteger validShares;
+    private final AtomicInteger invalidShares;
+
+    // Miner threads only ever offer shares, the pool connection is the single consumer
+    private final ConcurrentLinkedQueue<FoundSharePackage> pendingShares = new ConcurrentLinkedQueue<>();
+    private volatile Runnable shareListener;
+
+    // Shares which were submitted to the pool and are still waiting for its answer, by request id
+    private final Map<Integer, FoundSharePackage> submittedShares = new ConcurrentHashMap<>();
 
     public ShareRepo(int startingValid, int startingInvalid) {
-        this.validShares = startingValid;
-        this.invalidShares = startingInvalid;
+        this.validShares = new AtomicInteger(startingValid);
+        this.invalidShares = new AtomicInteger(startingInvalid);
     }
 
-    private ArrayList<FoundSharePackage> pendingShares = new ArrayList<>();
-
     void addShare(FoundSharePackage sharePackage) {
-        this.pendingShares.add(sharePackage);
+        pendingShares.offer(sharePackage);
+
+        Runnable listener = shareListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Sets the callback which is run on the miner thread every time a share is found, or clears it with null.
+     */
+    void setShareListener(Runnable listener) {
+        shareListener = listener;
     }
 
     ArrayList<FoundSharePackage> getAllShares() {
-        ArrayList<FoundSharePackage> toReturn = new ArrayList<>(pendingShares);
-        pendingShares = new ArrayList<>();
+        ArrayList<FoundSharePackage> toReturn = new ArrayList<>();
+        FoundSharePackage sharePackage;
+        while ((sharePackage = pendingShares.poll()) != null) {
+            toReturn.add(sharePackage);
+        }
         return toReturn;
     }
 
-    boolean hasShares() {
-        return pendingShares.size() > 0;
+    /**
+     * Drops the shares found for a session which ended before they could be submitted.
+     */
+    void clearPendingShares() {
+        pendingShares.clear();
+    }
+
+    void markSubmitted(int requestId, FoundSharePackage sharePackage) {
+        submittedShares.put(requestId, sharePackage);
+    }
+
+    /**
+     * Takes the share which was submitted with the given request id, once the pool has answered it.
+     * @param requestId The request id of the submission
+     * @return The submitted share, or null if no share was submitted with this request id
+     */
+    FoundSharePackage acknowledge(int requestId) {
+        return submittedShares.remove(requestId);
+    }
+
+    int getUnacknowledgedShares() {
+        return submittedShares.size();
+    }
+
+    /**
+     * Forgets the submissions of a connection which was lost before the pool answered them.
+     * @return The number of submissions which were never answered
+     */
+    int clearSubmittedShares() {
+        int unanswered = submittedShares.size();
+        submittedShares.clear();
+        return unanswered;
     }
 
     void countValidShare() {
-        validShares++;
+        validShares.incrementAndGet();
     }
 
     void countInvalidShare() {
-        invalidShares++;
+        invalidShares.incrementAndGet();
     }
 
     int getValidShares() {
-        return validShares;
+        return validShares.get();
     }
 
     int getInvalidShares() {
-        return invalidShares;
+        return invalidShares.get();
     }
 }
@@ -7,43 +7,23 @@
 
 package nodecore.miners.pow;
 
-import nodecore.api.ucp.commands.UCPClientCommand;
-import nodecore.api.ucp.commands.UCPIncomingCommandParser;
-import nodecore.api.ucp.commands.client.Capabilities;
-import nodecore.api.ucp.commands.client.MiningAuthFailure;
-import nodecore.api.ucp.commands.client.MiningAuthSuccess;
-import nodecore.api.ucp.commands.client.MiningJob;
-import nodecore.api.ucp.commands.client.MiningSubscribeFailure;
-import nodecore.api.ucp.commands.client.MiningSubscribeSuccess;
-import nodecore.api.ucp.commands.server.MiningAuth;
-import nodecore.api.ucp.commands.server.MiningSubmit;
-import nodecore.api.ucp.commands.server.MiningSubscribe;
 import org.veriblock.core.SharedConstants;
 import org.veriblock.core.types.Pair;
 import org.veriblock.core.utilities.AddressUtility;
 import org.veriblock.core.utilities.Utility;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
 import java.util.Properties;
-import java.util.Random;
 import java.util.Scanner;
 
 public class VeriBlockPoWMiner {
     private static final int MAX_PORT_NUM = 65335;
     private static final int MIN_PORT_NUM = 0;
 
-    private static final Random random = new Random();
-
     public static void main(String... args) {
         System.out.print(SharedConstants.LICENSE);
         System.out.println(SharedConstants.VERIBLOCK_APPLICATION_NAME.replace("$1", ApplicationMeta.FULL_PROGRAM_NAME_VERSION));
@@ -153,124 +133,10 @@ public class VeriBlockPoWMiner {
 
         String hostName = remoteHost.getFirst();
         int remotePort = remoteHost.getSecond();
-        ShareRepo shareRepo = null;
-        MinerThreadManager minerThreadManager = null;
-
-        boolean workedFirstTime = false;
-
-        do {
-            if (workedFirstTime) {
-                System.out.println("Attempting to reconnect to " + hostName + ":" + remotePort);
-            } else {
-                System.out.println("Attempting to connect to " + hostName + ":" + remotePort);
-            }
-            try (Socket remoteSocket = new Socket(hostName, remotePort)) {
-                PrintWriter out = new PrintWriter(remoteSocket.getOutputStream(), true);
-                BufferedReader in = new BufferedReader(new InputStreamReader(remoteSocket.getInputStream()));
-
-                UCPClientCommand serverToClientCommand = UCPIncomingCommandParser.parseClientCommand(in.readLine());
-
-                if (serverToClientCommand instanceof Capabilities) {
-                    System.out.println("Note: server capabilities are " + ((Capabilities) serverToClientCommand).getBitflag());
-                } else {
-                    System.out.println("The server did not send it's capabilities!");
-                }
-
-                // Authenticate
-                MiningAuth authenticationCommand = new MiningAuth(1, address, "");
-                out.println(authenticationCommand.compileCommand());
-
-                UCPClientCommand authResponse = UCPIncomingCommandParser.parseClientCommand(in.readLine());
-                if (authResponse instanceof MiningAuthSuccess) {
-                    System.out.println("Authentication successful!");
-                } else if (authResponse instanceof MiningAuthFailure) {
-                    MiningAuthFailure failure = (MiningAuthFailure) authResponse;
-                    System.out.println("Failed to authenticate: " + failure.getReason() + "! Exiting...");
-                    System.exit(1);
-                } else {
-                    System.out.println("Server replied with an unexpected command: " + authResponse.compileCommand());
-                }
-
-                // Subscribe
-                MiningSubscribe subscriptionCommand = new MiningSubscribe(2, 500);
-                out.println(subscriptionCommand.compileCommand());
-
-                UCPClientCommand subscribeResponse = UCPIncomingCommandParser.parseClientCommand(in.readLine());
-                if (subscribeResponse instanceof MiningSubscribeSuccess) {
-                    System.out.println("Mining subscription successful!");
-                } else if (subscribeResponse instanceof MiningSubscribeFailure) {
-                    MiningSubscribeFailure failure = (MiningSubscribeFailure) subscribeResponse;
-                    System.out.println("Failed to subscribe: " + failure.getReason() + "! Exiting...");
-                    System.exit(1);
-                } else {
-                    System.out.println("Server replied with an unexpected command: " + subscribeResponse.compileCommand());
-                }
-
-                String initialJob = in.readLine();
-
-                UCPClientCommand initialMiningJob = UCPIncomingCommandParser.parseClientCommand(initialJob);
-                System.out.println("Initial job: " + initialMiningJob.compileCommand());
-                if (initialMiningJob instanceof MiningJob) {
-                    if (shareRepo == null) {
-                        shareRepo = new ShareRepo(0, 0);
-                    } else {
-                        shareRepo = new ShareRepo(shareRepo.getValidShares(), shareRepo.getInvalidShares());
-                    }
+        ShareRepo shareRepo = new ShareRepo(0, 0);
 
-                    String targetCheck = ((MiningJob) initialMiningJob).getMiningTarget();
-                    if (!targetCheck.equalsIgnoreCase("000000FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF")) {
-                        System.out.println("A CPU miner must connect to a CPU pool.");
-                        System.out.println("The pool <insert_url_Here> you are attempting to connect is a GPU pool!");
-                        System.out.println("Please see a list of CPU pools here:");
-                        System.out.println("https://wiki.veriblock.org/index.php?title=List_of_mining_pools_testnet#CPU_Pools");
-                        try { Thread.sleep(1000); } catch (Exception e) { }
-                        System.exit(0);
-                    }
-
-                    minerThreadManager = new MinerThreadManager(numThreads, (MiningJob) initialMiningJob, shareRepo);
-                    minerThreadManager.start();
-
-                    InputThread inputThread = new InputThread(in, minerThreadManager, shareRepo);
-                    inputThread.start();
-
-                    int cycleCount = 0;
-
-                    while (inputThread.isRunning()) {
-                        workedFirstTime = true;
-                        if (cycleCount % 50 == 0) {
-                            System.out.println("Current Hashrate: " +
-                                    String.format("%.3f", (minerThreadManager.getHashrate() / (1024 * 1024))) +
-                                    " MH/s        VALID: " + shareRepo.getValidShares() +
-                                    "        INVALID: " + shareRepo.getInvalidShares());
-                        }
-
-                        if (shareRepo.hasShares()) {
-                            ArrayList<FoundSharePackage> shares = shareRepo.getAllShares();
-                            for (FoundSharePackage foundShare : shares) {
-                                System.out.println("*** Miner submitted share (partial block) to pool ***" +
-                                        "\n\tNonce: " + foundShare.getNonce() +
-                                        "\n\tTimestamp: " + foundShare.getTimestamp() +
-                                        "\n\tJob Id: " + foundShare.getJobId() +
-                                        "\n\tBlock Hash: " + Utility.zeroPad(foundShare.getHash(), 48) +
-                                        "\n\tPrevious Block Hash: " + Utility.zeroPad(foundShare.getPreviousHash(), 16));
-                                MiningSubmit submitCommand = new MiningSubmit(random.nextInt(Integer.MAX_VALUE), foundShare.getJobId(), foundShare.getTimestamp(), foundShare.getNonce(), foundShare.getExtraNonce());
-                                out.println(submitCommand.compileCommand());
-                            }
-                        }
-
-                        Utility.sleep(50);
-                        cycleCount++;
-                    }
-                } else {
-                    System.out.println("Remote host didn't send a mining job after describing it's capabilities!");
-                }
-            } catch (IOException e) {
-                System.out.println("The Reference PoW miner is unable to connect to the specified remote mining host!");
-                System.out.println(String.format("Make sure that NodeCore is running on host:port " + hostAndPort + ", and that a pool is started (run the command startpool)"));
-                try { Thread.sleep(1000); } catch (Exception e2) { }
-            } catch (Exception e) {
-            }
-        } while (workedFirstTime);
+        MiningSession session = new MiningSession(hostName, remotePort, address, numThreads, shareRepo, true);
+        session.run();
     }
 
     private static final String PROPERTY_FILE = "nodecore_miner_pow.properties";
@@ -0,0 +1,263 @@
+// VeriBlock PoW CPU Miner
+// Copyright 2017-2021 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package nodecore.miners.pow;
+
+import nodecore.api.ucp.commands.UCPCommand;
+import nodecore.api.ucp.commands.UCPIncomingCommandParser;
+import nodecore.api.ucp.commands.UCPServerCommand;
+import nodecore.api.ucp.commands.client.Capabilities;
+import nodecore.api.ucp.commands.client.MiningAuthSuccess;
+import nodecore.api.ucp.commands.client.MiningJob;
+import nodecore.api.ucp.commands.client.MiningSubmitFailure;
+import nodecore.api.ucp.commands.client.MiningSubmitSuccess;
+import nodecore.api.ucp.commands.client.MiningSubscribeSuccess;
+import nodecore.api.ucp.commands.server.MiningAuth;
+import nodecore.api.ucp.commands.server.MiningSubmit;
+import nodecore.api.ucp.commands.server.MiningSubscribe;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.veriblock.core.Context;
+import org.veriblock.core.params.NetworkParametersKt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class MiningSessionTests {
+    // Easy enough for a couple of CPU threads to find shares every few milliseconds
+    private static final String EASY_TARGET = "000FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+    private static final int SHARES_PER_JOB = 20;
+    private static final long MAX_STALE_MILLIS = 1000;
+    // Only the shares already found or in flight when the job switches may be stale
+    private static final double MAX_STALE_SHARE_RATE = 0.5;
+
+    @BeforeClass
+    public static void setUpContext() {
+        if (!Context.isCreated()) {
+            Context.create(NetworkParametersKt.getDefaultMainNetParameters());
+        }
+    }
+
+    @Test
+    public void run_switchesToNewJobWithoutSubmittingStaleShares() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            server.setSoTimeout(10_000);
+
+            ShareRepo shareRepo = new ShareRepo(0, 0);
+            MiningSession session = createSession(server, shareRepo);
+            Thread sessionThread = startSession(session);
+
+            int staleShares = 0;
+            int currentShares = 0;
+            long lastStaleMillis = 0;
+
+            try (FakePoolConnection pool = FakePoolConnection.accept(server)) {
+                pool.send(createJob(1, "A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2E3F4"));
+
+                int initialShares = 0;
+                while (initialShares < SHARES_PER_JOB) {
+                    if (pool.readSubmit().getJobId() == 1) {
+                        initialShares++;
+                    }
+                }
+
+                pool.send(createJob(2, "B1C2D3E4F5A6B7C8D9E0F1A2B3C4D5E6F7A8B9C0D1E2F3A4"));
+                long switchedAt = System.currentTimeMillis();
+
+                while (currentShares < SHARES_PER_JOB) {
+                    MiningSubmit submit = pool.readSubmit();
+                    if (submit.getJobId() == 1) {
+                        staleShares++;
+                        lastStaleMillis = System.currentTimeMillis() - switchedAt;
+                    } else {
+                        currentShares++;
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                Assert.fail("The miner did not submit enough shares in time");
+            } finally {
+                session.shutdown();
+            }
+
+            sessionThread.join(10_000);
+
+            double staleShareRate = (double) staleShares / (staleShares + currentShares);
+
+            Assert.assertEquals(SHARES_PER_JOB, currentShares);
+            Assert.assertTrue(staleShares + " of " + (staleShares + currentShares) + " shares after the job switch were stale",
+                    staleShareRate < MAX_STALE_SHARE_RATE);
+            Assert.assertTrue("A stale share was submitted " + lastStaleMillis + " ms after the job switch", lastStaleMillis < MAX_STALE_MILLIS);
+            Assert.assertFalse(sessionThread.isAlive());
+        }
+    }
+
+    @Test
+    public void run_pipelinesSharesAndCorrelatesAnswers() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            server.setSoTimeout(10_000);
+
+            ShareRepo shareRepo = new ShareRepo(0, 0);
+            MiningSession session = createSession(server, shareRepo);
+            Thread sessionThread = startSession(session);
+
+            try (FakePoolConnection pool = FakePoolConnection.accept(server)) {
+                pool.send(createJob(1, "A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2E3F4"));
+
+                // The pool doesn't answer until every submission has arrived
+                List<MiningSubmit> submits = new ArrayList<>();
+                Set<Integer> requestIds = new HashSet<>();
+                while (submits.size() < SHARES_PER_JOB) {
+                    MiningSubmit submit = pool.readSubmit();
+                    submits.add(submit);
+                    requestIds.add(submit.getRequestId());
+                }
+                Assert.assertEquals("Request ids must be unique", SHARES_PER_JOB, requestIds.size());
+
+                // Answer out of order, rejecting the first share
+                for (int i = submits.size() - 1; i > 0; i--) {
+                    pool.send(new MiningSubmitSuccess(submits.get(i).getRequestId()));
+                }
+                pool.send(new MiningSubmitFailure(submits.get(0).getRequestId(), "Stale share"));
+
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (shareRepo.getValidShares() + shareRepo.getInvalidShares() < SHARES_PER_JOB && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+            } finally {
+                session.shutdown();
+            }
+
+            sessionThread.join(10_000);
+
+            Assert.assertEquals(SHARES_PER_JOB - 1, shareRepo.getValidShares());
+            Assert.assertEquals(1, shareRepo.getInvalidShares());
+        }
+    }
+
+    @Test
+    public void run_reconnectsWithoutStoppingMinerThreads() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            server.setSoTimeout(10_000);
+
+            ShareRepo shareRepo = new ShareRepo(0, 0);
+            MiningSession session = createSession(server, shareRepo);
+            Thread sessionThread = startSession(session);
+
+            MinerThreadManager firstManager;
+            try {
+                try (FakePoolConnection pool = FakePoolConnection.accept(server)) {
+                    pool.send(createJob(1, "A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2E3F4"));
+                    pool.readSubmit();
+                    firstManager = session.getMinerThreadManager();
+                }
+
+                // The session resubscribes on its own and moves the running miners over to the new job
+                try (FakePoolConnection pool = FakePoolConnection.accept(server)) {
+                    pool.send(createJob(7, "B1C2D3E4F5A6B7C8D9E0F1A2B3C4D5E6F7A8B9C0D1E2F3A4"));
+
+                    MiningSubmit submit = pool.readSubmit();
+                    while (submit.getJobId() != 7) {
+                        submit = pool.readSubmit();
+                    }
+                    Assert.assertSame(firstManager, session.getMinerThreadManager());
+                }
+            } finally {
+                session.shutdown();
+            }
+
+            sessionThread.join(10_000);
+            Assert.assertFalse(sessionThread.isAlive());
+        }
+    }
+
+    private static MiningSession createSession(ServerSocket server, ShareRepo shareRepo) {
+        return new MiningSession("127.0.0.1", server.getLocalPort(), "VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW", 2, shareRepo, false);
+    }
+
+    private static Thread startSession(MiningSession session) {
+        Thread sessionThread = new Thread(session::run);
+        sessionThread.start();
+        return sessionThread;
+    }
+
+    private static MiningJob createJob(int jobId, String merkleRoot) {
+        return new MiningJob(
+                10 + jobId, jobId, 1450230, 2,
+                "0000000000008A5B0F3C8B54F9E3A41C1E39B1ACB1C9C7D0",
+                "000000000000D9A3A4B29A0C3D7A3C9B3C67AB8C3D9F1E2A",
+                "00000000000023B0C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6",
+                "VFtmKMZzjx9JbyAgX3G6Y8Ri3Ho9uW",
+                merkleRoot,
+                1612273024, 9999, EASY_TARGET,
+                "B1C2D3E4F5A6B7C8D9E0F1A2B3C4D5E6F7A8B9C0D1E2F3A4",
+                "C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6E7F8A9B0C1D2",
+                "D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2B3C4D5E6F7A8B9C0D1E2",
+                "veriblock",
+                "E1F2A3B4C5D6E7F8A9B0C1D2E3F4A5B6C7D8E9F0A1B2C3D4E5F6A7B8C9D0E1F2",
+                "F1A2B3C4D5E6F7A8B9C0D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2",
+                "A2B3C4D5E6F7A8B9C0D1E2F3A4B5C6D7E8F9A0B1C2D3E4F5A6B7C8D9E0F1A2B3",
+                0L, 4294967296L);
+    }
+
+    /**
+     * The pool side of a miner connection, which has already gone through authentication and subscription.
+     */
+    private static final class FakePoolConnection implements AutoCloseable {
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+
+        private FakePoolConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setSoTimeout(10_000);
+            this.out = new PrintWriter(socket.getOutputStream(), true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        }
+
+        static FakePoolConnection accept(ServerSocket server) throws IOException {
+            FakePoolConnection connection = new FakePoolConnection(server.accept());
+            connection.send(new Capabilities(0, "1"));
+            MiningAuth auth = (MiningAuth) connection.readCommand();
+            connection.send(new MiningAuthSuccess(auth.getRequestId()));
+            MiningSubscribe subscribe = (MiningSubscribe) connection.readCommand();
+            connection.send(new MiningSubscribeSuccess(subscribe.getRequestId()));
+            return connection;
+        }
+
+        void send(UCPCommand command) {
+            out.println(command.compileCommand());
+        }
+
+        UCPServerCommand readCommand() throws IOException {
+            return UCPIncomingCommandParser.parseServerCommand(in.readLine());
+        }
+
+        MiningSubmit readSubmit() throws IOException {
+            while (true) {
+                UCPServerCommand command = readCommand();
+                if (command instanceof MiningSubmit) {
+                    return (MiningSubmit) command;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}